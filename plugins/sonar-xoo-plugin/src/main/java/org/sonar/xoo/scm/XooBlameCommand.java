@@ -26,6 +26,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.SortedSet;
+import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.fs.InputFile;
@@ -40,12 +42,16 @@ public class XooBlameCommand extends BlameCommand {
   @Override
   public void blame(BlameInput input, BlameOutput result) {
     for (InputFile inputFile : input.filesToBlame()) {
-      processFile(inputFile, result);
+      processFile(inputFile, input.changedLines(inputFile), result);
     }
   }
 
   @VisibleForTesting
   protected void processFile(InputFile inputFile, BlameOutput result) {
+    processFile(inputFile, null, result);
+  }
+
+  private static void processFile(InputFile inputFile, @Nullable SortedSet<Integer> changedLines, BlameOutput result) {
     File ioFile = inputFile.file();
     File scmDataFile = new java.io.File(ioFile.getParentFile(), ioFile.getName() + SCM_EXTENSION);
     if (!scmDataFile.exists()) {
@@ -58,7 +64,10 @@ public class XooBlameCommand extends BlameCommand {
       int lineNumber = 0;
       for (String line : lines) {
         lineNumber++;
-        if (StringUtils.isNotBlank(line)) {
+        if (changedLines != null && !changedLines.isEmpty() && !changedLines.contains(lineNumber)) {
+          // SCM information of unchanged lines is known by the server
+          blame.add(null);
+        } else if (StringUtils.isNotBlank(line)) {
           // revision,author,dateTime
           String[] fields = StringUtils.splitPreserveAllTokens(line, ',');
           if (fields.length < 3) {
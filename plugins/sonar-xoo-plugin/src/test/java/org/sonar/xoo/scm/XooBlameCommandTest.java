@@ -37,6 +37,7 @@ import org.sonar.xoo.Xoo;
 import java.io.File;
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.TreeSet;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
@@ -78,4 +79,22 @@ public class XooBlameCommandTest {
       new BlameLine().revision("123").author("julien").date(DateUtils.parseDate("2014-12-12")),
       new BlameLine().revision("234").author("julien").date(DateUtils.parseDate("2014-12-24"))));
   }
+
+  @Test
+  public void blame_only_changed_lines() throws IOException {
+    File source = new File(baseDir, "src/foo.xoo");
+    FileUtils.write(source, "sample\ncontent");
+    File scm = new File(baseDir, "src/foo.xoo.scm");
+    FileUtils.write(scm, "123,julien,2014-12-12\n234,julien,2014-12-24");
+    DefaultInputFile inputFile = new DefaultInputFile("foo", "src/foo.xoo").setLanguage(Xoo.KEY);
+    fs.add(inputFile);
+
+    BlameOutput result = mock(BlameOutput.class);
+    when(input.filesToBlame()).thenReturn(Arrays.<InputFile>asList(inputFile));
+    when(input.changedLines(inputFile)).thenReturn(new TreeSet<>(Arrays.asList(2)));
+    new XooBlameCommand().blame(input, result);
+    verify(result).blameResult(inputFile, Arrays.asList(
+      null,
+      new BlameLine().revision("234").author("julien").date(DateUtils.parseDate("2014-12-24"))));
+  }
 }
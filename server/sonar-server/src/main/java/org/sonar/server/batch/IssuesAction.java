@@ -19,6 +19,7 @@
  */
 package org.sonar.server.batch;
 
+import java.io.BufferedOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Iterator;
@@ -46,6 +47,7 @@ import static org.sonar.server.ws.KeyExamples.KEY_PROJECT_EXAMPLE_001;
 public class IssuesAction implements BatchWsAction {
 
   private static final String PARAM_KEY = "key";
+  private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
 
   private final DbClient dbClient;
   private final IssueIndex issueIndex;
@@ -86,10 +88,14 @@ public class IssuesAction implements BatchWsAction {
       ComponentDto component = componentFinder.getByKey(session, componentKey);
       Map<String, String> keysByUUid = keysByUUid(session, component);
 
+      // issues are written as soon as they are received from Elasticsearch, while the next page is loaded.
+      // Output is buffered as each issue is a small message.
+      OutputStream out = new BufferedOutputStream(response.stream().output(), OUTPUT_BUFFER_SIZE);
       ScannerInput.ServerIssue.Builder issueBuilder = ScannerInput.ServerIssue.newBuilder();
       for (Iterator<IssueDoc> issueDocIterator = issueIndex.selectIssuesForBatch(component); issueDocIterator.hasNext();) {
-        handleIssue(issueDocIterator.next(), issueBuilder, keysByUUid, response.stream().output());
+        handleIssue(issueDocIterator.next(), issueBuilder, keysByUUid, out);
       }
+      out.flush();
     } finally {
       MyBatis.closeQuietly(session);
     }
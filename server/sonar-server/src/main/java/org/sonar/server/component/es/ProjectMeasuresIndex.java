@@ -23,17 +23,28 @@ import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.IntStream;
+import javax.annotation.Nullable;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.Aggregations;
+import org.elasticsearch.search.aggregations.bucket.filter.Filter;
+import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.nested.Nested;
 import org.elasticsearch.search.aggregations.bucket.range.RangeBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.percentiles.Percentile;
+import org.elasticsearch.search.aggregations.metrics.percentiles.Percentiles;
+import org.elasticsearch.search.aggregations.metrics.stats.Stats;
 import org.elasticsearch.search.sort.SortOrder;
 import org.sonar.api.measures.Metric;
 import org.sonar.server.component.es.ProjectMeasuresQuery.MetricCriterion;
@@ -44,6 +55,7 @@ import org.sonar.server.es.SearchOptions;
 import org.sonar.server.es.StickyFacetBuilder;
 import org.sonar.server.user.UserSession;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
 import static org.elasticsearch.index.query.QueryBuilders.nestedQuery;
@@ -80,6 +92,17 @@ public class ProjectMeasuresIndex extends BaseIndex {
     SECURITY_RATING_KEY,
     ALERT_STATUS_KEY);
 
+  public static final String GROUP_BY_QUALITY_GATE = ALERT_STATUS_KEY;
+  public static final String ALL_PROJECTS = "all";
+
+  private static final double[] PERCENTS = {50d, 90d, 99d};
+  private static final String AGG_GROUPS = "groups";
+  private static final String AGG_MEASURES = "measures";
+  private static final String AGG_METRIC = "metric";
+  private static final String AGG_STATS = "stats";
+  private static final String AGG_PERCENTILES = "percentiles";
+  private static final String AGG_HISTOGRAM = "histogram";
+
   private static final String FIELD_KEY = FIELD_MEASURES + "." + FIELD_MEASURES_KEY;
   private static final String FIELD_VALUE = FIELD_MEASURES + "." + FIELD_MEASURES_VALUE;
 
@@ -108,6 +131,87 @@ public class ProjectMeasuresIndex extends BaseIndex {
     return new SearchIdResult<>(requestBuilder.get(), id -> id);
   }
 
+  /**
+   * Computes statistics of the values of a measure over the projects matching the query.
+   *
+   * @param groupBy {@code null} to compute statistics over all projects, or {@link #GROUP_BY_QUALITY_GATE} to compute
+   *                statistics of each quality gate status
+   * @param histogramInterval {@code null} if histogram is not needed, otherwise the width of its intervals
+   * @return statistics by group, or by {@link #ALL_PROJECTS} if {@code groupBy} is {@code null}
+   */
+  public Map<String, ProjectMeasuresStatistics> aggregate(ProjectMeasuresQuery query, String metricKey, @Nullable String groupBy,
+    @Nullable Long histogramInterval) {
+    checkArgument(groupBy == null || GROUP_BY_QUALITY_GATE.equals(groupBy), "Unsupported group: %s", groupBy);
+    checkArgument(histogramInterval == null || histogramInterval > 0L, "Histogram interval must be positive: %s", histogramInterval);
+    SearchRequestBuilder requestBuilder = getClient()
+      .prepareSearch(INDEX_PROJECT_MEASURES)
+      .setTypes(TYPE_PROJECT_MEASURES)
+      .setFetchSource(false)
+      .setSize(0);
+    BoolQueryBuilder esFilter = boolQuery();
+    createFilters(query).values().forEach(esFilter::must);
+    requestBuilder.setQuery(esFilter);
+
+    AggregationBuilder statisticsAggregation = createStatisticsAggregation(metricKey, histogramInterval);
+    if (groupBy == null) {
+      requestBuilder.addAggregation(statisticsAggregation);
+    } else {
+      requestBuilder.addAggregation(AggregationBuilders.terms(AGG_GROUPS)
+        .field(FIELD_QUALITY_GATE)
+        .size(0)
+        .subAggregation(statisticsAggregation));
+    }
+
+    Aggregations aggregations = requestBuilder.get().getAggregations();
+    Map<String, ProjectMeasuresStatistics> result = new LinkedHashMap<>();
+    if (groupBy == null) {
+      result.put(ALL_PROJECTS, toStatistics(aggregations));
+    } else {
+      Terms groups = aggregations.get(AGG_GROUPS);
+      for (Terms.Bucket group : groups.getBuckets()) {
+        result.put(group.getKeyAsString(), toStatistics(group.getAggregations()));
+      }
+    }
+    return result;
+  }
+
+  private static AggregationBuilder createStatisticsAggregation(String metricKey, @Nullable Long histogramInterval) {
+    FilterAggregationBuilder metricAggregation = AggregationBuilders.filter(AGG_METRIC)
+      .filter(termQuery(FIELD_KEY, metricKey))
+      .subAggregation(AggregationBuilders.stats(AGG_STATS).field(FIELD_VALUE))
+      .subAggregation(AggregationBuilders.percentiles(AGG_PERCENTILES).field(FIELD_VALUE).percentiles(PERCENTS));
+    if (histogramInterval != null) {
+      metricAggregation.subAggregation(AggregationBuilders.histogram(AGG_HISTOGRAM)
+        .field(FIELD_VALUE)
+        .interval(histogramInterval));
+    }
+    return AggregationBuilders.nested(AGG_MEASURES)
+      .path(FIELD_MEASURES)
+      .subAggregation(metricAggregation);
+  }
+
+  private static ProjectMeasuresStatistics toStatistics(Aggregations aggregations) {
+    Nested measures = aggregations.get(AGG_MEASURES);
+    Filter metric = measures.getAggregations().get(AGG_METRIC);
+    Stats stats = metric.getAggregations().get(AGG_STATS);
+    Map<Double, Double> percentiles = new LinkedHashMap<>();
+    Map<Double, Long> histogram = new LinkedHashMap<>();
+    if (stats.getCount() == 0L) {
+      return new ProjectMeasuresStatistics(0L, 0d, null, null, null, percentiles, histogram);
+    }
+    Percentiles percentilesAggregation = metric.getAggregations().get(AGG_PERCENTILES);
+    for (Percentile percentile : percentilesAggregation) {
+      percentiles.put(percentile.getPercent(), percentile.getValue());
+    }
+    Histogram histogramAggregation = metric.getAggregations().get(AGG_HISTOGRAM);
+    if (histogramAggregation != null) {
+      for (Histogram.Bucket bucket : histogramAggregation.getBuckets()) {
+        histogram.put(((Number) bucket.getKey()).doubleValue(), bucket.getDocCount());
+      }
+    }
+    return new ProjectMeasuresStatistics(stats.getCount(), stats.getSum(), stats.getMin(), stats.getMax(), stats.getAvg(), percentiles, histogram);
+  }
+
   private static void addFacets(SearchRequestBuilder esSearch, SearchOptions options, Map<String, QueryBuilder> filters) {
     if (!options.getFacets().isEmpty()) {
       if (options.getFacets().contains(NCLOC_KEY)) {
@@ -52,7 +52,14 @@ public class ProjectMeasuresIndexer extends BaseIndexer {
   }
 
   public void index(String projectUuid) {
-    doIndex(createBulkIndexer(false), 0L, projectUuid);
+    reindexProject(projectUuid, () -> doIndex(createBulkIndexer(false), 0L, projectUuid));
+  }
+
+  /**
+   * Same as {@link #index(String)} but does not wait for the end of indexing
+   */
+  public void indexAsync(String projectUuid) {
+    reindexProjectAsync(projectUuid, () -> doIndex(createBulkIndexer(false), 0L, projectUuid));
   }
 
   public void deleteProject(String uuid) {
@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.es;
+
+import java.util.Map;
+import javax.annotation.CheckForNull;
+
+/**
+ * Statistics of the values of a measure over a set of projects, as computed by
+ * {@link ProjectMeasuresIndex#aggregate(ProjectMeasuresQuery, String, String, Long)}
+ */
+public class ProjectMeasuresStatistics {
+
+  private final long count;
+  private final double sum;
+  private final Double min;
+  private final Double max;
+  private final Double avg;
+  private final Map<Double, Double> percentiles;
+  private final Map<Double, Long> histogram;
+
+  ProjectMeasuresStatistics(long count, double sum, Double min, Double max, Double avg, Map<Double, Double> percentiles,
+    Map<Double, Long> histogram) {
+    this.count = count;
+    this.sum = sum;
+    this.min = min;
+    this.max = max;
+    this.avg = avg;
+    this.percentiles = percentiles;
+    this.histogram = histogram;
+  }
+
+  /**
+   * Number of projects having the measure
+   */
+  public long getCount() {
+    return count;
+  }
+
+  public double getSum() {
+    return sum;
+  }
+
+  /**
+   * Null if no project has the measure
+   */
+  @CheckForNull
+  public Double getMin() {
+    return min;
+  }
+
+  /**
+   * Null if no project has the measure
+   */
+  @CheckForNull
+  public Double getMax() {
+    return max;
+  }
+
+  /**
+   * Null if no project has the measure
+   */
+  @CheckForNull
+  public Double getAvg() {
+    return avg;
+  }
+
+  /**
+   * Approximated values by percent (50, 90 and 99), empty if no project has the measure
+   */
+  public Map<Double, Double> getPercentiles() {
+    return percentiles;
+  }
+
+  /**
+   * Number of projects by lower bound of interval, sorted by lower bound. Empty if histogram is not requested.
+   */
+  public Map<Double, Long> getHistogram() {
+    return histogram;
+  }
+}
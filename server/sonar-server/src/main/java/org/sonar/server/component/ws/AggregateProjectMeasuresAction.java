@@ -0,0 +1,124 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.ws;
+
+import java.util.Map;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.server.component.es.ProjectMeasuresIndex;
+import org.sonar.server.component.es.ProjectMeasuresQuery;
+import org.sonar.server.component.es.ProjectMeasuresStatistics;
+
+import static com.google.common.base.MoreObjects.firstNonNull;
+import static java.util.Collections.singleton;
+import static org.sonar.server.component.es.ProjectMeasuresIndex.GROUP_BY_QUALITY_GATE;
+import static org.sonar.server.component.ws.ProjectMeasuresQueryFactory.newProjectMeasuresQuery;
+import static org.sonarqube.ws.client.component.ComponentsWsParameters.PARAM_FILTER;
+
+/**
+ * Statistics of a measure over many projects (for example total of lines of code, or distribution of ratings), computed
+ * by Elasticsearch instead of loading the measures of each project from database.
+ */
+public class AggregateProjectMeasuresAction implements ComponentsWsAction {
+
+  static final String PARAM_METRIC = "metric";
+  static final String PARAM_GROUP_BY = "groupBy";
+  static final String PARAM_HISTOGRAM_INTERVAL = "histogramInterval";
+
+  private final DbClient dbClient;
+  private final ProjectMeasuresIndex index;
+  private final ProjectMeasuresQueryValidator projectMeasuresQueryValidator;
+
+  public AggregateProjectMeasuresAction(DbClient dbClient, ProjectMeasuresIndex index, ProjectMeasuresQueryValidator projectMeasuresQueryValidator) {
+    this.dbClient = dbClient;
+    this.index = index;
+    this.projectMeasuresQueryValidator = projectMeasuresQueryValidator;
+  }
+
+  @Override
+  public void define(WebService.NewController context) {
+    WebService.NewAction action = context.createAction("aggregate_project_measures")
+      .setSince("6.2")
+      .setDescription("Compute statistics (count, sum, min, max, average, percentiles and optional histogram) of a numeric measure " +
+        "over the projects matching the filter. Only the projects the user is allowed to browse are taken into account.")
+      .setInternal(true)
+      .setResponseExample(getClass().getResource("aggregate_project_measures-example.json"))
+      .setHandler(this);
+
+    action.createParam(PARAM_METRIC)
+      .setDescription("Key of the numeric metric")
+      .setRequired(true)
+      .setExampleValue("ncloc");
+    action.createParam(PARAM_FILTER)
+      .setDescription("Filter of projects, with the same syntax as api/components/search_projects")
+      .setExampleValue("coverage <= 80");
+    action.createParam(PARAM_GROUP_BY)
+      .setDescription("Compute statistics of each group of projects instead of all projects")
+      .setPossibleValues(GROUP_BY_QUALITY_GATE);
+    action.createParam(PARAM_HISTOGRAM_INTERVAL)
+      .setDescription("Width of the intervals of the histogram of values. No histogram is computed by default.")
+      .setExampleValue("10000");
+  }
+
+  @Override
+  public void handle(Request request, Response response) throws Exception {
+    String metricKey = request.mandatoryParam(PARAM_METRIC);
+    ProjectMeasuresQuery query = newProjectMeasuresQuery(firstNonNull(request.param(PARAM_FILTER), ""));
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      projectMeasuresQueryValidator.validate(dbSession, query);
+      projectMeasuresQueryValidator.validateMetrics(dbSession, singleton(metricKey));
+    }
+
+    Map<String, ProjectMeasuresStatistics> statisticsByGroup = index.aggregate(query, metricKey, request.param(PARAM_GROUP_BY),
+      request.paramAsLong(PARAM_HISTOGRAM_INTERVAL));
+
+    JsonWriter json = response.newJsonWriter();
+    json.beginObject();
+    json.prop("metric", metricKey);
+    json.name("groups").beginArray();
+    statisticsByGroup.forEach((group, statistics) -> writeStatistics(json, group, statistics));
+    json.endArray();
+    json.endObject();
+    json.close();
+  }
+
+  private static void writeStatistics(JsonWriter json, String group, ProjectMeasuresStatistics statistics) {
+    json.beginObject();
+    json.prop("key", group);
+    json.prop("count", statistics.getCount());
+    json.prop("sum", statistics.getSum());
+    json.prop("min", statistics.getMin());
+    json.prop("max", statistics.getMax());
+    json.prop("avg", statistics.getAvg());
+    json.name("percentiles").beginArray();
+    statistics.getPercentiles().forEach((percent, value) -> json.beginObject().prop("percent", percent).prop("value", value).endObject());
+    json.endArray();
+    if (!statistics.getHistogram().isEmpty()) {
+      json.name("histogram").beginArray();
+      statistics.getHistogram().forEach((from, count) -> json.beginObject().prop("from", from).prop("count", count).endObject());
+      json.endArray();
+    }
+    json.endObject();
+  }
+}
@@ -42,6 +42,13 @@ public class ProjectMeasuresQueryValidator {
 
   public void validate(DbSession dbSession, ProjectMeasuresQuery query) {
     Set<String> metricKeys = query.getMetricCriteria().stream().map(MetricCriterion::getMetricKey).collect(Collectors.toSet());
+    validateMetrics(dbSession, metricKeys);
+  }
+
+  /**
+   * Checks that metrics exist, are enabled and are numeric
+   */
+  public void validateMetrics(DbSession dbSession, Set<String> metricKeys) {
     if (metricKeys.isEmpty()) {
       return;
     }
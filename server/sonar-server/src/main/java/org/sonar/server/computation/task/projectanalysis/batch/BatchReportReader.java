@@ -60,4 +60,6 @@ public interface BatchReportReader {
   CloseableIterator<ScannerReport.CoverageDetail> readCoverageDetails(int testFileRef);
 
   CloseableIterator<ScannerReport.ContextProperty> readContextProperties();
+
+  CloseableIterator<ScannerReport.SensorProfiling> readSensorProfiling();
 }
@@ -223,6 +223,12 @@ public class BatchReportReaderImpl implements BatchReportReader {
     return delegate.readContextProperties();
   }
 
+  @Override
+  public CloseableIterator<ScannerReport.SensorProfiling> readSensorProfiling() {
+    ensureInitialized();
+    return delegate.readSensorProfiling();
+  }
+
   private static class ParserCloseableIterator<T> extends CloseableIterator<T> {
     private final Parser<T> parser;
     private final FileInputStream fileInputStream;
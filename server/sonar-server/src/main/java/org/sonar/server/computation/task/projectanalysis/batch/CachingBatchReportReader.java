@@ -0,0 +1,269 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.Iterators;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.CheckForNull;
+import org.picocontainer.Startable;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.scanner.protocol.output.ScannerReport;
+
+import static java.lang.String.format;
+
+/**
+ * Decorator of {@link BatchReportReaderImpl} which keeps in memory the data of the report that several steps read
+ * for the same component: the {@link ScannerReport.Component} (read by the component tree, file sources, links and
+ * validation steps) and the source lines of files (read by file move detection, source hash, issue tracking and file
+ * sources steps).
+ * <p>
+ * The cache is bounded by the number of megabytes defined by property {@link #CACHE_SIZE_PROPERTY}
+ * (defaults to {@link #DEFAULT_CACHE_SIZE_IN_MB}) and a value of {@code 0} disables it. Steps visit all the files
+ * of the project in the same order, so a least recently used policy would evict each entry before it's read again
+ * by the next step when the project does not fit. Entries are then never evicted: once the budget is used, the
+ * other data is streamed from the report, as when the cache is disabled.
+ * </p>
+ */
+public class CachingBatchReportReader implements BatchReportReader, Startable {
+  public static final String CACHE_SIZE_PROPERTY = "sonar.ce.reportCacheSizeInMb";
+  @VisibleForTesting
+  static final int DEFAULT_CACHE_SIZE_IN_MB = 32;
+
+  private static final Logger LOG = Loggers.get(CachingBatchReportReader.class);
+  private static final int BYTES_PER_MB = 1024 * 1024;
+  /**
+   * Approximation of the memory used by a String, excluding its characters
+   */
+  private static final int STRING_OVERHEAD_IN_BYTES = 40;
+
+  private final BatchReportReader delegate;
+  private final Cache<Integer, ScannerReport.Component> components = CacheBuilder.newBuilder().concurrencyLevel(1).recordStats().build();
+  private final Cache<Integer, List<String>> fileSources = CacheBuilder.newBuilder().concurrencyLevel(1).recordStats().build();
+  private final AtomicLong componentsBudget;
+  private final AtomicLong fileSourcesBudget;
+  private final AtomicLong uncachedComponents = new AtomicLong();
+  private final AtomicLong uncachedFileSources = new AtomicLong();
+
+  public CachingBatchReportReader(BatchReportDirectoryHolder batchReportDirectoryHolder, Settings settings) {
+    this.delegate = new BatchReportReaderImpl(batchReportDirectoryHolder);
+    long maxWeight = (long) readCacheSizeInMb(settings) * BYTES_PER_MB;
+    // report components are much smaller than source files, 1/8 of the budget is more than enough for them
+    this.componentsBudget = new AtomicLong(maxWeight / 8);
+    this.fileSourcesBudget = new AtomicLong(maxWeight - maxWeight / 8);
+  }
+
+  private static int readCacheSizeInMb(Settings settings) {
+    String value = settings.getString(CACHE_SIZE_PROPERTY);
+    if (value == null || value.isEmpty()) {
+      return DEFAULT_CACHE_SIZE_IN_MB;
+    }
+    try {
+      int res = Integer.parseInt(value);
+      if (res >= 0) {
+        return res;
+      }
+    } catch (NumberFormatException e) {
+      // error is raised below
+    }
+    throw MessageException.of(format("value '%s' of property %s is invalid. It must be a positive integer.", value, CACHE_SIZE_PROPERTY));
+  }
+
+  private static long weigh(String line) {
+    return STRING_OVERHEAD_IN_BYTES + 2L * line.length();
+  }
+
+  @Override
+  public void start() {
+    // nothing to do
+  }
+
+  @Override
+  public void stop() {
+    LOG.info("Report cache statistics: components [{}], file sources [{}]",
+      describe(components, uncachedComponents), describe(fileSources, uncachedFileSources));
+    components.invalidateAll();
+    fileSources.invalidateAll();
+  }
+
+  private static String describe(Cache<Integer, ?> cache, AtomicLong uncached) {
+    CacheStats stats = cache.stats();
+    return format("hits=%d, misses=%d, cached=%d, not cached=%d", stats.hitCount(), stats.missCount(), cache.size(), uncached.get());
+  }
+
+  @VisibleForTesting
+  CacheStats getComponentsStats() {
+    return components.stats();
+  }
+
+  @VisibleForTesting
+  CacheStats getFileSourcesStats() {
+    return fileSources.stats();
+  }
+
+  @Override
+  public ScannerReport.Component readComponent(int componentRef) {
+    ScannerReport.Component component = components.getIfPresent(componentRef);
+    if (component == null) {
+      component = delegate.readComponent(componentRef);
+      if (consume(componentsBudget, component.getSerializedSize())) {
+        components.put(componentRef, component);
+      } else {
+        uncachedComponents.incrementAndGet();
+      }
+    }
+    return component;
+  }
+
+  @Override
+  public Optional<CloseableIterator<String>> readFileSource(int fileRef) {
+    List<String> lines = fileSources.getIfPresent(fileRef);
+    if (lines != null) {
+      return Optional.of(CloseableIterator.from(lines.iterator()));
+    }
+    Optional<CloseableIterator<String>> linesIterator = delegate.readFileSource(fileRef);
+    if (!linesIterator.isPresent()) {
+      return linesIterator;
+    }
+    if (fileSourcesBudget.get() <= 0) {
+      uncachedFileSources.incrementAndGet();
+      return linesIterator;
+    }
+    return Optional.of(readAndCache(fileRef, linesIterator.get()));
+  }
+
+  /**
+   * Lines are buffered as long as they fit into the remaining budget. If the file is too big, the buffered lines
+   * are returned followed by the lines not read yet, which are streamed.
+   */
+  private CloseableIterator<String> readAndCache(int fileRef, CloseableIterator<String> linesIterator) {
+    long maxWeight = fileSourcesBudget.get();
+    List<String> lines = new ArrayList<>();
+    long weight = 0L;
+    while (weight <= maxWeight && linesIterator.hasNext()) {
+      String line = linesIterator.next();
+      lines.add(line);
+      weight += weigh(line);
+    }
+    if (!linesIterator.hasNext() && consume(fileSourcesBudget, weight)) {
+      fileSources.put(fileRef, lines);
+      return CloseableIterator.from(lines.iterator());
+    }
+    uncachedFileSources.incrementAndGet();
+    return CloseableIterator.wrap(CloseableIterator.from(Iterators.concat(lines.iterator(), linesIterator)), linesIterator);
+  }
+
+  private static boolean consume(AtomicLong budget, long weight) {
+    long remaining = budget.get();
+    while (remaining >= weight) {
+      if (budget.compareAndSet(remaining, remaining - weight)) {
+        return true;
+      }
+      remaining = budget.get();
+    }
+    return false;
+  }
+
+  @Override
+  public ScannerReport.Metadata readMetadata() {
+    return delegate.readMetadata();
+  }
+
+  @Override
+  public CloseableIterator<String> readScannerLogs() {
+    return delegate.readScannerLogs();
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.ActiveRule> readActiveRules() {
+    return delegate.readActiveRules();
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.Measure> readComponentMeasures(int componentRef) {
+    return delegate.readComponentMeasures(componentRef);
+  }
+
+  @Override
+  @CheckForNull
+  public ScannerReport.Changesets readChangesets(int componentRef) {
+    return delegate.readChangesets(componentRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.Issue> readComponentIssues(int componentRef) {
+    return delegate.readComponentIssues(componentRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.Duplication> readComponentDuplications(int componentRef) {
+    return delegate.readComponentDuplications(componentRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.CpdTextBlock> readCpdTextBlocks(int componentRef) {
+    return delegate.readCpdTextBlocks(componentRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.Symbol> readComponentSymbols(int componentRef) {
+    return delegate.readComponentSymbols(componentRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.SyntaxHighlightingRule> readComponentSyntaxHighlighting(int fileRef) {
+    return delegate.readComponentSyntaxHighlighting(fileRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.LineCoverage> readComponentCoverage(int fileRef) {
+    return delegate.readComponentCoverage(fileRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.Test> readTests(int testFileRef) {
+    return delegate.readTests(testFileRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.CoverageDetail> readCoverageDetails(int testFileRef) {
+    return delegate.readCoverageDetails(testFileRef);
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.ContextProperty> readContextProperties() {
+    return delegate.readContextProperties();
+  }
+
+  @Override
+  public CloseableIterator<ScannerReport.SensorProfiling> readSensorProfiling() {
+    return delegate.readSensorProfiling();
+  }
+}
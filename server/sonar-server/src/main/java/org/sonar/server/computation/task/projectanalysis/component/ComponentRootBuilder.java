@@ -23,6 +23,8 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Function;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
@@ -37,6 +39,10 @@ import static org.sonar.core.component.ComponentKeys.createEffectiveKey;
 import static org.sonar.core.component.ComponentKeys.createKey;
 import static org.sonar.core.util.stream.Collectors.toList;
 
+/**
+ * Builds the tree of {@link Component} from the components of the scanner report. Data shared between files
+ * (attributes, empty list of children, ...) is deduplicated to limit memory used by large projects.
+ */
 public class ComponentRootBuilder {
   private static final String DEFAULT_PROJECT_VERSION = "not provided";
 
@@ -73,6 +79,11 @@ public class ComponentRootBuilder {
   private final Function<String, Optional<SnapshotDto>> analysisSupplier;
   @CheckForNull
   private final String branch;
+  /**
+   * Files of a project share only a handful of distinct {@link FileAttributes} (one per language and test/main
+   * combination), so instances are shared across the tree instead of being created once per file.
+   */
+  private final Map<FileAttributes, FileAttributes> fileAttributesCache = new HashMap<>();
 
   public ComponentRootBuilder(@Nullable String branch,
     Function<String, String> uuidSupplier,
@@ -125,7 +136,7 @@ public class ComponentRootBuilder {
       .setUuid(uuidSupplier.apply(componentKey))
       .setKey(componentKey)
       .setDescription(trimToNull(reportComponent.getDescription()))
-      .setFileAttributes(createFileAttributes(reportComponent))
+      .setFileAttributes(getOrCreateFileAttributes(reportComponent))
       .addChildren(toArray(buildChildren(reportComponent, latestModuleKey), Component.class));
   }
 
@@ -182,6 +193,15 @@ public class ComponentRootBuilder {
       .setPath(trimToNull(component.getPath()));
   }
 
+  @CheckForNull
+  private FileAttributes getOrCreateFileAttributes(ScannerReport.Component component) {
+    FileAttributes fileAttributes = createFileAttributes(component);
+    if (fileAttributes == null) {
+      return null;
+    }
+    return fileAttributesCache.computeIfAbsent(fileAttributes, Function.identity());
+  }
+
   @VisibleForTesting
   @CheckForNull
   static FileAttributes createFileAttributes(ScannerReport.Component component) {
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.computation.task.projectanalysis.component;
 
+import java.util.Objects;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
@@ -46,6 +47,23 @@ public class FileAttributes {
     return languageKey;
   }
 
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    FileAttributes that = (FileAttributes) o;
+    return unitTest == that.unitTest && Objects.equals(languageKey, that.languageKey);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(unitTest, languageKey);
+  }
+
   @Override
   public String toString() {
     return "FileAttributes{" +
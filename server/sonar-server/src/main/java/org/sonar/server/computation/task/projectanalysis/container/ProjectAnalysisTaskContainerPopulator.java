@@ -32,7 +32,7 @@ import org.sonar.server.computation.task.container.TaskContainer;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.api.posttask.PostProjectAnalysisTasksExecutor;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportDirectoryHolderImpl;
-import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderImpl;
+import org.sonar.server.computation.task.projectanalysis.batch.CachingBatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.DbIdsRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.component.DisabledComponentsHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.component.SettingsRepositoryImpl;
@@ -97,6 +97,7 @@ import org.sonar.server.computation.task.projectanalysis.qualitymodel.RatingSett
 import org.sonar.server.computation.task.projectanalysis.qualitymodel.ReliabilityAndSecurityRatingMeasuresVisitor;
 import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolderImpl;
 import org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryImpl;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceDataCache;
 import org.sonar.server.computation.task.projectanalysis.source.LastCommitVisitor;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepositoryImpl;
@@ -158,7 +159,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       MeasureComputersHolderImpl.class,
       MutableTaskResultHolderImpl.class,
 
-      BatchReportReaderImpl.class,
+      CachingBatchReportReader.class,
 
       // repositories
       LanguageRepositoryImpl.class,
@@ -171,6 +172,7 @@ public final class ProjectAnalysisTaskContainerPopulator implements ContainerPop
       EvaluationResultTextConverterImpl.class,
       SourceLinesRepositoryImpl.class,
       SourceHashRepositoryImpl.class,
+      FileSourceDataCache.class,
       ScmInfoRepositoryImpl.class,
       DuplicationRepositoryImpl.class,
 
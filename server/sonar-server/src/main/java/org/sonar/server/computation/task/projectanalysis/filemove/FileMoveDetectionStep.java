@@ -51,6 +51,7 @@ import org.sonar.server.computation.task.projectanalysis.component.TreeRootHolde
 import org.sonar.server.computation.task.projectanalysis.component.TypeAwareVisitorAdapter;
 import org.sonar.server.computation.task.projectanalysis.filemove.FileSimilarity.File;
 import org.sonar.server.computation.task.projectanalysis.analysis.Analysis;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceDataCache;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepository;
 import org.sonar.server.computation.task.step.ComputationStep;
 
@@ -70,15 +71,17 @@ public class FileMoveDetectionStep implements ComputationStep {
   private final AnalysisMetadataHolder analysisMetadataHolder;
   private final TreeRootHolder rootHolder;
   private final DbClient dbClient;
+  private final FileSourceDataCache fileSourceDataCache;
   private final SourceLinesRepository sourceLinesRepository;
   private final FileSimilarity fileSimilarity;
   private final MutableMovedFilesRepository movedFilesRepository;
 
-  public FileMoveDetectionStep(AnalysisMetadataHolder analysisMetadataHolder, TreeRootHolder rootHolder, DbClient dbClient,
+  public FileMoveDetectionStep(AnalysisMetadataHolder analysisMetadataHolder, TreeRootHolder rootHolder, DbClient dbClient, FileSourceDataCache fileSourceDataCache,
     SourceLinesRepository sourceLinesRepository, FileSimilarity fileSimilarity, MutableMovedFilesRepository movedFilesRepository) {
     this.analysisMetadataHolder = analysisMetadataHolder;
     this.rootHolder = rootHolder;
     this.dbClient = dbClient;
+    this.fileSourceDataCache = fileSourceDataCache;
     this.sourceLinesRepository = sourceLinesRepository;
     this.fileSimilarity = fileSimilarity;
     this.movedFilesRepository = movedFilesRepository;
@@ -202,37 +205,35 @@ public class FileMoveDetectionStep implements ComputationStep {
     int[][] scoreMatrix = new int[dbFileKeys.size()][reportFileSourcesByKey.size()];
     int maxScore = 0;
 
-    try (DbSession dbSession = dbClient.openSession(false)) {
-      int dbFileIndex = 0;
-      for (String removedFileKey : dbFileKeys) {
-        File fileInDb = getFile(dbSession, dtosByKey.get(removedFileKey));
-        if (fileInDb == null) {
-          continue;
-        }
+    int dbFileIndex = 0;
+    for (String removedFileKey : dbFileKeys) {
+      File fileInDb = getFile(dtosByKey.get(removedFileKey));
+      if (fileInDb == null) {
+        continue;
+      }
 
-        int reportFileIndex = 0;
-        for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
-          File unmatchedFile = reportFileSourceAndKey.getValue();
-          int score = fileSimilarity.score(fileInDb, unmatchedFile);
-          scoreMatrix[dbFileIndex][reportFileIndex] = score;
-          if (score > maxScore) {
-            maxScore = score;
-          }
-          reportFileIndex++;
+      int reportFileIndex = 0;
+      for (Map.Entry<String, File> reportFileSourceAndKey : reportFileSourcesByKey.entrySet()) {
+        File unmatchedFile = reportFileSourceAndKey.getValue();
+        int score = fileSimilarity.score(fileInDb, unmatchedFile);
+        scoreMatrix[dbFileIndex][reportFileIndex] = score;
+        if (score > maxScore) {
+          maxScore = score;
         }
-        dbFileIndex++;
+        reportFileIndex++;
       }
+      dbFileIndex++;
     }
 
     return new ScoreMatrix(dbFileKeys, reportFileSourcesByKey, scoreMatrix, maxScore);
   }
 
   @CheckForNull
-  private File getFile(DbSession dbSession, DbComponent dbComponent) {
+  private File getFile(DbComponent dbComponent) {
     if (dbComponent.getPath() == null) {
       return null;
     }
-    FileSourceDto fileSourceDto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, dbComponent.getUuid());
+    FileSourceDto fileSourceDto = fileSourceDataCache.getFileSource(dbComponent.getUuid());
     if (fileSourceDto == null) {
       return null;
     }
@@ -27,12 +27,10 @@ import org.sonar.core.issue.DefaultIssue;
 import org.sonar.core.issue.tracking.Input;
 import org.sonar.core.issue.tracking.LazyInput;
 import org.sonar.core.issue.tracking.LineHashSequence;
-import org.sonar.db.DbClient;
-import org.sonar.db.DbSession;
-import org.sonar.db.MyBatis;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository.OriginalFile;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceDataCache;
 
 /**
  * Factory of {@link Input} of base data for issue tracking. Data are lazy-loaded.
@@ -41,12 +39,12 @@ public class TrackerBaseInputFactory {
   private static final LineHashSequence EMPTY_LINE_HASH_SEQUENCE = new LineHashSequence(Collections.<String>emptyList());
 
   private final BaseIssuesLoader baseIssuesLoader;
-  private final DbClient dbClient;
+  private final FileSourceDataCache fileSourceDataCache;
   private final MovedFilesRepository movedFilesRepository;
 
-  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, DbClient dbClient, MovedFilesRepository movedFilesRepository) {
+  public TrackerBaseInputFactory(BaseIssuesLoader baseIssuesLoader, FileSourceDataCache fileSourceDataCache, MovedFilesRepository movedFilesRepository) {
     this.baseIssuesLoader = baseIssuesLoader;
-    this.dbClient = dbClient;
+    this.fileSourceDataCache = fileSourceDataCache;
     this.movedFilesRepository = movedFilesRepository;
   }
 
@@ -69,17 +67,12 @@ public class TrackerBaseInputFactory {
       if (component.getType() != Component.Type.FILE) {
         return EMPTY_LINE_HASH_SEQUENCE;
       }
-      
-      DbSession session = dbClient.openSession(false);
-      try {
-        List<String> hashes = dbClient.fileSourceDao().selectLineHashes(session, effectiveUuid);
-        if (hashes == null || hashes.isEmpty()) {
-          return EMPTY_LINE_HASH_SEQUENCE;
-        }
-        return new LineHashSequence(hashes);
-      } finally {
-        MyBatis.closeQuietly(session);
+
+      List<String> hashes = fileSourceDataCache.getLineHashes(effectiveUuid);
+      if (hashes == null || hashes.isEmpty()) {
+        return EMPTY_LINE_HASH_SEQUENCE;
       }
+      return new LineHashSequence(hashes);
     }
 
     @Override
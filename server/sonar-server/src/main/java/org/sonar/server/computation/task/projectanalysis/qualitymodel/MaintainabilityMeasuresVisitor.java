@@ -26,7 +26,6 @@ import org.sonar.api.utils.log.Loggers;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
-import org.sonar.server.computation.task.projectanalysis.formula.counter.RatingVariationValue;
 import org.sonar.server.computation.task.projectanalysis.measure.Measure;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
@@ -133,17 +132,17 @@ public class MaintainabilityMeasuresVisitor extends PathAwareVisitorAdapter<Main
   private void computeAndSaveMeasures(Component component, Path<Counter> path) {
     addDevelopmentCostMeasure(component, path.current());
 
-    double density = computeDensity(component, path.current());
+    Optional<Measure> effortMeasure = measureRepository.getRawMeasure(component, maintainabilityRemediationEffortMetric);
+    long effort = effortMeasure.isPresent() ? effortMeasure.get().getLongValue() : 0L;
+    double density = computeDensity(effort, path.current());
     addDebtRatioMeasure(component, density);
     addMaintainabilityRatingMeasure(component, density);
-    addEffortToMaintainabilityRatingAMeasure(component, path);
+    addEffortToMaintainabilityRatingAMeasure(component, path, effort);
 
     addToParent(path);
   }
 
-  private double computeDensity(Component component, Counter developmentCost) {
-    Optional<Measure> measure = measureRepository.getRawMeasure(component, maintainabilityRemediationEffortMetric);
-    double maintainabilityRemediationEffort = measure.isPresent() ? measure.get().getLongValue() : 0L;
+  private static double computeDensity(long maintainabilityRemediationEffort, Counter developmentCost) {
     if (Double.doubleToRawLongBits(developmentCost.devCosts) != 0L) {
       return maintainabilityRemediationEffort / (double) developmentCost.devCosts;
     }
@@ -164,10 +163,8 @@ public class MaintainabilityMeasuresVisitor extends PathAwareVisitorAdapter<Main
     measureRepository.add(component, maintainabilityRatingMetric, newMeasureBuilder().create(rating.getIndex(), rating.name()));
   }
 
-  private void addEffortToMaintainabilityRatingAMeasure(Component component, Path<Counter> path) {
+  private void addEffortToMaintainabilityRatingAMeasure(Component component, Path<Counter> path, long effort) {
     long developmentCostValue = path.current().devCosts;
-    Optional<Measure> effortMeasure = measureRepository.getRawMeasure(component, maintainabilityRemediationEffortMetric);
-    long effort = effortMeasure.isPresent() ? effortMeasure.get().getLongValue() : 0L;
     long upperGradeCost = ((Double) (ratingGrid.getGradeLowerBound(Rating.B) * developmentCostValue)).longValue();
     long effortToRatingA = upperGradeCost < effort ? (effort - upperGradeCost) : 0L;
     measureRepository.add(component, effortToMaintainabilityRatingAMetric, Measure.newMeasureBuilder().create(effortToRatingA));
@@ -181,8 +178,6 @@ public class MaintainabilityMeasuresVisitor extends PathAwareVisitorAdapter<Main
 
   public static final class Counter {
     private long devCosts = 0;
-    private RatingVariationValue reliabilityRating = new RatingVariationValue();
-    private RatingVariationValue securityRating = new RatingVariationValue();
 
     private Counter() {
       // prevents instantiation
@@ -190,8 +185,6 @@ public class MaintainabilityMeasuresVisitor extends PathAwareVisitorAdapter<Main
 
     void add(Counter otherCounter) {
       addDevCosts(otherCounter.devCosts);
-      reliabilityRating.increment(otherCounter.reliabilityRating);
-      securityRating.increment(otherCounter.securityRating);
     }
 
     void addDevCosts(long developmentCosts) {
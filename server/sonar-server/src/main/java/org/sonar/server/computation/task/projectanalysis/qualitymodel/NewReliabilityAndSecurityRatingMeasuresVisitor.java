@@ -21,15 +21,16 @@
 package org.sonar.server.computation.task.projectanalysis.qualitymodel;
 
 import com.google.common.collect.ImmutableMap;
+import java.util.List;
 import java.util.Map;
 import org.sonar.api.ce.measure.Issue;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.core.issue.DefaultIssue;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
-import org.sonar.server.computation.task.projectanalysis.formula.counter.RatingVariationValue;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepository;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
+import org.sonar.server.computation.task.projectanalysis.measure.MeasureVariations;
 import org.sonar.server.computation.task.projectanalysis.metric.Metric;
 import org.sonar.server.computation.task.projectanalysis.metric.MetricRepository;
 import org.sonar.server.computation.task.projectanalysis.period.Period;
@@ -47,6 +48,7 @@ import static org.sonar.api.rules.RuleType.VULNERABILITY;
 import static org.sonar.server.computation.task.projectanalysis.component.ComponentVisitor.Order.POST_ORDER;
 import static org.sonar.server.computation.task.projectanalysis.component.CrawlerDepthLimit.LEAVES;
 import static org.sonar.server.computation.task.projectanalysis.measure.Measure.newMeasureBuilder;
+import static org.sonar.server.computation.task.projectanalysis.period.PeriodsHolder.MAX_NUMBER_OF_PERIODS;
 import static org.sonar.server.computation.task.projectanalysis.qualitymodel.RatingGrid.Rating;
 import static org.sonar.server.computation.task.projectanalysis.qualitymodel.RatingGrid.Rating.A;
 import static org.sonar.server.computation.task.projectanalysis.qualitymodel.RatingGrid.Rating.B;
@@ -67,6 +69,7 @@ public class NewReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVis
     MAJOR, C,
     MINOR, B,
     INFO, A);
+  private static final int UNSET_RATING = 0;
 
   private final MeasureRepository measureRepository;
   private final ComponentIssuesRepository componentIssuesRepository;
@@ -76,8 +79,6 @@ public class NewReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVis
   private final Metric newReliabilityRatingMetric;
   private final Metric newSecurityRatingMetric;
 
-  private final Map<String, Metric> metricsByKey;
-
   public NewReliabilityAndSecurityRatingMeasuresVisitor(MetricRepository metricRepository, MeasureRepository measureRepository, ComponentIssuesRepository componentIssuesRepository,
     PeriodsHolder periodsHolder) {
     super(LEAVES, POST_ORDER, CounterFactory.INSTANCE);
@@ -88,10 +89,6 @@ public class NewReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVis
     // Output metrics
     this.newReliabilityRatingMetric = metricRepository.getByKey(NEW_RELIABILITY_RATING_KEY);
     this.newSecurityRatingMetric = metricRepository.getByKey(NEW_SECURITY_RATING_KEY);
-
-    this.metricsByKey = ImmutableMap.of(
-      NEW_RELIABILITY_RATING_KEY, newReliabilityRatingMetric,
-      NEW_SECURITY_RATING_KEY, newSecurityRatingMetric);
   }
 
   @Override
@@ -115,28 +112,44 @@ public class NewReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVis
   }
 
   private void computeAndSaveMeasures(Component component, Path<Counter> path) {
-    initRatingsToA(path);
-    processIssues(component, path);
-    path.current().newRatingValueByMetric.entrySet().forEach(
-      entry -> entry.getValue().toMeasureVariations()
-        .ifPresent(measureVariations -> measureRepository.add(
-          component,
-          metricsByKey.get(entry.getKey()),
-          newMeasureBuilder().setVariations(measureVariations).createNoValue())));
+    Counter counter = path.current();
+    List<Period> periods = periodsHolder.getPeriods();
+    initRatingsToA(counter, periods);
+    processIssues(component, counter, periods);
+    addMeasure(component, newReliabilityRatingMetric, counter.newReliabilityRatings);
+    addMeasure(component, newSecurityRatingMetric, counter.newSecurityRatings);
     addToParent(path);
   }
 
-  private void initRatingsToA(Path<Counter> path) {
-    periodsHolder.getPeriods().forEach(period -> path.current().newRatingValueByMetric.values()
-      .forEach(entry -> entry.increment(period, A)));
+  private static void initRatingsToA(Counter counter, List<Period> periods) {
+    for (Period period : periods) {
+      counter.initRatingsToA(period);
+    }
   }
 
-  private void processIssues(Component component, Path<Counter> path) {
-    componentIssuesRepository.getIssues(component)
-      .stream()
-      .filter(issue -> issue.resolution() == null)
-      .filter(issue -> issue.type().equals(BUG) || issue.type().equals(VULNERABILITY))
-      .forEach(issue -> periodsHolder.getPeriods().forEach(period -> path.current().processIssue(issue, period)));
+  private void processIssues(Component component, Counter counter, List<Period> periods) {
+    for (Issue issue : componentIssuesRepository.getIssues(component)) {
+      if (issue.resolution() == null && (issue.type().equals(BUG) || issue.type().equals(VULNERABILITY))) {
+        for (Period period : periods) {
+          counter.processIssue(issue, period);
+        }
+      }
+    }
+  }
+
+  private void addMeasure(Component component, Metric metric, int[] ratings) {
+    Double[] variations = null;
+    for (int i = 0; i < ratings.length; i++) {
+      if (ratings[i] != UNSET_RATING) {
+        if (variations == null) {
+          variations = new Double[ratings.length];
+        }
+        variations[i] = (double) ratings[i];
+      }
+    }
+    if (variations != null) {
+      measureRepository.add(component, metric, newMeasureBuilder().setVariations(new MeasureVariations(variations)).createNoValue());
+    }
   }
 
   private static void addToParent(Path<Counter> path) {
@@ -145,30 +158,46 @@ public class NewReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVis
     }
   }
 
+  /**
+   * Keeps, for each period, the index of the worst rating of each metric in primitive arrays ({@link #UNSET_RATING}
+   * when the rating of the period has never been set).
+   */
   static final class Counter {
-    private Map<String, RatingVariationValue.Array> newRatingValueByMetric = ImmutableMap.of(
-      NEW_RELIABILITY_RATING_KEY, new RatingVariationValue.Array(),
-      NEW_SECURITY_RATING_KEY, new RatingVariationValue.Array());
+    private final int[] newReliabilityRatings = new int[MAX_NUMBER_OF_PERIODS];
+    private final int[] newSecurityRatings = new int[MAX_NUMBER_OF_PERIODS];
 
     private Counter() {
       // prevents instantiation
     }
 
     void add(Counter otherCounter) {
-      newRatingValueByMetric.entrySet().forEach(e -> e.getValue().incrementAll(otherCounter.newRatingValueByMetric.get(e.getKey())));
+      for (int i = 0; i < MAX_NUMBER_OF_PERIODS; i++) {
+        newReliabilityRatings[i] = Math.max(newReliabilityRatings[i], otherCounter.newReliabilityRatings[i]);
+        newSecurityRatings[i] = Math.max(newSecurityRatings[i], otherCounter.newSecurityRatings[i]);
+      }
+    }
+
+    void initRatingsToA(Period period) {
+      increment(newReliabilityRatings, period, A);
+      increment(newSecurityRatings, period, A);
     }
 
     void processIssue(Issue issue, Period period) {
       if (isOnPeriod((DefaultIssue) issue, period)) {
         Rating rating = RATING_BY_SEVERITY.get(issue.severity());
         if (issue.type().equals(BUG)) {
-          newRatingValueByMetric.get(NEW_RELIABILITY_RATING_KEY).increment(period, rating);
+          increment(newReliabilityRatings, period, rating);
         } else if (issue.type().equals(VULNERABILITY)) {
-          newRatingValueByMetric.get(NEW_SECURITY_RATING_KEY).increment(period, rating);
+          increment(newSecurityRatings, period, rating);
         }
       }
     }
 
+    private static void increment(int[] ratings, Period period, Rating rating) {
+      int index = period.getIndex() - 1;
+      ratings[index] = Math.max(ratings[index], rating.getIndex());
+    }
+
     private static boolean isOnPeriod(DefaultIssue issue, Period period) {
       // Add one second to not take into account issues created during current analysis
       return issue.creationDate().getTime() >= period.getSnapshotDate() + 1000L;
@@ -27,7 +27,6 @@ import org.sonar.api.ce.measure.Issue;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.PathAwareVisitorAdapter;
-import org.sonar.server.computation.task.projectanalysis.formula.counter.RatingVariationValue;
 import org.sonar.server.computation.task.projectanalysis.issue.ComponentIssuesRepository;
 import org.sonar.server.computation.task.projectanalysis.measure.Measure;
 import org.sonar.server.computation.task.projectanalysis.measure.MeasureRepository;
@@ -75,8 +74,6 @@ public class ReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVisito
   private final Metric reliabilityRatingMetric;
   private final Metric securityRatingMetric;
 
-  private final Map<String, Metric> metricsByKey;
-
   public ReliabilityAndSecurityRatingMeasuresVisitor(MetricRepository metricRepository, MeasureRepository measureRepository, ComponentIssuesRepository componentIssuesRepository) {
     super(LEAVES, POST_ORDER, CounterFactory.INSTANCE);
     this.measureRepository = measureRepository;
@@ -85,10 +82,6 @@ public class ReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVisito
     // Output metrics
     this.reliabilityRatingMetric = metricRepository.getByKey(RELIABILITY_RATING_KEY);
     this.securityRatingMetric = metricRepository.getByKey(SECURITY_RATING_KEY);
-
-    this.metricsByKey = ImmutableMap.of(
-      RELIABILITY_RATING_KEY, reliabilityRatingMetric,
-      SECURITY_RATING_KEY, securityRatingMetric);
   }
 
   @Override
@@ -123,27 +116,32 @@ public class ReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVisito
 
   @Override
   public void visitProjectView(Component projectView, Path<Counter> path) {
-    path.parent().ratingValueByMetric.entrySet().forEach(entry -> {
-      Optional<Measure> ratingMeasure = measureRepository.getRawMeasure(projectView, metricsByKey.get(entry.getKey()));
-      if (ratingMeasure.isPresent()) {
-        entry.getValue().increment(valueOf(ratingMeasure.get().getData()));
-      }
-    });
+    Counter parent = path.parent();
+    Optional<Measure> reliabilityRatingMeasure = measureRepository.getRawMeasure(projectView, reliabilityRatingMetric);
+    if (reliabilityRatingMeasure.isPresent()) {
+      parent.incrementReliability(valueOf(reliabilityRatingMeasure.get().getData()));
+    }
+    Optional<Measure> securityRatingMeasure = measureRepository.getRawMeasure(projectView, securityRatingMetric);
+    if (securityRatingMeasure.isPresent()) {
+      parent.incrementSecurity(valueOf(securityRatingMeasure.get().getData()));
+    }
   }
 
   private void computeAndSaveMeasures(Component component, Path<Counter> path) {
     processIssues(component, path);
-    path.current().ratingValueByMetric.entrySet().forEach(
-      entry -> measureRepository.add(component, metricsByKey.get(entry.getKey()), createRatingMeasure(entry.getValue().getValue())));
+    Counter counter = path.current();
+    measureRepository.add(component, reliabilityRatingMetric, createRatingMeasure(counter.reliabilityRating));
+    measureRepository.add(component, securityRatingMetric, createRatingMeasure(counter.securityRating));
     addToParent(path);
   }
 
   private void processIssues(Component component, Path<Counter> path) {
-    componentIssuesRepository.getIssues(component)
-      .stream()
-      .filter(issue -> issue.resolution() == null)
-      .filter(issue -> issue.type().equals(BUG) || issue.type().equals(VULNERABILITY))
-      .forEach(path.current()::processIssue);
+    Counter counter = path.current();
+    for (Issue issue : componentIssuesRepository.getIssues(component)) {
+      if (issue.resolution() == null) {
+        counter.processIssue(issue);
+      }
+    }
   }
 
   private static void addToParent(Path<Counter> path) {
@@ -152,29 +150,41 @@ public class ReliabilityAndSecurityRatingMeasuresVisitor extends PathAwareVisito
     }
   }
 
-  private static Measure createRatingMeasure(Rating rating) {
+  private static Measure createRatingMeasure(int ratingIndex) {
+    Rating rating = valueOf(ratingIndex);
     return newMeasureBuilder().create(rating.getIndex(), rating.name());
   }
 
+  /**
+   * Keeps the index of the worst rating of each metric as a primitive, so that a single small object is created per
+   * component of the tree.
+   */
   static final class Counter {
-    private Map<String, RatingVariationValue> ratingValueByMetric = ImmutableMap.of(
-      RELIABILITY_RATING_KEY, new RatingVariationValue(),
-      SECURITY_RATING_KEY, new RatingVariationValue());
+    private int reliabilityRating = A.getIndex();
+    private int securityRating = A.getIndex();
 
     private Counter() {
       // prevents instantiation
     }
 
     void add(Counter otherCounter) {
-      ratingValueByMetric.entrySet().forEach(e -> e.getValue().increment(otherCounter.ratingValueByMetric.get(e.getKey())));
+      reliabilityRating = Math.max(reliabilityRating, otherCounter.reliabilityRating);
+      securityRating = Math.max(securityRating, otherCounter.securityRating);
+    }
+
+    void incrementReliability(Rating rating) {
+      reliabilityRating = Math.max(reliabilityRating, rating.getIndex());
+    }
+
+    void incrementSecurity(Rating rating) {
+      securityRating = Math.max(securityRating, rating.getIndex());
     }
 
     void processIssue(Issue issue) {
-      Rating rating = RATING_BY_SEVERITY.get(issue.severity());
       if (issue.type().equals(BUG)) {
-        ratingValueByMetric.get(RELIABILITY_RATING_KEY).increment(rating);
+        incrementReliability(RATING_BY_SEVERITY.get(issue.severity()));
       } else if (issue.type().equals(VULNERABILITY)) {
-        ratingValueByMetric.get(SECURITY_RATING_KEY).increment(rating);
+        incrementSecurity(RATING_BY_SEVERITY.get(issue.severity()));
       }
     }
   }
@@ -25,6 +25,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 import org.sonar.scanner.protocol.output.ScannerReport;
 
@@ -35,21 +36,30 @@ import static java.util.Objects.requireNonNull;
 import static org.apache.commons.lang.StringUtils.isNotEmpty;
 
 /**
- * ScmInfo implementation based on the changeset information from the Report
+ * ScmInfo implementation based on the changeset information from the Report. Changesets of the lines which did not
+ * change since the previous analysis can be copied from the ScmInfo of the previous analysis. When the previous
+ * analysis has no changeset for such a line, the oldest changeset of the Report is used.
  */
 @Immutable
 class ReportScmInfo implements ScmInfo {
   private final ScmInfo delegate;
 
   ReportScmInfo(ScannerReport.Changesets changesets) {
+    this(changesets, null);
+  }
+
+  /**
+   * @param previousScmInfo the ScmInfo of the previous analysis, if any, to copy the changesets of the unchanged lines
+   */
+  ReportScmInfo(ScannerReport.Changesets changesets, @Nullable ScmInfo previousScmInfo) {
     requireNonNull(changesets);
-    this.delegate = convertToScmInfo(changesets);
+    this.delegate = convertToScmInfo(changesets, previousScmInfo);
   }
 
-  private static ScmInfo convertToScmInfo(ScannerReport.Changesets changesets) {
+  private static ScmInfo convertToScmInfo(ScannerReport.Changesets changesets, @Nullable ScmInfo previousScmInfo) {
     return new ScmInfoImpl(
       from(new IntRangeIterable(changesets.getChangesetIndexByLineCount()))
-        .transform(new LineIndexToChangeset(changesets)));
+        .transform(new LineIndexToChangeset(changesets, previousScmInfo)));
   }
 
   @Override
@@ -74,18 +84,32 @@ class ReportScmInfo implements ScmInfo {
 
   private static class LineIndexToChangeset implements Function<Integer, Changeset> {
     private final ScannerReport.Changesets changesets;
+    @Nullable
+    private final ScmInfo previousScmInfo;
     private final Map<Integer, Changeset> changesetCache;
     private final Changeset.Builder builder = Changeset.newChangesetBuilder();
 
-    public LineIndexToChangeset(ScannerReport.Changesets changesets) {
+    public LineIndexToChangeset(ScannerReport.Changesets changesets, @Nullable ScmInfo previousScmInfo) {
       this.changesets = changesets;
+      this.previousScmInfo = previousScmInfo;
       changesetCache = new HashMap<>(changesets.getChangesetCount());
     }
 
     @Override
     @Nonnull
     public Changeset apply(@Nonnull Integer lineNumber) {
+      int previousLine = changesets.getPreviousLineByLineCount() == 0 ? 0 : changesets.getPreviousLineByLine(lineNumber - 1);
+      if (previousLine > 0 && previousScmInfo != null && previousScmInfo.hasChangesetForLine(previousLine)) {
+        return previousScmInfo.getChangesetForLine(previousLine);
+      }
       int changesetIndex = changesets.getChangesetIndexByLine(lineNumber - 1);
+      if (changesetIndex < 0) {
+        // the line did not change but previous analysis has no changeset for it. The line is older than all the
+        // changed lines, so the oldest changeset of the report is the closest approximation.
+        checkState(previousLine > 0 && changesets.getChangesetCount() > 0,
+          "Changeset on line %s must be copied from line %s of previous analysis, which has no changeset", lineNumber, previousLine);
+        changesetIndex = oldestChangesetIndex();
+      }
       Changeset changeset = changesetCache.get(changesetIndex);
       if (changeset != null) {
         return changeset;
@@ -95,6 +119,16 @@ class ReportScmInfo implements ScmInfo {
       return res;
     }
 
+    private int oldestChangesetIndex() {
+      int oldest = 0;
+      for (int i = 1; i < changesets.getChangesetCount(); i++) {
+        if (changesets.getChangeset(i).getDate() < changesets.getChangeset(oldest).getDate()) {
+          oldest = i;
+        }
+      }
+      return oldest;
+    }
+
     private Changeset convert(ScannerReport.Changesets.Changeset changeset, int line) {
       checkState(isNotEmpty(changeset.getRevision()), "Changeset on line %s must have a revision", line);
       checkState(changeset.getDate() != 0, "Changeset on line %s must have a date", line);
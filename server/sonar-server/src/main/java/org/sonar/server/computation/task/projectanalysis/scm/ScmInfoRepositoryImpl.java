@@ -24,13 +24,12 @@ import java.util.HashMap;
 import java.util.Map;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
-import org.sonar.db.DbClient;
-import org.sonar.db.DbSession;
 import org.sonar.db.source.FileSourceDto;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolder;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceDataCache;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 
 import static java.util.Objects.requireNonNull;
@@ -41,15 +40,16 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
 
   private final BatchReportReader batchReportReader;
   private final AnalysisMetadataHolder analysisMetadataHolder;
-  private final DbClient dbClient;
+  private final FileSourceDataCache fileSourceDataCache;
   private final SourceHashRepository sourceHashRepository;
 
   private final Map<Component, ScmInfo> scmInfoCache = new HashMap<>();
 
-  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, DbClient dbClient, SourceHashRepository sourceHashRepository) {
+  public ScmInfoRepositoryImpl(BatchReportReader batchReportReader, AnalysisMetadataHolder analysisMetadataHolder, FileSourceDataCache fileSourceDataCache,
+    SourceHashRepository sourceHashRepository) {
     this.batchReportReader = batchReportReader;
     this.analysisMetadataHolder = analysisMetadataHolder;
-    this.dbClient = dbClient;
+    this.fileSourceDataCache = fileSourceDataCache;
     this.sourceHashRepository = sourceHashRepository;
   }
 
@@ -89,6 +89,9 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     if (changesets.getCopyFromPrevious()) {
       return getScmInfoFromDb(component);
     }
+    if (changesets.getPreviousLineByLineCount() > 0) {
+      return getScmInfoFromReportAndDb(component, changesets);
+    }
     return getScmInfoFromReport(component, changesets);
   }
 
@@ -98,16 +101,31 @@ public class ScmInfoRepositoryImpl implements ScmInfoRepository {
     }
 
     LOGGER.trace("Reading SCM info from db for file '{}'", file.getKey());
-    DbSession dbSession = dbClient.openSession(false);
-    try {
-      FileSourceDto dto = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, file.getUuid());
-      if (dto == null || !sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash())) {
-        return NoScmInfo.INSTANCE;
+    FileSourceDto dto = fileSourceDataCache.getFileSource(file.getUuid());
+    if (dto == null || !sourceHashRepository.getRawSourceHash(file).equals(dto.getSrcHash())) {
+      return NoScmInfo.INSTANCE;
+    }
+    return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
+  }
+
+  /**
+   * The file changed since the previous analysis. Changesets of its unchanged lines are copied from the previous analysis.
+   * If the previous analysis has no SCM information, the changesets of the report are used for all the lines
+   * (see {@link ReportScmInfo}).
+   */
+  private ScmInfo getScmInfoFromReportAndDb(Component file, ScannerReport.Changesets changesets) {
+    Optional<ScmInfo> previousScmInfo = Optional.absent();
+    if (!analysisMetadataHolder.isFirstAnalysis()) {
+      LOGGER.trace("Reading SCM info from report and db for file '{}'", file.getKey());
+      FileSourceDto dto = fileSourceDataCache.getFileSource(file.getUuid());
+      if (dto != null) {
+        previousScmInfo = DbScmInfo.create(file, dto.getSourceData().getLinesList());
       }
-      return DbScmInfo.create(file, dto.getSourceData().getLinesList()).or(NoScmInfo.INSTANCE);
-    } finally {
-      dbClient.closeSession(dbSession);
     }
+    if (!previousScmInfo.isPresent() && changesets.getChangesetCount() == 0) {
+      return NoScmInfo.INSTANCE;
+    }
+    return new ReportScmInfo(changesets, previousScmInfo.orNull());
   }
 
   private static ScmInfo getScmInfoFromReport(Component file, ScannerReport.Changesets changesets) {
@@ -0,0 +1,140 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.List;
+import javax.annotation.CheckForNull;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.source.FileSourceDto;
+
+/**
+ * Keeps in memory the rows of table FILE_SOURCES (of type {@link FileSourceDto.Type#SOURCE}) loaded during the
+ * processing of a task, so that the steps which need data of the previous analysis of the same file (SCM info,
+ * file move detection, issue tracking) load each row from the database only once.
+ * <p>
+ * The cache is bounded: least recently used entries are evicted once the size of the cached data exceeds
+ * {@link #MAX_WEIGHT_IN_BYTES}.
+ * </p>
+ * <p>
+ * Rows are kept with their source data encoded, as in the database. Decoded data is several times bigger, and is
+ * decoded only once per file anyway, as {@link org.sonar.server.computation.task.projectanalysis.scm.ScmInfoRepositoryImpl}
+ * keeps the SCM information extracted from it.
+ * </p>
+ * <p>
+ * {@link org.sonar.server.computation.task.projectanalysis.step.PersistFileSourcesStep} does not use this cache: it
+ * loads only the hashes of the files of the project, with a single request.
+ * </p>
+ */
+public class FileSourceDataCache {
+  static final long MAX_WEIGHT_IN_BYTES = 50L * 1024 * 1024;
+
+  private static final Splitter LINES_HASHES_SPLITTER = Splitter.on('\n');
+  /**
+   * Approximation of the memory used by a String, excluding its characters
+   */
+  private static final int STRING_OVERHEAD_IN_BYTES = 40;
+
+  private final DbClient dbClient;
+  private final Cache<String, FileSourceDto> fileSourcesByUuid = CacheBuilder.newBuilder()
+    .concurrencyLevel(1)
+    .maximumWeight(MAX_WEIGHT_IN_BYTES / 2)
+    .<String, FileSourceDto>weigher((uuid, dto) -> weigh(dto))
+    .build();
+  private final Cache<String, List<String>> lineHashesByUuid = CacheBuilder.newBuilder()
+    .concurrencyLevel(1)
+    .maximumWeight(MAX_WEIGHT_IN_BYTES / 2)
+    .<String, List<String>>weigher((uuid, lineHashes) -> weigh(lineHashes))
+    .build();
+
+  public FileSourceDataCache(DbClient dbClient) {
+    this.dbClient = dbClient;
+  }
+
+  /**
+   * The complete row (including the source data and the line hashes) of the specified file.
+   *
+   * @return {@code null} if the file has no source in DB
+   */
+  @CheckForNull
+  public FileSourceDto getFileSource(String fileUuid) {
+    FileSourceDto res = fileSourcesByUuid.getIfPresent(fileUuid);
+    if (res == null) {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        res = dbClient.fileSourceDao().selectSourceByFileUuid(dbSession, fileUuid);
+      }
+      if (res != null) {
+        fileSourcesByUuid.put(fileUuid, res);
+      }
+    }
+    return res;
+  }
+
+  /**
+   * The line hashes of the specified file. Only column LINE_HASHES is loaded from the database, unless the whole row
+   * has already been loaded by {@link #getFileSource(String)}.
+   *
+   * @return {@code null} if the file has no source in DB
+   */
+  @CheckForNull
+  public List<String> getLineHashes(String fileUuid) {
+    List<String> res = lineHashesByUuid.getIfPresent(fileUuid);
+    if (res != null) {
+      return res;
+    }
+    FileSourceDto fileSource = fileSourcesByUuid.getIfPresent(fileUuid);
+    if (fileSource != null) {
+      String lineHashes = fileSource.getLineHashes();
+      res = lineHashes == null ? null : LINES_HASHES_SPLITTER.splitToList(lineHashes);
+    } else {
+      try (DbSession dbSession = dbClient.openSession(false)) {
+        res = dbClient.fileSourceDao().selectLineHashes(dbSession, fileUuid);
+      }
+    }
+    if (res != null) {
+      lineHashesByUuid.put(fileUuid, res);
+    }
+    return res;
+  }
+
+  private static int weigh(FileSourceDto dto) {
+    long weight = 0;
+    byte[] binaryData = dto.getBinaryData();
+    if (binaryData != null) {
+      weight += binaryData.length;
+    }
+    String lineHashes = dto.getLineHashes();
+    if (lineHashes != null) {
+      weight += 2L * lineHashes.length();
+    }
+    return (int) Math.min(Integer.MAX_VALUE, weight);
+  }
+
+  private static int weigh(List<String> lineHashes) {
+    long weight = 0;
+    for (String lineHash : lineHashes) {
+      weight += STRING_OVERHEAD_IN_BYTES + 2L * lineHash.length();
+    }
+    return (int) Math.min(Integer.MAX_VALUE, weight);
+  }
+}
@@ -35,7 +35,7 @@ public class IndexTestsStep implements ComputationStep {
 
   @Override
   public void execute() {
-    indexer.index(treeRootHolder.getRoot().getUuid());
+    indexer.indexAsync(treeRootHolder.getRoot().getUuid());
   }
 
   @Override
@@ -23,6 +23,7 @@ import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Multimap;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -84,7 +85,9 @@ public class PersistMeasuresStep implements ComputationStep {
   public void execute() {
     DbSession dbSession = dbClient.openSession(true);
     try {
-      new DepthTraversalTypeAwareCrawler(new MeasureVisitor(dbSession)).visit(treeRootHolder.getRoot());
+      MeasureVisitor visitor = new MeasureVisitor(dbSession);
+      new DepthTraversalTypeAwareCrawler(visitor).visit(treeRootHolder.getRoot());
+      visitor.flush();
       dbSession.commit();
     } finally {
       dbSession.close();
@@ -93,6 +96,11 @@ public class PersistMeasuresStep implements ComputationStep {
 
   private class MeasureVisitor extends TypeAwareVisitorAdapter {
     private final DbSession session;
+    private final MeasureDao measureDao = dbClient.measureDao();
+    /**
+     * Measures are buffered and inserted with multi-rows statements, see {@link MeasureDao#insertMultiple(DbSession, Collection)}
+     */
+    private final List<MeasureDto> buffer = new ArrayList<>(MeasureDao.MULTIPLE_INSERT_MAX_SIZE);
 
     private MeasureVisitor(DbSession session) {
       super(CrawlerDepthLimit.LEAVES, PRE_ORDER);
@@ -114,14 +122,20 @@ public class PersistMeasuresStep implements ComputationStep {
 
         Metric metric = metricRepository.getByKey(metricKey);
         Predicate<Measure> notBestValueOptimized = Predicates.not(BestValueOptimization.from(metric, component));
-        MeasureDao measureDao = dbClient.measureDao();
         for (Measure measure : from(measures.getValue()).filter(NonEmptyMeasure.INSTANCE).filter(notBestValueOptimized)) {
-          MeasureDto measureDto = measureToMeasureDto.toMeasureDto(measure, metric, component);
-          measureDao.insert(session, measureDto);
+          buffer.add(measureToMeasureDto.toMeasureDto(measure, metric, component));
+          if (buffer.size() >= MeasureDao.MULTIPLE_INSERT_MAX_SIZE) {
+            flush();
+          }
         }
       }
     }
 
+    private void flush() {
+      measureDao.insertMultiple(session, buffer);
+      buffer.clear();
+    }
+
   }
 
   private enum NonEmptyMeasure implements Predicate<Measure> {
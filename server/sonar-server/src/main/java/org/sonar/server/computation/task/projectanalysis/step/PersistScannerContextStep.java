@@ -19,16 +19,22 @@
  */
 package org.sonar.server.computation.task.projectanalysis.step;
 
+import com.google.common.collect.Iterators;
+import java.util.ArrayList;
+import java.util.List;
 import org.sonar.ce.queue.CeTask;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
+import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader;
 import org.sonar.server.computation.task.step.ComputationStep;
 
 import static java.util.Collections.singleton;
 
 public class PersistScannerContextStep implements ComputationStep {
+  private static final String SENSOR_PROFILING_FORMAT = "  - %s | %s (%s) | wall=%dms cpu=%dms allocated=%dB gc=%dms peakHeapDelta=%dB files=%d";
+
   private final BatchReportReader reportReader;
   private final DbClient dbClient;
   private final CeTask ceTask;
@@ -46,17 +52,38 @@ public class PersistScannerContextStep implements ComputationStep {
 
   @Override
   public void execute() {
+    List<String> profilingLines = readSensorProfiling();
     try (CloseableIterator<String> logsIterator = reportReader.readScannerLogs()) {
-      if (logsIterator.hasNext()) {
+      if (logsIterator.hasNext() || !profilingLines.isEmpty()) {
         try (DbSession dbSession = dbClient.openSession(false)) {
           // in case the task was restarted, the context might have been already persisted
           // for total reliability, we rather delete the existing row as we don't want to assume the content
           // consistent with the report
           dbClient.ceScannerContextDao().deleteByUuids(dbSession, singleton(ceTask.getUuid()));
-          dbClient.ceScannerContextDao().insert(dbSession, ceTask.getUuid(), logsIterator);
+          dbClient.ceScannerContextDao().insert(dbSession, ceTask.getUuid(),
+            CloseableIterator.from(Iterators.concat(logsIterator, profilingLines.iterator())));
           dbSession.commit();
         }
       }
     }
   }
+
+  /**
+   * Resources consumed by each sensor are appended to the scanner context, so that they can be queried per analysis.
+   */
+  private List<String> readSensorProfiling() {
+    List<String> lines = new ArrayList<>();
+    try (CloseableIterator<ScannerReport.SensorProfiling> it = reportReader.readSensorProfiling()) {
+      while (it.hasNext()) {
+        if (lines.isEmpty()) {
+          lines.add("Sensors profiling:");
+        }
+        ScannerReport.SensorProfiling profiling = it.next();
+        lines.add(String.format(SENSOR_PROFILING_FORMAT, reportReader.readComponent(profiling.getComponentRef()).getKey(), profiling.getSensor(),
+          profiling.getSensorClass(), profiling.getWallTimeMs(), profiling.getCpuTimeMs(), profiling.getAllocatedBytes(), profiling.getGcTimeMs(),
+          profiling.getPeakHeapDeltaBytes(), profiling.getFiles()));
+      }
+    }
+    return lines;
+  }
 }
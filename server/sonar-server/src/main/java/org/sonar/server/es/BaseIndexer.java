@@ -21,15 +21,23 @@ package org.sonar.server.es;
 
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.picocontainer.Startable;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
 
 public abstract class BaseIndexer implements Startable {
 
+  private static final Logger LOG = Loggers.get(BaseIndexer.class);
+
   private final ThreadPoolExecutor executor;
   private final String indexName;
   private final String typeName;
@@ -37,6 +45,14 @@ public abstract class BaseIndexer implements Startable {
   protected final EsClient esClient;
   private volatile long lastUpdatedAt = -1L;
 
+  /**
+   * Indexing of projects which is requested but not started yet, by project uuid. Guarded by itself.
+   */
+  private final Map<String, ProjectTask> pendingProjectTasks = new HashMap<>();
+  private final AtomicLong projectRequests = new AtomicLong(0L);
+  private final AtomicLong coalescedProjectRequests = new AtomicLong(0L);
+  private final AtomicLong maxProjectLagMs = new AtomicLong(0L);
+
   protected BaseIndexer(EsClient client, long threadKeepAliveSeconds, String indexName, String typeName,
     String dateFieldName) {
     this.indexName = indexName;
@@ -50,36 +66,196 @@ public abstract class BaseIndexer implements Startable {
   public void index(final IndexerTask task) {
     final long requestedAt = System.currentTimeMillis();
     Future submit = executor.submit(() -> {
-      if (lastUpdatedAt == -1L) {
-        lastUpdatedAt = esClient.getMaxFieldValue(indexName, typeName, dateFieldName);
-      }
+      initLastUpdatedAt();
       if (requestedAt > lastUpdatedAt) {
         long l = task.index(lastUpdatedAt);
         // l can be 0 if no documents were indexed
         lastUpdatedAt = Math.max(l, lastUpdatedAt);
       }
     });
-    try {
-      Uninterruptibles.getUninterruptibly(submit);
-    } catch (ExecutionException e) {
-      Throwables.propagate(e);
-    }
+    waitFor(submit);
   }
 
   public void index() {
     index(this::doIndex);
   }
 
+  /**
+   * Same as {@link #indexAsync(String, IndexerTask)} but waits for the end of indexing, so that the caller can then
+   * search for the documents of the project.
+   */
+  protected void index(String projectUuid, IndexerTask task) {
+    waitFor(indexAsync(projectUuid, task));
+  }
+
+  /**
+   * Requests the indexing of a project without waiting for it. As long as it is not started, the indexing of a project
+   * absorbs the following requests for the same project: they are all processed by a single pass, whose
+   * {@link Future} is returned to each of the callers.
+   * <p>
+   * As for {@link #index(IndexerTask)}, the pass is skipped if the last request was received before the date of
+   * last update of the index, and it advances this date.
+   * </p>
+   * <p>
+   * It's used by the Compute Engine, which does not read the index after indexing a project. Analyses of the same
+   * project which complete while it's being indexed are then processed by a single pass.
+   * </p>
+   */
+  protected Future<?> indexAsync(String projectUuid, IndexerTask task) {
+    AtomicLong lastRequestedAt = new AtomicLong();
+    return submitProjectTask(projectUuid, lastRequestedAt, () -> {
+      initLastUpdatedAt();
+      if (lastRequestedAt.get() > lastUpdatedAt) {
+        long l = task.index(lastUpdatedAt);
+        // l can be 0 if no documents were indexed
+        lastUpdatedAt = Math.max(l, lastUpdatedAt);
+      }
+    });
+  }
+
+  /**
+   * Same as {@link #index(String, IndexerTask)}, for a task which indexes all the documents of the project whatever
+   * their date. The date of last update of the index is neither used nor changed, so that the next incremental
+   * indexing of the index does not miss the documents of other projects.
+   */
+  protected void reindexProject(String projectUuid, Runnable task) {
+    waitFor(reindexProjectAsync(projectUuid, task));
+  }
+
+  /**
+   * Same as {@link #reindexProject(String, Runnable)} but does not wait for the end of indexing
+   */
+  protected Future<?> reindexProjectAsync(String projectUuid, Runnable task) {
+    return submitProjectTask(projectUuid, new AtomicLong(), task);
+  }
+
+  private Future<?> submitProjectTask(String projectUuid, AtomicLong lastRequestedAt, Runnable task) {
+    projectRequests.incrementAndGet();
+    synchronized (pendingProjectTasks) {
+      ProjectTask pendingTask = pendingProjectTasks.get(projectUuid);
+      if (pendingTask != null) {
+        coalescedProjectRequests.incrementAndGet();
+        pendingTask.coalescedRequests++;
+        pendingTask.lastRequestedAt.set(System.currentTimeMillis());
+        return pendingTask;
+      }
+      ProjectTask newTask = new ProjectTask(projectUuid, lastRequestedAt, task);
+      // registered only once accepted by the executor, which rejects tasks when stopped. The task can't
+      // be started and unregistered in the meantime, as it must first lock pendingProjectTasks.
+      executor.execute(newTask);
+      pendingProjectTasks.put(projectUuid, newTask);
+      return newTask;
+    }
+  }
+
   protected abstract long doIndex(long lastUpdatedAt);
 
+  /**
+   * Number of requests of indexing of a project, including those which were absorbed by an already pending request
+   */
+  public long getProjectRequests() {
+    return projectRequests.get();
+  }
+
+  /**
+   * Number of requests of indexing of a project which were absorbed by an already pending request
+   */
+  public long getCoalescedProjectRequests() {
+    return coalescedProjectRequests.get();
+  }
+
+  /**
+   * Number of projects whose indexing is requested but not started yet
+   */
+  public int getPendingProjects() {
+    synchronized (pendingProjectTasks) {
+      return pendingProjectTasks.size();
+    }
+  }
+
+  /**
+   * Maximum delay, in milliseconds, between the request of indexing of a project and the start of indexing
+   */
+  public long getMaxProjectLagMs() {
+    return maxProjectLagMs.get();
+  }
+
   @Override
   public void start() {
     // nothing to do at startup
   }
 
+  /**
+   * Waits for the indexing of projects which is already requested, as callers of {@link #indexAsync(String, IndexerTask)}
+   * consider the documents as indexed.
+   */
   @Override
   public void stop() {
     executor.shutdown();
+    try {
+      if (!executor.awaitTermination(10, TimeUnit.MINUTES)) {
+        LOG.error("Indexing of {} projects in {} not completed after 10 minutes", getPendingProjects(), indexName);
+      }
+    } catch (InterruptedException e) {
+      LOG.error("Interrupted while waiting for indexing of projects in {}", indexName);
+      Thread.currentThread().interrupt();
+    }
+    if (projectRequests.get() > 0L) {
+      LOG.info("Indexing of projects in {}: {} requests, {} coalesced, max lag {} ms", indexName, projectRequests.get(),
+        coalescedProjectRequests.get(), maxProjectLagMs.get());
+    }
+  }
+
+  private void initLastUpdatedAt() {
+    if (lastUpdatedAt == -1L) {
+      lastUpdatedAt = esClient.getMaxFieldValue(indexName, typeName, dateFieldName);
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwables.propagate(e);
+    }
+  }
+
+  private class ProjectTask extends FutureTask<Void> {
+    private final String projectUuid;
+    private final long requestedAt = System.currentTimeMillis();
+    private final AtomicLong lastRequestedAt;
+    // guarded by pendingProjectTasks
+    private int coalescedRequests = 0;
+
+    ProjectTask(String projectUuid, AtomicLong lastRequestedAt, Runnable task) {
+      super(task, null);
+      this.projectUuid = projectUuid;
+      this.lastRequestedAt = lastRequestedAt;
+      lastRequestedAt.set(requestedAt);
+    }
+
+    @Override
+    public void run() {
+      int coalesced;
+      synchronized (pendingProjectTasks) {
+        // requests received from now on must be processed by a new pass
+        pendingProjectTasks.remove(projectUuid);
+        coalesced = coalescedRequests;
+      }
+      long lagMs = System.currentTimeMillis() - requestedAt;
+      maxProjectLagMs.accumulateAndGet(lagMs, Math::max);
+      LOG.debug("Index project {} in {} (lag: {} ms, coalesced requests: {})", projectUuid, indexName, lagMs, coalesced);
+      super.run();
+    }
+
+    /**
+     * Asynchronous callers do not check the result, so failures are logged
+     */
+    @Override
+    protected void setException(Throwable t) {
+      LOG.error(String.format("Fail to index project %s in %s", projectUuid, indexName), t);
+      super.setException(t);
+    }
   }
 
   @FunctionalInterface
@@ -21,12 +21,19 @@ package org.sonar.server.es;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Semaphore;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.DocumentRequest;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequestBuilder;
 import org.elasticsearch.action.bulk.BulkItemResponse;
@@ -36,9 +43,11 @@ import org.elasticsearch.action.delete.DeleteRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeUnit;
 import org.elasticsearch.common.unit.ByteSizeValue;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHitField;
 import org.elasticsearch.search.sort.SortOrder;
@@ -52,28 +61,67 @@ import static java.lang.String.format;
 /**
  * Helper to bulk requests in an efficient way :
  * <ul>
- *   <li>bulk request is sent on the wire when its size is higher than 5Mb</li>
+ *   <li>bulk request is sent on the wire when its size is higher than a threshold, which is adapted to the latency
+ *   of the previous requests (starting at 1Mb)</li>
+ *   <li>the number of concurrent requests is adapted to the latency of the previous requests and to the rejections
+ *   of Elasticsearch</li>
+ *   <li>documents rejected because Elasticsearch queues are full are retried with an exponential back-off</li>
  *   <li>on large table indexing, replicas and automatic refresh can be temporarily disabled</li>
  *   <li>index refresh is optional (enabled by default)</li>
+ *   <li>cached search results of the index are invalidated, only for the projects of the routing keys when
+ *   all the requests have one</li>
+ *   <li>requests can be added concurrently by multiple threads, for example when several readers feed the same index</li>
  * </ul>
  */
 public class BulkIndexer implements Startable {
 
   private static final Logger LOGGER = Loggers.get(BulkIndexer.class);
   private static final long FLUSH_BYTE_SIZE = new ByteSizeValue(1, ByteSizeUnit.MB).bytes();
+  private static final long MIN_FLUSH_BYTE_SIZE = new ByteSizeValue(256, ByteSizeUnit.KB).bytes();
+  private static final long MAX_FLUSH_BYTE_SIZE = new ByteSizeValue(8, ByteSizeUnit.MB).bytes();
+  /**
+   * Bulk requests faster than this duration allow to increase size and concurrency of requests
+   */
+  private static final long FAST_REQUEST_MS = 500L;
+  /**
+   * Bulk requests slower than this duration lead to decrease size and concurrency of requests
+   */
+  private static final long SLOW_REQUEST_MS = 2_000L;
+  private static final int MAX_ATTEMPTS = 6;
+  private static final long INITIAL_RETRY_DELAY_MS = 100L;
+  /**
+   * Above this number of routing keys, all the cached search results of the index are invalidated
+   */
+  private static final int MAX_INVALIDATED_ROUTINGS = 1_000;
   private static final String REFRESH_INTERVAL_SETTING = "index.refresh_interval";
   private static final String ALREADY_STARTED_MESSAGE = "Bulk indexing is already started";
+  private static final String[] NO_TYPES = new String[0];
 
   private final EsClient client;
   private final String indexName;
   private boolean large = false;
-  private long flushByteSize = FLUSH_BYTE_SIZE;
+  private boolean adaptiveFlushByteSize = true;
+  private volatile long flushByteSize = FLUSH_BYTE_SIZE;
   private BulkRequestBuilder bulkRequest = null;
   private Map<String, Object> largeInitialSettings = null;
   private final AtomicLong counter = new AtomicLong(0L);
-  private final int concurrentRequests;
-  private final Semaphore semaphore;
   private final ProgressLogger progress;
+  private final BulkIndexingStats stats;
+  private final AtomicLong indexedDocuments = new AtomicLong(0L);
+  private final AtomicLong indexedBytes = new AtomicLong(0L);
+  private long startedAt;
+
+  private final Object inFlightLock = new Object();
+  private final int maxConcurrentRequests;
+  // guarded by inFlightLock
+  private int concurrentRequests;
+  // guarded by inFlightLock
+  private int inFlightRequests = 0;
+
+  private final Queue<Retry> retries = new ConcurrentLinkedQueue<>();
+
+  // routing keys of the requests, or null if at least one request has no routing key
+  private Set<String> routings = new HashSet<>();
 
   public BulkIndexer(EsClient client, String indexName) {
     this.client = client;
@@ -81,9 +129,13 @@ public class BulkIndexer implements Startable {
     this.progress = new ProgressLogger(format("Progress[BulkIndexer[%s]]", indexName), counter, LOGGER)
       .setPluralLabel("requests");
 
+    this.stats = client.getBulkIndexingStats();
+
     // see https://jira.sonarsource.com/browse/SONAR-8075
-    this.concurrentRequests = Math.max(1, Runtime.getRuntime().availableProcessors() / 5);
-    this.semaphore = new Semaphore(concurrentRequests);
+    // initial concurrency is low, then it's increased as long as requests are fast
+    int processors = Runtime.getRuntime().availableProcessors();
+    this.concurrentRequests = Math.max(1, processors / 5);
+    this.maxConcurrentRequests = Math.max(concurrentRequests, processors / 2);
   }
 
   /**
@@ -96,8 +148,12 @@ public class BulkIndexer implements Startable {
     return this;
   }
 
+  /**
+   * Fixed size of bulk requests. It is not adapted to the latency of requests anymore.
+   */
   public BulkIndexer setFlushByteSize(long flushByteSize) {
     this.flushByteSize = flushByteSize;
+    this.adaptiveFlushByteSize = false;
     return this;
   }
 
@@ -108,16 +164,18 @@ public class BulkIndexer implements Startable {
       largeInitialSettings = Maps.newHashMap();
       Map<String, Object> bulkSettings = Maps.newHashMap();
       GetSettingsResponse settingsResp = client.nativeClient().admin().indices().prepareGetSettings(indexName).get();
+      // indexName can be an alias (see IndexCreator), so settings are not keyed by indexName
+      Settings indexSettings = settingsResp.getIndexToSettings().valuesIt().next();
 
       // deactivate replicas
-      int initialReplicas = Integer.parseInt(settingsResp.getSetting(indexName, IndexMetaData.SETTING_NUMBER_OF_REPLICAS));
+      int initialReplicas = Integer.parseInt(indexSettings.get(IndexMetaData.SETTING_NUMBER_OF_REPLICAS));
       if (initialReplicas > 0) {
         largeInitialSettings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, initialReplicas);
         bulkSettings.put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0);
       }
 
       // deactivate periodical refresh
-      String refreshInterval = settingsResp.getSetting(indexName, REFRESH_INTERVAL_SETTING);
+      String refreshInterval = indexSettings.get(REFRESH_INTERVAL_SETTING);
       largeInitialSettings.put(REFRESH_INTERVAL_SETTING, refreshInterval);
       bulkSettings.put(REFRESH_INTERVAL_SETTING, "-1");
 
@@ -125,14 +183,20 @@ public class BulkIndexer implements Startable {
     }
     bulkRequest = client.prepareBulk().setRefresh(false);
     counter.set(0L);
+    indexedDocuments.set(0L);
+    indexedBytes.set(0L);
+    startedAt = System.currentTimeMillis();
+    routings = new HashSet<>();
     progress.start();
   }
 
-  public void add(ActionRequest request) {
+  public synchronized void add(ActionRequest request) {
+    trackRouting(request);
     bulkRequest.request().add(request);
     if (bulkRequest.request().estimatedSizeInBytes() >= flushByteSize) {
       executeBulk();
     }
+    executeDueRetries();
   }
 
   public void addDeletion(SearchRequestBuilder searchRequest) {
@@ -145,7 +209,7 @@ public class BulkIndexer implements Startable {
 
     // this search is synchronous. An optimization would be to be non-blocking,
     // but it requires to tracking pending requests in close().
-    // Same semaphore can't be reused because of potential deadlock (requires to acquire
+    // Same in-flight limit can't be reused because of potential deadlock (requires to acquire
     // two locks)
     SearchResponse searchResponse = searchRequest.get();
 
@@ -183,18 +247,20 @@ public class BulkIndexer implements Startable {
   }
 
   @Override
-  public void stop() {
+  public synchronized void stop() {
     if (bulkRequest.numberOfActions() > 0) {
       executeBulk();
     }
-    try {
-      if (semaphore.tryAcquire(concurrentRequests, 10, TimeUnit.MINUTES)) {
-        semaphore.release(concurrentRequests);
-      }
-    } catch (InterruptedException e) {
-      throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
+    long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+    // retries are registered by responses, so the queue is complete only when no requests are in flight
+    while (awaitInFlightRequests(deadline) && !retries.isEmpty()) {
+      Retry retry = retries.poll();
+      sleepUntil(retry.notBefore);
+      execute(retry.newBulkRequest(), retry.attempt);
     }
+    logAbandonedRequests();
     progress.stop();
+    stats.onBulkIndexerStop(indexedDocuments.get(), indexedBytes.get(), System.currentTimeMillis() - startedAt);
     client.prepareRefresh(indexName).get();
     if (large) {
       // optimize lucene segments and revert index settings
@@ -204,45 +270,229 @@ public class BulkIndexer implements Startable {
 
       updateSettings(largeInitialSettings);
     }
+    invalidateSearchResults();
     bulkRequest = null;
   }
 
+  /**
+   * Requests still in flight or waiting for a retry after the deadline of {@link #stop()} are abandoned
+   */
+  private void logAbandonedRequests() {
+    int inFlight;
+    synchronized (inFlightLock) {
+      inFlight = inFlightRequests;
+    }
+    long abandonedDocuments = 0L;
+    for (Retry retry = retries.poll(); retry != null; retry = retries.poll()) {
+      abandonedDocuments += retry.requests.size();
+    }
+    if (inFlight > 0 || abandonedDocuments > 0L) {
+      stats.onBulkResponse(0L, 0L, 0L, abandonedDocuments);
+      LOGGER.error("Elasticsearch bulk requests on index {} not completed after 10 minutes: {} requests still in flight, {} documents not retried",
+        indexName, inFlight, abandonedDocuments);
+    }
+  }
+
   private void updateSettings(Map<String, Object> settings) {
     UpdateSettingsRequestBuilder req = client.nativeClient().admin().indices().prepareUpdateSettings(indexName);
     req.setSettings(settings);
     req.get();
   }
 
+  private void trackRouting(ActionRequest request) {
+    if (routings != null) {
+      String routing = request instanceof DocumentRequest ? ((DocumentRequest) request).routing() : null;
+      if (routing == null || (routings.size() >= MAX_INVALIDATED_ROUTINGS && !routings.contains(routing))) {
+        routings = null;
+      } else {
+        routings.add(routing);
+      }
+    }
+  }
+
+  private void invalidateSearchResults() {
+    SearchResultCache searchResultCache = client.getSearchResultCache();
+    if (routings == null) {
+      searchResultCache.invalidate(indexName);
+    } else if (!routings.isEmpty()) {
+      searchResultCache.invalidate(indexName, routings);
+    }
+  }
+
   private void executeBulk() {
     final BulkRequestBuilder req = this.bulkRequest;
     this.bulkRequest = client.prepareBulk().setRefresh(false);
-    semaphore.acquireUninterruptibly();
-    req.execute(new BulkResponseActionListener(req));
+    execute(req, 1);
+  }
+
+  private void executeDueRetries() {
+    Retry retry = retries.peek();
+    while (retry != null && retry.notBefore <= System.currentTimeMillis() && retries.remove(retry)) {
+      execute(retry.newBulkRequest(), retry.attempt);
+      retry = retries.peek();
+    }
+  }
+
+  private void execute(BulkRequestBuilder req, int attempt) {
+    acquireInFlightRequest();
+    req.execute(new BulkResponseActionListener(req, attempt));
+  }
+
+  private void acquireInFlightRequest() {
+    boolean interrupted = false;
+    synchronized (inFlightLock) {
+      while (inFlightRequests >= concurrentRequests) {
+        try {
+          inFlightLock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+      inFlightRequests++;
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Adapts size and concurrency of the next requests (additive increase, multiplicative decrease), then releases
+   * the slot of the completed request.
+   */
+  private void releaseInFlightRequest(long durationMs, boolean rejected) {
+    synchronized (inFlightLock) {
+      if (rejected || durationMs > SLOW_REQUEST_MS) {
+        concurrentRequests = Math.max(1, concurrentRequests / 2);
+        if (adaptiveFlushByteSize) {
+          flushByteSize = Math.max(MIN_FLUSH_BYTE_SIZE, flushByteSize / 2);
+        }
+      } else if (durationMs < FAST_REQUEST_MS) {
+        concurrentRequests = Math.min(maxConcurrentRequests, concurrentRequests + 1);
+        if (adaptiveFlushByteSize) {
+          flushByteSize = Math.min(MAX_FLUSH_BYTE_SIZE, flushByteSize + flushByteSize / 4);
+        }
+      }
+      inFlightRequests--;
+      inFlightLock.notifyAll();
+    }
+  }
+
+  /**
+   * @return false if requests are still in flight after the deadline
+   */
+  private boolean awaitInFlightRequests(long deadline) {
+    synchronized (inFlightLock) {
+      long remaining = deadline - System.currentTimeMillis();
+      while (inFlightRequests > 0 && remaining > 0) {
+        try {
+          inFlightLock.wait(remaining);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new IllegalStateException("Elasticsearch bulk requests still being executed after 10 minutes", e);
+        }
+        remaining = deadline - System.currentTimeMillis();
+      }
+      return inFlightRequests == 0;
+    }
+  }
+
+  private static void sleepUntil(long time) {
+    long delay = time - System.currentTimeMillis();
+    if (delay > 0) {
+      try {
+        Thread.sleep(delay);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IllegalStateException("Interrupted while waiting to retry Elasticsearch bulk request", e);
+      }
+    }
+  }
+
+  private static boolean isRejection(Throwable e) {
+    return ExceptionsHelper.status(ExceptionsHelper.unwrapCause(e)) == RestStatus.TOO_MANY_REQUESTS;
+  }
+
+  private void retry(List<ActionRequest> requests, int failedAttempt) {
+    // 100ms, 200ms, 400ms, ...
+    long delay = INITIAL_RETRY_DELAY_MS << (failedAttempt - 1);
+    retries.add(new Retry(requests, failedAttempt + 1, System.currentTimeMillis() + delay));
+  }
+
+  private class Retry {
+    private final List<ActionRequest> requests;
+    private final int attempt;
+    private final long notBefore;
+
+    Retry(List<ActionRequest> requests, int attempt, long notBefore) {
+      this.requests = requests;
+      this.attempt = attempt;
+      this.notBefore = notBefore;
+    }
+
+    BulkRequestBuilder newBulkRequest() {
+      BulkRequestBuilder req = client.prepareBulk().setRefresh(false);
+      requests.forEach(req.request()::add);
+      return req;
+    }
   }
 
   private class BulkResponseActionListener implements ActionListener<BulkResponse> {
     private final BulkRequestBuilder req;
+    private final int attempt;
+    private final long startedAt = System.currentTimeMillis();
 
-    BulkResponseActionListener(BulkRequestBuilder req) {
+    BulkResponseActionListener(BulkRequestBuilder req, int attempt) {
       this.req = req;
+      this.attempt = attempt;
     }
 
     @Override
     public void onResponse(BulkResponse response) {
-      semaphore.release();
-      counter.addAndGet(response.getItems().length);
-
+      List<ActionRequest> rejected = new ArrayList<>();
+      long failed = 0L;
       for (BulkItemResponse item : response.getItems()) {
         if (item.isFailed()) {
-          LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          if (item.getFailure().getStatus() == RestStatus.TOO_MANY_REQUESTS && attempt < MAX_ATTEMPTS) {
+            rejected.add(req.request().requests().get(item.getItemId()));
+          } else {
+            failed++;
+            LOGGER.error("index [{}], type [{}], id [{}], message [{}]", item.getIndex(), item.getType(), item.getId(), item.getFailureMessage());
+          }
         }
       }
+      long indexed = response.getItems().length - rejected.size() - failed;
+      // the size of successful requests is estimated from the size of the whole request
+      long bytes = response.getItems().length == 0 ? 0L : (req.request().estimatedSizeInBytes() * indexed / response.getItems().length);
+      counter.addAndGet(indexed + failed);
+      indexedDocuments.addAndGet(indexed);
+      indexedBytes.addAndGet(bytes);
+      stats.onBulkResponse(indexed, bytes, rejected.size(), failed);
+      if (!rejected.isEmpty()) {
+        retry(rejected, attempt);
+      }
+      releaseInFlightRequest(recordLatency(), !rejected.isEmpty());
     }
 
     @Override
     public void onFailure(Throwable e) {
-      semaphore.release();
-      LOGGER.error("Fail to execute bulk index request: " + req, e);
+      boolean rejected = isRejection(e) && attempt < MAX_ATTEMPTS;
+      if (rejected) {
+        stats.onBulkResponse(0L, 0L, req.request().numberOfActions(), 0L);
+        retry(req.request().requests(), attempt);
+      } else {
+        stats.onBulkResponse(0L, 0L, 0L, req.request().numberOfActions());
+        LOGGER.error("Fail to execute bulk index request: " + req, e);
+      }
+      releaseInFlightRequest(recordLatency(), rejected);
+    }
+
+    /**
+     * Requests are executed asynchronously, so their latency is not recorded by {@link org.sonar.server.es.request.ProxyBulkRequestBuilder}
+     */
+    private long recordLatency() {
+      long durationMs = System.currentTimeMillis() - startedAt;
+      client.getRequestLatencies().record(EsRequestLatencies.BULK, new String[] {indexName}, NO_TYPES, durationMs);
+      return durationMs;
     }
   }
 }
@@ -0,0 +1,92 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of the documents sent by all the {@link BulkIndexer}s of the same {@link EsClient}.
+ * They are exported through JMX by {@link org.sonar.server.platform.monitoring.EsMonitor}.
+ */
+public class BulkIndexingStats {
+
+  private final AtomicLong indexedDocuments = new AtomicLong(0L);
+  private final AtomicLong indexedBytes = new AtomicLong(0L);
+  private final AtomicLong rejectedDocuments = new AtomicLong(0L);
+  private final AtomicLong failedDocuments = new AtomicLong(0L);
+  private volatile long lastDocumentsPerSecond = 0L;
+  private volatile long lastBytesPerSecond = 0L;
+
+  void onBulkResponse(long documents, long bytes, long rejected, long failed) {
+    indexedDocuments.addAndGet(documents);
+    indexedBytes.addAndGet(bytes);
+    rejectedDocuments.addAndGet(rejected);
+    failedDocuments.addAndGet(failed);
+  }
+
+  void onBulkIndexerStop(long documents, long bytes, long durationMs) {
+    long duration = Math.max(1L, durationMs);
+    lastDocumentsPerSecond = documents * 1_000L / duration;
+    lastBytesPerSecond = bytes * 1_000L / duration;
+  }
+
+  /**
+   * Number of documents successfully indexed or deleted
+   */
+  public long getIndexedDocuments() {
+    return indexedDocuments.get();
+  }
+
+  /**
+   * Estimated size of the bulk requests successfully executed
+   */
+  public long getIndexedBytes() {
+    return indexedBytes.get();
+  }
+
+  /**
+   * Number of documents rejected by Elasticsearch because its queues were full. Each rejection is retried,
+   * so a document can be counted several times.
+   */
+  public long getRejectedDocuments() {
+    return rejectedDocuments.get();
+  }
+
+  /**
+   * Number of documents which could not be indexed, even after retries
+   */
+  public long getFailedDocuments() {
+    return failedDocuments.get();
+  }
+
+  /**
+   * Throughput of the last stopped {@link BulkIndexer}, in documents per second
+   */
+  public long getLastDocumentsPerSecond() {
+    return lastDocumentsPerSecond;
+  }
+
+  /**
+   * Throughput of the last stopped {@link BulkIndexer}, in bytes per second
+   */
+  public long getLastBytesPerSecond() {
+    return lastBytesPerSecond;
+  }
+}
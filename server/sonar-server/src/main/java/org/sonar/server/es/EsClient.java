@@ -79,9 +79,29 @@ public class EsClient implements Closeable {
   public static final Logger LOGGER = Loggers.get("es");
 
   private final Client nativeClient;
+  private final BulkIndexingStats bulkIndexingStats = new BulkIndexingStats();
+  private final EsRequestLatencies requestLatencies = new EsRequestLatencies();
+  private final SearchResultCache searchResultCache;
 
   public EsClient(Client nativeClient) {
+    this(nativeClient, SearchResultCache.disabled());
+  }
+
+  public EsClient(Client nativeClient, SearchResultCache searchResultCache) {
     this.nativeClient = requireNonNull(nativeClient);
+    this.searchResultCache = requireNonNull(searchResultCache);
+  }
+
+  public SearchResultCache getSearchResultCache() {
+    return searchResultCache;
+  }
+
+  public BulkIndexingStats getBulkIndexingStats() {
+    return bulkIndexingStats;
+  }
+
+  public EsRequestLatencies getRequestLatencies() {
+    return requestLatencies;
   }
 
   public RefreshRequestBuilder prepareRefresh(String... indices) {
@@ -129,23 +149,23 @@ public class EsClient implements Closeable {
   }
 
   public SearchRequestBuilder prepareSearch(String... indices) {
-    return new ProxySearchRequestBuilder(nativeClient()).setIndices(indices);
+    return new ProxySearchRequestBuilder(nativeClient(), requestLatencies).setIndices(indices);
   }
 
   public SearchScrollRequestBuilder prepareSearchScroll(String scrollId) {
-    return new ProxySearchScrollRequestBuilder(scrollId, nativeClient());
+    return new ProxySearchScrollRequestBuilder(scrollId, nativeClient(), requestLatencies);
   }
 
   public GetRequestBuilder prepareGet() {
-    return new ProxyGetRequestBuilder(nativeClient());
+    return new ProxyGetRequestBuilder(nativeClient(), requestLatencies);
   }
 
   public GetRequestBuilder prepareGet(String index, String type, String id) {
-    return new ProxyGetRequestBuilder(nativeClient()).setIndex(index).setType(type).setId(id);
+    return new ProxyGetRequestBuilder(nativeClient(), requestLatencies).setIndex(index).setType(type).setId(id);
   }
 
   public MultiGetRequestBuilder prepareMultiGet() {
-    return new ProxyMultiGetRequestBuilder(nativeClient());
+    return new ProxyMultiGetRequestBuilder(nativeClient(), requestLatencies);
   }
 
   /**
@@ -153,11 +173,11 @@ public class EsClient implements Closeable {
    */
   @Deprecated
   public CountRequestBuilder prepareCount(String... indices) {
-    return new ProxyCountRequestBuilder(nativeClient()).setIndices(indices);
+    return new ProxyCountRequestBuilder(nativeClient(), requestLatencies).setIndices(indices);
   }
 
   public BulkRequestBuilder prepareBulk() {
-    return new ProxyBulkRequestBuilder(nativeClient());
+    return new ProxyBulkRequestBuilder(nativeClient(), requestLatencies);
   }
 
   public DeleteRequestBuilder prepareDelete(String index, String type, String id) {
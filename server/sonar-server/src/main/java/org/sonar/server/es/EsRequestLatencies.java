@@ -0,0 +1,210 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Latencies of the requests executed by an {@link EsClient}, grouped by kind of request (search, scroll, get, ...),
+ * indices and types, and by the web service action which executed them.
+ * <p>
+ * Latencies are recorded in histograms with fixed buckets, so that recording is cheap enough to be always enabled,
+ * contrary to the profiling of requests in TRACE logs. Percentiles are approximated by the upper bound of the bucket.
+ * They are exported through JMX by {@link org.sonar.server.platform.monitoring.EsMonitor}.
+ * </p>
+ */
+public class EsRequestLatencies {
+
+  public static final String SEARCH = "search";
+  public static final String SCROLL = "scroll";
+  public static final String GET = "get";
+  public static final String MULTI_GET = "multi_get";
+  public static final String COUNT = "count";
+  public static final String BULK = "bulk";
+
+  /**
+   * Upper bounds, in milliseconds, of the buckets of histograms. Last bucket has no upper bound.
+   */
+  static final long[] BUCKET_UPPER_BOUNDS_MS = {1L, 2L, 5L, 10L, 20L, 50L, 100L, 200L, 500L, 1_000L, 2_000L, 5_000L, 10_000L, 30_000L};
+
+  private static final ThreadLocal<String> CURRENT_WS_ACTION = new ThreadLocal<>();
+
+  private final ConcurrentMap<String, Histogram> byRequest = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> byWsAction = new ConcurrentHashMap<>();
+  private final ConcurrentMap<String, Histogram> byKind = new ConcurrentHashMap<>();
+
+  /**
+   * Sets the web service action executed by the current thread, so that its requests to Elasticsearch
+   * are grouped under its key.
+   *
+   * @param wsActionKey key of action, for example "api/issues/search", or {@code null} when the execution of action is over
+   */
+  public static void setCurrentWsAction(@Nullable String wsActionKey) {
+    if (wsActionKey == null) {
+      CURRENT_WS_ACTION.remove();
+    } else {
+      CURRENT_WS_ACTION.set(wsActionKey);
+    }
+  }
+
+  @CheckForNull
+  static String getCurrentWsAction() {
+    return CURRENT_WS_ACTION.get();
+  }
+
+  public void record(String kind, String[] indices, String[] types, long durationMs) {
+    histogram(byKind, kind).record(durationMs);
+    histogram(byRequest, requestKey(kind, indices, types)).record(durationMs);
+    String wsAction = CURRENT_WS_ACTION.get();
+    if (wsAction != null) {
+      histogram(byWsAction, wsAction).record(durationMs);
+    }
+  }
+
+  /**
+   * Latencies of all the requests of the given kind, for example {@link #SEARCH}
+   */
+  public Histogram getByKind(String kind) {
+    Histogram histogram = byKind.get(kind);
+    return histogram == null ? new Histogram() : histogram;
+  }
+
+  /**
+   * Latencies grouped by kind of request, indices and types, sorted by key. Key is for example "search issues/issue".
+   */
+  public Map<String, Histogram> getByRequest() {
+    return Collections.unmodifiableMap(new TreeMap<>(byRequest));
+  }
+
+  /**
+   * Latencies of the requests executed by web service actions, sorted by key of action.
+   */
+  public Map<String, Histogram> getByWsAction() {
+    return Collections.unmodifiableMap(new TreeMap<>(byWsAction));
+  }
+
+  private static String requestKey(String kind, String[] indices, String[] types) {
+    StringBuilder key = new StringBuilder(kind);
+    if (indices.length > 0) {
+      key.append(' ').append(String.join(",", sorted(indices)));
+      if (types.length > 0) {
+        key.append('/').append(String.join(",", sorted(types)));
+      }
+    }
+    return key.toString();
+  }
+
+  private static String[] sorted(String[] values) {
+    if (values.length == 1) {
+      return values;
+    }
+    String[] copy = values.clone();
+    Arrays.sort(copy);
+    return copy;
+  }
+
+  private static Histogram histogram(ConcurrentMap<String, Histogram> histograms, String key) {
+    Histogram histogram = histograms.get(key);
+    if (histogram == null) {
+      histogram = histograms.computeIfAbsent(key, k -> new Histogram());
+    }
+    return histogram;
+  }
+
+  public static class Histogram {
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_UPPER_BOUNDS_MS.length + 1);
+    private final AtomicLong count = new AtomicLong(0L);
+    private final AtomicLong sumMs = new AtomicLong(0L);
+    private final AtomicLong maxMs = new AtomicLong(0L);
+
+    void record(long durationMs) {
+      counts.incrementAndGet(bucket(durationMs));
+      count.incrementAndGet();
+      sumMs.addAndGet(durationMs);
+      maxMs.accumulateAndGet(durationMs, Math::max);
+    }
+
+    private static int bucket(long durationMs) {
+      for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+        if (durationMs <= BUCKET_UPPER_BOUNDS_MS[i]) {
+          return i;
+        }
+      }
+      return BUCKET_UPPER_BOUNDS_MS.length;
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getMeanMs() {
+      long c = count.get();
+      return c == 0L ? 0L : (sumMs.get() / c);
+    }
+
+    public long getMaxMs() {
+      return maxMs.get();
+    }
+
+    /**
+     * Approximated percentile, in milliseconds: upper bound of the bucket which contains the percentile,
+     * or max latency if it's lower or if the percentile is in the last bucket.
+     *
+     * @param percentile between 0 (excluded) and 100 (included), for example 99.0
+     */
+    public long getPercentileMs(double percentile) {
+      checkArgument(percentile > 0.0 && percentile <= 100.0, "Percentile must be in ]0, 100]: %s", percentile);
+      long max = maxMs.get();
+      long total = 0L;
+      for (int i = 0; i < counts.length(); i++) {
+        total += counts.get(i);
+      }
+      if (total == 0L) {
+        return 0L;
+      }
+      long rank = (long) Math.ceil(percentile * total / 100.0);
+      long cumulated = 0L;
+      for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+        cumulated += counts.get(i);
+        if (cumulated >= rank) {
+          return Math.min(BUCKET_UPPER_BOUNDS_MS[i], max);
+        }
+      }
+      return max;
+    }
+
+    @Override
+    public String toString() {
+      return String.format("count=%d, mean=%dms, p50=%dms, p99=%dms, max=%dms",
+        getCount(), getMeanMs(), getPercentileMs(50.0), getPercentileMs(99.0), getMaxMs());
+    }
+  }
+}
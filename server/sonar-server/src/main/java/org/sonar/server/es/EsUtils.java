@@ -33,8 +33,11 @@ import java.util.NoSuchElementException;
 import java.util.Queue;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchScrollRequestBuilder;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.SearchHit;
@@ -43,10 +46,12 @@ import org.elasticsearch.search.aggregations.bucket.terms.Terms;
 import org.joda.time.format.ISODateTimeFormat;
 
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class EsUtils {
 
   public static final int SCROLL_TIME_IN_MINUTES = 3;
+  private static final String[] NO_NAMES = new String[0];
 
   private EsUtils() {
     // only static methods
@@ -145,6 +150,93 @@ public class EsUtils {
     }
   }
 
+  /**
+   * Same as {@link #scroll(EsClient, String, Function)}, except that the next page of hits is requested as soon as
+   * the current one is received. Elasticsearch loads it while the current page is consumed, for example
+   * while documents are serialized to a web service response.
+   */
+  public static <D extends BaseDoc> Iterator<D> scrollWithPrefetch(EsClient esClient, String scrollId, Function<Map<String, Object>, D> docConverter) {
+    return new PrefetchingDocScrollIterator<>(esClient, scrollId, docConverter);
+  }
+
+  private static class PrefetchingDocScrollIterator<D extends BaseDoc> implements Iterator<D> {
+
+    private final EsClient esClient;
+    private final Function<Map<String, Object>, D> docConverter;
+
+    private final Queue<SearchHit> hits = new ArrayDeque<>();
+    private String nextPageScrollId;
+    @CheckForNull
+    private ListenableActionFuture<SearchResponse> nextPage;
+
+    private PrefetchingDocScrollIterator(EsClient esClient, String scrollId, Function<Map<String, Object>, D> docConverter) {
+      this.esClient = esClient;
+      this.docConverter = docConverter;
+      requestNextPage(scrollId);
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (hits.isEmpty() && nextPage != null) {
+        SearchResponse response = waitForNextPage();
+        SearchHit[] pageHits = response.getHits().getHits();
+        if (pageHits.length == 0) {
+          nextPage = null;
+        } else {
+          requestNextPage(response.getScrollId());
+          Collections.addAll(hits, pageHits);
+        }
+      }
+      return !hits.isEmpty();
+    }
+
+    @Override
+    public D next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      return docConverter.apply(hits.poll().getSource());
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException("Cannot remove item when scrolling");
+    }
+
+    private void requestNextPage(String scrollId) {
+      // native client is used as proxy builders do not support asynchronous requests, so latency
+      // is recorded when the response is received
+      this.nextPageScrollId = scrollId;
+      long start = System.nanoTime();
+      this.nextPage = esClient.nativeClient().prepareSearchScroll(scrollId)
+        .setScroll(TimeValue.timeValueMinutes(SCROLL_TIME_IN_MINUTES))
+        .execute();
+      this.nextPage.addListener(new ActionListener<SearchResponse>() {
+        @Override
+        public void onResponse(SearchResponse response) {
+          recordLatency(start);
+        }
+
+        @Override
+        public void onFailure(Throwable e) {
+          recordLatency(start);
+        }
+      });
+    }
+
+    private void recordLatency(long start) {
+      esClient.getRequestLatencies().record(EsRequestLatencies.SCROLL, NO_NAMES, NO_NAMES, NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private SearchResponse waitForNextPage() {
+      try {
+        return nextPage.actionGet();
+      } catch (Exception e) {
+        throw new IllegalStateException(format("Fail to execute ES search scroll request for scroll id '%s'", nextPageScrollId), e);
+      }
+    }
+  }
+
   public static <ID> Iterator<ID> scrollIds(EsClient esClient, String scrollId, Function<String, ID> idConverter) {
     return new IdScrollIterator<>(esClient, scrollId, idConverter);
   }
@@ -171,6 +171,29 @@ public class Facets {
     return facetsByName.keySet();
   }
 
+  /**
+   * Deeply immutable copy of the facets, preserving the order of facets and buckets.
+   * See {@link #copyOf(Map)} to get back modifiable facets.
+   */
+  Map<String, Map<String, Long>> toUnmodifiableMap() {
+    Map<String, Map<String, Long>> copy = new LinkedHashMap<>();
+    facetsByName.forEach((name, facet) -> copy.put(name, Collections.unmodifiableMap(new LinkedHashMap<>(facet))));
+    return Collections.unmodifiableMap(copy);
+  }
+
+  /**
+   * Total number of values of the facets returned by {@link #toUnmodifiableMap()}
+   */
+  static int countValues(Map<String, Map<String, Long>> facetsByName) {
+    return facetsByName.values().stream().mapToInt(Map::size).sum();
+  }
+
+  static Facets copyOf(Map<String, Map<String, Long>> facetsByName) {
+    LinkedHashMap<String, LinkedHashMap<String, Long>> copy = new LinkedHashMap<>();
+    facetsByName.forEach((name, facet) -> copy.put(name, new LinkedHashMap<>(facet)));
+    return new Facets(copy);
+  }
+
   @Override
   public String toString() {
     return ReflectionToStringBuilder.toString(this, ToStringStyle.SIMPLE_STYLE);
@@ -19,12 +19,25 @@
  */
 package org.sonar.server.es;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
 import org.apache.commons.lang.StringUtils;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
 import org.picocontainer.Startable;
 import org.sonar.api.server.ServerSide;
 import org.sonar.api.utils.log.Logger;
@@ -32,6 +45,14 @@ import org.sonar.api.utils.log.Loggers;
 
 /**
  * Creates/deletes all indices in Elasticsearch during server startup.
+ * <p>
+ * When only the numbers of shards or replicas of an index are changed, for example with the property
+ * "sonar.search.issues.shards", the existing documents are copied into a new index with the new settings, instead
+ * of being re-populated from database. The new index is then made available through an alias named as the index
+ * definition, so that the rest of the code is not aware of the physical name.
+ * Types which do not store source (for instance "issues/authorization") can't be copied. They are re-populated
+ * by their indexers, which check at startup if types are empty.
+ * </p>
  */
 @ServerSide
 public class IndexCreator implements Startable {
@@ -44,6 +65,14 @@ public class IndexCreator implements Startable {
    */
   private static final String SETTING_HASH = "sonar_hash";
 
+  /**
+   * Internal setting stored on index to know if its documents can be copied to an index
+   * with a new definition. See {@link IndexDefinitionHash#ofMappings(IndexDefinitions.Index)}
+   */
+  private static final String SETTING_MAPPING_HASH = "sonar_mapping_hash";
+
+  private static final int COPY_PAGE_SIZE = 500;
+
   private final EsClient client;
   private final IndexDefinitions definitions;
 
@@ -56,14 +85,22 @@ public class IndexCreator implements Startable {
   public void start() {
     // create indices that do not exist or that have a new definition (different mapping, cluster enabled, ...)
     for (IndexDefinitions.Index index : definitions.getIndices().values()) {
-      boolean exists = client.prepareIndicesExist(index.getName()).get().isExists();
-      if (exists && needsToDeleteIndex(index)) {
-        LOGGER.info(String.format("Delete index %s (settings changed)", index.getName()));
-        deleteIndex(index.getName());
-        exists = false;
+      GetSettingsResponse existingSettings = cleanUpCopies(index);
+      if (existingSettings == null) {
+        createIndex(index, index.getName());
+        continue;
       }
-      if (!exists) {
-        createIndex(index);
+      // name of definition is an alias when the index has already been copied
+      String physicalName = existingSettings.getIndexToSettings().keysIt().next();
+      Settings settings = existingSettings.getIndexToSettings().get(physicalName);
+      if (needsToDeleteIndex(index, settings)) {
+        if (canCopyDocuments(index, settings)) {
+          copyIndex(index, physicalName);
+        } else {
+          LOGGER.info(String.format("Delete index %s (settings changed)", index.getName()));
+          deleteIndex(physicalName);
+          createIndex(index, index.getName());
+        }
       }
     }
   }
@@ -73,24 +110,65 @@ public class IndexCreator implements Startable {
     // nothing to do
   }
 
-  private void createIndex(IndexDefinitions.Index index) {
-    LOGGER.info(String.format("Create index %s", index.getName()));
+  /**
+   * Copies of the index ({@code <name>_<timestamp>}, see {@link #copyIndex(IndexDefinitions.Index, String)}) which are
+   * not referenced by the alias are left by a server stopped during a copy. They are deleted, except if the index
+   * itself has been deleted but the alias not created yet: the latest copy is then complete and the alias is created.
+   *
+   * @return the settings of the index, or null if it does not exist
+   */
+  @CheckForNull
+  private GetSettingsResponse cleanUpCopies(IndexDefinitions.Index index) {
+    Pattern copyName = Pattern.compile(Pattern.quote(index.getName()) + "_\\d++");
+    List<String> copies = Arrays.stream(client.nativeClient().admin().indices().prepareGetIndex().setIndices(index.getName() + "_*").get().getIndices())
+      .filter(name -> copyName.matcher(name).matches())
+      .sorted(Comparator.comparingLong(name -> Long.parseLong(name.substring(index.getName().length() + 1))))
+      .collect(Collectors.toList());
+    GetSettingsResponse existingSettings = getSettings(index.getName());
+    if (existingSettings == null && !copies.isEmpty()) {
+      String latestCopy = copies.remove(copies.size() - 1);
+      LOGGER.info(String.format("Complete copy of index %s into %s", index.getName(), latestCopy));
+      client.nativeClient().admin().indices().prepareAliases().addAlias(latestCopy, index.getName()).get();
+      existingSettings = getSettings(index.getName());
+    }
+    String physicalName = existingSettings == null ? null : existingSettings.getIndexToSettings().keysIt().next();
+    for (String copy : copies) {
+      if (!copy.equals(physicalName)) {
+        LOGGER.info(String.format("Delete index %s (interrupted copy of index %s)", copy, index.getName()));
+        deleteIndex(copy);
+      }
+    }
+    return existingSettings;
+  }
+
+  @CheckForNull
+  private GetSettingsResponse getSettings(String indexName) {
+    if (!client.prepareIndicesExist(indexName).get().isExists()) {
+      return null;
+    }
+    return client.nativeClient().admin().indices().prepareGetSettings(indexName).get();
+  }
+
+  private void createIndex(IndexDefinitions.Index index, String physicalName) {
+    LOGGER.info(String.format("Create index %s", physicalName));
     Settings.Builder settings = Settings.builder();
     settings.put(index.getSettings());
-    settings.put(SETTING_HASH, new IndexDefinitionHash().of(index));
+    IndexDefinitionHash hash = new IndexDefinitionHash();
+    settings.put(SETTING_HASH, hash.of(index));
+    settings.put(SETTING_MAPPING_HASH, hash.ofMappings(index));
     CreateIndexResponse indexResponse = client
-      .prepareCreate(index.getName())
+      .prepareCreate(physicalName)
       .setSettings(settings)
       .get();
     if (!indexResponse.isAcknowledged()) {
-      throw new IllegalStateException("Failed to create index " + index.getName());
+      throw new IllegalStateException("Failed to create index " + physicalName);
     }
     client.waitForStatus(ClusterHealthStatus.YELLOW);
 
     // create types
     for (Map.Entry<String, IndexDefinitions.IndexType> entry : index.getTypes().entrySet()) {
-      LOGGER.info(String.format("Create type %s/%s", index.getName(), entry.getKey()));
-      PutMappingResponse mappingResponse = client.preparePutMapping(index.getName())
+      LOGGER.info(String.format("Create type %s/%s", physicalName, entry.getKey()));
+      PutMappingResponse mappingResponse = client.preparePutMapping(physicalName)
         .setType(entry.getKey())
         .setSource(entry.getValue().getAttributes())
         .get();
@@ -101,17 +179,123 @@ public class IndexCreator implements Startable {
     client.waitForStatus(ClusterHealthStatus.YELLOW);
   }
 
+  /**
+   * Copies documents of {@code physicalName} into a new index, then replaces it by the new index. Indexers are not
+   * started yet, so no document can be changed during the copy. Documents can't be re-indexed from database, so
+   * the copy is dropped and startup fails if a document has not been copied.
+   */
+  private void copyIndex(IndexDefinitions.Index index, String physicalName) {
+    String newPhysicalName = index.getName() + "_" + System.currentTimeMillis();
+    LOGGER.info(String.format("Copy index %s into %s (number of shards or replicas changed)", index.getName(), newPhysicalName));
+    createIndex(index, newPhysicalName);
+    try {
+      for (IndexDefinitions.IndexType type : index.getTypes().values()) {
+        if (isSourceEnabled(type)) {
+          copyDocuments(physicalName, newPhysicalName, type.getName());
+        }
+      }
+      client.prepareRefresh(newPhysicalName).get();
+      for (IndexDefinitions.IndexType type : index.getTypes().values()) {
+        if (isSourceEnabled(type)) {
+          checkCopiedDocuments(physicalName, newPhysicalName, type.getName());
+        }
+      }
+    } catch (RuntimeException e) {
+      deleteIndex(newPhysicalName);
+      throw e;
+    }
+
+    if (physicalName.equals(index.getName())) {
+      // existing index is not an alias. It must be dropped before creating an alias with the same name, which
+      // can't be done by a single request. If the server stops in-between, the alias is created at next startup.
+      deleteIndex(physicalName);
+      client.nativeClient().admin().indices().prepareAliases().addAlias(newPhysicalName, index.getName()).get();
+    } else {
+      client.nativeClient().admin().indices().prepareAliases()
+        .removeAlias(physicalName, index.getName())
+        .addAlias(newPhysicalName, index.getName())
+        .get();
+      deleteIndex(physicalName);
+    }
+  }
+
+  private void copyDocuments(String fromIndex, String toIndex, String type) {
+    BulkIndexer bulk = new BulkIndexer(client, toIndex);
+    bulk.setLarge(true);
+    bulk.start();
+    SearchResponse response = client.prepareSearch(fromIndex)
+      .setTypes(type)
+      .setSearchType(SearchType.SCAN)
+      .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES))
+      .setSize(COPY_PAGE_SIZE)
+      .setFetchSource(true)
+      .addFields("_routing", "_parent")
+      .get();
+    String scrollId = response.getScrollId();
+    while (true) {
+      response = client.prepareSearchScroll(scrollId)
+        .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES))
+        .get();
+      SearchHit[] hits = response.getHits().getHits();
+      if (hits.length == 0) {
+        break;
+      }
+      for (SearchHit hit : hits) {
+        bulk.add(newCopyRequest(toIndex, type, hit));
+      }
+      scrollId = response.getScrollId();
+    }
+    client.nativeClient().prepareClearScroll().addScrollId(scrollId).get();
+    bulk.stop();
+  }
+
+  private void checkCopiedDocuments(String fromIndex, String toIndex, String type) {
+    long expected = countDocuments(fromIndex, type);
+    long copied = countDocuments(toIndex, type);
+    if (copied != expected) {
+      throw new IllegalStateException(String.format("Fail to copy documents of %s/%s into %s: %d documents copied out of %d", fromIndex, type, toIndex, copied, expected));
+    }
+  }
+
+  private long countDocuments(String indexName, String type) {
+    return client.prepareSearch(indexName).setTypes(type).setSize(0).get().getHits().totalHits();
+  }
+
+  private static IndexRequest newCopyRequest(String index, String type, SearchHit hit) {
+    IndexRequest request = new IndexRequest(index, type, hit.getId()).source(hit.getSourceRef());
+    // parent must be set before routing, as it also sets routing
+    SearchHitField parent = hit.field("_parent");
+    if (parent != null) {
+      request.parent(parent.<String>getValue());
+    }
+    SearchHitField routing = hit.field("_routing");
+    if (routing != null) {
+      request.routing(routing.<String>getValue());
+    }
+    return request;
+  }
+
   private void deleteIndex(String indexName) {
     client.nativeClient().admin().indices().prepareDelete(indexName).get();
   }
 
-  private boolean needsToDeleteIndex(IndexDefinitions.Index index) {
+  private static boolean needsToDeleteIndex(IndexDefinitions.Index index, Settings settings) {
     boolean toBeDeleted = false;
-    String hash = client.nativeClient().admin().indices().prepareGetSettings(index.getName()).get().getSetting(index.getName(), "index." + SETTING_HASH);
+    String hash = settings.get("index." + SETTING_HASH);
     if (hash != null) {
       String defHash = new IndexDefinitionHash().of(index);
       toBeDeleted = !StringUtils.equals(hash, defHash);
     }
     return toBeDeleted;
   }
+
+  private static boolean canCopyDocuments(IndexDefinitions.Index index, Settings settings) {
+    String hash = settings.get("index." + SETTING_MAPPING_HASH);
+    return hash != null && hash.equals(new IndexDefinitionHash().ofMappings(index));
+  }
+
+  private static boolean isSourceEnabled(IndexDefinitions.IndexType type) {
+    Object source = type.getAttributes().get("_source");
+    return !(source instanceof Map) || !Boolean.FALSE.equals(((Map) source).get("enabled"));
+  }
 }
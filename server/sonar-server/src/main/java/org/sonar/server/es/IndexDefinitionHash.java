@@ -22,8 +22,10 @@ package org.sonar.server.es;
 import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.collect.Lists;
 import org.apache.commons.codec.digest.DigestUtils;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedMap;
@@ -31,7 +33,8 @@ import java.util.SortedMap;
 /**
  * Hash of index definition is stored in the index itself in order to detect changes of mappings
  * between SonarQube versions. In this case, contrary to database tables, indices are dropped
- * and re-populated from scratch. There's no attempt to migrate existing data.
+ * and re-populated from scratch. There's no attempt to migrate existing data, except when only
+ * the numbers of shards or replicas are changed (see {@link #ofMappings(IndexDefinitions.Index)}).
  */
 class IndexDefinitionHash {
 
@@ -41,6 +44,18 @@ class IndexDefinitionHash {
     return of(index.getSettings().getAsMap(), index.getTypes());
   }
 
+  /**
+   * Same as {@link #of(IndexDefinitions.Index)}, except that the numbers of shards and replicas are ignored.
+   * Indices which differ only by these settings can contain the same documents, so documents can be copied
+   * from one to the other instead of being re-populated from scratch.
+   */
+  String ofMappings(IndexDefinitions.Index index) {
+    Map<String, String> settings = new HashMap<>(index.getSettings().getAsMap());
+    settings.remove(IndexMetaData.SETTING_NUMBER_OF_SHARDS);
+    settings.remove(IndexMetaData.SETTING_NUMBER_OF_REPLICAS);
+    return of(settings, index.getTypes());
+  }
+
   String of(Map... maps) {
     StringBuilder sb = new StringBuilder();
     for (Map map : maps) {
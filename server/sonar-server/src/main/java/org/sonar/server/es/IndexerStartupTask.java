@@ -19,6 +19,14 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
@@ -58,26 +66,49 @@ public class IndexerStartupTask {
     this.settings = settings;
   }
 
+  /**
+   * Indexers are independent, except {@link IssueIndexer} which must be executed after {@link PermissionIndexer}.
+   * They are executed concurrently.
+   */
   public void execute() {
     if (!settings.getBoolean("sonar.internal.es.disableIndexes")) {
+      ExecutorService executor = Executors.newFixedThreadPool(5,
+        new ThreadFactoryBuilder().setNameFormat("IndexerStartupTask-%d").setDaemon(true).build());
+      try {
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> {
+          execute("authorization", permissionIndexer::indexAllIfEmpty);
+          execute("issues", issueIndexer::index);
+        }));
+        futures.add(executor.submit(() -> execute("tests", testIndexer::index)));
+        futures.add(executor.submit(() -> execute("users", userIndexer::index)));
+        futures.add(executor.submit(() -> execute("views", viewIndexer::index)));
+        futures.add(executor.submit(() -> execute("project measures", projectMeasuresIndexer::index)));
+        for (Future<?> future : futures) {
+          waitFor(future);
+        }
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+  }
 
-      LOG.info("Index authorization");
-      permissionIndexer.indexAllIfEmpty();
-
-      LOG.info("Index issues");
-      issueIndexer.index();
-
-      LOG.info("Index tests");
-      testIndexer.index();
-
-      LOG.info("Index users");
-      userIndexer.index();
-
-      LOG.info("Index views");
-      viewIndexer.index();
+  private static void execute(String label, Runnable indexer) {
+    LOG.info("Index {}", label);
+    long startedAt = System.currentTimeMillis();
+    indexer.run();
+    LOG.info("Index {} done in {} ms", label, System.currentTimeMillis() - startedAt);
+  }
 
-      LOG.info("Index project measures");
-      projectMeasuresIndexer.index();
+  private static void waitFor(Future<?> future) {
+    try {
+      Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Fail to index", cause);
     }
   }
 
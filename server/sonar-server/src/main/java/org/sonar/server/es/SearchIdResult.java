@@ -21,7 +21,9 @@ package org.sonar.server.es;
 
 import com.google.common.base.Function;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import org.apache.commons.lang.builder.ReflectionToStringBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.search.SearchHit;
@@ -39,6 +41,12 @@ public class SearchIdResult<ID> {
     this.ids = convertToIds(response.getHits(), converter);
   }
 
+  private SearchIdResult(List<ID> ids, Facets facets, long total) {
+    this.ids = ids;
+    this.facets = facets;
+    this.total = total;
+  }
+
   public List<ID> getIds() {
     return ids;
   }
@@ -51,6 +59,28 @@ public class SearchIdResult<ID> {
     return this.facets;
   }
 
+  /**
+   * Immutable copy of this result, for example to be stored in {@link SearchResultCache}. Ids are expected
+   * to be immutable.
+   */
+  public SearchResultCache.Snapshot<SearchIdResult<ID>> snapshot() {
+    List<ID> immutableIds = Collections.unmodifiableList(new ArrayList<>(ids));
+    Map<String, Map<String, Long>> immutableFacets = facets.toUnmodifiableMap();
+    long immutableTotal = total;
+    int weight = 1 + immutableIds.size() + Facets.countValues(immutableFacets);
+    return new SearchResultCache.Snapshot<SearchIdResult<ID>>() {
+      @Override
+      public SearchIdResult<ID> copy() {
+        return new SearchIdResult<>(new ArrayList<>(immutableIds), Facets.copyOf(immutableFacets), immutableTotal);
+      }
+
+      @Override
+      public int weight() {
+        return weight;
+      }
+    };
+  }
+
   @Override
   public String toString() {
     return ReflectionToStringBuilder.toString(this);
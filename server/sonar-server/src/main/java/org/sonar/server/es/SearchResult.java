@@ -20,6 +20,11 @@
 package org.sonar.server.es;
 
 import com.google.common.base.Function;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import org.apache.commons.lang.builder.ReflectionToStringBuilder;
@@ -37,6 +42,12 @@ public class SearchResult<DOC extends BaseDoc> {
     this.docs = EsUtils.convertToDocs(response.getHits(), converter);
   }
 
+  private SearchResult(List<DOC> docs, Facets facets, long total) {
+    this.docs = docs;
+    this.facets = facets;
+    this.total = total;
+  }
+
   public List<DOC> getDocs() {
     return docs;
   }
@@ -49,6 +60,55 @@ public class SearchResult<DOC extends BaseDoc> {
     return this.facets;
   }
 
+  /**
+   * Deeply immutable copy of this result, for example to be stored in {@link SearchResultCache}. Documents
+   * are re-created with {@code converter} on each call to {@link SearchResultCache.Snapshot#copy()}.
+   */
+  public SearchResultCache.Snapshot<SearchResult<DOC>> snapshot(Function<Map<String, Object>, DOC> converter) {
+    List<Map<String, Object>> docFields = new ArrayList<>(docs.size());
+    docs.forEach(doc -> docFields.add(Collections.unmodifiableMap(copyFields(doc.getFields(), true))));
+    List<Map<String, Object>> immutableDocFields = Collections.unmodifiableList(docFields);
+    Map<String, Map<String, Long>> immutableFacets = facets.toUnmodifiableMap();
+    long immutableTotal = total;
+    int weight = 1 + immutableDocFields.size() + Facets.countValues(immutableFacets);
+    return new SearchResultCache.Snapshot<SearchResult<DOC>>() {
+      @Override
+      public SearchResult<DOC> copy() {
+        List<DOC> docsCopy = new ArrayList<>(immutableDocFields.size());
+        immutableDocFields.forEach(fields -> docsCopy.add(converter.apply(copyFields(fields, false))));
+        return new SearchResult<>(docsCopy, Facets.copyOf(immutableFacets), immutableTotal);
+      }
+
+      @Override
+      public int weight() {
+        return weight;
+      }
+    };
+  }
+
+  private static Map<String, Object> copyFields(Map<String, Object> fields, boolean unmodifiable) {
+    Map<String, Object> copy = new HashMap<>(fields.size());
+    fields.forEach((key, value) -> copy.put(key, copyValue(value, unmodifiable)));
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Object copyValue(Object value, boolean unmodifiable) {
+    if (value instanceof Map) {
+      Map<String, Object> copy = copyFields((Map<String, Object>) value, unmodifiable);
+      return unmodifiable ? Collections.unmodifiableMap(copy) : copy;
+    }
+    if (value instanceof Collection) {
+      List<Object> copy = new ArrayList<>(((Collection<Object>) value).size());
+      ((Collection<Object>) value).forEach(item -> copy.add(copyValue(item, unmodifiable)));
+      return unmodifiable ? Collections.unmodifiableList(copy) : copy;
+    }
+    if (value instanceof Date) {
+      return new Date(((Date) value).getTime());
+    }
+    return value;
+  }
+
   @Override
   public String toString() {
     return ReflectionToStringBuilder.toString(this);
@@ -0,0 +1,226 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import javax.annotation.CheckForNull;
+import org.sonar.api.config.Settings;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Short-lived cache of the results of search requests, for example the facets of the issues page which are requested
+ * again on each navigation.
+ * <p>
+ * Results are keyed by the complete Elasticsearch request, so that query, options and authorization filters are
+ * taken into account. They are invalidated when documents of the index are changed by a {@link BulkIndexer} (only the
+ * results related to the modified projects when all the changed documents have a routing key, the project uuid), and
+ * in any case expire after {@link #TTL_PROPERTY} seconds, as documents can also be changed by another process
+ * (the Compute Engine).
+ * </p>
+ * <p>
+ * Size of the cache is bounded by the total weight of the results (see {@link Snapshot#weight()}), which is the number
+ * of documents, ids and facet values that they hold, as a single result can contain hundreds of documents.
+ * </p>
+ * <p>
+ * Results are shared between concurrent requests, so the cache stores a deeply immutable {@link Snapshot} of each
+ * result and every call to {@link #get(String, Collection, String, Supplier, Function)} returns a new copy, that the
+ * caller is free to modify (for example to add mandatory values to facets).
+ * </p>
+ */
+public class SearchResultCache {
+
+  public static final String TTL_PROPERTY = "sonar.search.resultCacheTtlInSeconds";
+  public static final String MAX_WEIGHT_PROPERTY = "sonar.search.resultCacheMaxDocuments";
+  static final int DEFAULT_TTL_IN_SECONDS = 10;
+  static final long DEFAULT_MAX_WEIGHT = 20_000L;
+
+  @CheckForNull
+  private final Cache<Key, Object> cache;
+  private final Map<String, AtomicLong> generationsByIndex = new ConcurrentHashMap<>();
+
+  public SearchResultCache(int ttlInSeconds) {
+    this(ttlInSeconds, DEFAULT_MAX_WEIGHT);
+  }
+
+  /**
+   * @param ttlInSeconds 0 to disable the cache
+   * @param maxWeight 0 to disable the cache
+   */
+  public SearchResultCache(int ttlInSeconds, long maxWeight) {
+    checkArgument(ttlInSeconds >= 0, "Property %s must be positive or zero. Got: %s", TTL_PROPERTY, ttlInSeconds);
+    checkArgument(maxWeight >= 0, "Property %s must be positive or zero. Got: %s", MAX_WEIGHT_PROPERTY, maxWeight);
+    if (ttlInSeconds == 0 || maxWeight == 0) {
+      this.cache = null;
+    } else {
+      this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxWeight)
+        .weigher((Key key, Object snapshot) -> ((Snapshot<?>) snapshot).weight())
+        .expireAfterWrite(ttlInSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    }
+  }
+
+  public static SearchResultCache create(Settings settings) {
+    return new SearchResultCache(settings.hasKey(TTL_PROPERTY) ? settings.getInt(TTL_PROPERTY) : DEFAULT_TTL_IN_SECONDS,
+      settings.hasKey(MAX_WEIGHT_PROPERTY) ? settings.getLong(MAX_WEIGHT_PROPERTY) : DEFAULT_MAX_WEIGHT);
+  }
+
+  public static SearchResultCache disabled() {
+    return new SearchResultCache(0);
+  }
+
+  /**
+   * @param projectUuids the projects that results are restricted to, or empty if results are not restricted to some projects
+   * @param request the complete request (for example {@link org.elasticsearch.action.search.SearchRequestBuilder#toString()})
+   * @param snapshotter creates the immutable copy of a loaded result that is stored in cache
+   */
+  @SuppressWarnings("unchecked")
+  public <T> T get(String index, Collection<String> projectUuids, String request, Supplier<T> loader, Function<T, Snapshot<T>> snapshotter) {
+    if (cache == null) {
+      return loader.get();
+    }
+    Key key = new Key(index, projectUuids, request);
+    long generation = generation(index).get();
+    try {
+      Snapshot<T> snapshot = (Snapshot<T>) cache.get(key, () -> snapshotter.apply(loader.get()));
+      if (generation(index).get() != generation) {
+        // documents have been changed while loading
+        cache.invalidate(key);
+      }
+      return snapshot.copy();
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Fail to execute search request", e.getCause());
+    }
+  }
+
+  public void invalidate(String index) {
+    generation(index).incrementAndGet();
+    if (cache != null) {
+      cache.asMap().keySet().removeIf(key -> key.index.equals(index));
+    }
+  }
+
+  /**
+   * Invalidates the results related to the project, including results not restricted to some projects.
+   */
+  public void invalidate(String index, Collection<String> projectUuids) {
+    generation(index).incrementAndGet();
+    if (cache != null) {
+      cache.asMap().keySet().removeIf(key -> key.index.equals(index) &&
+        (key.projectUuids.isEmpty() || projectUuids.stream().anyMatch(key.projectUuids::contains)));
+    }
+  }
+
+  public void invalidateAll() {
+    generationsByIndex.values().forEach(AtomicLong::incrementAndGet);
+    if (cache != null) {
+      cache.invalidateAll();
+    }
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  public long size() {
+    return cache == null ? 0L : cache.size();
+  }
+
+  /**
+   * Total weight of the cached results, see {@link Snapshot#weight()}
+   */
+  public long weight() {
+    return cache == null ? 0L : cache.asMap().values().stream().mapToLong(snapshot -> ((Snapshot<?>) snapshot).weight()).sum();
+  }
+
+  public CacheStats stats() {
+    return cache == null ? new CacheStats(0L, 0L, 0L, 0L, 0L, 0L) : cache.stats();
+  }
+
+  private AtomicLong generation(String index) {
+    return generationsByIndex.computeIfAbsent(index, i -> new AtomicLong(0L));
+  }
+
+  /**
+   * Deeply immutable copy of a search result, which can be shared between threads
+   */
+  @FunctionalInterface
+  public interface Snapshot<T> {
+    /**
+     * A new instance of the result, which is not shared with other callers
+     */
+    T copy();
+
+    /**
+     * Number of documents, ids and facet values held by the result, used to bound the size of the cache. Results
+     * which do not hold documents weigh 1.
+     */
+    default int weight() {
+      return 1;
+    }
+  }
+
+  private static final class Key {
+    private final String index;
+    private final Set<String> projectUuids;
+    private final String request;
+
+    private Key(String index, Collection<String> projectUuids, String request) {
+      this.index = index;
+      this.projectUuids = ImmutableSet.copyOf(projectUuids);
+      this.request = request;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return index.equals(key.index) && request.equals(key.request);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * index.hashCode() + request.hashCode();
+    }
+  }
+}
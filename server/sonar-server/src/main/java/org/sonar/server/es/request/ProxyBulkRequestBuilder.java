@@ -23,6 +23,7 @@ import com.google.common.collect.LinkedHashMultiset;
 import com.google.common.collect.Multiset;
 import java.util.Set;
 import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.IndicesRequest;
 import org.elasticsearch.action.ListenableActionFuture;
 import org.elasticsearch.action.bulk.BulkAction;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
@@ -34,21 +35,31 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.common.unit.TimeValue;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsRequestLatencies;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class ProxyBulkRequestBuilder extends BulkRequestBuilder {
 
-  public ProxyBulkRequestBuilder(Client client) {
+  private static final String[] NO_NAMES = new String[0];
+
+  private final EsRequestLatencies latencies;
+
+  public ProxyBulkRequestBuilder(Client client, EsRequestLatencies latencies) {
     super(client, BulkAction.INSTANCE);
+    this.latencies = latencies;
   }
 
   @Override
   public BulkResponse get() {
     Profiler profiler = Profiler.createIfTrace(EsClient.LOGGER).start();
+    long start = System.nanoTime();
     try {
       return super.execute().actionGet();
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to execute %s", toString()), e);
     } finally {
+      latencies.record(EsRequestLatencies.BULK, indices(), NO_NAMES, NANOSECONDS.toMillis(System.nanoTime() - start));
       if (profiler.isTraceEnabled()) {
         profiler.stopTrace(toString());
       }
@@ -71,6 +82,13 @@ public class ProxyBulkRequestBuilder extends BulkRequestBuilder {
     throw unsupported();
   }
 
+  private String[] indices() {
+    return request.requests().stream()
+      .map(item -> ((IndicesRequest) item).indices()[0])
+      .distinct()
+      .toArray(String[]::new);
+  }
+
   private static UnsupportedOperationException unsupported() {
     throw new UnsupportedOperationException("See " + ProxyBulkRequestBuilder.class.getName());
   }
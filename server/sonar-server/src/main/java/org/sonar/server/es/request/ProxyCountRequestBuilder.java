@@ -28,21 +28,29 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.common.unit.TimeValue;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsRequestLatencies;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class ProxyCountRequestBuilder extends CountRequestBuilder {
 
-  public ProxyCountRequestBuilder(Client client) {
+  private final EsRequestLatencies latencies;
+
+  public ProxyCountRequestBuilder(Client client, EsRequestLatencies latencies) {
     super(client, CountAction.INSTANCE);
+    this.latencies = latencies;
   }
 
   @Override
   public CountResponse get() {
     Profiler profiler = Profiler.createIfTrace(EsClient.LOGGER).start();
+    long start = System.nanoTime();
     try {
       return super.execute().actionGet();
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to execute %s", toString()), e);
     } finally {
+      latencies.record(EsRequestLatencies.COUNT, request.indices(), request.types(), NANOSECONDS.toMillis(System.nanoTime() - start));
       if (profiler.isTraceEnabled()) {
         profiler.stopTrace(toString());
       }
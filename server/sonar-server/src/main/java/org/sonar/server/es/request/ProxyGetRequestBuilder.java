@@ -27,21 +27,31 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.common.unit.TimeValue;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsRequestLatencies;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class ProxyGetRequestBuilder extends GetRequestBuilder {
 
-  public ProxyGetRequestBuilder(Client client) {
+  private static final String[] NO_NAMES = new String[0];
+
+  private final EsRequestLatencies latencies;
+
+  public ProxyGetRequestBuilder(Client client, EsRequestLatencies latencies) {
     super(client, GetAction.INSTANCE);
+    this.latencies = latencies;
   }
 
   @Override
   public GetResponse get() {
     Profiler profiler = Profiler.createIfTrace(EsClient.LOGGER).start();
+    long start = System.nanoTime();
     try {
       return super.execute().actionGet();
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to execute %s", toString()), e);
     } finally {
+      latencies.record(EsRequestLatencies.GET, new String[] {request.index()}, request.type() == null ? NO_NAMES : new String[] {request.type()}, NANOSECONDS.toMillis(System.nanoTime() - start));
       if (profiler.isTraceEnabled()) {
         profiler.stopTrace(toString());
       }
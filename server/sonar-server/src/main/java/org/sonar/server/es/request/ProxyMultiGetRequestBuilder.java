@@ -28,21 +28,31 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.common.unit.TimeValue;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsRequestLatencies;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class ProxyMultiGetRequestBuilder extends MultiGetRequestBuilder {
 
-  public ProxyMultiGetRequestBuilder(Client client) {
+  private static final String[] NO_NAMES = new String[0];
+
+  private final EsRequestLatencies latencies;
+
+  public ProxyMultiGetRequestBuilder(Client client, EsRequestLatencies latencies) {
     super(client, MultiGetAction.INSTANCE);
+    this.latencies = latencies;
   }
 
   @Override
   public MultiGetResponse get() {
     Profiler profiler = Profiler.createIfTrace(EsClient.LOGGER).start();
+    long start = System.nanoTime();
     try {
       return super.execute().actionGet();
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to execute %s", toString()), e);
     } finally {
+      latencies.record(EsRequestLatencies.MULTI_GET, NO_NAMES, NO_NAMES, NANOSECONDS.toMillis(System.nanoTime() - start));
       if (profiler.isTraceEnabled()) {
         profiler.stopTrace(toString());
       }
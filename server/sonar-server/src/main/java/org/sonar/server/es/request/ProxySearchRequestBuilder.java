@@ -32,21 +32,29 @@ import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsRequestLatencies;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class ProxySearchRequestBuilder extends SearchRequestBuilder {
 
-  public ProxySearchRequestBuilder(Client client) {
+  private final EsRequestLatencies latencies;
+
+  public ProxySearchRequestBuilder(Client client, EsRequestLatencies latencies) {
     super(client, SearchAction.INSTANCE);
+    this.latencies = latencies;
   }
 
   @Override
   public SearchResponse get() {
     Profiler profiler = Profiler.createIfTrace(EsClient.LOGGER).start();
+    long start = System.nanoTime();
     try {
       return super.execute().actionGet();
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to execute %s", toString()), e);
     } finally {
+      latencies.record(EsRequestLatencies.SEARCH, request.indices(), request.types(), NANOSECONDS.toMillis(System.nanoTime() - start));
       if (profiler.isTraceEnabled()) {
         profiler.stopTrace(toString());
       }
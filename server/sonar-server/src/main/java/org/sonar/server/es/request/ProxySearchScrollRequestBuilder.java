@@ -27,21 +27,31 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.common.unit.TimeValue;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsRequestLatencies;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class ProxySearchScrollRequestBuilder extends SearchScrollRequestBuilder {
 
-  public ProxySearchScrollRequestBuilder(String scrollId, Client client) {
+  private static final String[] NO_NAMES = new String[0];
+
+  private final EsRequestLatencies latencies;
+
+  public ProxySearchScrollRequestBuilder(String scrollId, Client client, EsRequestLatencies latencies) {
     super(client, SearchScrollAction.INSTANCE, scrollId);
+    this.latencies = latencies;
   }
 
   @Override
   public SearchResponse get() {
     Profiler profiler = Profiler.createIfTrace(EsClient.LOGGER).start();
+    long start = System.nanoTime();
     try {
       return super.execute().actionGet();
     } catch (Exception e) {
       throw new IllegalStateException(String.format("Fail to execute %s", toString()), e);
     } finally {
+      latencies.record(EsRequestLatencies.SCROLL, NO_NAMES, NO_NAMES, NANOSECONDS.toMillis(System.nanoTime() - start));
       if (profiler.isTraceEnabled()) {
         profiler.stopTrace(toString());
       }
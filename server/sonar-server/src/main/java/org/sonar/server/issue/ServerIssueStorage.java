@@ -19,6 +19,8 @@
  */
 package org.sonar.server.issue;
 
+import java.util.ArrayList;
+import java.util.List;
 import org.sonar.api.rules.RuleFinder;
 import org.sonar.api.server.ServerSide;
 import org.sonar.core.issue.DefaultIssue;
@@ -58,9 +60,23 @@ public class ServerIssueStorage extends IssueStorage {
     getDbClient().issueDao().update(session, dto);
   }
 
+  /**
+   * Issues changed from web app are partially updated in index, without reading database again.
+   * New issues are still indexed from database.
+   */
   @Override
-  protected void doAfterSave() {
-    indexer.index();
+  protected void doAfterSave(Iterable<DefaultIssue> issues) {
+    List<DefaultIssue> changedIssues = new ArrayList<>();
+    for (DefaultIssue issue : issues) {
+      if (issue.isNew() || issue.projectUuid() == null) {
+        indexer.index();
+        return;
+      }
+      if (issue.isChanged()) {
+        changedIssues.add(issue);
+      }
+    }
+    indexer.update(changedIssues);
   }
 
   protected ComponentDto component(DbSession session, DefaultIssue issue) {
@@ -0,0 +1,134 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import javax.annotation.Nullable;
+
+/**
+ * Uuids of the projects that groups and users are allowed to browse, as resolved from the type
+ * {@link IssueIndexDefinition#TYPE_AUTHORIZATION}. Projects granted to groups are keyed by the set of groups, so that
+ * they are shared by all the users of the same groups, and projects granted directly to users are keyed by user id.
+ * Entries must be invalidated with {@link #clear()} each time authorizations are indexed. Loads started before a call
+ * to {@link #clear()} are not kept, as they may include revoked authorizations.
+ * <p>
+ * Authorizations can also be indexed by the Compute Engine, which runs in another JVM and can't clear this cache,
+ * so entries expire after {@link #EXPIRATION_IN_SECONDS} seconds.
+ * </p>
+ * <p>
+ * Size of the cache is bounded by the total number of uuids, which are shared between entries.
+ * An empty value means that there are too many projects to use a filter on project uuids.
+ * </p>
+ */
+public class AuthorizedProjectsCache {
+
+  static final long EXPIRATION_IN_SECONDS = 30L;
+  static final long MAX_UUIDS = 200_000L;
+
+  private final Cache<Key, Optional<Set<String>>> cache = CacheBuilder.newBuilder()
+    .maximumWeight(MAX_UUIDS)
+    .weigher((Key key, Optional<Set<String>> projectUuids) -> 1 + projectUuids.map(Set::size).orElse(0))
+    .expireAfterWrite(EXPIRATION_IN_SECONDS, TimeUnit.SECONDS)
+    .recordStats()
+    .build();
+  private final Interner<String> uuidInterner = Interners.newWeakInterner();
+  private final AtomicLong generation = new AtomicLong();
+
+  Optional<Set<String>> getByGroups(Set<String> groups, Supplier<Optional<Set<String>>> loader) {
+    return get(new Key(null, groups), loader);
+  }
+
+  Optional<Set<String>> getByUser(int userId, Supplier<Optional<Set<String>>> loader) {
+    return get(new Key(userId, ImmutableSet.of()), loader);
+  }
+
+  private Optional<Set<String>> get(Key key, Supplier<Optional<Set<String>>> loader) {
+    long loadGeneration = generation.get();
+    try {
+      Optional<Set<String>> result = cache.get(key, () -> loader.get().map(this::intern));
+      if (generation.get() != loadGeneration) {
+        // authorizations have been indexed while loading
+        cache.invalidate(key);
+      }
+      return result;
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IllegalStateException("Fail to load authorized projects", e.getCause());
+    }
+  }
+
+  private Set<String> intern(Set<String> projectUuids) {
+    ImmutableSet.Builder<String> interned = ImmutableSet.builder();
+    projectUuids.forEach(uuid -> interned.add(uuidInterner.intern(uuid)));
+    return interned.build();
+  }
+
+  public void clear() {
+    generation.incrementAndGet();
+    cache.invalidateAll();
+  }
+
+  long size() {
+    return cache.size();
+  }
+
+  long hitCount() {
+    return cache.stats().hitCount();
+  }
+
+  private static final class Key {
+    @Nullable
+    private final Integer userId;
+    private final Set<String> userGroups;
+
+    private Key(@Nullable Integer userId, Set<String> userGroups) {
+      this.userId = userId;
+      this.userGroups = ImmutableSet.copyOf(userGroups);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      Key key = (Key) o;
+      return Objects.equals(userId, key.userId) && userGroups.equals(key.userGroups);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(userId, userGroups);
+    }
+  }
+}
@@ -29,6 +29,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +50,7 @@ import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.aggregations.AggregationBuilder;
 import org.elasticsearch.search.aggregations.AggregationBuilders;
 import org.elasticsearch.search.aggregations.bucket.filter.FilterAggregationBuilder;
@@ -60,6 +62,7 @@ import org.elasticsearch.search.aggregations.bucket.terms.Terms.Order;
 import org.elasticsearch.search.aggregations.bucket.terms.TermsBuilder;
 import org.elasticsearch.search.aggregations.metrics.min.Min;
 import org.elasticsearch.search.aggregations.metrics.sum.SumBuilder;
+import org.elasticsearch.search.sort.SortOrder;
 import org.joda.time.Duration;
 import org.sonar.api.issue.Issue;
 import org.sonar.api.resources.Scopes;
@@ -82,6 +85,7 @@ import org.sonar.server.user.UserSession;
 import org.sonar.server.view.index.ViewIndexDefinition;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.emptySet;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.existsQuery;
 import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
@@ -159,15 +163,22 @@ public class IssueIndex extends BaseIndex {
     }
   };
 
+  /**
+   * Above this number of projects browsable by the user, authorization is checked with a has_parent query
+   */
+  static final int MAX_AUTHORIZED_PROJECTS_IN_FILTER = 10_000;
+
   private final Sorting sorting;
   private final System2 system;
   private final UserSession userSession;
+  private final AuthorizedProjectsCache authorizedProjectsCache;
 
-  public IssueIndex(EsClient client, System2 system, UserSession userSession) {
+  public IssueIndex(EsClient client, System2 system, UserSession userSession, AuthorizedProjectsCache authorizedProjectsCache) {
     super(client);
 
     this.system = system;
     this.userSession = userSession;
+    this.authorizedProjectsCache = authorizedProjectsCache;
     this.sorting = new Sorting();
     this.sorting.add(IssueQuery.SORT_BY_ASSIGNEE, IssueIndexDefinition.FIELD_ISSUE_ASSIGNEE);
     this.sorting.add(IssueQuery.SORT_BY_STATUS, IssueIndexDefinition.FIELD_ISSUE_STATUS);
@@ -234,7 +245,10 @@ public class IssueIndex extends BaseIndex {
     }
 
     configureStickyFacets(query, options, filters, esQuery, requestBuilder);
-    return new SearchResult<>(requestBuilder.get(), DOC_CONVERTER);
+    // when filtering on component only, the filter on projects is not applied
+    Collection<String> projectUuids = BooleanUtils.isTrue(query.onComponentOnly()) ? Collections.emptyList() : query.projectUuids();
+    return getClient().getSearchResultCache().get(IssueIndexDefinition.INDEX, projectUuids, requestBuilder.toString(),
+      () -> new SearchResult<>(requestBuilder.get(), DOC_CONVERTER), result -> result.snapshot(DOC_CONVERTER));
   }
 
   private void configureSorting(IssueQuery query, SearchRequestBuilder esRequest) {
@@ -332,14 +346,38 @@ public class IssueIndex extends BaseIndex {
     return viewsFilter;
   }
 
-  private static QueryBuilder createAuthorizationFilter(boolean checkAuthorization, @Nullable Integer userId, Set<String> userGroups) {
+  /**
+   * The projects that the groups and the user are allowed to browse are resolved once from the type
+   * {@link IssueIndexDefinition#TYPE_AUTHORIZATION}, then kept in {@link AuthorizedProjectsCache}, so that issues are
+   * filtered on their project uuid. The costly join with the parent documents (has_parent query) is used only when
+   * the user can browse more than {@link #MAX_AUTHORIZED_PROJECTS_IN_FILTER} projects.
+   */
+  private QueryBuilder createAuthorizationFilter(boolean checkAuthorization, @Nullable Integer userId, Set<String> userGroups) {
     if (checkAuthorization) {
+      BoolQueryBuilder groups = boolQuery();
+      for (String group : userGroups) {
+        groups.should(termQuery(IssueIndexDefinition.FIELD_AUTHORIZATION_GROUPS, group));
+      }
+      QueryBuilder user = userId == null ? null : termQuery(IssueIndexDefinition.FIELD_AUTHORIZATION_USERS, userId.longValue());
+      Optional<Set<String>> projectsOfGroups = userGroups.isEmpty() ? Optional.of(emptySet())
+        : authorizedProjectsCache.getByGroups(userGroups, () -> loadAuthorizedProjectUuids(groups));
+      Optional<Set<String>> projectsOfUser = user == null ? Optional.of(emptySet())
+        : authorizedProjectsCache.getByUser(userId, () -> loadAuthorizedProjectUuids(user));
+      if (projectsOfGroups.isPresent() && projectsOfUser.isPresent()) {
+        Set<String> projectUuids = Sets.union(projectsOfGroups.get(), projectsOfUser.get());
+        if (projectUuids.isEmpty()) {
+          return boolQuery().mustNot(matchAllQuery());
+        }
+        if (projectUuids.size() <= MAX_AUTHORIZED_PROJECTS_IN_FILTER) {
+          return termsQuery(IssueIndexDefinition.FIELD_ISSUE_PROJECT_UUID, projectUuids);
+        }
+      }
       BoolQueryBuilder groupsAndUser = boolQuery();
-      if (userId != null) {
-        groupsAndUser.should(termQuery(IssueIndexDefinition.FIELD_AUTHORIZATION_USERS, userId.longValue()));
+      if (!userGroups.isEmpty()) {
+        groupsAndUser.should(groups);
       }
-      for (String group : userGroups) {
-        groupsAndUser.should(termQuery(IssueIndexDefinition.FIELD_AUTHORIZATION_GROUPS, group));
+      if (user != null) {
+        groupsAndUser.should(user);
       }
       return QueryBuilders.hasParentQuery(IssueIndexDefinition.TYPE_AUTHORIZATION,
         QueryBuilders.boolQuery().must(matchAllQuery()).filter(groupsAndUser));
@@ -347,6 +385,41 @@ public class IssueIndex extends BaseIndex {
     return matchAllQuery();
   }
 
+  /**
+   * @return uuids of projects, or empty if there are more than {@link #MAX_AUTHORIZED_PROJECTS_IN_FILTER} projects
+   */
+  private Optional<Set<String>> loadAuthorizedProjectUuids(QueryBuilder groupsOrUser) {
+    SearchResponse response = getClient()
+      .prepareSearch(IssueIndexDefinition.INDEX)
+      .setTypes(IssueIndexDefinition.TYPE_AUTHORIZATION)
+      .setQuery(boolQuery().must(matchAllQuery()).filter(groupsOrUser))
+      .addSort("_doc", SortOrder.ASC)
+      .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES))
+      .setSize(1_000)
+      // id of authorization documents is the project uuid
+      .setFetchSource(false)
+      .get();
+    Set<String> projectUuids = new HashSet<>();
+    String scrollId = response.getScrollId();
+    try {
+      SearchHit[] hits = response.getHits().getHits();
+      while (hits.length > 0) {
+        for (SearchHit hit : hits) {
+          projectUuids.add(hit.getId());
+        }
+        if (projectUuids.size() > MAX_AUTHORIZED_PROJECTS_IN_FILTER) {
+          return Optional.empty();
+        }
+        response = getClient().prepareSearchScroll(scrollId).setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES)).get();
+        scrollId = response.getScrollId();
+        hits = response.getHits().getHits();
+      }
+    } finally {
+      getClient().nativeClient().prepareClearScroll().addScrollId(scrollId).get();
+    }
+    return Optional.of(projectUuids);
+  }
+
   private void addDatesFilter(Map<String, QueryBuilder> filters, IssueQuery query) {
     Date createdAfter = query.createdAfter();
     Date createdBefore = query.createdBefore();
@@ -717,6 +790,6 @@ public class IssueIndex extends BaseIndex {
       .setQuery(boolQuery().must(matchAllQuery()).filter(filter));
     SearchResponse response = requestBuilder.get();
 
-    return EsUtils.scroll(getClient(), response.getScrollId(), DOC_CONVERTER);
+    return EsUtils.scrollWithPrefetch(getClient(), response.getScrollId(), DOC_CONVERTER);
   }
 }
@@ -19,12 +19,32 @@
  */
 package org.sonar.server.issue.index;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.annotation.Nullable;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+import org.sonar.core.issue.DefaultIssue;
+import org.sonar.core.util.ProgressLogger;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbSession;
 import org.sonar.server.es.BaseIndexer;
@@ -32,6 +52,8 @@ import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Collections.singletonList;
 import static org.elasticsearch.index.query.QueryBuilders.boolQuery;
 import static org.elasticsearch.index.query.QueryBuilders.termQuery;
 import static org.sonar.server.issue.index.IssueIndexDefinition.FIELD_ISSUE_PROJECT_UUID;
@@ -42,27 +64,57 @@ import static org.sonar.server.issue.index.IssueIndexDefinition.TYPE_ISSUE;
 
 public class IssueIndexer extends BaseIndexer {
 
+  /**
+   * Number of threads reading table ISSUES when all issues are (re)indexed, for example at startup on an empty index.
+   */
+  public static final String THREADS_PROPERTY = "sonar.search.issues.indexingThreads";
+  static final int DEFAULT_THREADS = 2;
+
+  private static final Logger LOGGER = Loggers.get(IssueIndexer.class);
   private static final String DELETE_ERROR_MESSAGE = "Fail to delete some issues of project [%s]";
   private static final int MAX_BATCH_SIZE = 1000;
 
   private final DbClient dbClient;
+  private final int threads;
 
   public IssueIndexer(DbClient dbClient, EsClient esClient) {
+    this(dbClient, esClient, DEFAULT_THREADS);
+  }
+
+  public IssueIndexer(DbClient dbClient, EsClient esClient, Settings settings) {
+    this(dbClient, esClient, settings.hasKey(THREADS_PROPERTY) ? settings.getInt(THREADS_PROPERTY) : DEFAULT_THREADS);
+  }
+
+  @VisibleForTesting
+  IssueIndexer(DbClient dbClient, EsClient esClient, int threads) {
     super(esClient, 300, INDEX, TYPE_ISSUE, FIELD_ISSUE_TECHNICAL_UPDATED_AT);
+    checkArgument(threads > 0, "Property %s must be a positive integer. Got: %s", THREADS_PROPERTY, threads);
     this.dbClient = dbClient;
+    this.threads = threads;
   }
 
   @Override
   protected long doIndex(long lastUpdatedAt) {
+    if (lastUpdatedAt <= 0L) {
+      // index is empty
+      return doIndexAll(createBulkIndexer(true));
+    }
     return doIndex(createBulkIndexer(false), lastUpdatedAt, null);
   }
 
   public void indexAll() {
-    doIndex(createBulkIndexer(true), 0L, null);
+    doIndexAll(createBulkIndexer(true));
   }
 
   public void index(String projectUuid) {
-    super.index(lastUpdatedAt -> doIndex(createBulkIndexer(false), lastUpdatedAt, projectUuid));
+    super.index(projectUuid, lastUpdatedAt -> doIndex(createBulkIndexer(false), lastUpdatedAt, projectUuid));
+  }
+
+  /**
+   * Same as {@link #index(String)} but does not wait for the end of indexing
+   */
+  public void indexAsync(String projectUuid) {
+    super.indexAsync(projectUuid, lastUpdatedAt -> doIndex(createBulkIndexer(false), lastUpdatedAt, projectUuid));
   }
 
   /**
@@ -72,6 +124,25 @@ public class IssueIndexer extends BaseIndexer {
     doIndex(createBulkIndexer(false), issues);
   }
 
+  /**
+   * Sends partial updates of the fields which can be changed from web app (assignee, status, tags, ...)
+   * of the given issues. Contrary to {@link #index(String)}, database is not requested and only these issues
+   * are sent to Elasticsearch.
+   * Technical update date is not changed, so these issues are still entirely re-indexed by the next call to
+   * {@link #index()} or {@link #index(String)}.
+   */
+  public void update(Collection<DefaultIssue> issues) {
+    if (issues.isEmpty()) {
+      return;
+    }
+    BulkIndexer bulk = createBulkIndexer(false);
+    bulk.start();
+    for (DefaultIssue issue : issues) {
+      bulk.add(newUpdateRequest(issue));
+    }
+    bulk.stop();
+  }
+
   private long doIndex(BulkIndexer bulk, long lastUpdatedAt, @Nullable String projectUuid) {
     try (DbSession dbSession = dbClient.openSession(false)) {
       IssueResultSetIterator rowIt = IssueResultSetIterator.create(dbClient, dbSession, lastUpdatedAt, projectUuid);
@@ -83,6 +154,73 @@ public class IssueIndexer extends BaseIndexer {
 
   private long doIndex(BulkIndexer bulk, Iterator<IssueDoc> issues) {
     bulk.start();
+    long maxDate = addIssues(bulk, issues);
+    bulk.stop();
+    return maxDate;
+  }
+
+  /**
+   * Indexes all issues, project by project. The projects are shared by {@link #threads} threads, each of them reading
+   * the issues of a project with its own DB connection and pushing them to the same {@link BulkIndexer}.
+   */
+  private long doIndexAll(BulkIndexer bulk) {
+    long startedAt = System.currentTimeMillis();
+    Queue<String> projectUuids;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      projectUuids = new ConcurrentLinkedQueue<>(IssueResultSetIterator.selectProjectUuids(dbClient, dbSession));
+    }
+    int projects = projectUuids.size();
+    AtomicLong indexedProjects = new AtomicLong(0L);
+    AtomicLong indexedIssues = new AtomicLong(0L);
+    ProgressLogger progress = new ProgressLogger(String.format("Progress[IssueIndexer[%d projects]]", projects), indexedProjects, LOGGER)
+      .setPluralLabel("projects");
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, projects)),
+      new ThreadFactoryBuilder().setNameFormat("IssueIndexer-%d").setDaemon(true).build());
+    bulk.start();
+    progress.start();
+    try {
+      List<Future<Long>> futures = new ArrayList<>();
+      for (int i = 0; i < threads && i < projects; i++) {
+        futures.add(executor.submit(() -> indexProjects(bulk, projectUuids, indexedProjects, indexedIssues)));
+      }
+      long maxDate = 0L;
+      for (Future<Long> future : futures) {
+        maxDate = Math.max(maxDate, getUninterruptibly(future));
+      }
+      return maxDate;
+    } finally {
+      // on failure, the other threads stop after their current project. They must be terminated before
+      // stopping the bulk indexer, as they are still adding requests to it.
+      projectUuids.clear();
+      executor.shutdown();
+      awaitTermination(executor);
+      progress.stop();
+      bulk.stop();
+      long duration = System.currentTimeMillis() - startedAt;
+      LOGGER.info("{} issues of {} projects indexed in {} ms ({} issues/s)", indexedIssues.get(), indexedProjects.get(), duration,
+        duration == 0L ? indexedIssues.get() : (indexedIssues.get() * 1000L / duration));
+    }
+  }
+
+  private long indexProjects(BulkIndexer bulk, Queue<String> projectUuids, AtomicLong indexedProjects, AtomicLong indexedIssues) {
+    long maxDate = 0L;
+    try (DbSession dbSession = dbClient.openSession(false)) {
+      String projectUuid = projectUuids.poll();
+      while (projectUuid != null && !Thread.currentThread().isInterrupted()) {
+        try (IssueResultSetIterator rowIt = IssueResultSetIterator.create(dbClient, dbSession, 0L, projectUuid)) {
+          CountingIterator issues = new CountingIterator(rowIt);
+          maxDate = Math.max(maxDate, addIssues(bulk, issues));
+          indexedIssues.addAndGet(issues.count);
+        }
+        indexedProjects.incrementAndGet();
+        projectUuid = projectUuids.poll();
+      }
+    }
+    return maxDate;
+  }
+
+  private static long addIssues(BulkIndexer bulk, Iterator<IssueDoc> issues) {
     long maxDate = 0L;
     while (issues.hasNext()) {
       IssueDoc issue = issues.next();
@@ -91,10 +229,35 @@ public class IssueIndexer extends BaseIndexer {
       // it's more efficient to sort programmatically than in SQL on some databases (MySQL for instance)
       maxDate = Math.max(maxDate, issue.getTechnicalUpdateDate().getTime());
     }
-    bulk.stop();
     return maxDate;
   }
 
+  private static void awaitTermination(ExecutorService executor) {
+    boolean interrupted = false;
+    while (!executor.isTerminated()) {
+      try {
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        interrupted = true;
+      }
+    }
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static long getUninterruptibly(Future<Long> future) {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      throw new IllegalStateException("Fail to index issues", cause);
+    }
+  }
+
   public void deleteProject(String uuid) {
     BulkIndexer bulk = new BulkIndexer(esClient, INDEX);
     bulk.start();
@@ -126,6 +289,7 @@ public class IssueIndexer extends BaseIndexer {
     }
     EsUtils.executeBulkRequest(builder, DELETE_ERROR_MESSAGE, projectUuid);
     esClient.prepareRefresh(INDEX).get();
+    esClient.getSearchResultCache().invalidate(INDEX, singletonList(projectUuid));
   }
 
   private BulkIndexer createBulkIndexer(boolean large) {
@@ -134,6 +298,42 @@ public class IssueIndexer extends BaseIndexer {
     return bulk;
   }
 
+  private static class CountingIterator implements Iterator<IssueDoc> {
+    private final Iterator<IssueDoc> delegate;
+    private long count = 0L;
+
+    CountingIterator(Iterator<IssueDoc> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return delegate.hasNext();
+    }
+
+    @Override
+    public IssueDoc next() {
+      count++;
+      return delegate.next();
+    }
+  }
+
+  private static UpdateRequest newUpdateRequest(DefaultIssue issue) {
+    IssueDoc doc = new IssueDoc(new HashMap<>())
+      .setAssignee(issue.assignee())
+      .setStatus(issue.status())
+      .setResolution(issue.resolution())
+      .setSeverity(issue.severity())
+      .setManualSeverity(issue.manualSeverity())
+      .setTags(issue.tags())
+      .setType(issue.type())
+      .setFuncUpdateDate(issue.updateDate())
+      .setFuncCloseDate(issue.closeDate());
+    return new UpdateRequest(INDEX, TYPE_ISSUE, issue.key())
+      .routing(issue.projectUuid())
+      .doc(doc.getFields());
+  }
+
   private static IndexRequest newIndexRequest(IssueDoc issue) {
     String projectUuid = issue.projectUuid();
 
@@ -27,7 +27,9 @@ import com.google.common.collect.Maps;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.StringUtils;
@@ -92,6 +94,8 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
 
   private static final String PROJECT_FILTER = " AND root.uuid=?";
 
+  private static final String SQL_PROJECT_UUIDS = "select distinct i.project_uuid from issues i";
+
   private static final Splitter TAGS_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
 
   private static final Splitter MODULE_PATH_SPLITTER = Splitter.on('.').trimResults().omitEmptyStrings();
@@ -119,6 +123,22 @@ class IssueResultSetIterator extends ResultSetIterator<IssueDoc> {
     }
   }
 
+  /**
+   * Uuids of the projects which have at least one issue. Used to partition the indexing of all issues.
+   */
+  static List<String> selectProjectUuids(DbClient dbClient, DbSession session) {
+    try (PreparedStatement stmt = dbClient.getMyBatis().newScrollingSelectStatement(session, SQL_PROJECT_UUIDS);
+      ResultSet rs = stmt.executeQuery()) {
+      List<String> uuids = new ArrayList<>();
+      while (rs.next()) {
+        uuids.add(rs.getString(1));
+      }
+      return uuids;
+    } catch (SQLException e) {
+      throw new IllegalStateException("Fail to select uuids of projects with issues", e);
+    }
+  }
+
   @CheckForNull
   private static String extractDirPath(@Nullable String filePath, String scope) {
     if (filePath != null) {
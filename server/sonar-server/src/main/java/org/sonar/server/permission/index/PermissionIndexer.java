@@ -42,6 +42,7 @@ import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsUtils;
+import org.sonar.server.issue.index.AuthorizedProjectsCache;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 
 import static com.google.common.base.Preconditions.checkArgument;
@@ -64,11 +65,13 @@ public class PermissionIndexer implements Startable {
   private final ThreadPoolExecutor executor;
   private final DbClient dbClient;
   private final EsClient esClient;
+  private final AuthorizedProjectsCache authorizedProjectsCache;
 
-  public PermissionIndexer(DbClient dbClient, EsClient esClient) {
+  public PermissionIndexer(DbClient dbClient, EsClient esClient, AuthorizedProjectsCache authorizedProjectsCache) {
     this.executor = new ThreadPoolExecutor(0, 1, 0L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
     this.dbClient = dbClient;
     this.esClient = esClient;
+    this.authorizedProjectsCache = authorizedProjectsCache;
   }
 
   /**
@@ -83,6 +86,7 @@ public class PermissionIndexer implements Startable {
         try (DbSession dbSession = dbClient.openSession(false)) {
           index(new PermissionIndexerDao().selectAll(dbClient, dbSession));
         }
+        authorizedProjectsCache.clear();
       }
     });
     try {
@@ -126,6 +130,8 @@ public class PermissionIndexer implements Startable {
     EsUtils.executeBulkRequest(bulkRequest, BULK_ERROR_MESSAGE);
     esClient.prepareRefresh(IssueIndexDefinition.INDEX).get();
     esClient.prepareRefresh(ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES).get();
+    authorizedProjectsCache.clear();
+    esClient.getSearchResultCache().invalidate(IssueIndexDefinition.INDEX);
   }
 
   public void index(DbSession dbSession, String projectUuid) {
@@ -140,6 +146,8 @@ public class PermissionIndexer implements Startable {
   void index(PermissionIndexerDao.Dto dto) {
     index(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_AUTHORIZATION, newIssuesAuthorizationIndexRequest(dto));
     index(ProjectMeasuresIndexDefinition.INDEX_PROJECT_MEASURES, ProjectMeasuresIndexDefinition.TYPE_AUTHORIZATION, newProjectMeasuresAuthorizationIndexRequest(dto));
+    authorizedProjectsCache.clear();
+    esClient.getSearchResultCache().invalidate(IssueIndexDefinition.INDEX);
   }
 
   private void index(String index, String type, IndexRequest indexRequest) {
@@ -19,7 +19,9 @@
  */
 package org.sonar.server.platform.monitoring;
 
+import com.google.common.cache.CacheStats;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.admin.cluster.node.stats.NodeStats;
@@ -28,19 +30,30 @@ import org.elasticsearch.action.admin.cluster.stats.ClusterStatsResponse;
 import org.elasticsearch.action.admin.indices.stats.IndexStats;
 import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
 import org.elasticsearch.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.cluster.metadata.AliasMetaData;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.breaker.CircuitBreaker;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.sonar.api.utils.log.Loggers;
+import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.es.EsRequestLatencies;
+import org.sonar.server.es.SearchResultCache;
 
 import static org.apache.commons.io.FileUtils.byteCountToDisplaySize;
 
 public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
 
   private final EsClient esClient;
+  private final BaseIndexer[] indexers;
 
-  public EsMonitor(EsClient esClient) {
+  public EsMonitor(EsClient esClient, BaseIndexer[] indexers) {
     this.esClient = esClient;
+    this.indexers = indexers;
+  }
+
+  public EsMonitor(EsClient esClient) {
+    this(esClient, new BaseIndexer[0]);
   }
 
   @Override
@@ -66,6 +79,61 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
     return clusterStats().getNodesStats().getCounts().getTotal();
   }
 
+  @Override
+  public long getBulkIndexedDocuments() {
+    return esClient.getBulkIndexingStats().getIndexedDocuments();
+  }
+
+  @Override
+  public long getBulkIndexedBytes() {
+    return esClient.getBulkIndexingStats().getIndexedBytes();
+  }
+
+  @Override
+  public long getBulkRejectedDocuments() {
+    return esClient.getBulkIndexingStats().getRejectedDocuments();
+  }
+
+  @Override
+  public long getBulkFailedDocuments() {
+    return esClient.getBulkIndexingStats().getFailedDocuments();
+  }
+
+  @Override
+  public long getBulkDocumentsPerSecond() {
+    return esClient.getBulkIndexingStats().getLastDocumentsPerSecond();
+  }
+
+  @Override
+  public long getBulkBytesPerSecond() {
+    return esClient.getBulkIndexingStats().getLastBytesPerSecond();
+  }
+
+  @Override
+  public long getSearchResultCacheHits() {
+    return esClient.getSearchResultCache().stats().hitCount();
+  }
+
+  @Override
+  public long getSearchResultCacheMisses() {
+    return esClient.getSearchResultCache().stats().missCount();
+  }
+
+  @Override
+  public long getSearchRequests() {
+    return esClient.getRequestLatencies().getByKind(EsRequestLatencies.SEARCH).getCount();
+  }
+
+  @Override
+  public long getSearchLatencyMeanMs() {
+    return esClient.getRequestLatencies().getByKind(EsRequestLatencies.SEARCH).getMeanMs();
+  }
+
+  @Override
+  public long getSearchLatencyP99Ms() {
+    return esClient.getRequestLatencies().getByKind(EsRequestLatencies.SEARCH).getPercentileMs(99.0);
+  }
+
   @Override
   public Map<String, Object> attributes() {
     try {
@@ -74,6 +142,11 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
       attributes.put("Indices", indexAttributes());
       attributes.put("Number of Nodes", getNumberOfNodes());
       attributes.put("Nodes", nodeAttributes());
+      attributes.put("Bulk Indexing", bulkIndexingAttributes());
+      attributes.put("Project Indexing", projectIndexingAttributes());
+      attributes.put("Search Result Cache", searchResultCacheAttributes());
+      attributes.put("Request Latencies", latencyAttributes(esClient.getRequestLatencies().getByRequest()));
+      attributes.put("Web Service Latencies", latencyAttributes(esClient.getRequestLatencies().getByWsAction()));
       return attributes;
     } catch (Exception es) {
       Loggers.get(EsMonitor.class).warn("Failed to retrieve ES attributes. There will be only a single \"state\" attribute.", es);
@@ -86,10 +159,13 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
   private LinkedHashMap<String, LinkedHashMap<String, Object>> indexAttributes() {
     LinkedHashMap<String, LinkedHashMap<String, Object>> indices = new LinkedHashMap<>();
     IndicesStatsResponse indicesStats = esClient.prepareStats().all().get();
+    ImmutableOpenMap<String, List<AliasMetaData>> aliases = esClient.nativeClient().admin().indices().prepareGetAliases().get().getAliases();
 
     for (Map.Entry<String, IndexStats> indexStats : indicesStats.getIndices().entrySet()) {
       LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
-      indices.put(indexStats.getKey(), attributes);
+      // copied indices are known by their alias, see IndexCreator
+      List<AliasMetaData> indexAliases = aliases.get(indexStats.getKey());
+      indices.put(indexAliases == null || indexAliases.isEmpty() ? indexStats.getKey() : indexAliases.get(0).alias(), attributes);
       attributes.put("Docs", indexStats.getValue().getPrimaries().getDocs().getCount());
       attributes.put("Shards", indexStats.getValue().getShards().length);
       attributes.put("Store Size", byteCountToDisplaySize(indexStats.getValue().getPrimaries().getStore().getSizeInBytes()));
@@ -131,6 +207,53 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
     return nodes;
   }
 
+  private LinkedHashMap<String, Object> bulkIndexingAttributes() {
+    LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Indexed Documents", getBulkIndexedDocuments());
+    attributes.put("Indexed Size", byteCountToDisplaySize(getBulkIndexedBytes()));
+    attributes.put("Rejected Documents", getBulkRejectedDocuments());
+    attributes.put("Failed Documents", getBulkFailedDocuments());
+    attributes.put("Last Documents per Second", getBulkDocumentsPerSecond());
+    attributes.put("Last Bytes per Second", byteCountToDisplaySize(getBulkBytesPerSecond()));
+    return attributes;
+  }
+
+  /**
+   * map of {indexer name -> indexing of projects}
+   */
+  private LinkedHashMap<String, LinkedHashMap<String, Object>> projectIndexingAttributes() {
+    LinkedHashMap<String, LinkedHashMap<String, Object>> attributesByIndexer = new LinkedHashMap<>();
+    for (BaseIndexer indexer : indexers) {
+      LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+      attributes.put("Requests", indexer.getProjectRequests());
+      attributes.put("Coalesced Requests", indexer.getCoalescedProjectRequests());
+      attributes.put("Pending Projects", indexer.getPendingProjects());
+      attributes.put("Max Lag (ms)", indexer.getMaxProjectLagMs());
+      attributesByIndexer.put(indexer.getClass().getSimpleName(), attributes);
+    }
+    return attributesByIndexer;
+  }
+
+  private LinkedHashMap<String, Object> searchResultCacheAttributes() {
+    SearchResultCache cache = esClient.getSearchResultCache();
+    CacheStats stats = cache.stats();
+    LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+    attributes.put("Enabled", cache.isEnabled());
+    attributes.put("Size", cache.size());
+    attributes.put("Cached Documents", cache.weight());
+    attributes.put("Evictions", stats.evictionCount());
+    attributes.put("Hits", stats.hitCount());
+    attributes.put("Misses", stats.missCount());
+    attributes.put("Hit Rate", formatPercent(stats.hitRate()));
+    return attributes;
+  }
+
+  private static LinkedHashMap<String, Object> latencyAttributes(Map<String, EsRequestLatencies.Histogram> histograms) {
+    LinkedHashMap<String, Object> attributes = new LinkedHashMap<>();
+    histograms.forEach((key, histogram) -> attributes.put(key, histogram.toString()));
+    return attributes;
+  }
+
   private ClusterStatsResponse clusterStats() {
     return esClient.prepareClusterStats().get();
   }
@@ -138,4 +261,8 @@ public class EsMonitor extends BaseMonitorMBean implements EsMonitorMBean {
   private static String formatPercent(long amount) {
     return String.format("%.1f%%", 100 * amount * 1.0D / 100L);
   }
+
+  private static String formatPercent(double ratio) {
+    return String.format("%.1f%%", 100 * ratio);
+  }
 }
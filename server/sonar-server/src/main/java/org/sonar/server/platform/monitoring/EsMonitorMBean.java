@@ -26,4 +26,18 @@ package org.sonar.server.platform.monitoring;
 public interface EsMonitorMBean {
   String getState();
   int getNumberOfNodes();
+
+  long getBulkIndexedDocuments();
+  long getBulkIndexedBytes();
+  long getBulkRejectedDocuments();
+  long getBulkFailedDocuments();
+  long getBulkDocumentsPerSecond();
+  long getBulkBytesPerSecond();
+
+  long getSearchResultCacheHits();
+  long getSearchResultCacheMisses();
+
+  long getSearchRequests();
+  long getSearchLatencyMeanMs();
+  long getSearchLatencyP99Ms();
 }
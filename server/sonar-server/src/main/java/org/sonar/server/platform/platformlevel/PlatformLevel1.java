@@ -39,6 +39,7 @@ import org.sonar.db.semaphore.SemaphoresImpl;
 import org.sonar.db.version.DatabaseVersion;
 import org.sonar.server.app.ProcessCommandWrapperImpl;
 import org.sonar.server.app.RestartFlagHolderImpl;
+import org.sonar.server.issue.index.AuthorizedProjectsCache;
 import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.platform.DatabaseServerCompatibility;
 import org.sonar.server.platform.LogServerVersion;
@@ -117,6 +118,7 @@ public class PlatformLevel1 extends PlatformLevel {
 
       // issues
       IssueIndex.class,
+      AuthorizedProjectsCache.class,
 
       // Classes kept for backward compatibility of plugins/libs (like sonar-license) that are directly calling classes from the core
       org.sonar.core.properties.PropertiesDao.class);
@@ -223,6 +223,7 @@ import org.sonar.server.setting.ws.SettingsWsModule;
 import org.sonar.server.source.HtmlSourceDecorator;
 import org.sonar.server.source.SourceService;
 import org.sonar.server.source.ws.HashAction;
+import org.sonar.server.source.ws.HashesAction;
 import org.sonar.server.source.ws.IndexAction;
 import org.sonar.server.source.ws.LinesAction;
 import org.sonar.server.source.ws.RawAction;
@@ -509,6 +510,7 @@ public class PlatformLevel4 extends PlatformLevel {
       org.sonar.server.source.ws.ShowAction.class,
       LinesAction.class,
       HashAction.class,
+      HashesAction.class,
       RawAction.class,
       IndexAction.class,
       ScmAction.class,
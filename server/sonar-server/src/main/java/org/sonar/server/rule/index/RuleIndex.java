@@ -27,6 +27,7 @@ import com.google.common.collect.ImmutableList;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -135,7 +136,8 @@ public class RuleIndex extends BaseIndex {
     }
 
     esSearch.setQuery(boolQuery().must(qb).filter(fb));
-    return new SearchIdResult<>(esSearch.get(), ToRuleKey.INSTANCE);
+    return getClient().getSearchResultCache().get(INDEX, Collections.emptyList(), esSearch.toString(),
+      () -> new SearchIdResult<>(esSearch.get(), ToRuleKey.INSTANCE), SearchIdResult::snapshot);
   }
 
   /**
@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source.ws;
+
+import com.google.common.base.Splitter;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.sonar.api.server.ws.Request;
+import org.sonar.api.server.ws.Response;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.web.UserRole;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.user.UserSession;
+import org.sonarqube.ws.WsSources.HashesResponse;
+
+import static org.sonar.server.ws.KeyExamples.KEY_FILE_EXAMPLE_001;
+import static org.sonar.server.ws.KeyExamples.KEY_FILE_EXAMPLE_002;
+import static org.sonar.server.ws.WsUtils.checkRequest;
+import static org.sonar.server.ws.WsUtils.writeProtobuf;
+
+/**
+ * Line hashes of many files in a single call, so that the scanner does not need to call api/sources/hash for each changed file.
+ */
+public class HashesAction implements SourcesWsAction {
+
+  static final String PARAM_KEYS = "keys";
+  static final int MAX_KEYS = 100;
+  private static final Splitter END_OF_LINE_SPLITTER = Splitter.on('\n');
+
+  private final DbClient dbClient;
+  private final UserSession userSession;
+
+  public HashesAction(DbClient dbClient, UserSession userSession) {
+    this.dbClient = dbClient;
+    this.userSession = userSession;
+  }
+
+  @Override
+  public void define(WebService.NewController controller) {
+    WebService.NewAction action = controller.createAction("hashes")
+      .setDescription(String.format("Show line hashes of several files. At most %d files can be requested. " +
+        "Files that do not exist or have no source are not returned. Require See Source Code permission on files' projects.", MAX_KEYS))
+      .setSince("6.2")
+      .setInternal(true)
+      .setResponseExample(getClass().getResource("example-hashes.json"))
+      .setHandler(this);
+
+    action
+      .createParam(PARAM_KEYS)
+      .setRequired(true)
+      .setDescription("Comma-separated list of file keys")
+      .setExampleValue(KEY_FILE_EXAMPLE_001 + "," + KEY_FILE_EXAMPLE_002);
+  }
+
+  @Override
+  public void handle(Request request, Response response) throws Exception {
+    List<String> keys = request.mandatoryParamAsStrings(PARAM_KEYS);
+    checkRequest(keys.size() <= MAX_KEYS, "'%s' can contain only %d values, got %d", PARAM_KEYS, MAX_KEYS, keys.size());
+
+    HashesResponse.Builder responseBuilder = HashesResponse.newBuilder();
+    try (DbSession session = dbClient.openSession(false)) {
+      List<ComponentDto> components = dbClient.componentDao().selectByKeys(session, keys);
+      components.stream().map(ComponentDto::projectUuid).distinct()
+        .forEach(projectUuid -> userSession.checkComponentUuidPermission(UserRole.USER, projectUuid));
+
+      Map<String, String> keysByUuid = components.stream().collect(Collectors.toMap(ComponentDto::uuid, ComponentDto::key));
+      HashesResponse.File.Builder fileBuilder = HashesResponse.File.newBuilder();
+      for (FileSourceDto fileSource : dbClient.fileSourceDao().selectLineHashesByFileUuids(session, keysByUuid.keySet())) {
+        fileBuilder.clear().setKey(keysByUuid.get(fileSource.getFileUuid()));
+        String lineHashes = fileSource.getLineHashes();
+        if (lineHashes != null) {
+          fileBuilder.addAllLineHashes(END_OF_LINE_SPLITTER.split(lineHashes));
+        }
+        responseBuilder.addFiles(fileBuilder);
+      }
+    }
+    writeProtobuf(responseBuilder.build(), request, response);
+  }
+}
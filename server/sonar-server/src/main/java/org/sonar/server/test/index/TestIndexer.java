@@ -49,8 +49,21 @@ public class TestIndexer extends BaseIndexer {
   }
 
   public void index(final String projectUuid) {
-    deleteByProject(projectUuid);
-    super.index(lastUpdatedAt -> doIndex(lastUpdatedAt, projectUuid));
+    super.index(projectUuid, projectTask(projectUuid));
+  }
+
+  /**
+   * Same as {@link #index(String)} but does not wait for the end of indexing
+   */
+  public void indexAsync(String projectUuid) {
+    super.indexAsync(projectUuid, projectTask(projectUuid));
+  }
+
+  private IndexerTask projectTask(String projectUuid) {
+    return lastUpdatedAt -> {
+      deleteByProject(projectUuid);
+      return doIndex(lastUpdatedAt, projectUuid);
+    };
   }
 
   public long index(Iterator<FileSourcesUpdaterHelper.Row> dbRows) {
@@ -29,6 +29,7 @@ import org.sonar.db.component.UuidWithProjectUuidDto;
 import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.BulkIndexer;
 import org.sonar.server.es.EsClient;
+import org.sonar.server.issue.index.IssueIndexDefinition;
 
 import static com.google.common.collect.Maps.newHashMap;
 
@@ -96,6 +97,8 @@ public class ViewIndexer extends BaseIndexer {
     bulk.start();
     doIndex(bulk, viewDoc, true);
     bulk.stop();
+    // issues can be searched by view
+    esClient.getSearchResultCache().invalidate(IssueIndexDefinition.INDEX);
   }
 
   private void index(DbSession dbSession, Map<String, String> viewAndProjectViewUuidMap, boolean needClearCache) {
@@ -109,6 +112,7 @@ public class ViewIndexer extends BaseIndexer {
         .setProjects(projects), needClearCache);
     }
     bulk.stop();
+    esClient.getSearchResultCache().invalidate(IssueIndexDefinition.INDEX);
   }
 
   private void doIndex(BulkIndexer bulk, ViewDoc viewDoc, boolean needClearCache) {
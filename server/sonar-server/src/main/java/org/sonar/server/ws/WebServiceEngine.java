@@ -37,6 +37,7 @@ import org.sonar.api.server.ws.internal.ValidatingRequest;
 import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.text.JsonWriter;
+import org.sonar.server.es.EsRequestLatencies;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.Errors;
 import org.sonar.server.exceptions.Message;
@@ -106,6 +107,7 @@ public class WebServiceEngine implements LocalConnector, Startable {
       }
       checkActionExtension(actionExtractor.getExtension());
       verifyRequest(action, request);
+      EsRequestLatencies.setCurrentWsAction(action.path());
       action.handler().handle(request, response);
     } catch (IllegalArgumentException e) {
       sendErrors(response, 400, new Errors().add(Message.of(e.getMessage())));
@@ -122,6 +124,8 @@ public class WebServiceEngine implements LocalConnector, Startable {
       }
       LOGGER.error("Fail to process request " + request, e);
       sendErrors(response, 500, new Errors().add(Message.of(e.getMessage())));
+    } finally {
+      EsRequestLatencies.setCurrentWsAction(null);
     }
   }
 
@@ -39,6 +39,7 @@ import org.sonar.server.component.ComponentFinder;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.issue.IssueTesting;
+import org.sonar.server.issue.index.AuthorizedProjectsCache;
 import org.sonar.server.issue.index.IssueDoc;
 import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.issue.index.IssueIndexDefinition;
@@ -86,7 +87,7 @@ public class IssuesActionTest {
 
   @Before
   public void before() {
-    issueIndex = new IssueIndex(es.client(), System2.INSTANCE, userSessionRule);
+    issueIndex = new IssueIndex(es.client(), System2.INSTANCE, userSessionRule, new AuthorizedProjectsCache());
     issueIndexer = new IssueIndexer(null, es.client());
     issuesAction = new IssuesAction(db.getDbClient(), issueIndex, userSessionRule, new ComponentFinder(db.getDbClient()));
 
@@ -29,6 +29,7 @@ import java.util.stream.IntStream;
 import javax.annotation.Nullable;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.config.MapSettings;
 import org.sonar.server.component.es.ProjectMeasuresQuery.MetricCriterion;
 import org.sonar.server.component.es.ProjectMeasuresQuery.Operator;
@@ -64,6 +65,9 @@ public class ProjectMeasuresIndexTest {
   @Rule
   public EsTester es = new EsTester(new ProjectMeasuresIndexDefinition(new MapSettings()));
 
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   @Rule
   public UserSessionRule userSession = UserSessionRule.standalone();
 
@@ -849,6 +853,91 @@ public class ProjectMeasuresIndexTest {
       entry(OK.name(), 2L));
   }
 
+  @Test
+  public void aggregate_measure_over_all_projects() {
+    addDocs(
+      newDoc("P1", "K1", "N1").setMeasures(newArrayList(newMeasure(NCLOC, 1_000d))),
+      newDoc("P2", "K2", "N2").setMeasures(newArrayList(newMeasure(NCLOC, 5_000d))),
+      newDoc("P3", "K3", "N3").setMeasures(newArrayList(newMeasure(NCLOC, 12_000d))),
+      newDoc("P4", "K4", "N4").setMeasures(newArrayList(newMeasure(COVERAGE, 80d))));
+
+    Map<String, ProjectMeasuresStatistics> result = underTest.aggregate(new ProjectMeasuresQuery(), NCLOC, null, null);
+
+    assertThat(result).containsOnlyKeys(ProjectMeasuresIndex.ALL_PROJECTS);
+    ProjectMeasuresStatistics statistics = result.get(ProjectMeasuresIndex.ALL_PROJECTS);
+    assertThat(statistics.getCount()).isEqualTo(3L);
+    assertThat(statistics.getSum()).isEqualTo(18_000d);
+    assertThat(statistics.getMin()).isEqualTo(1_000d);
+    assertThat(statistics.getMax()).isEqualTo(12_000d);
+    assertThat(statistics.getAvg()).isEqualTo(6_000d);
+    assertThat(statistics.getPercentiles()).containsOnlyKeys(50d, 90d, 99d);
+    assertThat(statistics.getHistogram()).isEmpty();
+  }
+
+  @Test
+  public void aggregate_measure_with_histogram() {
+    addDocs(
+      newDoc("P1", "K1", "N1").setMeasures(newArrayList(newMeasure(NCLOC, 1_000d))),
+      newDoc("P2", "K2", "N2").setMeasures(newArrayList(newMeasure(NCLOC, 5_000d))),
+      newDoc("P3", "K3", "N3").setMeasures(newArrayList(newMeasure(NCLOC, 12_000d))));
+
+    Map<Double, Long> histogram = underTest.aggregate(new ProjectMeasuresQuery(), NCLOC, null, 10_000L).get(ProjectMeasuresIndex.ALL_PROJECTS).getHistogram();
+
+    assertThat(histogram).containsExactly(entry(0d, 2L), entry(10_000d, 1L));
+  }
+
+  @Test
+  public void aggregate_measure_by_quality_gate() {
+    addDocs(
+      newDoc("P1", "K1", "N1").setQualityGate(OK.name()).setMeasures(newArrayList(newMeasure(NCLOC, 1_000d))),
+      newDoc("P2", "K2", "N2").setQualityGate(OK.name()).setMeasures(newArrayList(newMeasure(NCLOC, 5_000d))),
+      newDoc("P3", "K3", "N3").setQualityGate(ERROR.name()).setMeasures(newArrayList(newMeasure(NCLOC, 12_000d))));
+
+    Map<String, ProjectMeasuresStatistics> result = underTest.aggregate(new ProjectMeasuresQuery(), NCLOC, ALERT_STATUS_KEY, null);
+
+    assertThat(result).containsOnlyKeys(OK.name(), ERROR.name());
+    assertThat(result.get(OK.name()).getCount()).isEqualTo(2L);
+    assertThat(result.get(OK.name()).getSum()).isEqualTo(6_000d);
+    assertThat(result.get(ERROR.name()).getCount()).isEqualTo(1L);
+    assertThat(result.get(ERROR.name()).getSum()).isEqualTo(12_000d);
+  }
+
+  @Test
+  public void aggregate_measure_of_filtered_and_authorized_projects_only() {
+    addDocs(
+      newDoc("P1", "K1", "N1").setMeasures(newArrayList(newMeasure(NCLOC, 1_000d), newMeasure(COVERAGE, 90d))),
+      newDoc("P2", "K2", "N2").setMeasures(newArrayList(newMeasure(NCLOC, 5_000d), newMeasure(COVERAGE, 50d))));
+    addDocs(null, "unknown_group",
+      newDoc("P3", "K3", "N3").setMeasures(newArrayList(newMeasure(NCLOC, 12_000d), newMeasure(COVERAGE, 90d))));
+    ProjectMeasuresQuery query = new ProjectMeasuresQuery().addMetricCriterion(new MetricCriterion(COVERAGE, Operator.GT, 80d));
+
+    ProjectMeasuresStatistics statistics = underTest.aggregate(query, NCLOC, null, null).get(ProjectMeasuresIndex.ALL_PROJECTS);
+
+    assertThat(statistics.getCount()).isEqualTo(1L);
+    assertThat(statistics.getSum()).isEqualTo(1_000d);
+  }
+
+  @Test
+  public void aggregate_measure_without_values() {
+    addDocs(newDoc("P1", "K1", "N1").setMeasures(newArrayList(newMeasure(COVERAGE, 80d))));
+
+    ProjectMeasuresStatistics statistics = underTest.aggregate(new ProjectMeasuresQuery(), NCLOC, null, null).get(ProjectMeasuresIndex.ALL_PROJECTS);
+
+    assertThat(statistics.getCount()).isZero();
+    assertThat(statistics.getMin()).isNull();
+    assertThat(statistics.getMax()).isNull();
+    assertThat(statistics.getAvg()).isNull();
+    assertThat(statistics.getPercentiles()).isEmpty();
+  }
+
+  @Test
+  public void fail_to_aggregate_by_unsupported_group() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Unsupported group: languages");
+
+    underTest.aggregate(new ProjectMeasuresQuery(), NCLOC, "languages", null);
+  }
+
   private void addDocs(ProjectMeasuresDoc... docs) {
     addDocs(null, ANYONE, docs);
   }
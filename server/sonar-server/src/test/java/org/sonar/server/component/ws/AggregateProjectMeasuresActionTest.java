@@ -0,0 +1,171 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.component.ws;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import java.util.Collections;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.System2;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.DbTester;
+import org.sonar.server.component.es.ProjectMeasuresDoc;
+import org.sonar.server.component.es.ProjectMeasuresIndex;
+import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
+import org.sonar.server.es.EsTester;
+import org.sonar.server.permission.index.PermissionIndexerTester;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.WsActionTester;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.sonar.api.measures.Metric.Level.ERROR;
+import static org.sonar.api.measures.Metric.Level.OK;
+import static org.sonar.api.measures.Metric.ValueType.INT;
+import static org.sonar.api.security.DefaultGroups.ANYONE;
+import static org.sonar.db.metric.MetricTesting.newMetricDto;
+import static org.sonar.server.component.es.ProjectMeasuresIndexDefinition.INDEX_PROJECT_MEASURES;
+import static org.sonar.server.component.es.ProjectMeasuresIndexDefinition.TYPE_PROJECT_MEASURES;
+import static org.sonar.server.component.ws.AggregateProjectMeasuresAction.PARAM_GROUP_BY;
+import static org.sonar.server.component.ws.AggregateProjectMeasuresAction.PARAM_HISTOGRAM_INTERVAL;
+import static org.sonar.server.component.ws.AggregateProjectMeasuresAction.PARAM_METRIC;
+import static org.sonar.test.JsonAssert.assertJson;
+import static org.sonarqube.ws.client.component.ComponentsWsParameters.PARAM_FILTER;
+
+public class AggregateProjectMeasuresActionTest {
+
+  private static final String NCLOC = "ncloc";
+  private static final String COVERAGE = "coverage";
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Rule
+  public UserSessionRule userSession = UserSessionRule.standalone();
+
+  @Rule
+  public EsTester es = new EsTester(new ProjectMeasuresIndexDefinition(new MapSettings()));
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  private DbClient dbClient = db.getDbClient();
+  private DbSession dbSession = db.getSession();
+
+  private PermissionIndexerTester authorizationIndexerTester = new PermissionIndexerTester(es);
+
+  private WsActionTester ws = new WsActionTester(
+    new AggregateProjectMeasuresAction(dbClient, new ProjectMeasuresIndex(es.client(), userSession), new ProjectMeasuresQueryValidator(dbClient)));
+
+  @Test
+  public void verify_definition() {
+    WebService.Action action = ws.getDef();
+
+    assertThat(action.key()).isEqualTo("aggregate_project_measures");
+    assertThat(action.isInternal()).isTrue();
+    assertThat(action.isPost()).isFalse();
+    assertThat(action.since()).isEqualTo("6.2");
+    assertThat(action.responseExampleAsString()).isNotEmpty();
+    assertThat(action.params()).extracting(WebService.Param::key).containsOnly(PARAM_METRIC, PARAM_FILTER, PARAM_GROUP_BY, PARAM_HISTOGRAM_INTERVAL);
+    assertThat(action.param(PARAM_METRIC).isRequired()).isTrue();
+  }
+
+  @Test
+  public void aggregate_measure_over_all_projects() {
+    insertMetrics(NCLOC);
+    insertDocs(
+      newDoc("P1").setMeasures(newArrayList(newMeasure(NCLOC, 1_000d))),
+      newDoc("P2").setMeasures(newArrayList(newMeasure(NCLOC, 5_000d))));
+
+    String result = ws.newRequest().setParam(PARAM_METRIC, NCLOC).execute().getInput();
+
+    assertJson(result).isSimilarTo("{" +
+      "  \"metric\": \"ncloc\"," +
+      "  \"groups\": [" +
+      "    {\"key\": \"all\", \"count\": 2, \"sum\": 6000.0, \"min\": 1000.0, \"max\": 5000.0, \"avg\": 3000.0}" +
+      "  ]" +
+      "}");
+  }
+
+  @Test
+  public void aggregate_measure_of_filtered_projects_by_quality_gate_with_histogram() {
+    insertMetrics(NCLOC, COVERAGE);
+    insertDocs(
+      newDoc("P1").setQualityGate(OK.name()).setMeasures(newArrayList(newMeasure(NCLOC, 1_000d), newMeasure(COVERAGE, 90d))),
+      newDoc("P2").setQualityGate(ERROR.name()).setMeasures(newArrayList(newMeasure(NCLOC, 5_000d), newMeasure(COVERAGE, 85d))),
+      newDoc("P3").setQualityGate(ERROR.name()).setMeasures(newArrayList(newMeasure(NCLOC, 12_000d), newMeasure(COVERAGE, 95d))),
+      newDoc("P4").setQualityGate(ERROR.name()).setMeasures(newArrayList(newMeasure(NCLOC, 50_000d), newMeasure(COVERAGE, 10d))));
+
+    String result = ws.newRequest()
+      .setParam(PARAM_METRIC, NCLOC)
+      .setParam(PARAM_FILTER, "coverage > 80")
+      .setParam(PARAM_GROUP_BY, "alert_status")
+      .setParam(PARAM_HISTOGRAM_INTERVAL, "10000")
+      .execute().getInput();
+
+    assertJson(result).isSimilarTo("{" +
+      "  \"groups\": [" +
+      "    {\"key\": \"ERROR\", \"count\": 2, \"sum\": 17000.0, \"histogram\": [{\"from\": 0.0, \"count\": 1}, {\"from\": 10000.0, \"count\": 1}]}," +
+      "    {\"key\": \"OK\", \"count\": 1, \"sum\": 1000.0, \"histogram\": [{\"from\": 0.0, \"count\": 1}]}" +
+      "  ]" +
+      "}");
+  }
+
+  @Test
+  public void fail_when_metric_is_unknown() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Unknown metric(s) [unknown]");
+
+    ws.newRequest().setParam(PARAM_METRIC, "unknown").execute();
+  }
+
+  private void insertDocs(ProjectMeasuresDoc... docs) {
+    try {
+      es.putDocuments(INDEX_PROJECT_MEASURES, TYPE_PROJECT_MEASURES, docs);
+      for (ProjectMeasuresDoc doc : docs) {
+        authorizationIndexerTester.indexProjectPermission(doc.getId(), singletonList(ANYONE), Collections.emptyList());
+      }
+    } catch (Exception e) {
+      Throwables.propagate(e);
+    }
+  }
+
+  private void insertMetrics(String... metricKeys) {
+    for (String metricKey : metricKeys) {
+      dbClient.metricDao().insert(dbSession, newMetricDto().setKey(metricKey).setValueType(INT.name()).setEnabled(true).setHidden(false));
+    }
+    dbSession.commit();
+  }
+
+  private static ProjectMeasuresDoc newDoc(String uuid) {
+    return new ProjectMeasuresDoc().setId(uuid).setKey("KEY_" + uuid).setName("NAME_" + uuid);
+  }
+
+  private static Map<String, Object> newMeasure(String key, double value) {
+    return ImmutableMap.of("key", key, "value", value);
+  }
+}
@@ -40,6 +40,7 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
   private List<String> scannerLogs;
   private List<ScannerReport.ActiveRule> activeRules = new ArrayList<>();
   private List<ScannerReport.ContextProperty> contextProperties = new ArrayList<>();
+  private List<ScannerReport.SensorProfiling> sensorProfiling = new ArrayList<>();
   private Map<Integer, List<ScannerReport.Measure>> measures = new HashMap<>();
   private Map<Integer, ScannerReport.Changesets> changesets = new HashMap<>();
   private Map<Integer, ScannerReport.Component> components = new HashMap<>();
@@ -70,6 +71,7 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
   private void clear() {
     this.metadata = null;
     this.scannerLogs = null;
+    this.sensorProfiling = new ArrayList<>();
     this.measures.clear();
     this.changesets.clear();
     this.components.clear();
@@ -94,6 +96,16 @@ public class BatchReportReaderRule implements TestRule, BatchReportReader {
     return this;
   }
 
+  @Override
+  public CloseableIterator<ScannerReport.SensorProfiling> readSensorProfiling() {
+    return CloseableIterator.from(sensorProfiling.iterator());
+  }
+
+  public BatchReportReaderRule putSensorProfiling(List<ScannerReport.SensorProfiling> sensorProfiling) {
+    this.sensorProfiling = Objects.requireNonNull(sensorProfiling);
+    return this;
+  }
+
   @Override
   public ScannerReport.Metadata readMetadata() {
     if (metadata == null) {
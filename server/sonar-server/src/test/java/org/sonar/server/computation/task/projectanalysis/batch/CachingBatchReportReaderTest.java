@@ -0,0 +1,169 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.batch;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang.StringUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.MessageException;
+import org.sonar.api.utils.internal.JUnitTempFolder;
+import org.sonar.core.util.CloseableIterator;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+
+import static com.google.common.collect.ImmutableList.of;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.guava.api.Assertions.assertThat;
+
+public class CachingBatchReportReaderTest {
+  private static final int COMPONENT_REF = 1;
+  private static final ScannerReport.Component COMPONENT = ScannerReport.Component.newBuilder().setRef(COMPONENT_REF).build();
+
+  @Rule
+  public JUnitTempFolder tempFolder = new JUnitTempFolder();
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private Settings settings = new MapSettings();
+  private BatchReportDirectoryHolder holder;
+  private ScannerReportWriter writer;
+
+  @Before
+  public void setUp() {
+    holder = new ImmutableBatchReportDirectoryHolder(tempFolder.newDir());
+    writer = new ScannerReportWriter(holder.getDirectory());
+  }
+
+  @Test
+  public void readComponent_is_cached() {
+    writer.writeComponent(COMPONENT);
+    CachingBatchReportReader underTest = new CachingBatchReportReader(holder, settings);
+
+    ScannerReport.Component component = underTest.readComponent(COMPONENT_REF);
+
+    assertThat(component).isEqualTo(COMPONENT);
+    assertThat(underTest.readComponent(COMPONENT_REF)).isSameAs(component);
+    assertThat(underTest.getComponentsStats().missCount()).isEqualTo(1);
+    assertThat(underTest.getComponentsStats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void readFileSource_is_cached() throws IOException {
+    File file = writer.getSourceFile(COMPONENT_REF);
+    FileUtils.writeLines(file, of("1", "2", "3"));
+    CachingBatchReportReader underTest = new CachingBatchReportReader(holder, settings);
+
+    try (CloseableIterator<String> res = underTest.readFileSource(COMPONENT_REF).get()) {
+      assertThat(res).containsExactly("1", "2", "3");
+    }
+    FileUtils.deleteQuietly(file);
+    try (CloseableIterator<String> res = underTest.readFileSource(COMPONENT_REF).get()) {
+      assertThat(res).containsExactly("1", "2", "3");
+    }
+    assertThat(underTest.getFileSourcesStats().missCount()).isEqualTo(1);
+    assertThat(underTest.getFileSourcesStats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void readFileSource_streams_files_which_do_not_fit_into_cache() throws IOException {
+    settings.setProperty(CachingBatchReportReader.CACHE_SIZE_PROPERTY, "1");
+    List<String> bigLines = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      bigLines.add(StringUtils.repeat(String.valueOf(i % 10), 1_000));
+    }
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), bigLines);
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF + 1), of("1", "2", "3"));
+    CachingBatchReportReader underTest = new CachingBatchReportReader(holder, settings);
+
+    for (int i = 0; i < 2; i++) {
+      try (CloseableIterator<String> res = underTest.readFileSource(COMPONENT_REF).get()) {
+        assertThat(res).containsExactlyElementsOf(bigLines);
+      }
+      try (CloseableIterator<String> res = underTest.readFileSource(COMPONENT_REF + 1).get()) {
+        assertThat(res).containsExactly("1", "2", "3");
+      }
+    }
+    assertThat(underTest.getFileSourcesStats().missCount()).isEqualTo(3);
+    assertThat(underTest.getFileSourcesStats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void cached_entries_are_not_evicted_by_entries_which_do_not_fit() throws IOException {
+    settings.setProperty(CachingBatchReportReader.CACHE_SIZE_PROPERTY, "1");
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF + 1), of(StringUtils.repeat("a", 1_000_000)));
+    CachingBatchReportReader underTest = new CachingBatchReportReader(holder, settings);
+
+    underTest.readFileSource(COMPONENT_REF).get().close();
+    underTest.readFileSource(COMPONENT_REF + 1).get().close();
+    underTest.readFileSource(COMPONENT_REF).get().close();
+
+    assertThat(underTest.getFileSourcesStats().hitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void readFileSource_returns_absent_optional_when_file_does_not_exist() {
+    CachingBatchReportReader underTest = new CachingBatchReportReader(holder, settings);
+
+    assertThat(underTest.readFileSource(COMPONENT_REF)).isAbsent();
+  }
+
+  @Test
+  public void nothing_is_cached_when_cache_size_is_zero() throws IOException {
+    settings.setProperty(CachingBatchReportReader.CACHE_SIZE_PROPERTY, "0");
+    writer.writeComponent(COMPONENT);
+    FileUtils.writeLines(writer.getSourceFile(COMPONENT_REF), of("1", "2", "3"));
+    CachingBatchReportReader underTest = new CachingBatchReportReader(holder, settings);
+
+    assertThat(underTest.readComponent(COMPONENT_REF)).isNotSameAs(underTest.readComponent(COMPONENT_REF));
+    underTest.readFileSource(COMPONENT_REF).get().close();
+    underTest.readFileSource(COMPONENT_REF).get().close();
+    assertThat(underTest.getComponentsStats().hitCount()).isZero();
+    assertThat(underTest.getFileSourcesStats().hitCount()).isZero();
+  }
+
+  @Test
+  public void fail_with_MessageException_when_cache_size_is_negative() {
+    settings.setProperty(CachingBatchReportReader.CACHE_SIZE_PROPERTY, "-1");
+
+    expectedException.expect(MessageException.class);
+    expectedException.expectMessage("value '-1' of property " + CachingBatchReportReader.CACHE_SIZE_PROPERTY + " is invalid. It must be a positive integer.");
+
+    new CachingBatchReportReader(holder, settings);
+  }
+
+  @Test
+  public void fail_with_MessageException_when_cache_size_is_not_a_number() {
+    settings.setProperty(CachingBatchReportReader.CACHE_SIZE_PROPERTY, "foo");
+
+    expectedException.expect(MessageException.class);
+
+    new CachingBatchReportReader(holder, settings);
+  }
+}
@@ -480,6 +480,20 @@ public class ComponentRootBuilderTest {
     assertThat(createFileAttributes(newBuilder().setType(FILE).setIsTest(true).build()).isUnitTest()).isTrue();
   }
 
+  @Test
+  public void files_with_same_language_and_unitTest_flag_share_the_same_FileAttributes() {
+    ScannerReport.Component project = newBuilder().setType(PROJECT).setRef(1).addChildRef(2).addChildRef(3).addChildRef(4).build();
+    scannerComponentProvider.add(newBuilder().setRef(2).setType(FILE).setPath("file 1").setLanguage("java"));
+    scannerComponentProvider.add(newBuilder().setRef(3).setType(FILE).setPath("file 2").setLanguage("java"));
+    scannerComponentProvider.add(newBuilder().setRef(4).setType(FILE).setPath("file 3").setLanguage("java").setIsTest(true));
+
+    Map<Integer, Component> componentsByRef = indexComponentByRef(underTest.build(project, PROJECT_KEY));
+
+    assertThat(componentsByRef.get(2).getFileAttributes()).isSameAs(componentsByRef.get(3).getFileAttributes());
+    assertThat(componentsByRef.get(4).getFileAttributes()).isNotSameAs(componentsByRef.get(2).getFileAttributes());
+    assertThat(componentsByRef.get(4).getFileAttributes().isUnitTest()).isTrue();
+  }
+
   private static class ScannerComponentProvider extends ExternalResource implements Function<Integer, ScannerReport.Component> {
     private final Map<Integer, ScannerReport.Component> components = new HashMap<>();
 
@@ -49,6 +49,7 @@ import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepo
 import org.sonar.server.computation.task.projectanalysis.issue.commonrule.CommonRuleEngineImpl;
 import org.sonar.server.computation.task.projectanalysis.issue.filter.IssueFilter;
 import org.sonar.server.computation.task.projectanalysis.qualityprofile.ActiveRulesHolderRule;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceDataCache;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepositoryRule;
 import org.sonar.server.issue.IssueTesting;
 
@@ -105,7 +106,7 @@ public class IntegrateIssuesVisitorTest {
 
   BaseIssuesLoader baseIssuesLoader = new BaseIssuesLoader(treeRootHolder, dbTester.getDbClient(), ruleRepositoryRule, activeRulesHolderRule);
   MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
-  TrackerExecution tracker = new TrackerExecution(new TrackerBaseInputFactory(baseIssuesLoader, dbTester.getDbClient(), movedFilesRepository),
+  TrackerExecution tracker = new TrackerExecution(new TrackerBaseInputFactory(baseIssuesLoader, new FileSourceDataCache(dbTester.getDbClient()), movedFilesRepository),
     new TrackerRawInputFactory(treeRootHolder, reportReader,
       fileSourceRepository, new CommonRuleEngineImpl(), issueFilter),
     new Tracker<>());
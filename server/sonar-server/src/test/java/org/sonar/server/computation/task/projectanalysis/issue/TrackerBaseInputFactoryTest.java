@@ -28,6 +28,7 @@ import org.sonar.db.source.FileSourceDao;
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.filemove.MovedFilesRepository;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceDataCache;
 
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
@@ -46,7 +47,7 @@ public class TrackerBaseInputFactoryTest {
 
   private MovedFilesRepository movedFilesRepository = mock(MovedFilesRepository.class);
 
-  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, dbClient, movedFilesRepository);
+  private TrackerBaseInputFactory underTest = new TrackerBaseInputFactory(baseIssuesLoader, new FileSourceDataCache(dbClient), movedFilesRepository);
 
   @Before
   public void setUp() throws Exception {
@@ -56,6 +56,85 @@ public class ReportScmInfoTest {
     assertThat(scmInfo.getAllChangesets()).hasSize(4);
   }
 
+  @Test
+  public void copy_changesets_of_unchanged_lines_from_previous_scm_info() throws Exception {
+    ScmInfo previousScmInfo = new ReportScmInfo(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(FILE_REF)
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder()
+        .setAuthor("john")
+        .setDate(123456789L)
+        .setRevision("rev-1")
+        .build())
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder()
+        .setAuthor("henry")
+        .setDate(1234567810L)
+        .setRevision("rev-2")
+        .build())
+      .addChangesetIndexByLine(0)
+      .addChangesetIndexByLine(1)
+      .build());
+
+    ScmInfo scmInfo = new ReportScmInfo(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(FILE_REF)
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder()
+        .setAuthor("paul")
+        .setDate(1234567820L)
+        .setRevision("rev-3")
+        .build())
+      .addChangesetIndexByLine(-1)
+      .addChangesetIndexByLine(0)
+      .addChangesetIndexByLine(-1)
+      .addPreviousLineByLine(2)
+      .addPreviousLineByLine(0)
+      .addPreviousLineByLine(1)
+      .build(), previousScmInfo);
+
+    assertThat(scmInfo.getAllChangesets()).hasSize(3);
+    assertThat(scmInfo.getChangesetForLine(1).getAuthor()).isEqualTo("henry");
+    assertThat(scmInfo.getChangesetForLine(2).getAuthor()).isEqualTo("paul");
+    assertThat(scmInfo.getChangesetForLine(3).getAuthor()).isEqualTo("john");
+    assertThat(scmInfo.getLatestChangeset().getAuthor()).isEqualTo("paul");
+  }
+
+  @Test
+  public void use_oldest_changeset_of_report_when_line_must_be_copied_but_there_is_no_previous_scm_info() throws Exception {
+    ScmInfo scmInfo = new ReportScmInfo(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(FILE_REF)
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder()
+        .setAuthor("john")
+        .setDate(123456790L)
+        .setRevision("rev-2")
+        .build())
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder()
+        .setAuthor("paul")
+        .setDate(123456789L)
+        .setRevision("rev-1")
+        .build())
+      .addChangesetIndexByLine(0)
+      .addChangesetIndexByLine(-1)
+      .addChangesetIndexByLine(1)
+      .addPreviousLineByLine(0)
+      .addPreviousLineByLine(3)
+      .addPreviousLineByLine(0)
+      .build(), null);
+
+    assertThat(scmInfo.getChangesetForLine(1).getRevision()).isEqualTo("rev-2");
+    assertThat(scmInfo.getChangesetForLine(2).getRevision()).isEqualTo("rev-1");
+    assertThat(scmInfo.getChangesetForLine(3).getRevision()).isEqualTo("rev-1");
+  }
+
+  @Test
+  public void fail_with_ISE_when_line_must_be_copied_but_there_is_no_previous_scm_info_nor_changeset_in_report() throws Exception {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Changeset on line 1 must be copied from line 3 of previous analysis, which has no changeset");
+
+    new ReportScmInfo(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(FILE_REF)
+      .addChangesetIndexByLine(-1)
+      .addPreviousLineByLine(3)
+      .build(), null);
+  }
+
   @Test
   public void return_changeset_for_a_given_line() throws Exception {
     ScmInfo scmInfo = new ReportScmInfo(ScannerReport.Changesets.newBuilder()
@@ -47,6 +47,7 @@ import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReader
 import org.sonar.server.computation.task.projectanalysis.component.Component;
 import org.sonar.server.computation.task.projectanalysis.component.ReportComponent;
 import org.sonar.server.computation.task.projectanalysis.component.ViewsComponent;
+import org.sonar.server.computation.task.projectanalysis.source.FileSourceDataCache;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepository;
 import org.sonar.server.computation.task.projectanalysis.source.SourceHashRepositoryImpl;
 import org.sonar.server.computation.task.projectanalysis.source.SourceLinesRepositoryImpl;
@@ -85,7 +86,7 @@ public class ScmInfoRepositoryImplTest {
 
   DbClient dbClient = dbTester.getDbClient();
 
-  ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, dbClient,
+  ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(reportReader, analysisMetadataHolder, new FileSourceDataCache(dbClient),
     new SourceHashRepositoryImpl(new SourceLinesRepositoryImpl(reportReader)));
 
   @Test
@@ -163,6 +164,47 @@ public class ScmInfoRepositoryImplTest {
     assertThat(changeset.getRevision()).isEqualTo("rev-1");
   }
 
+  @Test
+  public void merge_report_and_db_when_some_lines_are_copied_from_previous_analysis() throws Exception {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    addFileSourceInDb("henry", DATE_1, "rev-1", "don't care");
+    addPartialChangesetInReport("john", DATE_2, "rev-2");
+
+    ScmInfo scmInfo = underTest.getScmInfo(FILE).get();
+
+    assertThat(scmInfo.getAllChangesets()).hasSize(2);
+    assertThat(scmInfo.getChangesetForLine(1).getAuthor()).isEqualTo("henry");
+    assertThat(scmInfo.getChangesetForLine(1).getRevision()).isEqualTo("rev-1");
+    assertThat(scmInfo.getChangesetForLine(2).getAuthor()).isEqualTo("john");
+    assertThat(scmInfo.getChangesetForLine(2).getRevision()).isEqualTo("rev-2");
+    assertThat(logTester.logs(TRACE)).containsOnly("Reading SCM info from report and db for file 'FILE_KEY'");
+  }
+
+  @Test
+  public void use_report_when_some_lines_are_copied_from_previous_analysis_but_db_has_no_scm() throws Exception {
+    analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
+    addFileSourceInDb(null, null, null, "don't care");
+    addPartialChangesetInReport("john", DATE_2, "rev-2");
+
+    ScmInfo scmInfo = underTest.getScmInfo(FILE).get();
+
+    assertThat(scmInfo.getAllChangesets()).hasSize(2);
+    assertThat(scmInfo.getChangesetForLine(1).getRevision()).isEqualTo("rev-2");
+    assertThat(scmInfo.getChangesetForLine(2).getRevision()).isEqualTo("rev-2");
+  }
+
+  @Test
+  public void use_report_on_first_analysis_when_some_lines_are_copied_from_previous_analysis() throws Exception {
+    analysisMetadataHolder.setBaseAnalysis(null);
+    addFileSourceInDb("henry", DATE_1, "rev-1", "don't care");
+    addPartialChangesetInReport("john", DATE_2, "rev-2");
+
+    ScmInfo scmInfo = underTest.getScmInfo(FILE).get();
+
+    assertThat(scmInfo.getChangesetForLine(1).getAuthor()).isEqualTo("john");
+    assertThat(logTester.logs(TRACE)).isEmpty();
+  }
+
   @Test
   public void return_nothing_when_no_data_in_report_nor_db() throws Exception {
     analysisMetadataHolder.setBaseAnalysis(baseProjectAnalysis);
@@ -208,13 +250,13 @@ public class ScmInfoRepositoryImplTest {
   public void do_not_query_db_nor_report_if_component_type_is_not_FILE(Component component) {
     BatchReportReader batchReportReader = mock(BatchReportReader.class);
     AnalysisMetadataHolder analysisMetadataHolder = mock(AnalysisMetadataHolder.class);
-    DbClient dbClient = mock(DbClient.class);
+    FileSourceDataCache fileSourceDataCache = mock(FileSourceDataCache.class);
     SourceHashRepository sourceHashRepository = mock(SourceHashRepository.class);
-    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    ScmInfoRepositoryImpl underTest = new ScmInfoRepositoryImpl(batchReportReader, analysisMetadataHolder, fileSourceDataCache, sourceHashRepository);
 
     assertThat(underTest.getScmInfo(component)).isAbsent();
 
-    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, dbClient, sourceHashRepository);
+    verifyNoMoreInteractions(batchReportReader, analysisMetadataHolder, fileSourceDataCache, sourceHashRepository);
   }
 
   @Test
@@ -286,6 +328,24 @@ public class ScmInfoRepositoryImplTest {
       .build());
   }
 
+  /**
+   * First line is copied from line 1 of previous analysis, second line was blamed
+   */
+  private void addPartialChangesetInReport(String author, Long date, String revision) {
+    reportReader.putChangesets(ScannerReport.Changesets.newBuilder()
+      .setComponentRef(FILE_REF)
+      .addChangeset(ScannerReport.Changesets.Changeset.newBuilder()
+        .setAuthor(author)
+        .setDate(date)
+        .setRevision(revision)
+        .build())
+      .addChangesetIndexByLine(-1)
+      .addChangesetIndexByLine(0)
+      .addPreviousLineByLine(1)
+      .addPreviousLineByLine(0)
+      .build());
+  }
+
   private void addFileSourceInReport(int lineCount) {
     reportReader.putFileSourceLines(FILE_REF, generateLines(lineCount));
     reportReader.putComponent(ScannerReport.Component.newBuilder()
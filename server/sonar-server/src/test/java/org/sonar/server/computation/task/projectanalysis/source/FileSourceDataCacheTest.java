@@ -0,0 +1,92 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.computation.task.projectanalysis.source;
+
+import java.util.Arrays;
+import org.junit.Before;
+import org.junit.Test;
+import org.sonar.db.DbClient;
+import org.sonar.db.DbSession;
+import org.sonar.db.source.FileSourceDao;
+import org.sonar.db.source.FileSourceDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+public class FileSourceDataCacheTest {
+  private static final String FILE_UUID = "FILE_UUID";
+
+  private DbClient dbClient = mock(DbClient.class);
+  private DbSession dbSession = mock(DbSession.class);
+  private FileSourceDao fileSourceDao = mock(FileSourceDao.class);
+
+  private FileSourceDataCache underTest = new FileSourceDataCache(dbClient);
+
+  @Before
+  public void setUp() throws Exception {
+    when(dbClient.openSession(false)).thenReturn(dbSession);
+    when(dbClient.fileSourceDao()).thenReturn(fileSourceDao);
+  }
+
+  @Test
+  public void getFileSource_loads_row_from_db_only_once() {
+    FileSourceDto dto = new FileSourceDto().setFileUuid(FILE_UUID).setLineHashes("h1\nh2");
+    when(fileSourceDao.selectSourceByFileUuid(dbSession, FILE_UUID)).thenReturn(dto);
+
+    assertThat(underTest.getFileSource(FILE_UUID)).isSameAs(dto);
+    assertThat(underTest.getFileSource(FILE_UUID)).isSameAs(dto);
+
+    verify(fileSourceDao, times(1)).selectSourceByFileUuid(dbSession, FILE_UUID);
+    verify(dbSession, times(1)).close();
+  }
+
+  @Test
+  public void getFileSource_does_not_cache_missing_rows() {
+    assertThat(underTest.getFileSource(FILE_UUID)).isNull();
+    assertThat(underTest.getFileSource(FILE_UUID)).isNull();
+
+    verify(fileSourceDao, times(2)).selectSourceByFileUuid(dbSession, FILE_UUID);
+  }
+
+  @Test
+  public void getLineHashes_loads_line_hashes_from_db_only_once() {
+    when(fileSourceDao.selectLineHashes(dbSession, FILE_UUID)).thenReturn(Arrays.asList("h1", "h2"));
+
+    assertThat(underTest.getLineHashes(FILE_UUID)).containsExactly("h1", "h2");
+    assertThat(underTest.getLineHashes(FILE_UUID)).containsExactly("h1", "h2");
+
+    verify(fileSourceDao, times(1)).selectLineHashes(dbSession, FILE_UUID);
+  }
+
+  @Test
+  public void getLineHashes_reuses_row_already_loaded_by_getFileSource() {
+    when(fileSourceDao.selectSourceByFileUuid(dbSession, FILE_UUID)).thenReturn(new FileSourceDto().setFileUuid(FILE_UUID).setLineHashes("h1\nh2"));
+    underTest.getFileSource(FILE_UUID);
+
+    assertThat(underTest.getLineHashes(FILE_UUID)).containsExactly("h1", "h2");
+
+    verify(fileSourceDao).selectSourceByFileUuid(dbSession, FILE_UUID);
+    verifyNoMoreInteractions(fileSourceDao);
+  }
+}
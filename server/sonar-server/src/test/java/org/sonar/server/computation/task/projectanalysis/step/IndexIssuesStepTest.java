@@ -44,6 +44,6 @@ public class IndexIssuesStepTest {
 
     underTest.execute();
 
-    verify(issueIndexer).index(PROJECT_UUID);
+    verify(issueIndexer).indexAsync(PROJECT_UUID);
   }
 }
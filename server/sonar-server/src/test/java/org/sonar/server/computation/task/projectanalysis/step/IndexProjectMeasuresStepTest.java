@@ -45,7 +45,7 @@ public class IndexProjectMeasuresStepTest {
 
     underTest.execute();
 
-    verify(indexer).index(PROJECT_UUID);
+    verify(indexer).indexAsync(PROJECT_UUID);
   }
 
 }
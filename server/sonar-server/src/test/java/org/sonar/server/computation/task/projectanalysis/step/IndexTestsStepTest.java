@@ -51,10 +51,10 @@ public class IndexTestsStepTest extends BaseStepTest {
   public TreeRootHolderRule treeRootHolder = new TreeRootHolderRule();
 
   DbClient dbClient = dbTester.getDbClient();
+  TestIndexer testIndexer = new TestIndexer(dbClient, esTester.client());
 
   @Override
   protected ComputationStep step() {
-    TestIndexer testIndexer = new TestIndexer(dbClient, esTester.client());
     return new IndexTestsStep(testIndexer, treeRootHolder);
   }
 
@@ -66,6 +66,8 @@ public class IndexTestsStepTest extends BaseStepTest {
     treeRootHolder.setRoot(ReportComponent.builder(Component.Type.PROJECT, 1).setUuid("ABCD").setKey("PROJECT_KEY").build());
 
     step().execute();
+    // wait for indexing
+    testIndexer.stop();
 
     List<SearchHit> docs = esTester.getDocuments(TestIndexDefinition.INDEX, TestIndexDefinition.TYPE);
     assertThat(docs).hasSize(1);
@@ -28,6 +28,7 @@ import org.sonar.ce.queue.CeTask;
 import org.sonar.core.util.CloseableIterator;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
+import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.server.computation.task.projectanalysis.analysis.AnalysisMetadataHolderRule;
 import org.sonar.server.computation.task.projectanalysis.batch.BatchReportReaderRule;
 
@@ -80,6 +81,31 @@ public class PersistScannerContextStepTest {
       .isEmpty();
   }
 
+  @Test
+  public void execute_appends_sensor_profiling_to_scanner_context() {
+    String taskUuid = "task uuid";
+    when(ceTask.getUuid()).thenReturn(taskUuid);
+    reportReader.setScannerLogs(asList("log1"));
+    reportReader.putComponent(ScannerReport.Component.newBuilder().setRef(1).setKey("PROJECT_KEY").build());
+    reportReader.putSensorProfiling(asList(ScannerReport.SensorProfiling.newBuilder()
+      .setComponentRef(1)
+      .setSensor("Xoo Sensor")
+      .setSensorClass("org.sonar.xoo.XooSensor")
+      .setWallTimeMs(12L)
+      .setCpuTimeMs(10L)
+      .setAllocatedBytes(1024L)
+      .setGcTimeMs(2L)
+      .setPeakHeapDeltaBytes(2048L)
+      .setFiles(3)
+      .build()));
+
+    underTest.execute();
+
+    assertThat(dbClient.ceScannerContextDao().selectScannerContext(dbTester.getSession(), taskUuid))
+      .contains("log1" + '\n' + "Sensors profiling:" + '\n'
+        + "  - PROJECT_KEY | Xoo Sensor (org.sonar.xoo.XooSensor) | wall=12ms cpu=10ms allocated=1024B gc=2ms peakHeapDelta=2048B files=3");
+  }
+
   /**
    * @see SONAR-8306
    */
@@ -0,0 +1,196 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class BaseIndexerTest {
+
+  @Rule
+  public LogTester logTester = new LogTester();
+  @Rule
+  public EsTester esTester = new EsTester(new FakeIndexDefinition());
+
+  private FakeIndexer underTest = new FakeIndexer(esTester.client());
+
+  @After
+  public void tearDown() {
+    underTest.stop();
+  }
+
+  @Test
+  public void index_project_waits_for_end_of_indexing() {
+    AtomicInteger passes = new AtomicInteger();
+
+    underTest.index("P1", lastUpdatedAt -> {
+      passes.incrementAndGet();
+      return 0L;
+    });
+
+    assertThat(passes.get()).isEqualTo(1);
+    assertThat(underTest.getProjectRequests()).isEqualTo(1L);
+    assertThat(underTest.getCoalescedProjectRequests()).isZero();
+    assertThat(underTest.getPendingProjects()).isZero();
+  }
+
+  @Test
+  public void pending_requests_of_same_project_are_processed_by_a_single_pass() throws Exception {
+    CountDownLatch blocked = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger passesOfP1 = new AtomicInteger();
+    AtomicInteger passesOfP2 = new AtomicInteger();
+
+    // keep the indexing thread busy
+    Future<?> busy = underTest.indexAsync("P0", lastUpdatedAt -> {
+      blocked.countDown();
+      Uninterruptibles.awaitUninterruptibly(release);
+      return 0L;
+    });
+    assertThat(blocked.await(10, TimeUnit.SECONDS)).isTrue();
+
+    Future<?> first = underTest.indexAsync("P1", lastUpdatedAt -> passesOfP1.incrementAndGet());
+    Future<?> second = underTest.indexAsync("P1", lastUpdatedAt -> passesOfP1.incrementAndGet());
+    Future<?> third = underTest.indexAsync("P2", lastUpdatedAt -> passesOfP2.incrementAndGet());
+    assertThat(second).isSameAs(first);
+    assertThat(third).isNotSameAs(first);
+    assertThat(underTest.getPendingProjects()).isEqualTo(2);
+
+    release.countDown();
+    busy.get(10, TimeUnit.SECONDS);
+    first.get(10, TimeUnit.SECONDS);
+    third.get(10, TimeUnit.SECONDS);
+
+    assertThat(passesOfP1.get()).isEqualTo(1);
+    assertThat(passesOfP2.get()).isEqualTo(1);
+    assertThat(underTest.getProjectRequests()).isEqualTo(4L);
+    assertThat(underTest.getCoalescedProjectRequests()).isEqualTo(1L);
+    assertThat(underTest.getPendingProjects()).isZero();
+    assertThat(underTest.getMaxProjectLagMs()).isGreaterThanOrEqualTo(0L);
+  }
+
+  @Test
+  public void request_received_during_indexing_of_project_triggers_a_new_pass() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger passes = new AtomicInteger();
+
+    Future<?> first = underTest.indexAsync("P1", lastUpdatedAt -> {
+      passes.incrementAndGet();
+      started.countDown();
+      Uninterruptibles.awaitUninterruptibly(release);
+      return 0L;
+    });
+    assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    Future<?> second = underTest.indexAsync("P1", lastUpdatedAt -> passes.incrementAndGet());
+    release.countDown();
+    first.get(10, TimeUnit.SECONDS);
+    second.get(10, TimeUnit.SECONDS);
+
+    assertThat(second).isNotSameAs(first);
+    assertThat(passes.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void skip_pass_of_project_requested_before_last_update_of_index() {
+    AtomicInteger passes = new AtomicInteger();
+    long future = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1L);
+    underTest.index("P1", lastUpdatedAt -> future);
+
+    underTest.index("P1", lastUpdatedAt -> passes.incrementAndGet());
+
+    assertThat(passes.get()).isZero();
+  }
+
+  @Test
+  public void reindex_project_ignores_date_of_last_update_of_index() {
+    AtomicInteger passes = new AtomicInteger();
+    long future = System.currentTimeMillis() + TimeUnit.HOURS.toMillis(1L);
+    underTest.index("P1", lastUpdatedAt -> future);
+
+    underTest.reindexProject("P2", passes::incrementAndGet);
+
+    assertThat(passes.get()).isEqualTo(1);
+    assertThat(underTest.getPendingProjects()).isZero();
+  }
+
+  @Test
+  public void requests_are_rejected_and_not_kept_pending_once_stopped() {
+    underTest.stop();
+
+    for (int i = 0; i < 2; i++) {
+      try {
+        underTest.indexAsync("P1", lastUpdatedAt -> 0L);
+        fail("Request must be rejected");
+      } catch (RejectedExecutionException e) {
+        assertThat(underTest.getPendingProjects()).isZero();
+      }
+    }
+  }
+
+  @Test
+  public void stop_waits_for_pending_requests() {
+    AtomicInteger passes = new AtomicInteger();
+    underTest.indexAsync("P1", lastUpdatedAt -> {
+      Uninterruptibles.sleepUninterruptibly(100, TimeUnit.MILLISECONDS);
+      return passes.incrementAndGet();
+    });
+    underTest.indexAsync("P2", lastUpdatedAt -> passes.incrementAndGet());
+
+    underTest.stop();
+
+    assertThat(passes.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void failure_of_asynchronous_request_is_logged() {
+    Future<?> future = underTest.indexAsync("P1", lastUpdatedAt -> {
+      throw new IllegalStateException("Boom");
+    });
+
+    underTest.stop();
+
+    assertThat(future.isDone()).isTrue();
+    assertThat(logTester.logs(LoggerLevel.ERROR)).contains("Fail to index project P1 in " + FakeIndexDefinition.INDEX);
+  }
+
+  private static class FakeIndexer extends BaseIndexer {
+    FakeIndexer(EsClient client) {
+      super(client, 0L, FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, FakeIndexDefinition.INT_FIELD);
+    }
+
+    @Override
+    protected long doIndex(long lastUpdatedAt) {
+      return 0L;
+    }
+  }
+}
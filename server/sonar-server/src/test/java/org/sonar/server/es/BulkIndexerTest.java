@@ -28,6 +28,7 @@ import org.elasticsearch.index.query.QueryBuilders;
 import org.junit.Rule;
 import org.junit.Test;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class BulkIndexerTest {
@@ -59,6 +60,40 @@ public class BulkIndexerTest {
     assertThat(count()).isEqualTo(2);
   }
 
+  @Test
+  public void update_bulk_indexing_stats() {
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    BulkIndexingStats stats = esTester.client().getBulkIndexingStats();
+    assertThat(stats.getIndexedDocuments()).isEqualTo(10L);
+    assertThat(stats.getIndexedBytes()).isPositive();
+    assertThat(stats.getRejectedDocuments()).isZero();
+    assertThat(stats.getFailedDocuments()).isZero();
+    assertThat(stats.getLastDocumentsPerSecond()).isPositive();
+  }
+
+  @Test
+  public void record_latency_of_bulk_requests() {
+    EsRequestLatencies latencies = esTester.client().getRequestLatencies();
+    long countBefore = latencies.getByKind(EsRequestLatencies.BULK).getCount();
+    BulkIndexer indexer = new BulkIndexer(esTester.client(), FakeIndexDefinition.INDEX)
+      .setFlushByteSize(500);
+    indexer.start();
+    for (int i = 0; i < 10; i++) {
+      indexer.add(newIndexRequest(i));
+    }
+    indexer.stop();
+
+    // documents are sent by several requests
+    assertThat(latencies.getByKind(EsRequestLatencies.BULK).getCount() - countBefore).isGreaterThan(1L);
+  }
+
   @Test
   public void large_indexing() {
     // index has one replica
@@ -83,6 +118,36 @@ public class BulkIndexerTest {
     assertThat(replicas()).isEqualTo(1);
   }
 
+  @Test
+  public void invalidate_search_results_of_indexed_projects() {
+    EsClient client = new EsClient(esTester.client().nativeClient(), new SearchResultCache(60));
+    SearchResultCache cache = client.getSearchResultCache();
+    cache.get(FakeIndexDefinition.INDEX, singletonList("P1"), "request", () -> "P1 results", result -> () -> result);
+    cache.get(FakeIndexDefinition.INDEX, singletonList("P2"), "request on P2", () -> "P2 results", result -> () -> result);
+
+    BulkIndexer indexer = new BulkIndexer(client, FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42).routing("P1"));
+    indexer.stop();
+
+    assertThat(cache.get(FakeIndexDefinition.INDEX, singletonList("P1"), "request", () -> "new P1 results", result -> () -> result)).isEqualTo("new P1 results");
+    assertThat(cache.get(FakeIndexDefinition.INDEX, singletonList("P2"), "request on P2", () -> "new P2 results", result -> () -> result)).isEqualTo("P2 results");
+  }
+
+  @Test
+  public void invalidate_all_search_results_of_index_if_documents_are_not_routed() {
+    EsClient client = new EsClient(esTester.client().nativeClient(), new SearchResultCache(60));
+    SearchResultCache cache = client.getSearchResultCache();
+    cache.get(FakeIndexDefinition.INDEX, singletonList("P1"), "request", () -> "P1 results", result -> () -> result);
+
+    BulkIndexer indexer = new BulkIndexer(client, FakeIndexDefinition.INDEX);
+    indexer.start();
+    indexer.add(newIndexRequest(42));
+    indexer.stop();
+
+    assertThat(cache.size()).isZero();
+  }
+
   @Test
   public void bulk_delete() throws Exception {
     int max = 500;
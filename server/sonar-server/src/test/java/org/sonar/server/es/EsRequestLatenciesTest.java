@@ -0,0 +1,108 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.server.es.EsRequestLatencies.Histogram;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EsRequestLatenciesTest {
+
+  private static final String[] NO_NAMES = new String[0];
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private EsRequestLatencies underTest = new EsRequestLatencies();
+
+  @After
+  public void tearDown() {
+    EsRequestLatencies.setCurrentWsAction(null);
+  }
+
+  @Test
+  public void group_latencies_by_kind_indices_and_types() {
+    underTest.record(EsRequestLatencies.SEARCH, new String[] {"issues"}, new String[] {"issue"}, 10L);
+    underTest.record(EsRequestLatencies.SEARCH, new String[] {"issues"}, new String[] {"issue"}, 30L);
+    underTest.record(EsRequestLatencies.SEARCH, new String[] {"rules"}, NO_NAMES, 5L);
+    underTest.record(EsRequestLatencies.SCROLL, NO_NAMES, NO_NAMES, 2L);
+
+    assertThat(underTest.getByRequest()).containsOnlyKeys("search issues/issue", "search rules", "scroll");
+    Histogram issues = underTest.getByRequest().get("search issues/issue");
+    assertThat(issues.getCount()).isEqualTo(2L);
+    assertThat(issues.getMeanMs()).isEqualTo(20L);
+    assertThat(issues.getMaxMs()).isEqualTo(30L);
+
+    assertThat(underTest.getByKind(EsRequestLatencies.SEARCH).getCount()).isEqualTo(3L);
+    assertThat(underTest.getByKind(EsRequestLatencies.GET).getCount()).isZero();
+    assertThat(underTest.getByWsAction()).isEmpty();
+  }
+
+  @Test
+  public void group_latencies_by_ws_action_of_current_thread() {
+    EsRequestLatencies.setCurrentWsAction("api/issues/search");
+    underTest.record(EsRequestLatencies.SEARCH, new String[] {"issues"}, NO_NAMES, 10L);
+    EsRequestLatencies.setCurrentWsAction(null);
+    underTest.record(EsRequestLatencies.SEARCH, new String[] {"issues"}, NO_NAMES, 10L);
+
+    assertThat(underTest.getByWsAction()).containsOnlyKeys("api/issues/search");
+    assertThat(underTest.getByWsAction().get("api/issues/search").getCount()).isEqualTo(1L);
+    assertThat(EsRequestLatencies.getCurrentWsAction()).isNull();
+  }
+
+  @Test
+  public void percentiles_are_upper_bounds_of_buckets() {
+    for (int i = 0; i < 98; i++) {
+      underTest.record(EsRequestLatencies.GET, new String[] {"issues"}, NO_NAMES, 3L);
+    }
+    underTest.record(EsRequestLatencies.GET, new String[] {"issues"}, NO_NAMES, 150L);
+    underTest.record(EsRequestLatencies.GET, new String[] {"issues"}, NO_NAMES, 60_000L);
+
+    Histogram histogram = underTest.getByKind(EsRequestLatencies.GET);
+    assertThat(histogram.getPercentileMs(50.0)).isEqualTo(5L);
+    assertThat(histogram.getPercentileMs(99.0)).isEqualTo(200L);
+    // last bucket has no upper bound
+    assertThat(histogram.getPercentileMs(100.0)).isEqualTo(60_000L);
+    assertThat(histogram.toString()).isEqualTo("count=100, mean=604ms, p50=5ms, p99=200ms, max=60000ms");
+  }
+
+  @Test
+  public void percentile_is_not_greater_than_max_latency() {
+    underTest.record(EsRequestLatencies.GET, new String[] {"issues"}, NO_NAMES, 120L);
+
+    assertThat(underTest.getByKind(EsRequestLatencies.GET).getPercentileMs(99.0)).isEqualTo(120L);
+  }
+
+  @Test
+  public void percentiles_of_empty_histogram_are_zero() {
+    assertThat(underTest.getByKind(EsRequestLatencies.GET).getPercentileMs(99.0)).isZero();
+  }
+
+  @Test
+  public void fail_if_percentile_is_out_of_range() {
+    expectedException.expect(IllegalArgumentException.class);
+
+    underTest.getByKind(EsRequestLatencies.GET).getPercentileMs(0.0);
+  }
+}
@@ -20,11 +20,17 @@
 package org.sonar.server.es;
 
 import com.google.common.base.Function;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
+import org.junit.Rule;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.sonar.server.issue.index.IssueDoc;
@@ -36,6 +42,9 @@ import static org.mockito.Mockito.when;
 
 public class EsUtilsTest {
 
+  @Rule
+  public EsTester esTester = new EsTester(new FakeIndexDefinition());
+
   @Test
   public void convertToDocs_empty() {
     SearchHits hits = mock(SearchHits.class, Mockito.RETURNS_MOCKS);
@@ -61,6 +70,29 @@ public class EsUtilsTest {
     assertThat(docs).hasSize(1);
   }
 
+  @Test
+  public void scroll_with_prefetch_returns_all_pages() throws Exception {
+    FakeDoc[] docs = new FakeDoc[25];
+    for (int i = 0; i < docs.length; i++) {
+      docs[i] = FakeIndexDefinition.newDoc(i);
+    }
+    esTester.putDocuments(FakeIndexDefinition.INDEX, FakeIndexDefinition.TYPE, docs);
+
+    SearchResponse response = esTester.client().prepareSearch(FakeIndexDefinition.INDEX)
+      .setTypes(FakeIndexDefinition.TYPE)
+      .setSearchType(SearchType.SCAN)
+      .setScroll(TimeValue.timeValueMinutes(EsUtils.SCROLL_TIME_IN_MINUTES))
+      .setSize(2)
+      .get();
+    Iterator<FakeDoc> it = EsUtils.scrollWithPrefetch(esTester.client(), response.getScrollId(), FakeDoc::new);
+
+    List<Integer> values = new ArrayList<>();
+    it.forEachRemaining(doc -> values.add(doc.getInt()));
+    assertThat(values).hasSize(25).doesNotHaveDuplicates();
+    assertThat(it.hasNext()).isFalse();
+    assertThat(esTester.client().getRequestLatencies().getByKind(EsRequestLatencies.SCROLL).getCount()).isPositive();
+  }
+
   @Test
   public void util_class() {
     assertThat(TestUtils.hasOnlyPrivateConstructors(EsUtils.class)).isTrue();
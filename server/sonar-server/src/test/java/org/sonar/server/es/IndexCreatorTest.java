@@ -19,10 +19,12 @@
  */
 package org.sonar.server.es;
 
+import com.google.common.collect.ImmutableMap;
 import java.io.IOException;
 import java.util.Map;
 import javax.annotation.CheckForNull;
 import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.junit.Rule;
@@ -30,6 +32,7 @@ import org.junit.Test;
 import org.sonar.api.config.MapSettings;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 
 public class IndexCreatorTest {
 
@@ -88,6 +91,115 @@ public class IndexCreatorTest {
     creator.stop();
   }
 
+  @Test
+  public void copy_documents_to_new_index_when_only_number_of_shards_changes() throws Exception {
+    // v1, 1 shard
+    MapSettings settings = new MapSettings();
+    IndexDefinitions registry = new IndexDefinitions(new IndexDefinition[] {new FakeShardedIndexDefinition(settings)}, settings);
+    registry.start();
+    new IndexCreator(es.client(), registry).start();
+    for (int i = 0; i < 10; i++) {
+      es.client().prepareIndex("fakes", "fake").setId("id" + i).setRouting("R" + (i % 2)).setSource("key", "value" + i).get();
+    }
+    es.client().prepareIndex("fakes", "nosource").setId("id").setSource("key", "value").get();
+    es.client().prepareRefresh("fakes").get();
+
+    // v1, 3 shards
+    settings.setProperty("sonar.search.fakes.shards", 3);
+    registry = new IndexDefinitions(new IndexDefinition[] {new FakeShardedIndexDefinition(settings)}, settings);
+    registry.start();
+    new IndexCreator(es.client(), registry).start();
+
+    // "fakes" is now an alias of the new index
+    String physicalName = physicalName("fakes");
+    assertThat(physicalName).startsWith("fakes_");
+    assertThat(setting(physicalName, "index.number_of_shards")).isEqualTo("3");
+    assertThat(es.countDocuments("fakes", "fake")).isEqualTo(10);
+    assertThat(es.client().prepareGet("fakes", "fake", "id3").setRouting("R1").get().getSourceAsMap()).containsEntry("key", "value3");
+    // types without source can't be copied
+    assertThat(es.countDocuments("fakes", "nosource")).isZero();
+
+    // mapping changes, index is re-created from scratch
+    registry = new IndexDefinitions(new IndexDefinition[] {new FakeIndexDefinitionV2()}, new MapSettings());
+    registry.start();
+    new IndexCreator(es.client(), registry).start();
+    assertThat(physicalName("fakes")).isEqualTo("fakes");
+    assertThat(es.client().prepareIndicesExist(physicalName).get().isExists()).isFalse();
+    assertThat(es.countDocuments("fakes", "fake")).isZero();
+  }
+
+  @Test
+  public void keep_index_if_documents_can_not_be_copied() throws Exception {
+    MapSettings settings = new MapSettings();
+    IndexDefinitions registry = new IndexDefinitions(new IndexDefinition[] {new FakeShardedIndexDefinition(settings)}, settings);
+    registry.start();
+    new IndexCreator(es.client(), registry).start();
+    es.client().prepareIndex("fakes", "fake").setId("id").setRouting("R").setSource("key", "value").get();
+    es.client().prepareRefresh("fakes").get();
+
+    // new mapping is compatible according to its hash, but field "key" can't be copied
+    settings.setProperty("sonar.search.fakes.shards", 3);
+    registry = new IndexDefinitions(new IndexDefinition[] {new FakeShardedIntegerIndexDefinition(settings)}, settings);
+    registry.start();
+    String mappingHash = new IndexDefinitionHash().ofMappings(registry.getIndices().get("fakes"));
+    es.client().nativeClient().admin().indices().prepareClose("fakes").get();
+    es.client().nativeClient().admin().indices().prepareUpdateSettings("fakes").setSettings(ImmutableMap.of("index.sonar_mapping_hash", mappingHash)).get();
+    es.client().nativeClient().admin().indices().prepareOpen("fakes").get();
+    es.client().waitForStatus(ClusterHealthStatus.YELLOW);
+
+    try {
+      new IndexCreator(es.client(), registry).start();
+      fail();
+    } catch (IllegalStateException e) {
+      assertThat(e).hasMessageContaining("0 documents copied out of 1");
+    }
+
+    assertThat(physicalName("fakes")).isEqualTo("fakes");
+    assertThat(es.countDocuments("fakes", "fake")).isEqualTo(1);
+    assertThat(es.client().nativeClient().admin().indices().prepareGetIndex().setIndices("fakes_*").get().getIndices()).isEmpty();
+  }
+
+  @Test
+  public void complete_copy_interrupted_after_deletion_of_previous_index() throws Exception {
+    MapSettings settings = new MapSettings();
+    IndexDefinitions registry = new IndexDefinitions(new IndexDefinition[] {new FakeShardedIndexDefinition(settings)}, settings);
+    registry.start();
+    new IndexCreator(es.client(), registry).start();
+    es.client().prepareIndex("fakes", "fake").setId("id").setRouting("R").setSource("key", "value").get();
+    es.client().prepareRefresh("fakes").get();
+    settings.setProperty("sonar.search.fakes.shards", 3);
+    registry = new IndexDefinitions(new IndexDefinition[] {new FakeShardedIndexDefinition(settings)}, settings);
+    registry.start();
+    new IndexCreator(es.client(), registry).start();
+    String copyName = physicalName("fakes");
+    // server stopped before the creation of alias
+    es.client().nativeClient().admin().indices().prepareAliases().removeAlias(copyName, "fakes").get();
+
+    new IndexCreator(es.client(), registry).start();
+
+    assertThat(physicalName("fakes")).isEqualTo(copyName);
+    assertThat(es.countDocuments("fakes", "fake")).isEqualTo(1);
+  }
+
+  @Test
+  public void delete_copies_interrupted_before_replacement_of_index() throws Exception {
+    IndexDefinitions registry = new IndexDefinitions(new IndexDefinition[] {new FakeIndexDefinition()}, new MapSettings());
+    registry.start();
+    new IndexCreator(es.client(), registry).start();
+    es.client().prepareCreate("fakes_1").get();
+    es.client().prepareCreate("fakes_other").get();
+
+    new IndexCreator(es.client(), registry).start();
+
+    assertThat(physicalName("fakes")).isEqualTo("fakes");
+    assertThat(es.client().prepareIndicesExist("fakes_1").get().isExists()).isFalse();
+    assertThat(es.client().prepareIndicesExist("fakes_other").get().isExists()).isTrue();
+  }
+
+  private String physicalName(String indexName) {
+    return es.client().nativeClient().admin().indices().prepareGetSettings(indexName).get().getIndexToSettings().keysIt().next();
+  }
+
   private String setting(String indexName, String settingKey) {
     GetSettingsResponse indexSettings = es.client().nativeClient().admin().indices().prepareGetSettings(indexName).get();
     return indexSettings.getSetting(indexName, settingKey);
@@ -117,6 +229,43 @@ public class IndexCreatorTest {
     }
   }
 
+  public static class FakeShardedIndexDefinition implements IndexDefinition {
+    private final org.sonar.api.config.Settings settings;
+
+    public FakeShardedIndexDefinition(org.sonar.api.config.Settings settings) {
+      this.settings = settings;
+    }
+
+    @Override
+    public void define(IndexDefinitionContext context) {
+      NewIndex index = context.create("fakes");
+      index.configureShards(settings, 1);
+      NewIndex.NewIndexType mapping = index.createType("fake");
+      mapping.setAttribute("_routing", ImmutableMap.of("required", "true"));
+      mapping.stringFieldBuilder("key").build();
+      NewIndex.NewIndexType noSourceMapping = index.createType("nosource");
+      noSourceMapping.stringFieldBuilder("key").build();
+      noSourceMapping.setEnableSource(false);
+    }
+  }
+
+  public static class FakeShardedIntegerIndexDefinition implements IndexDefinition {
+    private final org.sonar.api.config.Settings settings;
+
+    public FakeShardedIntegerIndexDefinition(org.sonar.api.config.Settings settings) {
+      this.settings = settings;
+    }
+
+    @Override
+    public void define(IndexDefinitionContext context) {
+      NewIndex index = context.create("fakes");
+      index.configureShards(settings, 1);
+      NewIndex.NewIndexType mapping = index.createType("fake");
+      mapping.setAttribute("_routing", ImmutableMap.of("required", "true"));
+      mapping.createIntegerField("key");
+    }
+  }
+
   public static class FakeIndexDefinitionV2 implements IndexDefinition {
     @Override
     public void define(IndexDefinitionContext context) {
@@ -19,6 +19,7 @@
  */
 package org.sonar.server.es;
 
+import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.junit.Test;
 
 import java.util.Arrays;
@@ -41,6 +42,23 @@ public class IndexDefinitionHashTest {
     assertThat(hashV2).isNotEmpty().isNotEqualTo(hashV1);
   }
 
+  @Test
+  public void ofMappings_ignores_numbers_of_shards_and_replicas() {
+    NewIndex newIndexV1 = createIndex();
+    NewIndex newIndexV2 = createIndex();
+    newIndexV2.getSettings().put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 10);
+    newIndexV2.getSettings().put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 1);
+    IndexDefinitions.Index indexV1 = new IndexDefinitions.Index(newIndexV1);
+    IndexDefinitions.Index indexV2 = new IndexDefinitions.Index(newIndexV2);
+
+    assertThat(new IndexDefinitionHash().of(indexV2)).isNotEqualTo(new IndexDefinitionHash().of(indexV1));
+    assertThat(new IndexDefinitionHash().ofMappings(indexV2)).isEqualTo(new IndexDefinitionHash().ofMappings(indexV1));
+
+    newIndexV2.getTypes().get("fake").createIntegerField("max");
+    assertThat(new IndexDefinitionHash().ofMappings(new IndexDefinitions.Index(newIndexV2)))
+      .isNotEqualTo(new IndexDefinitionHash().ofMappings(indexV1));
+  }
+
   private NewIndex createIndex() {
     NewIndex newIndex = new NewIndex("fakes");
     NewIndex.NewIndexType mapping = newIndex.createType("fake");
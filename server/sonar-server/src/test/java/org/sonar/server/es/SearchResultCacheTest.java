@@ -0,0 +1,174 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.es;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchResultCacheTest {
+
+  private static final String INDEX = "issues";
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private AtomicInteger loads = new AtomicInteger();
+  private SearchResultCache underTest = new SearchResultCache(60);
+
+  @Test
+  public void cache_results_of_same_request() {
+    assertThat(get(singletonList("P1"), "request")).isEqualTo(1);
+    assertThat(get(singletonList("P1"), "request")).isEqualTo(1);
+    assertThat(get(singletonList("P1"), "other request")).isEqualTo(2);
+
+    assertThat(underTest.size()).isEqualTo(2);
+    assertThat(underTest.stats().hitCount()).isEqualTo(1);
+    assertThat(underTest.stats().missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void invalidate_results_of_projects_and_results_not_restricted_to_projects() {
+    get(singletonList("P1"), "request on P1");
+    get(asList("P1", "P2"), "request on P1 and P2");
+    get(singletonList("P2"), "request on P2");
+    get(emptyList(), "request on all projects");
+
+    underTest.invalidate(INDEX, singletonList("P1"));
+
+    assertThat(underTest.size()).isEqualTo(1);
+    assertThat(get(singletonList("P2"), "request on P2")).isEqualTo(3);
+  }
+
+  @Test
+  public void invalidate_results_of_index() {
+    get(singletonList("P1"), "request");
+    underTest.get("rules", emptyList(), "request", () -> "rules", rules -> () -> rules);
+
+    underTest.invalidate(INDEX);
+
+    assertThat(underTest.size()).isEqualTo(1);
+    assertThat(underTest.get("rules", emptyList(), "request", () -> "other rules", rules -> () -> rules)).isEqualTo("rules");
+  }
+
+  @Test
+  public void do_not_cache_results_loaded_while_index_is_changed() {
+    underTest.get(INDEX, singletonList("P1"), "request", () -> {
+      underTest.invalidate(INDEX, singletonList("P1"));
+      return loads.incrementAndGet();
+    }, result -> () -> result);
+
+    assertThat(underTest.size()).isZero();
+  }
+
+  @Test
+  public void return_a_copy_of_cached_result_on_each_call() {
+    AtomicInteger copies = new AtomicInteger();
+    underTest.get(INDEX, singletonList("P1"), "request", () -> "result", result -> () -> result + copies.incrementAndGet());
+
+    assertThat(underTest.get(INDEX, singletonList("P1"), "request", () -> "other result", result -> () -> "not used")).isEqualTo("result2");
+    assertThat(copies.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void cache_is_disabled_if_ttl_is_zero() {
+    Settings settings = new MapSettings().setProperty(SearchResultCache.TTL_PROPERTY, 0);
+    underTest = SearchResultCache.create(settings);
+
+    assertThat(underTest.isEnabled()).isFalse();
+    assertThat(get(singletonList("P1"), "request")).isEqualTo(1);
+    assertThat(get(singletonList("P1"), "request")).isEqualTo(2);
+    assertThat(underTest.size()).isZero();
+  }
+
+  @Test
+  public void cache_is_bounded_by_weight_of_results() {
+    underTest = new SearchResultCache(60, 10);
+    underTest.get(INDEX, singletonList("P1"), "request 1", () -> "result 1", result -> new WeightedSnapshot(result, 4));
+    underTest.get(INDEX, singletonList("P1"), "request 2", () -> "result 2", result -> new WeightedSnapshot(result, 4));
+    underTest.get(INDEX, singletonList("P1"), "request 3", () -> "result 3", result -> new WeightedSnapshot(result, 4));
+
+    assertThat(underTest.size()).isEqualTo(2);
+    assertThat(underTest.weight()).isEqualTo(8);
+    assertThat(underTest.stats().evictionCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void cache_is_disabled_if_max_weight_is_zero() {
+    Settings settings = new MapSettings().setProperty(SearchResultCache.MAX_WEIGHT_PROPERTY, 0);
+    underTest = SearchResultCache.create(settings);
+
+    assertThat(underTest.isEnabled()).isFalse();
+  }
+
+  @Test
+  public void cache_is_enabled_by_default() {
+    assertThat(SearchResultCache.create(new MapSettings()).isEnabled()).isTrue();
+  }
+
+  @Test
+  public void fail_if_ttl_is_negative() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.search.resultCacheTtlInSeconds must be positive or zero. Got: -1");
+
+    new SearchResultCache(-1);
+  }
+
+  @Test
+  public void fail_if_max_weight_is_negative() {
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.search.resultCacheMaxDocuments must be positive or zero. Got: -1");
+
+    new SearchResultCache(60, -1);
+  }
+
+  private int get(List<String> projectUuids, String request) {
+    return underTest.get(INDEX, projectUuids, request, loads::incrementAndGet, result -> () -> result);
+  }
+
+  private static class WeightedSnapshot implements SearchResultCache.Snapshot<String> {
+    private final String result;
+    private final int weight;
+
+    private WeightedSnapshot(String result, int weight) {
+      this.result = result;
+      this.weight = weight;
+    }
+
+    @Override
+    public String copy() {
+      return result;
+    }
+
+    @Override
+    public int weight() {
+      return weight;
+    }
+  }
+}
@@ -38,8 +38,11 @@ import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
 import org.sonar.server.issue.index.IssueIndexer;
 
+import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 
@@ -52,7 +55,9 @@ public class ServerIssueStorageTest {
 
   DbClient dbClient = dbTester.getDbClient();
 
-  ServerIssueStorage storage = new ServerIssueStorage(new FakeRuleFinder(), dbClient, mock(IssueIndexer.class));
+  IssueIndexer indexer = mock(IssueIndexer.class);
+
+  ServerIssueStorage storage = new ServerIssueStorage(new FakeRuleFinder(), dbClient, indexer);
 
   @Before
   public void setupDbClient() {
@@ -110,6 +115,8 @@ public class ServerIssueStorageTest {
 
     dbTester.assertDbUnit(getClass(), "should_insert_new_issues-result.xml",
       new String[]{"id", "created_at", "updated_at", "issue_change_creation_date"}, "issues", "issue_changes");
+    // new issues are indexed from db
+    verify(indexer).index();
   }
 
   @Test
@@ -155,6 +162,9 @@ public class ServerIssueStorageTest {
 
     dbTester.assertDbUnit(getClass(), "should_update_issues-result.xml",
       new String[]{"id", "created_at", "updated_at", "issue_change_creation_date"}, "issues", "issue_changes");
+    // changed issues are partially updated in index
+    verify(indexer).update(singletonList(issue));
+    verify(indexer, never()).index();
   }
 
   static class FakeRuleFinder implements RuleFinder {
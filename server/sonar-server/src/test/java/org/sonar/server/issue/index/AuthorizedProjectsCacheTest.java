@@ -0,0 +1,100 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.issue.index;
+
+import com.google.common.collect.ImmutableSet;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.Test;
+
+import static java.util.Collections.singleton;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AuthorizedProjectsCacheTest {
+
+  private AuthorizedProjectsCache underTest = new AuthorizedProjectsCache();
+
+  @Test
+  public void cache_authorized_projects_of_groups() {
+    underTest.getByGroups(ImmutableSet.of("sonar-users", "devs"), () -> Optional.of(singleton("P1")));
+
+    assertThat(underTest.getByGroups(ImmutableSet.of("devs", "sonar-users"), () -> Optional.of(singleton("P2")))).contains(singleton("P1"));
+    assertThat(underTest.getByGroups(singleton("sonar-users"), () -> Optional.of(singleton("P2")))).contains(singleton("P2"));
+    assertThat(underTest.getByGroups(singleton("all"), Optional::empty)).isEmpty();
+    assertThat(underTest.size()).isEqualTo(3L);
+    assertThat(underTest.hitCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void cache_authorized_projects_of_users() {
+    underTest.getByUser(10, () -> Optional.of(singleton("P1")));
+
+    assertThat(underTest.getByUser(10, () -> Optional.of(singleton("P2")))).contains(singleton("P1"));
+    assertThat(underTest.getByUser(11, () -> Optional.of(singleton("P2")))).contains(singleton("P2"));
+    assertThat(underTest.size()).isEqualTo(2L);
+    assertThat(underTest.hitCount()).isEqualTo(1L);
+  }
+
+  @Test
+  public void project_uuids_are_shared_between_entries() {
+    Set<String> ofGroups = underTest.getByGroups(singleton("sonar-users"), () -> Optional.of(singleton(new String("P1")))).get();
+    Set<String> ofUser = underTest.getByUser(10, () -> Optional.of(singleton(new String("P1")))).get();
+
+    assertThat(ofUser.iterator().next()).isSameAs(ofGroups.iterator().next());
+  }
+
+  @Test
+  public void cache_is_bounded_by_number_of_project_uuids() {
+    Set<String> uuids = new HashSet<>();
+    for (int i = 0; i < AuthorizedProjectsCache.MAX_UUIDS; i++) {
+      uuids.add("P" + i);
+    }
+    underTest.getByUser(10, () -> Optional.of(singleton("P1")));
+
+    underTest.getByUser(11, () -> Optional.of(uuids));
+
+    assertThat(underTest.size()).isLessThanOrEqualTo(1L);
+  }
+
+  @Test
+  public void clear_removes_all_entries() {
+    underTest.getByGroups(singleton("sonar-users"), () -> Optional.of(singleton("P1")));
+
+    underTest.clear();
+
+    assertThat(underTest.size()).isZero();
+    assertThat(underTest.getByGroups(singleton("sonar-users"), () -> Optional.of(singleton("P2")))).contains(singleton("P2"));
+  }
+
+  @Test
+  public void do_not_keep_authorizations_loaded_before_clear() {
+    Set<String> loadedBeforeRevocation = ImmutableSet.of("P1", "P2");
+
+    Optional<Set<String>> result = underTest.getByGroups(singleton("sonar-users"), () -> {
+      // permissions are indexed while authorizations are loaded
+      underTest.clear();
+      return Optional.of(loadedBeforeRevocation);
+    });
+
+    assertThat(result).contains(loadedBeforeRevocation);
+    assertThat(underTest.size()).isZero();
+  }
+}
@@ -76,7 +76,7 @@ public class IssueIndexDebtTest {
     System2 system = mock(System2.class);
     when(system.getDefaultTimeZone()).thenReturn(TimeZone.getTimeZone("+01:00"));
     when(system.now()).thenReturn(System.currentTimeMillis());
-    index = new IssueIndex(tester.client(), system, userSessionRule);
+    index = new IssueIndex(tester.client(), system, userSessionRule, new AuthorizedProjectsCache());
   }
 
   @Test
@@ -44,9 +44,11 @@ import org.sonar.api.utils.KeyValueFormat;
 import org.sonar.api.utils.System2;
 import org.sonar.db.component.ComponentDto;
 import org.sonar.db.component.ComponentTesting;
+import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.es.SearchOptions;
 import org.sonar.server.es.SearchResult;
+import org.sonar.server.es.SearchResultCache;
 import org.sonar.server.exceptions.NotFoundException;
 import org.sonar.server.issue.IssueQuery;
 import org.sonar.server.issue.IssueTesting;
@@ -57,6 +59,7 @@ import org.sonar.server.view.index.ViewIndexDefinition;
 import org.sonar.server.view.index.ViewIndexer;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.emptyList;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.entry;
@@ -90,7 +93,7 @@ public class IssueIndexTest {
     when(system.getDefaultTimeZone()).thenReturn(TimeZone.getTimeZone("GMT-1:00"));
     when(system.now()).thenReturn(System.currentTimeMillis());
 
-    underTest = new IssueIndex(tester.client(), system, userSessionRule);
+    underTest = new IssueIndex(tester.client(), system, userSessionRule, new AuthorizedProjectsCache());
   }
 
   @Test
@@ -192,6 +195,29 @@ public class IssueIndexTest {
     assertThat(result.getFacets().get("projectUuids")).containsOnly(entry("ABCD", 2L), entry("EFGH", 1L));
   }
 
+  @Test
+  public void facets_returned_from_cache_are_not_shared_between_requests() {
+    ComponentDto project = ComponentTesting.newProjectDto("ABCD");
+    indexIssues(IssueTesting.newDoc("ISSUE1", ComponentTesting.newFileDto(project, null)));
+    System2 system = mock(System2.class);
+    when(system.getDefaultTimeZone()).thenReturn(TimeZone.getTimeZone("GMT-1:00"));
+    SearchResultCache cache = new SearchResultCache(60);
+    underTest = new IssueIndex(new EsClient(tester.client().nativeClient(), cache), system, userSessionRule, new AuthorizedProjectsCache());
+    IssueQuery query = IssueQuery.builder(userSessionRule).build();
+    SearchOptions options = new SearchOptions().addFacets(newArrayList("projectUuids"));
+
+    SearchResult<IssueDoc> first = underTest.search(query, options);
+    first.getFacets().get("projectUuids").put("MANDATORY", 0L);
+    first.getDocs().get(0).getFields().put("key", "MODIFIED");
+
+    SearchResult<IssueDoc> second = underTest.search(query, options);
+    assertThat(cache.stats().hitCount()).isEqualTo(1L);
+    // result, document and facet value
+    assertThat(cache.weight()).isEqualTo(3L);
+    assertThat(second.getFacets().get("projectUuids")).containsOnly(entry("ABCD", 1L));
+    assertThat(second.getDocs().get(0).key()).isEqualTo("ISSUE1");
+  }
+
   @Test
   public void filter_by_modules() {
     ComponentDto project = ComponentTesting.newProjectDto();
@@ -1173,6 +1199,27 @@ public class IssueIndexTest {
     assertThat(underTest.search(IssueQuery.builder(userSessionRule).projectUuids(newArrayList(project3.key())).build(), new SearchOptions()).getDocs()).hasSize(0);
   }
 
+  @Test
+  public void authorized_projects_are_cached_until_permissions_are_indexed() {
+    AuthorizedProjectsCache authorizedProjectsCache = new AuthorizedProjectsCache();
+    IssueIndex index = new IssueIndex(tester.client(), System2.INSTANCE, userSessionRule, authorizedProjectsCache);
+    PermissionIndexerTester permissionIndexerTester = new PermissionIndexerTester(tester, authorizedProjectsCache);
+    ComponentDto project1 = ComponentTesting.newProjectDto();
+    ComponentDto project2 = ComponentTesting.newProjectDto();
+    indexIssue(IssueTesting.newDoc("ISSUE1", ComponentTesting.newFileDto(project1, null)), null, 10L);
+    indexIssue(IssueTesting.newDoc("ISSUE2", ComponentTesting.newFileDto(project2, null)), null, null);
+    userSessionRule.login("john").setUserId(10);
+
+    assertThat(index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions()).getDocs()).extracting(IssueDoc::key).containsOnly("ISSUE1");
+    assertThat(index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions()).getDocs()).extracting(IssueDoc::key).containsOnly("ISSUE1");
+    // projects of user and projects of its groups
+    assertThat(authorizedProjectsCache.hitCount()).isEqualTo(2L);
+
+    permissionIndexerTester.indexProjectPermission(project2.uuid(), emptyList(), singletonList(10L));
+
+    assertThat(index.search(IssueQuery.builder(userSessionRule).build(), new SearchOptions()).getDocs()).extracting(IssueDoc::key).containsOnly("ISSUE1", "ISSUE2");
+  }
+
   @Test
   public void authorized_issues_on_user_and_group() {
     ComponentDto project1 = ComponentTesting.newProjectDto().setKey("project1");
@@ -24,14 +24,21 @@ import com.google.common.collect.FluentIterable;
 import com.google.common.collect.Iterators;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import javax.annotation.Nonnull;
 import org.elasticsearch.search.SearchHit;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.api.config.MapSettings;
+import org.sonar.api.issue.Issue;
 import org.sonar.api.rule.RuleKey;
+import org.sonar.api.rule.Severity;
+import org.sonar.api.rules.RuleType;
+import org.sonar.api.utils.DateUtils;
 import org.sonar.api.utils.System2;
+import org.sonar.core.issue.DefaultIssue;
 import org.sonar.db.DbClient;
 import org.sonar.db.DbTester;
 import org.sonar.server.es.EsTester;
@@ -50,6 +57,9 @@ public class IssueIndexerTest {
   @Rule
   public DbTester dbTester = DbTester.create(System2.INSTANCE);
 
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
   @Test
   public void index_nothing() {
     IssueIndexer indexer = createIndexer();
@@ -83,6 +93,68 @@ public class IssueIndexerTest {
     assertThat(doc.getTechnicalUpdateDate().getTime()).isEqualTo(1550000000000L);
   }
 
+  @Test
+  public void indexAll_indexes_issues_of_all_projects_with_several_threads() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+
+    IssueIndexer indexer = new IssueIndexer(dbTester.getDbClient(), esTester.client(), 4);
+    indexer.indexAll();
+
+    verifyIssueKeys("ABCDE", "EDCBA");
+  }
+
+  @Test
+  public void index_indexes_all_issues_when_index_is_empty() {
+    dbTester.prepareDbUnit(getClass(), "index_project.xml");
+
+    IssueIndexer indexer = createIndexer();
+    indexer.index();
+
+    verifyIssueKeys("ABCDE", "EDCBA");
+  }
+
+  @Test
+  public void update_changed_fields_of_issues() {
+    IssueIndexer indexer = createIndexer();
+    indexer.index(Iterators.forArray(newDoc().setKey("ABC").setProjectUuid(A_PROJECT_UUID)));
+
+    Date updatedAt = DateUtils.parseDate("2016-06-01");
+    DefaultIssue issue = new DefaultIssue()
+      .setKey("ABC")
+      .setProjectUuid(A_PROJECT_UUID)
+      .setType(RuleType.BUG)
+      .setAssignee("simon")
+      .setStatus(Issue.STATUS_RESOLVED)
+      .setResolution(Issue.RESOLUTION_FIXED)
+      .setSeverity(Severity.BLOCKER)
+      .setTags(asList("security"))
+      .setUpdateDate(updatedAt);
+    indexer.update(asList(issue));
+
+    IssueDoc doc = esTester.getDocuments(IssueIndexDefinition.INDEX, IssueIndexDefinition.TYPE_ISSUE, IssueDoc.class).get(0);
+    assertThat(doc.assignee()).isEqualTo("simon");
+    assertThat(doc.status()).isEqualTo(Issue.STATUS_RESOLVED);
+    assertThat(doc.resolution()).isEqualTo(Issue.RESOLUTION_FIXED);
+    assertThat(doc.severity()).isEqualTo(Severity.BLOCKER);
+    assertThat(doc.type()).isEqualTo(RuleType.BUG);
+    assertThat(doc.tags()).containsOnly("security");
+    assertThat(doc.updateDate()).isEqualTo(updatedAt);
+    // other fields are not changed
+    assertThat(doc.message()).isEqualTo("the message");
+    assertThat(doc.getTechnicalUpdateDate()).isEqualTo(DateUtils.parseDate("2014-12-04"));
+  }
+
+  @Test
+  public void fail_if_number_of_threads_is_not_positive() {
+    MapSettings settings = new MapSettings();
+    settings.setProperty(IssueIndexer.THREADS_PROPERTY, 0);
+
+    expectedException.expect(IllegalArgumentException.class);
+    expectedException.expectMessage("Property sonar.search.issues.indexingThreads must be a positive integer. Got: 0");
+
+    new IssueIndexer(dbTester.getDbClient(), esTester.client(), settings);
+  }
+
   @Test
   public void deleteProject_deletes_issues() {
     dbTester.prepareDbUnit(getClass(), "index.xml");
@@ -36,6 +36,7 @@ import org.sonar.db.user.UserDbTester;
 import org.sonar.db.user.UserDto;
 import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
 import org.sonar.server.es.EsTester;
+import org.sonar.server.issue.index.AuthorizedProjectsCache;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 
 import static java.util.Arrays.asList;
@@ -62,7 +63,7 @@ public class PermissionIndexerTest {
 
   PermissionIndexerTester authorizationIndexerTester = new PermissionIndexerTester(esTester);
 
-  PermissionIndexer underTest = new PermissionIndexer(dbTester.getDbClient(), esTester.client());
+  PermissionIndexer underTest = new PermissionIndexer(dbTester.getDbClient(), esTester.client(), new AuthorizedProjectsCache());
 
   @Test
   public void index_all_does_nothing_when_no_data() {
@@ -25,6 +25,7 @@ import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.index.query.BoolQueryBuilder;
 import org.sonar.server.component.es.ProjectMeasuresIndexDefinition;
 import org.sonar.server.es.EsTester;
+import org.sonar.server.issue.index.AuthorizedProjectsCache;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 
 import static java.util.Collections.emptyList;
@@ -42,8 +43,12 @@ public class PermissionIndexerTester {
   private final PermissionIndexer permissionIndexer;
 
   public PermissionIndexerTester(EsTester esTester) {
+    this(esTester, new AuthorizedProjectsCache());
+  }
+
+  public PermissionIndexerTester(EsTester esTester, AuthorizedProjectsCache authorizedProjectsCache) {
     this.esTester = esTester;
-    this.permissionIndexer = new PermissionIndexer(null, esTester.client());
+    this.permissionIndexer = new PermissionIndexer(null, esTester.client(), authorizedProjectsCache);
   }
 
   public void indexProjectPermission(String projectUuid, List<String> groupNames, List<Long> userLogins) {
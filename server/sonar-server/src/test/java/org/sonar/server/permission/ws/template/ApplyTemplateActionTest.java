@@ -39,6 +39,7 @@ import org.sonar.server.es.EsTester;
 import org.sonar.server.exceptions.BadRequestException;
 import org.sonar.server.exceptions.ForbiddenException;
 import org.sonar.server.exceptions.NotFoundException;
+import org.sonar.server.issue.index.AuthorizedProjectsCache;
 import org.sonar.server.issue.index.IssueIndexDefinition;
 import org.sonar.server.organization.DefaultOrganizationProvider;
 import org.sonar.server.organization.TestDefaultOrganizationProvider;
@@ -71,7 +72,7 @@ public class ApplyTemplateActionTest extends BasePermissionWsTest<ApplyTemplateA
   private PermissionTemplateDto template1;
   private PermissionTemplateDto template2;
   private PermissionIndexerTester authorizationIndexerTester = new PermissionIndexerTester(esTester);
-  private PermissionIndexer permissionIndexer = new PermissionIndexer(db.getDbClient(), esTester.client());
+  private PermissionIndexer permissionIndexer = new PermissionIndexer(db.getDbClient(), esTester.client(), new AuthorizedProjectsCache());
   private DefaultOrganizationProvider defaultOrganizationProvider = TestDefaultOrganizationProvider.from(db);
 
   @Override
@@ -25,9 +25,11 @@ import org.elasticsearch.cluster.health.ClusterHealthStatus;
 import org.junit.Rule;
 import org.junit.Test;
 import org.sonar.api.config.MapSettings;
+import org.sonar.server.es.BaseIndexer;
 import org.sonar.server.es.EsClient;
 import org.sonar.server.es.EsTester;
 import org.sonar.server.issue.index.IssueIndexDefinition;
+import org.sonar.server.issue.index.IssueIndexer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
@@ -78,6 +80,65 @@ public class EsMonitorTest {
     assertThat(indexAttributes.get("Store Size")).isNotNull();
   }
 
+  @Test
+  public void index_attributes_are_named_by_alias() {
+    esTester.client().prepareCreate("fakes_123").get();
+    esTester.client().nativeClient().admin().indices().prepareAliases().addAlias("fakes_123", "fakes").get();
+
+    Map indicesAttributes = (Map) underTest.attributes().get("Indices");
+
+    assertThat(indicesAttributes).containsOnlyKeys(IssueIndexDefinition.INDEX, "fakes");
+  }
+
+  @Test
+  public void bulk_indexing_attributes() {
+    Map<String, Object> attributes = underTest.attributes();
+    Map bulkAttributes = (Map) attributes.get("Bulk Indexing");
+
+    assertThat(bulkAttributes.get("Indexed Documents")).isEqualTo(0L);
+    assertThat(bulkAttributes.get("Rejected Documents")).isEqualTo(0L);
+    assertThat(underTest.getBulkIndexedDocuments()).isEqualTo(0L);
+    assertThat(underTest.getBulkRejectedDocuments()).isEqualTo(0L);
+  }
+
+  @Test
+  public void request_latencies_attributes() {
+    esTester.client().prepareSearch(IssueIndexDefinition.INDEX).get();
+
+    Map<String, Object> attributes = underTest.attributes();
+    Map latencies = (Map) attributes.get("Request Latencies");
+
+    assertThat(latencies).containsKey("search " + IssueIndexDefinition.INDEX);
+    assertThat(underTest.getSearchRequests()).isPositive();
+    assertThat(underTest.getSearchLatencyP99Ms()).isGreaterThanOrEqualTo(underTest.getSearchLatencyMeanMs());
+  }
+
+  @Test
+  public void project_indexing_attributes() {
+    underTest = new EsMonitor(esTester.client(), new BaseIndexer[] {new IssueIndexer(null, esTester.client())});
+
+    Map indexingAttributes = (Map) underTest.attributes().get("Project Indexing");
+
+    assertThat(indexingAttributes).containsOnlyKeys("IssueIndexer");
+    Map issueIndexerAttributes = (Map) indexingAttributes.get("IssueIndexer");
+    assertThat(issueIndexerAttributes.get("Requests")).isEqualTo(0L);
+    assertThat(issueIndexerAttributes.get("Coalesced Requests")).isEqualTo(0L);
+    assertThat(issueIndexerAttributes.get("Pending Projects")).isEqualTo(0);
+    assertThat(issueIndexerAttributes.get("Max Lag (ms)")).isEqualTo(0L);
+  }
+
+  @Test
+  public void search_result_cache_attributes() {
+    Map<String, Object> attributes = underTest.attributes();
+    Map cacheAttributes = (Map) attributes.get("Search Result Cache");
+
+    // cache is disabled in tests
+    assertThat(cacheAttributes.get("Enabled")).isEqualTo(false);
+    assertThat(cacheAttributes.get("Hits")).isEqualTo(0L);
+    assertThat(underTest.getSearchResultCacheHits()).isEqualTo(0L);
+    assertThat(underTest.getSearchResultCacheMisses()).isEqualTo(0L);
+  }
+
   @Test
   public void attributes_displays_exception_message_when_cause_null_when_client_fails() {
     EsClient esClientMock = mock(EsClient.class);
@@ -0,0 +1,129 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.server.source.ws;
+
+import java.util.stream.IntStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.server.ws.WebService;
+import org.sonar.api.utils.System2;
+import org.sonar.api.web.UserRole;
+import org.sonar.db.DbTester;
+import org.sonar.db.component.ComponentDbTester;
+import org.sonar.db.component.ComponentDto;
+import org.sonar.db.source.FileSourceDto;
+import org.sonar.server.exceptions.BadRequestException;
+import org.sonar.server.exceptions.ForbiddenException;
+import org.sonar.server.tester.UserSessionRule;
+import org.sonar.server.ws.WsActionTester;
+import org.sonarqube.ws.MediaTypes;
+import org.sonarqube.ws.WsSources.HashesResponse;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.sonar.db.component.ComponentTesting.newFileDto;
+import static org.sonar.db.component.ComponentTesting.newProjectDto;
+import static org.sonar.server.source.ws.HashesAction.PARAM_KEYS;
+
+public class HashesActionTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Rule
+  public DbTester db = DbTester.create(System2.INSTANCE);
+
+  @Rule
+  public UserSessionRule userSession = UserSessionRule.standalone();
+
+  private ComponentDbTester componentDb = new ComponentDbTester(db);
+
+  private WsActionTester ws = new WsActionTester(new HashesAction(db.getDbClient(), userSession));
+
+  @Test
+  public void definition() {
+    WebService.Action action = ws.getDef();
+
+    assertThat(action.key()).isEqualTo("hashes");
+    assertThat(action.isInternal()).isTrue();
+    assertThat(action.since()).isEqualTo("6.2");
+    assertThat(action.responseExampleAsString()).isNotEmpty();
+    assertThat(action.param(PARAM_KEYS).isRequired()).isTrue();
+  }
+
+  @Test
+  public void show_hashes_of_several_files() throws Exception {
+    ComponentDto project = componentDb.insertComponent(newProjectDto());
+    ComponentDto file1 = insertFileWithHashes(project, "a\nb\nc");
+    ComponentDto file2 = insertFileWithHashes(project, "d\n\ne");
+    ComponentDto fileWithoutSource = componentDb.insertComponent(newFileDto(project));
+    userSession.addProjectUuidPermissions(UserRole.USER, project.uuid());
+
+    HashesResponse response = call(file1.key(), file2.key(), fileWithoutSource.key(), "unknown");
+
+    assertThat(response.getFilesList())
+      .extracting(HashesResponse.File::getKey, HashesResponse.File::getLineHashesList)
+      .containsOnly(
+        tuple(file1.key(), asList("a", "b", "c")),
+        tuple(file2.key(), asList("d", "", "e")));
+  }
+
+  @Test
+  public void fail_if_missing_permission_on_one_project() throws Exception {
+    ComponentDto project1 = componentDb.insertComponent(newProjectDto());
+    ComponentDto project2 = componentDb.insertComponent(newProjectDto());
+    ComponentDto file1 = insertFileWithHashes(project1, "a");
+    ComponentDto file2 = insertFileWithHashes(project2, "b");
+    userSession.addProjectUuidPermissions(UserRole.USER, project1.uuid());
+
+    expectedException.expect(ForbiddenException.class);
+
+    call(file1.key(), file2.key());
+  }
+
+  @Test
+  public void fail_if_too_many_keys() throws Exception {
+    String[] keys = IntStream.rangeClosed(1, HashesAction.MAX_KEYS + 1).mapToObj(i -> "key" + i).toArray(String[]::new);
+
+    expectedException.expect(BadRequestException.class);
+    expectedException.expectMessage("'keys' can contain only 100 values, got 101");
+
+    call(keys);
+  }
+
+  private ComponentDto insertFileWithHashes(ComponentDto project, String lineHashes) {
+    ComponentDto file = componentDb.insertComponent(newFileDto(project));
+    db.getDbClient().fileSourceDao().insert(new FileSourceDto()
+      .setProjectUuid(project.uuid())
+      .setFileUuid(file.uuid())
+      .setDataType(FileSourceDto.Type.SOURCE)
+      .setLineHashes(lineHashes));
+    return file;
+  }
+
+  private HashesResponse call(String... keys) throws Exception {
+    return HashesResponse.parseFrom(ws.newRequest()
+      .setMediaType(MediaTypes.PROTOBUF)
+      .setParam(PARAM_KEYS, String.join(",", keys))
+      .execute().getInputStream());
+  }
+}
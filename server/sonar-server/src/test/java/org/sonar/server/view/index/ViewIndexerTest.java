@@ -41,6 +41,7 @@ import org.sonar.server.es.SearchOptions;
 import org.sonar.server.es.SearchResult;
 import org.sonar.server.issue.IssueQuery;
 import org.sonar.server.issue.IssueTesting;
+import org.sonar.server.issue.index.AuthorizedProjectsCache;
 import org.sonar.server.issue.index.IssueDoc;
 import org.sonar.server.issue.index.IssueIndex;
 import org.sonar.server.issue.index.IssueIndexDefinition;
@@ -141,9 +142,10 @@ public class ViewIndexerTest {
 
   @Test
   public void clear_views_lookup_cache_on_index_view_uuid() {
-    IssueIndex issueIndex = new IssueIndex(esTester.client(), System2.INSTANCE, userSessionRule);
+    AuthorizedProjectsCache authorizedProjectsCache = new AuthorizedProjectsCache();
+    IssueIndex issueIndex = new IssueIndex(esTester.client(), System2.INSTANCE, userSessionRule, authorizedProjectsCache);
     IssueIndexer issueIndexer = new IssueIndexer(dbClient, esTester.client());
-    PermissionIndexer permissionIndexer = new PermissionIndexer(dbClient, esTester.client());
+    PermissionIndexer permissionIndexer = new PermissionIndexer(dbClient, esTester.client(), authorizedProjectsCache);
 
     String viewUuid = "ABCD";
 
@@ -34,6 +34,12 @@ import static org.sonar.db.DatabaseUtils.executeLargeInputsWithoutOutput;
 
 public class MeasureDao implements Dao {
 
+  /**
+   * Maximum number of rows inserted by a single statement of {@link #insertMultiple(DbSession, Collection)}.
+   * With 15 columns per row, this keeps the number of bound parameters below the limit of 2100 of MSSQL.
+   */
+  public static final int MULTIPLE_INSERT_MAX_SIZE = 100;
+
   public Optional<MeasureDto> selectSingle(DbSession dbSession, MeasureQuery query) {
     List<MeasureDto> measures = selectByQuery(dbSession, query);
     return Optional.ofNullable(Iterables.getOnlyElement(measures, null));
@@ -114,6 +120,20 @@ public class MeasureDao implements Dao {
     insert(session, Lists.asList(item, others));
   }
 
+  /**
+   * Inserts the specified measures with multi-rows {@code INSERT} statements (one statement per
+   * {@link #MULTIPLE_INSERT_MAX_SIZE} measures) rather than one statement per measure.
+   */
+  public void insertMultiple(DbSession session, Collection<MeasureDto> items) {
+    if (items.isEmpty()) {
+      return;
+    }
+    MeasureMapper mapper = mapper(session);
+    for (List<MeasureDto> partition : Iterables.partition(items, MULTIPLE_INSERT_MAX_SIZE)) {
+      mapper.insertMultiple(partition);
+    }
+  }
+
   private static MeasureMapper mapper(DbSession session) {
     return session.getMapper(MeasureMapper.class);
   }
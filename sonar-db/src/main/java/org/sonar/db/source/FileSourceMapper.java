@@ -27,6 +27,8 @@ public interface FileSourceMapper {
 
   List<FileSourceDto> selectHashesForProject(@Param("projectUuid") String projectUuid, @Param("dataType") String dataType);
 
+  List<FileSourceDto> selectLineHashesByFileUuids(@Param("fileUuids") List<String> fileUuids, @Param("dataType") String dataType);
+
   @CheckForNull
   FileSourceDto select(@Param("fileUuid") String fileUuid, @Param("dataType") String dataType);
 
@@ -98,6 +98,45 @@ public class MeasureDaoTest {
     assertThat(selected.getAlertText()).isEqualTo(inserted.getAlertText());
   }
 
+  @Test
+  public void insertMultiple_inserts_all_measures_with_all_columns() {
+    insertAnalysis(LAST_ANALYSIS_UUID, true);
+    List<MeasureDto> inserted = new ArrayList<>();
+    for (int i = 0; i < MeasureDao.MULTIPLE_INSERT_MAX_SIZE + 10; i++) {
+      inserted.add(new MeasureDto()
+        .setAnalysisUuid(LAST_ANALYSIS_UUID)
+        .setMetricId(i)
+        .setComponentUuid("C1")
+        .setValue((double) i)
+        .setData("data" + i)
+        .setVariation(1, 1.0d)
+        .setVariation(5, 5.0d)
+        .setAlertStatus("alert")
+        .setAlertText("alert-text"));
+    }
+
+    underTest.insertMultiple(db.getSession(), inserted);
+    db.commit();
+
+    List<MeasureDto> selected = underTest.selectByQuery(db.getSession(), MeasureQuery.builder().setComponentUuid("C1").build());
+    assertThat(selected).hasSize(MeasureDao.MULTIPLE_INSERT_MAX_SIZE + 10);
+    MeasureDto last = selected.stream().filter(m -> m.getMetricId() == MeasureDao.MULTIPLE_INSERT_MAX_SIZE + 9).findFirst().get();
+    assertThat(last.getValue()).isEqualTo(MeasureDao.MULTIPLE_INSERT_MAX_SIZE + 9d);
+    assertThat(last.getData()).isEqualTo("data" + (MeasureDao.MULTIPLE_INSERT_MAX_SIZE + 9));
+    assertThat(last.getVariation(1)).isEqualTo(1.0d);
+    assertThat(last.getVariation(2)).isNull();
+    assertThat(last.getVariation(5)).isEqualTo(5.0d);
+    assertThat(last.getAlertStatus()).isEqualTo("alert");
+    assertThat(last.getAlertText()).isEqualTo("alert-text");
+  }
+
+  @Test
+  public void insertMultiple_does_nothing_when_there_is_no_measure() {
+    underTest.insertMultiple(db.getSession(), emptyList());
+
+    assertThat(db.countRowsOfTable("project_measures")).isZero();
+  }
+
   @Test
   public void selectByQuery() {
     insertAnalysis(LAST_ANALYSIS_UUID, true);
@@ -24,6 +24,7 @@ import com.google.common.base.Throwables;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
+import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.commons.io.IOUtils;
 import org.junit.Rule;
@@ -33,9 +34,11 @@ import org.sonar.db.DbSession;
 import org.sonar.db.DbTester;
 import org.sonar.db.source.FileSourceDto.Type;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.fail;
 import static org.assertj.core.api.Assertions.in;
+import static org.assertj.core.api.Assertions.tuple;
 
 
 public class FileSourceDaoTest {
@@ -73,6 +76,22 @@ public class FileSourceDaoTest {
     assertThat(fn.result).isEqualTo("ABC\\nDEF\\nGHI");
   }
 
+  @Test
+  public void select_line_hashes_by_file_uuids() {
+    dbTester.prepareDbUnit(getClass(), "shared.xml");
+
+    List<FileSourceDto> dtos = underTest.selectLineHashesByFileUuids(dbTester.getSession(), asList("FILE1_UUID", "unknown"));
+
+    assertThat(dtos).extracting(FileSourceDto::getFileUuid, FileSourceDto::getLineHashes).containsOnly(tuple("FILE1_UUID", "ABC\\nDEF\\nGHI"));
+  }
+
+  @Test
+  public void select_line_hashes_by_file_uuids_ignores_test_data() {
+    dbTester.prepareDbUnit(getClass(), "no_line_hashes_when_only_test_data.xml");
+
+    assertThat(underTest.selectLineHashesByFileUuids(dbTester.getSession(), asList("FILE1_UUID"))).isEmpty();
+  }
+
   @Test
   public void no_line_hashes_on_unknown_file() {
     dbTester.prepareDbUnit(getClass(), "shared.xml");
@@ -44,6 +44,10 @@ import javax.annotation.Nullable;
  * <p>
  * Note that this implementation currently does not support deletion, however it's possible to implement.
  * </p>
+ * <p>
+ * Once sorted (by first call to {@link #iterator()} for instance), {@link #getBySequenceHash(ByteArray)} can be called
+ * concurrently by several threads, as long as no block is inserted anymore.
+ * </p>
  */
 public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
@@ -70,8 +74,6 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
 
   private int[] resourceIdsIndex;
 
-  private final Block.Builder blockBuilder = Block.builder();
-
   public PackedMemoryCloneIndex() {
     this(8, DEFAULT_INITIAL_CAPACITY);
   }
@@ -138,7 +140,7 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     int startUnit = blockData[offset++];
     int endUnit = blockData[offset];
 
-    return blockBuilder
+    return Block.builder()
       .setResourceId(resourceId)
       .setBlockHash(blockHash)
       .setIndexInFile(indexInFile)
@@ -217,20 +219,25 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
   public Collection<Block> getBySequenceHash(ByteArray sequenceHash) {
     ensureSorted();
 
-    // prepare hash for binary search
     int[] hash = sequenceHash.toIntArray();
     if (hash.length != hashInts) {
       throw new IllegalArgumentException("Expected " + hashInts + " ints in hash, but got " + hash.length);
     }
-    int offset = size * blockInts;
-    for (int i = 0; i < hashInts; i++) {
-      blockData[offset++] = hash[i];
+    // binary search without writing the hash after the last block, so that queries can be executed concurrently
+    int lower = 0;
+    int upper = size;
+    while (lower < upper) {
+      int mid = (lower + upper) >> 1;
+      if (compareHash(mid, hash) < 0) {
+        lower = mid + 1;
+      } else {
+        upper = mid;
+      }
     }
 
-    int index = DataUtils.binarySearch(byBlockHash);
-
     List<Block> result = new ArrayList<>();
-    while (index < size && !isLessByHash(size, index)) {
+    int index = lower;
+    while (index < size && compareHash(index, hash) == 0) {
       // extract block (note that there is no need to extract hash)
       String resourceId = resourceIds[index];
       result.add(createBlock(index, resourceId, sequenceHash));
@@ -239,6 +246,16 @@ public class PackedMemoryCloneIndex extends AbstractCloneIndex {
     return result;
   }
 
+  private int compareHash(int index, int[] hash) {
+    int offset = index * blockInts;
+    for (int k = 0; k < hashInts; k++, offset++) {
+      if (blockData[offset] != hash[k]) {
+        return blockData[offset] < hash[k] ? -1 : 1;
+      }
+    }
+    return 0;
+  }
+
   /**
    * {@inheritDoc}
    * <p>
@@ -28,6 +28,7 @@ import org.sonar.duplications.index.PackedMemoryCloneIndex.ResourceBlocks;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.stream.LongStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.is;
@@ -122,6 +123,20 @@ public class PackedMemoryCloneIndexTest {
     assertThat(index.getByResourceId("a").size(), is(2));
   }
 
+  @Test
+  public void find_by_hash_concurrently() {
+    for (long hash = -50; hash < 50; hash++) {
+      index.insert(newBlock("a", hash));
+      index.insert(newBlock("b", hash));
+    }
+    index.iterator();
+
+    boolean allFound = LongStream.range(-100, 100).parallel()
+      .allMatch(hash -> index.getBySequenceHash(new ByteArray(hash)).size() == (hash >= -50 && hash < 50 ? 2 : 0));
+
+    assertThat(allFound, is(true));
+  }
+
   /**
    * Given: index, which accepts blocks with 4-byte hash.
    * Expected: exception during insertion of block with 8-byte hash.
@@ -19,21 +19,14 @@
  */
 package org.sonar.api.batch.fs.internal;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
-import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetEncoder;
-import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
-import javax.annotation.CheckForNull;
 import javax.annotation.Nullable;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.codec.digest.DigestUtils;
@@ -55,44 +48,64 @@ public class FileMetadata {
 
   private static final char LINE_FEED = '\n';
   private static final char CARRIAGE_RETURN = '\r';
+  private static final int BUFFER_SIZE = 8192;
 
-  public abstract static class CharHandler {
+  /**
+   * Receives the content of a file, split into lines. End of line characters are passed
+   * to {@link #handleEol(char)}, all the other characters to {@link #handleChar(char)}.
+   */
+  private abstract static class LineHandler {
 
-    protected void handleAll(char c) {
-    }
+    protected abstract void handleChar(char c);
 
-    protected void handleIgnoreEoL(char c) {
+    protected void handleEol(char c) {
     }
 
-    protected void newLine() {
-    }
+    protected abstract void newLine();
 
-    protected void eof() {
-    }
+    protected abstract void eof();
   }
 
-  private static class LineCounter extends CharHandler {
+  /**
+   * Computes in a single pass the number of lines, the number of non-blank lines, the hash of the file
+   * ignoring ends of lines and the offsets of lines.
+   */
+  private static class MetadataComputer extends LineHandler {
+    private final File file;
+    private final Charset encoding;
+    private final Utf8Digest fileDigest = new Utf8Digest();
+    private final IntArrayList originalLineOffsets = new IntArrayList();
     private int lines = 1;
     private int nonBlankLines = 0;
     private boolean blankLine = true;
-    boolean alreadyLoggedInvalidCharacter = false;
-    private final File file;
-    private final Charset encoding;
+    private boolean alreadyLoggedInvalidCharacter = false;
+    private long currentOriginalOffset = 0;
 
-    LineCounter(File file, Charset encoding) {
+    MetadataComputer(File file, Charset encoding) {
       this.file = file;
       this.encoding = encoding;
+      originalLineOffsets.add(0);
     }
 
     @Override
-    protected void handleAll(char c) {
-      if (!alreadyLoggedInvalidCharacter && c == '\ufffd') {
+    protected void handleChar(char c) {
+      currentOriginalOffset++;
+      fileDigest.append(c);
+      if (blankLine && !Character.isWhitespace(c)) {
+        blankLine = false;
+      }
+      if (c == '\ufffd' && !alreadyLoggedInvalidCharacter) {
         LOG.warn("Invalid character encountered in file {} at line {} for encoding {}. Please fix file content or configure the encoding to be used using property '{}'.", file,
           lines, encoding, CoreProperties.ENCODING_PROPERTY);
         alreadyLoggedInvalidCharacter = true;
       }
     }
 
+    @Override
+    protected void handleEol(char c) {
+      currentOriginalOffset++;
+    }
+
     @Override
     protected void newLine() {
       lines++;
@@ -100,13 +113,11 @@ public class FileMetadata {
         nonBlankLines++;
       }
       blankLine = true;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      if (!Character.isWhitespace(c)) {
-        blankLine = false;
+      fileDigest.append(LINE_FEED);
+      if (currentOriginalOffset > Integer.MAX_VALUE) {
+        throw new IllegalStateException("File is too big: " + currentOriginalOffset);
       }
+      originalLineOffsets.add((int) currentOriginalOffset);
     }
 
     @Override
@@ -114,155 +125,120 @@ public class FileMetadata {
       if (!blankLine) {
         nonBlankLines++;
       }
-    }
-
-    public int lines() {
-      return lines;
-    }
-
-    public int nonBlankLines() {
-      return nonBlankLines;
-    }
-
-  }
-
-  private static class FileHashComputer extends CharHandler {
-    private MessageDigest globalMd5Digest = DigestUtils.getMd5Digest();
-    private StringBuilder sb = new StringBuilder();
-    private final CharsetEncoder encoder;
-    private final File file;
-
-    public FileHashComputer(File f) {
-      encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
-      file = f;
-    }
-
-    @Override
-    protected void handleIgnoreEoL(char c) {
-      sb.append(c);
-    }
-
-    @Override
-    protected void newLine() {
-      sb.append(LINE_FEED);
-      processBuffer();
-      sb.setLength(0);
-    }
-
-    @Override
-    protected void eof() {
-      if (sb.length() > 0) {
-        processBuffer();
-      }
-    }
-
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          globalMd5Digest.update(encoded.array(), 0, encoded.limit());
-        }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
+      if (currentOriginalOffset > Integer.MAX_VALUE) {
+        throw new IllegalStateException("File is too big: " + currentOriginalOffset);
       }
     }
 
-    @CheckForNull
-    public String getHash() {
-      return Hex.encodeHexString(globalMd5Digest.digest());
+    Metadata toMetadata() {
+      return new Metadata(lines, nonBlankLines, Hex.encodeHexString(fileDigest.digest()), originalLineOffsets.trimAndGet(), (int) currentOriginalOffset);
     }
   }
 
-  private static class LineHashComputer extends CharHandler {
-    private final MessageDigest lineMd5Digest = DigestUtils.getMd5Digest();
-    private final CharsetEncoder encoder;
-    private final StringBuilder sb = new StringBuilder();
+  private static class LineHashComputer extends LineHandler {
+    private final Utf8Digest lineDigest = new Utf8Digest();
     private final LineHashConsumer consumer;
-    private final File file;
     private int line = 1;
 
-    public LineHashComputer(LineHashConsumer consumer, File f) {
+    LineHashComputer(LineHashConsumer consumer) {
       this.consumer = consumer;
-      this.file = f;
-      this.encoder = StandardCharsets.UTF_8.newEncoder()
-        .onMalformedInput(CodingErrorAction.REPLACE)
-        .onUnmappableCharacter(CodingErrorAction.REPLACE);
     }
 
     @Override
-    protected void handleIgnoreEoL(char c) {
+    protected void handleChar(char c) {
       if (!Character.isWhitespace(c)) {
-        sb.append(c);
+        lineDigest.append(c);
       }
     }
 
     @Override
     protected void newLine() {
-      processBuffer();
-      sb.setLength(0);
+      processLine();
       line++;
     }
 
     @Override
     protected void eof() {
-      if (this.line > 0) {
-        processBuffer();
-      }
+      processLine();
     }
 
-    private void processBuffer() {
-      try {
-        if (sb.length() > 0) {
-          ByteBuffer encoded = encoder.encode(CharBuffer.wrap(sb));
-          lineMd5Digest.update(encoded.array(), 0, encoded.limit());
-          consumer.consume(line, lineMd5Digest.digest());
-        }
-      } catch (CharacterCodingException e) {
-        throw new IllegalStateException("Error encoding line hash in file: " + file.getAbsolutePath(), e);
+    private void processLine() {
+      if (!lineDigest.isEmpty()) {
+        consumer.consume(line, lineDigest.digest());
       }
     }
   }
 
-  private static class LineOffsetCounter extends CharHandler {
-    private long currentOriginalOffset = 0;
-    private IntArrayList originalLineOffsets = new IntArrayList();
-    private long lastValidOffset = 0;
-
-    public LineOffsetCounter() {
-      originalLineOffsets.add(0);
-    }
-
-    @Override
-    protected void handleAll(char c) {
-      currentOriginalOffset++;
-    }
-
-    @Override
-    protected void newLine() {
-      if (currentOriginalOffset > Integer.MAX_VALUE) {
-        throw new IllegalStateException("File is too big: " + currentOriginalOffset);
+  /**
+   * MD5 of the UTF-8 encoding of a sequence of chars. Chars are encoded into a reused byte buffer, so
+   * that no object is allocated per char or per line. Malformed surrogates are replaced by '?', as
+   * done by the JDK encoder with {@link java.nio.charset.CodingErrorAction#REPLACE}.
+   */
+  private static final class Utf8Digest {
+    private static final byte REPLACEMENT = '?';
+
+    private final MessageDigest md5 = DigestUtils.getMd5Digest();
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int length = 0;
+    private boolean empty = true;
+    private char highSurrogate = 0;
+
+    void append(char c) {
+      empty = false;
+      if (length + 4 > buffer.length) {
+        md5.update(buffer, 0, length);
+        length = 0;
+      }
+      if (highSurrogate != 0) {
+        char high = highSurrogate;
+        highSurrogate = 0;
+        if (Character.isLowSurrogate(c)) {
+          int codePoint = Character.toCodePoint(high, c);
+          buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+          buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+          buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+          buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+          return;
+        }
+        buffer[length++] = REPLACEMENT;
+      }
+      if (c < 0x80) {
+        buffer[length++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[length++] = (byte) (0xC0 | (c >> 6));
+        buffer[length++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c)) {
+        highSurrogate = c;
+      } else if (Character.isLowSurrogate(c)) {
+        buffer[length++] = REPLACEMENT;
+      } else {
+        buffer[length++] = (byte) (0xE0 | (c >> 12));
+        buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[length++] = (byte) (0x80 | (c & 0x3F));
       }
-      originalLineOffsets.add((int) currentOriginalOffset);
-    }
-
-    @Override
-    protected void eof() {
-      lastValidOffset = currentOriginalOffset;
     }
 
-    public int[] getOriginalLineOffsets() {
-      return originalLineOffsets.trimAndGet();
+    boolean isEmpty() {
+      return empty;
     }
 
-    public int getLastValidOffset() {
-      if (lastValidOffset > Integer.MAX_VALUE) {
-        throw new IllegalStateException("File is too big: " + lastValidOffset);
+    /**
+     * Returns the digest of the chars appended so far, and resets it.
+     */
+    byte[] digest() {
+      if (highSurrogate != 0) {
+        highSurrogate = 0;
+        if (length == buffer.length) {
+          md5.update(buffer, 0, length);
+          length = 0;
+        }
+        buffer[length++] = REPLACEMENT;
       }
-      return (int) lastValidOffset;
+      md5.update(buffer, 0, length);
+      length = 0;
+      empty = true;
+      return md5.digest();
     }
-
   }
 
   /**
@@ -270,85 +246,67 @@ public class FileMetadata {
    * Maximum performance is needed.
    */
   public Metadata readMetadata(File file, Charset encoding) {
-    LineCounter lineCounter = new LineCounter(file, encoding);
-    FileHashComputer fileHashComputer = new FileHashComputer(file);
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
-    readFile(file, encoding, lineCounter, fileHashComputer, lineOffsetCounter);
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    MetadataComputer metadataComputer = new MetadataComputer(file, encoding);
+    readFile(file, encoding, metadataComputer);
+    return metadataComputer.toMetadata();
   }
 
   /**
    * For testing purpose
    */
   public Metadata readMetadata(Reader reader) {
-    LineCounter lineCounter = new LineCounter(new File("fromString"), StandardCharsets.UTF_16);
-    FileHashComputer fileHashComputer = new FileHashComputer(new File("fromString"));
-    LineOffsetCounter lineOffsetCounter = new LineOffsetCounter();
+    MetadataComputer metadataComputer = new MetadataComputer(new File("fromString"), StandardCharsets.UTF_16);
     try {
-      read(reader, lineCounter, fileHashComputer, lineOffsetCounter);
+      read(reader, metadataComputer);
     } catch (IOException e) {
       throw new IllegalStateException("Should never occurs", e);
     }
-    return new Metadata(lineCounter.lines(), lineCounter.nonBlankLines(), fileHashComputer.getHash(), lineOffsetCounter.getOriginalLineOffsets(),
-      lineOffsetCounter.getLastValidOffset());
+    return metadataComputer.toMetadata();
   }
 
-  public static void readFile(File file, Charset encoding, CharHandler... handlers) {
+  private static void readFile(File file, Charset encoding, LineHandler handler) {
     try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(file),
       ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-      Reader reader = new BufferedReader(new InputStreamReader(bomIn, encoding))) {
-      read(reader, handlers);
+      Reader reader = new InputStreamReader(bomIn, encoding)) {
+      read(reader, handler);
     } catch (IOException e) {
       throw new IllegalStateException(String.format("Fail to read file '%s' with encoding '%s'", file.getAbsolutePath(), encoding), e);
     }
   }
 
-  private static void read(Reader reader, CharHandler... handlers) throws IOException {
-    char c;
-    int i = reader.read();
+  /**
+   * Reads chars by blocks and splits them into lines. "\r\n", "\n" and "\r" are all considered as ends of line.
+   */
+  private static void read(Reader reader, LineHandler handler) throws IOException {
+    char[] chars = new char[BUFFER_SIZE];
     boolean afterCR = false;
-    while (i != -1) {
-      c = (char) i;
-      if (afterCR) {
-        for (CharHandler handler : handlers) {
-          if (c == CARRIAGE_RETURN) {
-            handler.newLine();
-            handler.handleAll(c);
-          } else if (c == LINE_FEED) {
-            handler.handleAll(c);
+    int read;
+    while ((read = reader.read(chars, 0, chars.length)) != -1) {
+      for (int i = 0; i < read; i++) {
+        char c = chars[i];
+        if (c == LINE_FEED) {
+          handler.handleEol(c);
+          handler.newLine();
+          afterCR = false;
+        } else if (c == CARRIAGE_RETURN) {
+          if (afterCR) {
             handler.newLine();
-          } else {
+          }
+          handler.handleEol(c);
+          afterCR = true;
+        } else {
+          if (afterCR) {
             handler.newLine();
-            handler.handleIgnoreEoL(c);
-            handler.handleAll(c);
+            afterCR = false;
           }
-        }
-        afterCR = c == CARRIAGE_RETURN;
-      } else if (c == LINE_FEED) {
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-          handler.newLine();
-        }
-      } else if (c == CARRIAGE_RETURN) {
-        afterCR = true;
-        for (CharHandler handler : handlers) {
-          handler.handleAll(c);
-        }
-      } else {
-        for (CharHandler handler : handlers) {
-          handler.handleIgnoreEoL(c);
-          handler.handleAll(c);
+          handler.handleChar(c);
         }
       }
-      i = reader.read();
     }
-    for (CharHandler handler : handlers) {
-      if (afterCR) {
-        handler.newLine();
-      }
-      handler.eof();
+    if (afterCR) {
+      handler.newLine();
     }
+    handler.eof();
   }
 
   public static class Metadata {
@@ -377,6 +335,6 @@ public class FileMetadata {
    * Compute a MD5 hash of each line of the file after removing of all blank chars
    */
   public static void computeLineHashesForIssueTracking(DefaultInputFile f, LineHashConsumer consumer) {
-    readFile(f.file(), f.charset(), new LineHashComputer(consumer, f.file()));
+    readFile(f.file(), f.charset(), new LineHashComputer(consumer));
   }
 }
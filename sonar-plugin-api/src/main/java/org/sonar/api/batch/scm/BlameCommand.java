@@ -25,6 +25,8 @@ import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 
 import java.util.List;
+import java.util.SortedSet;
+import javax.annotation.CheckForNull;
 
 /**
  * This class should be implemented by SCM providers.
@@ -58,6 +60,18 @@ public abstract class BlameCommand {
      */
     Iterable<InputFile> filesToBlame();
 
+    /**
+     * Lines of the given file which changed since the previous analysis. The blame of the other lines is already
+     * known by the server, so providers able to blame a subset of lines may skip them (see
+     * {@link BlameOutput#blameResult(InputFile, List)}). This is only a hint: providers can still blame the whole file.
+     * @return numbers of the changed lines, starting at 1, or {@code null} (or an empty set) if all the lines must be blamed
+     * @since 6.2
+     */
+    @CheckForNull
+    default SortedSet<Integer> changedLines(InputFile file) {
+      return null;
+    }
+
   }
 
   /**
@@ -68,7 +82,8 @@ public abstract class BlameCommand {
     /**
      * Add result of the blame command for a single file. Number of lines should
      * be consistent with {@link InputFile#lines()}. This method is thread safe.
-     * @param lines One entry per line in the file. <b>Every line must have a <code>non-null</code> date and revision </b>.
+     * @param lines One entry per line in the file. <b>Every line must have a <code>non-null</code> date and revision </b>,
+     * except the lines which are not part of {@link BlameInput#changedLines(InputFile)}: their entry can be <code>null</code>.
      */
     void blameResult(InputFile file, List<BlameLine> lines);
 
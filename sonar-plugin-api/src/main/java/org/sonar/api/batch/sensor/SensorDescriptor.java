@@ -79,4 +79,28 @@ public interface SensorDescriptor {
    */
   SensorDescriptor requireProperties(String... propertyKeys);
 
+  /**
+   * Declare that {@link Sensor#execute(SensorContext)} is thread-safe. Used by the platform to execute this {@link Sensor}
+   * concurrently with the other thread-safe sensors it does not depend upon (see {@link #dependsUpon(String...)}).
+   * Default is to execute sensor alone.
+   * @since 6.2
+   */
+  SensorDescriptor threadSafe();
+
+  /**
+   * Keys of data this {@link Sensor} needs, for example metric keys. The {@link Sensor} is executed after
+   * the sensors declaring these keys in {@link #dependedUpon(String...)}.
+   * Same as {@link org.sonar.api.batch.DependsUpon} on deprecated sensors.
+   * @since 6.2
+   */
+  SensorDescriptor dependsUpon(String... keys);
+
+  /**
+   * Keys of data this {@link Sensor} provides, for example metric keys. The {@link Sensor} is executed before
+   * the sensors declaring these keys in {@link #dependsUpon(String...)}.
+   * Same as {@link org.sonar.api.batch.DependedUpon} on deprecated sensors.
+   * @since 6.2
+   */
+  SensorDescriptor dependedUpon(String... keys);
+
 }
@@ -32,6 +32,9 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
   private InputFile.Type type = null;
   private String[] ruleRepositories = new String[0];
   private String[] properties = new String[0];
+  private boolean threadSafe = false;
+  private String[] dependsUpon = new String[0];
+  private String[] dependedUpon = new String[0];
 
   public String name() {
     return name;
@@ -54,6 +57,18 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
     return Arrays.asList(properties);
   }
 
+  public boolean isThreadSafe() {
+    return threadSafe;
+  }
+
+  public Collection<String> dependsUpon() {
+    return Arrays.asList(dependsUpon);
+  }
+
+  public Collection<String> dependedUpon() {
+    return Arrays.asList(dependedUpon);
+  }
+
   @Override
   public DefaultSensorDescriptor name(String name) {
     this.name = name;
@@ -99,4 +114,22 @@ public class DefaultSensorDescriptor implements SensorDescriptor {
     return this;
   }
 
+  @Override
+  public DefaultSensorDescriptor threadSafe() {
+    this.threadSafe = true;
+    return this;
+  }
+
+  @Override
+  public DefaultSensorDescriptor dependsUpon(String... keys) {
+    this.dependsUpon = keys;
+    return this;
+  }
+
+  @Override
+  public DefaultSensorDescriptor dependedUpon(String... keys) {
+    this.dependedUpon = keys;
+    return this;
+  }
+
 }
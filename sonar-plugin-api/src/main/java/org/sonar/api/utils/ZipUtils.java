@@ -179,19 +179,23 @@ public final class ZipUtils {
   }
 
   public static void zipDir(File dir, File zip) throws IOException {
-    OutputStream out = null;
-    ZipOutputStream zout = null;
-    try {
-      out = FileUtils.openOutputStream(zip);
-      zout = new ZipOutputStream(out);
-      doZipDir(dir, zout);
-
-    } finally {
-      IOUtils.closeQuietly(zout);
-      IOUtils.closeQuietly(out);
+    try (OutputStream out = FileUtils.openOutputStream(zip)) {
+      zipDir(dir, out);
     }
   }
 
+  /**
+   * Compresses the content of a directory into a stream. Files are compressed while being written,
+   * so the zip is neither kept in memory nor written to a temporary file. The stream is not closed.
+   *
+   * @since 6.2
+   */
+  public static void zipDir(File dir, OutputStream out) throws IOException {
+    ZipOutputStream zout = new ZipOutputStream(out);
+    doZipDir(dir, zout);
+    zout.finish();
+  }
+
   private static void doZip(String entryName, InputStream in, ZipOutputStream out) throws IOException {
     ZipEntry entry = new ZipEntry(entryName);
     out.putNextEntry(entry);
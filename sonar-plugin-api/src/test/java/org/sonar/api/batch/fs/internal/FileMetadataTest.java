@@ -108,6 +108,35 @@ public class FileMetadataTest {
     assertThat(metadata.originalLineOffsets).containsOnly(0, 5, 10, 18);
   }
 
+  @Test
+  public void supplementary_characters() throws Exception {
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, "a\uD834\uDD1Eb\r\n\uD834\uDD1E", StandardCharsets.UTF_8, true);
+
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(2);
+    assertThat(metadata.hash).isEqualTo(md5Hex("a\uD834\uDD1Eb\n\uD834\uDD1E".getBytes(StandardCharsets.UTF_8)));
+    assertThat(metadata.originalLineOffsets).containsOnly(0, 6);
+    assertThat(metadata.lastValidOffset).isEqualTo(8);
+  }
+
+  @Test
+  public void file_larger_than_read_buffer() throws Exception {
+    StringBuilder content = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      content.append("line \u00e9 ").append(i).append("\r\n");
+    }
+    File tempFile = temp.newFile();
+    FileUtils.write(tempFile, content, StandardCharsets.UTF_8, true);
+
+    FileMetadata.Metadata metadata = new FileMetadata().readMetadata(tempFile, StandardCharsets.UTF_8);
+    assertThat(metadata.lines).isEqualTo(10_001);
+    assertThat(metadata.nonBlankLines).isEqualTo(10_000);
+    assertThat(metadata.hash).isEqualTo(md5Hex(content.toString().replace("\r\n", "\n").getBytes(StandardCharsets.UTF_8)));
+    assertThat(metadata.originalLineOffsets).hasSize(10_001);
+    assertThat(metadata.lastValidOffset).isEqualTo(content.length());
+  }
+
   @Test
   public void unix_without_latest_eol() throws Exception {
     File tempFile = temp.newFile();
@@ -41,6 +41,21 @@ public class DefaultSensorDescriptorTest {
     assertThat(descriptor.type()).isEqualTo(InputFile.Type.MAIN);
     assertThat(descriptor.properties()).containsOnly("sonar.foo.reportPath");
     assertThat(descriptor.ruleRepositories()).containsOnly("squid-java");
+    assertThat(descriptor.isThreadSafe()).isFalse();
+    assertThat(descriptor.dependsUpon()).isEmpty();
+    assertThat(descriptor.dependedUpon()).isEmpty();
+  }
+
+  @Test
+  public void describe_thread_safety_and_dependencies() {
+    DefaultSensorDescriptor descriptor = new DefaultSensorDescriptor()
+      .threadSafe()
+      .dependsUpon("ncloc", "complexity")
+      .dependedUpon("coverage");
+
+    assertThat(descriptor.isThreadSafe()).isTrue();
+    assertThat(descriptor.dependsUpon()).containsOnly("ncloc", "complexity");
+    assertThat(descriptor.dependedUpon()).containsOnly("coverage");
   }
 
 }
@@ -27,6 +27,8 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
@@ -61,6 +63,20 @@ public class ZipUtilsTest {
     assertThat(new File(unzipDir, "dir1/hello.properties")).exists().isFile();
   }
 
+  @Test
+  public void zip_directory_to_stream() throws IOException {
+    File dir = FileUtils.toFile(getClass().getResource("/org/sonar/api/utils/ZipUtilsTest/shouldZipDirectory"));
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+
+    ZipUtils.zipDir(dir, zip);
+
+    File unzipDir = temp.newFolder();
+    ZipUtils.unzip(new ByteArrayInputStream(zip.toByteArray()), unzipDir);
+    assertThat(new File(unzipDir, "bar.txt")).exists().isFile();
+    assertThat(new File(unzipDir, "foo.txt")).exists().isFile();
+    assertThat(new File(unzipDir, "dir1/hello.properties")).exists().isFile();
+  }
+
   @Test
   public void unzipping_creates_target_directory_if_it_does_not_exist() throws IOException {
     File zip = FileUtils.toFile(urlToZip());
@@ -29,6 +29,7 @@ import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import javax.annotation.Nullable;
 import org.apache.commons.lang.ClassUtils;
@@ -160,6 +161,9 @@ public class BatchExtensionDictionnary {
   private <T> List<Object> getDependencies(T extension) {
     List<Object> result = new ArrayList<>();
     result.addAll(evaluateAnnotatedClasses(extension, DependsUpon.class));
+    if (extension instanceof SensorWrapper) {
+      result.addAll(((SensorWrapper) extension).descriptor().dependsUpon());
+    }
     return result;
   }
 
@@ -169,9 +173,26 @@ public class BatchExtensionDictionnary {
   public <T> List<Object> getDependents(T extension) {
     List<Object> result = new ArrayList<>();
     result.addAll(evaluateAnnotatedClasses(extension, DependedUpon.class));
+    if (extension instanceof SensorWrapper) {
+      result.addAll(((SensorWrapper) extension).descriptor().dependedUpon());
+    }
     return result;
   }
 
+  /**
+   * Whether one of the two extensions must be executed before the other one, because they are in different phases
+   * or because one depends upon the other.
+   */
+  public boolean areDependent(Object extension, Object other) {
+    return evaluatePhase(extension) != evaluatePhase(other) || dependsUpon(extension, other) || dependsUpon(other, extension);
+  }
+
+  private boolean dependsUpon(Object extension, Object other) {
+    List<Object> dependencies = getDependencies(extension);
+    List<Object> otherDependents = getDependents(other);
+    return dependencies.contains(other) || otherDependents.contains(extension) || !Collections.disjoint(dependencies, otherDependents);
+  }
+
   private static void completePhaseDependencies(DirectAcyclicGraph dag, Object extension) {
     Phase.Name phase = evaluatePhase(extension);
     dag.add(extension, phase);
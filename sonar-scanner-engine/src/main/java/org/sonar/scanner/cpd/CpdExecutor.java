@@ -22,7 +22,10 @@ package org.sonar.scanner.cpd;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayDeque;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -30,6 +33,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.config.Settings;
 import org.sonar.api.utils.log.Logger;
@@ -54,11 +58,14 @@ import static com.google.common.collect.FluentIterable.from;
  * Runs on the root module, at the end of the project analysis.
  * It executes copy paste detection involving all files of all modules, which were indexed during sensors execution for each module
  * by {@link CpdSensor). The sensor is responsible for handling exclusions and block sizes.
+ * Detection of the files is executed by a pool of threads (see property {@value #THREADS_PROPERTY}, by default the number of
+ * processors minus one), as the index is not modified anymore.
  */
 public class CpdExecutor {
   private static final Logger LOG = Loggers.get(CpdExecutor.class);
   // timeout for the computation of duplicates in a file (seconds)
   private static final int TIMEOUT = 5 * 60;
+  static final String THREADS_PROPERTY = "sonar.cpd.threads";
   static final int MAX_CLONE_GROUP_PER_FILE = 100;
   static final int MAX_CLONE_PART_PER_GROUP = 100;
 
@@ -66,7 +73,6 @@ public class CpdExecutor {
   private final ReportPublisher publisher;
   private final BatchComponentCache batchComponentCache;
   private final Settings settings;
-  private final ExecutorService executorService;
   private final ProgressReport progressReport;
   private int count;
   private int total;
@@ -76,50 +82,75 @@ public class CpdExecutor {
     this.index = index;
     this.publisher = publisher;
     this.batchComponentCache = batchComponentCache;
-    this.executorService = Executors.newSingleThreadExecutor();
     this.progressReport = new ProgressReport("CPD computation", TimeUnit.SECONDS.toMillis(10));
   }
 
   public void execute() {
     total = index.noResources();
+    int threads = getThreads();
     progressReport.start(String.format("Calculating CPD for %d files", total));
+    ExecutorService executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("CpdExecutor-%d").setDaemon(true).build());
     try {
       Iterator<ResourceBlocks> it = index.iterator();
-
+      // Detections are computed in parallel, but results are saved in the order of the index. The number of detections
+      // submitted in advance is limited in order to not keep the duplications of all files in memory.
+      Deque<FileDetection> pendingDetections = new ArrayDeque<>();
       while (it.hasNext()) {
         ResourceBlocks resourceBlocks = it.next();
-        runCpdAnalysis(resourceBlocks.resourceId(), resourceBlocks.blocks());
-        count++;
+        FileDetection detection = submitCpdAnalysis(executorService, resourceBlocks.resourceId(), resourceBlocks.blocks());
+        if (detection != null) {
+          pendingDetections.add(detection);
+        } else {
+          count++;
+        }
+        if (pendingDetections.size() > 2 * threads) {
+          saveCpdAnalysis(pendingDetections.poll());
+        }
+      }
+      while (!pendingDetections.isEmpty()) {
+        saveCpdAnalysis(pendingDetections.poll());
       }
       progressReport.stop("CPD calculation finished");
     } catch (Exception e) {
       progressReport.stop("");
       throw e;
+    } finally {
+      executorService.shutdownNow();
+    }
+  }
+
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
     }
+    return threads;
   }
 
-  private void runCpdAnalysis(String resource, final Collection<Block> fileBlocks) {
+  @CheckForNull
+  private FileDetection submitCpdAnalysis(ExecutorService executorService, String resource, final Collection<Block> fileBlocks) {
     LOG.debug("Detection of duplications for {}", resource);
 
     BatchComponent component = batchComponentCache.get(resource);
     if (component == null) {
       LOG.error("Resource not found in component cache: {}. Skipping CPD computation for it", resource);
-      return;
+      return null;
     }
+    return new FileDetection(component, executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks)));
+  }
 
-    InputFile inputFile = (InputFile) component.inputComponent();
+  private void saveCpdAnalysis(FileDetection detection) {
+    InputFile inputFile = (InputFile) detection.component.inputComponent();
     progressReport.message(String.format("%d/%d - current file: %s", count, total, inputFile.absolutePath()));
+    count++;
 
     List<CloneGroup> duplications;
-    Future<List<CloneGroup>> futureResult = null;
     try {
-      futureResult = executorService.submit(() -> SuffixTreeCloneDetectionAlgorithm.detect(index, fileBlocks));
-      duplications = futureResult.get(TIMEOUT, TimeUnit.SECONDS);
+      duplications = detection.result.get(TIMEOUT, TimeUnit.SECONDS);
     } catch (TimeoutException e) {
       LOG.warn("Timeout during detection of duplications for " + inputFile.absolutePath());
-      if (futureResult != null) {
-        futureResult.cancel(true);
-      }
+      detection.result.cancel(true);
       return;
     } catch (Exception e) {
       throw new IllegalStateException("Fail during detection of duplication for " + inputFile.absolutePath(), e);
@@ -133,7 +164,7 @@ public class CpdExecutor {
       filtered = duplications;
     }
 
-    saveDuplications(component, filtered);
+    saveDuplications(detection.component, filtered);
   }
 
   @VisibleForTesting
@@ -208,4 +239,14 @@ public class CpdExecutor {
     }
     return dupBuilder.build();
   }
+
+  private static class FileDetection {
+    private final BatchComponent component;
+    private final Future<List<CloneGroup>> result;
+
+    private FileDetection(BatchComponent component, Future<List<CloneGroup>> result) {
+      this.component = component;
+      this.result = result;
+    }
+  }
 }
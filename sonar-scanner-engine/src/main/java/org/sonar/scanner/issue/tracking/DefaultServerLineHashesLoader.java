@@ -19,21 +19,43 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import org.sonarqube.ws.client.GetRequest;
-
-import java.io.IOException;
-import java.io.Reader;
-
 import com.google.common.base.Splitter;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Iterators;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.apache.commons.io.IOUtils;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.api.utils.log.Profiler;
 import org.sonar.scanner.bootstrap.BatchWsClient;
 import org.sonar.scanner.util.BatchUtils;
+import org.sonarqube.ws.WsSources.HashesResponse;
+import org.sonarqube.ws.client.GetRequest;
+
+import static java.util.stream.Collectors.joining;
 
 public class DefaultServerLineHashesLoader implements ServerLineHashesLoader {
-  private BatchWsClient wsClient;
+
+  /**
+   * Number of files requested in a single call. Keys are sent in the URL, so it is kept far below
+   * the maximum supported by the web service.
+   */
+  static final int BULK_SIZE = 30;
+  static final int MAX_THREADS = 4;
+
+  private final BatchWsClient wsClient;
+  private final Map<String, String[]> prefetchedHashes = new ConcurrentHashMap<>();
 
   public DefaultServerLineHashesLoader(BatchWsClient wsClient) {
     this.wsClient = wsClient;
@@ -41,10 +63,59 @@ public class DefaultServerLineHashesLoader implements ServerLineHashesLoader {
 
   @Override
   public String[] getLineHashes(String fileKey) {
+    String[] prefetched = prefetchedHashes.remove(fileKey);
+    if (prefetched != null) {
+      return prefetched;
+    }
     String hashesFromWs = loadHashesFromWs(fileKey);
     return Iterators.toArray(Splitter.on('\n').split(hashesFromWs).iterator(), String.class);
   }
 
+  @Override
+  public void prefetch(Collection<String> fileKeys) {
+    if (fileKeys.isEmpty()) {
+      return;
+    }
+    Profiler profiler = Profiler.create(Loggers.get(getClass())).startInfo("Load line hashes of " + fileKeys.size() + " files");
+    List<List<String>> partitions = new ArrayList<>();
+    Iterables.partition(fileKeys, BULK_SIZE).forEach(partitions::add);
+    int threads = Math.min(MAX_THREADS, partitions.size());
+    ExecutorService executorService = Executors.newFixedThreadPool(threads,
+      new ThreadFactoryBuilder().setNameFormat("LineHashesLoader-%d").setDaemon(true).build());
+    try {
+      List<Future<?>> futures = new ArrayList<>(partitions.size());
+      for (List<String> partition : partitions) {
+        futures.add(executorService.submit(() -> loadBulkHashesFromWs(partition)));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while loading line hashes", e);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Fail to load line hashes", e.getCause());
+    } finally {
+      executorService.shutdownNow();
+      profiler.stopInfo();
+    }
+  }
+
+  private void loadBulkHashesFromWs(List<String> fileKeys) {
+    String keys = fileKeys.stream().map(BatchUtils::encodeForUrl).collect(joining(","));
+    GetRequest getRequest = new GetRequest("/api/sources/hashes.protobuf?keys=" + keys);
+    InputStream is = wsClient.call(getRequest).contentStream();
+    try {
+      for (HashesResponse.File file : HashesResponse.parseFrom(is).getFilesList()) {
+        prefetchedHashes.put(file.getKey(), file.getLineHashesList().toArray(new String[file.getLineHashesCount()]));
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    } finally {
+      IOUtils.closeQuietly(is);
+    }
+  }
+
   private String loadHashesFromWs(String fileKey) {
     Profiler profiler = Profiler.createIfDebug(Loggers.get(getClass()))
       .addContext("file", fileKey)
@@ -27,6 +27,7 @@ import com.google.common.collect.Multimap;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.lang.ObjectUtils;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 import javax.annotation.Nullable;
 
@@ -56,6 +57,22 @@ public final class FileHashes {
   }
 
   public static FileHashes create(DefaultInputFile f) {
+    return create(computeLineHashes(f));
+  }
+
+  /**
+   * Same as {@link #create(DefaultInputFile)}, but line hashes are read from the cache when available.
+   */
+  public static FileHashes create(DefaultInputFile f, FileMetadataCache metadataCache) {
+    byte[][] hashes = metadataCache.lineHashes(f);
+    if (hashes == null) {
+      hashes = computeLineHashes(f);
+      metadataCache.putLineHashes(f, hashes);
+    }
+    return create(hashes);
+  }
+
+  private static byte[][] computeLineHashes(DefaultInputFile f) {
     final byte[][] hashes = new byte[f.lines()][];
     FileMetadata.computeLineHashesForIssueTracking(f, new LineHashConsumer() {
 
@@ -64,7 +81,10 @@ public final class FileHashes {
         hashes[lineIdx - 1] = hash;
       }
     });
+    return hashes;
+  }
 
+  private static FileHashes create(byte[][] hashes) {
     int size = hashes.length;
     Multimap<String, Integer> linesByHash = LinkedHashMultimap.create();
     String[] hexHashes = new String[size];
@@ -43,6 +43,7 @@ import org.sonar.scanner.index.BatchComponent;
 import org.sonar.scanner.issue.IssueTransformer;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.repository.ProjectRepositories;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 @ScannerSide
 public class LocalIssueTracking {
@@ -51,25 +52,46 @@ public class LocalIssueTracking {
   private final ActiveRules activeRules;
   private final ServerIssueRepository serverIssueRepository;
   private final DefaultAnalysisMode mode;
+  private final FileMetadataCache metadataCache;
 
   private boolean hasServerAnalysis;
 
   public LocalIssueTracking(Tracker<TrackedIssue, ServerIssueFromWs> tracker, ServerLineHashesLoader lastLineHashes,
-    ActiveRules activeRules, ServerIssueRepository serverIssueRepository, ProjectRepositories projectRepositories, DefaultAnalysisMode mode) {
+    ActiveRules activeRules, ServerIssueRepository serverIssueRepository, ProjectRepositories projectRepositories, DefaultAnalysisMode mode,
+    FileMetadataCache metadataCache) {
     this.tracker = tracker;
     this.lastLineHashes = lastLineHashes;
     this.serverIssueRepository = serverIssueRepository;
     this.mode = mode;
     this.activeRules = activeRules;
+    this.metadataCache = metadataCache;
     this.hasServerAnalysis = projectRepositories.lastAnalysisDate() != null;
   }
 
-  public void init() {
+  public void init(Collection<BatchComponent> components) {
     if (hasServerAnalysis) {
       serverIssueRepository.load();
+      prefetchLineHashes(components);
     }
   }
 
+  /**
+   * Line hashes of the server are needed to track issues of all the files that changed since the last analysis.
+   * They are loaded in bulk rather than one request per file.
+   */
+  private void prefetchLineHashes(Collection<BatchComponent> components) {
+    List<String> fileKeys = new ArrayList<>();
+    for (BatchComponent component : components) {
+      if (component.isFile()) {
+        DefaultInputFile inputFile = (DefaultInputFile) component.inputComponent();
+        if (inputFile != null && inputFile.status() != Status.ADDED && inputFile.status() != Status.SAME) {
+          fileKeys.add(inputFile.key());
+        }
+      }
+    }
+    lastLineHashes.prefetch(fileKeys);
+  }
+
   public List<TrackedIssue> trackIssues(BatchComponent component, Collection<ScannerReport.Issue> reportIssues, Date analysisDate) {
     List<TrackedIssue> trackedIssues = new LinkedList<>();
     if (hasServerAnalysis) {
@@ -161,7 +183,7 @@ public class LocalIssueTracking {
       if (file == null) {
         throw new IllegalStateException("Resource " + component.resource() + " was not found in InputPath cache");
       }
-      sourceHashHolder = new SourceHashHolder(file, lastLineHashes);
+      sourceHashHolder = new SourceHashHolder(file, lastLineHashes, metadataCache);
     }
     return sourceHashHolder;
   }
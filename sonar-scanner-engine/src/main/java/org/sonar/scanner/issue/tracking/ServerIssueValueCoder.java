@@ -19,27 +19,26 @@
  */
 package org.sonar.scanner.issue.tracking;
 
-import com.persistit.Value;
-import com.persistit.encoding.CoderContext;
-import com.persistit.encoding.ValueCoder;
 import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import org.sonar.scanner.protocol.input.ScannerInput.ServerIssue;
+import org.sonar.scanner.storage.ValueCoder;
 
-public class ServerIssueValueCoder implements ValueCoder {
+public class ServerIssueValueCoder implements ValueCoder<ServerIssue> {
 
   @Override
-  public void put(Value value, Object object, CoderContext context) {
-    ServerIssue issue = (ServerIssue) object;
-    value.putByteArray(issue.toByteArray());
+  public void put(ObjectOutput out, ServerIssue issue) throws IOException {
+    byte[] bytes = issue.toByteArray();
+    out.writeInt(bytes.length);
+    out.write(bytes);
   }
 
   @Override
-  public Object get(Value value, Class<?> clazz, CoderContext context) {
-    try {
-      return ServerIssue.parseFrom(value.getByteArray());
-    } catch (IOException e) {
-      throw new IllegalStateException("Unable to read issue from cache", e);
-    }
+  public ServerIssue get(ObjectInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return ServerIssue.parseFrom(bytes);
   }
 
 }
@@ -19,10 +19,17 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import java.util.Collection;
 import org.sonar.api.batch.ScannerSide;
 
 @ScannerSide
 public interface ServerLineHashesLoader {
 
   String[] getLineHashes(String fileKey);
+
+  /**
+   * Loads in advance the line hashes of the given files, so that following calls to {@link #getLineHashes(String)}
+   * do not request the server file by file.
+   */
+  void prefetch(Collection<String> fileKeys);
 }
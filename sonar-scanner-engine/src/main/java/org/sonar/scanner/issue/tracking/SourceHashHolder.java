@@ -22,27 +22,36 @@ package org.sonar.scanner.issue.tracking;
 import com.google.common.collect.ImmutableSet;
 import org.sonar.api.batch.fs.InputFile.Status;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 
 import java.util.Collection;
 
 public class SourceHashHolder {
 
   private final ServerLineHashesLoader lastSnapshots;
+  @Nullable
+  private final FileMetadataCache metadataCache;
 
   private FileHashes hashedReference;
   private FileHashes hashedSource;
   private DefaultInputFile inputFile;
 
-  public SourceHashHolder(DefaultInputFile inputFile, ServerLineHashesLoader lastSnapshots) {
+  public SourceHashHolder(DefaultInputFile inputFile, ServerLineHashesLoader lastSnapshots, @Nullable FileMetadataCache metadataCache) {
     this.inputFile = inputFile;
     this.lastSnapshots = lastSnapshots;
+    this.metadataCache = metadataCache;
+  }
+
+  public SourceHashHolder(DefaultInputFile inputFile, ServerLineHashesLoader lastSnapshots) {
+    this(inputFile, lastSnapshots, null);
   }
 
   private void initHashes() {
     if (hashedSource == null) {
-      hashedSource = FileHashes.create(inputFile);
+      hashedSource = metadataCache != null ? FileHashes.create(inputFile, metadataCache) : FileHashes.create(inputFile);
       Status status = inputFile.status();
       if (status == Status.ADDED) {
         hashedReference = null;
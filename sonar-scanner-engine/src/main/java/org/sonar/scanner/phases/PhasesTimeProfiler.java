@@ -19,7 +19,8 @@
  */
 package org.sonar.scanner.phases;
 
-
+import java.util.HashMap;
+import java.util.Map;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.batch.events.SensorExecutionHandler;
 import org.sonar.api.batch.events.SensorsPhaseHandler;
@@ -32,7 +33,8 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
 
   private static final Logger LOG = Loggers.get(PhasesTimeProfiler.class);
 
-  private Profiler profiler = Profiler.create(LOG);
+  // sensors can be executed concurrently
+  private final Map<Object, Profiler> profilerBySensor = new HashMap<>();
 
   @Override
   public void onSensorsPhase(SensorsPhaseEvent event) {
@@ -44,9 +46,14 @@ public class PhasesTimeProfiler implements SensorExecutionHandler, SensorsPhaseH
   @Override
   public void onSensorExecution(SensorExecutionEvent event) {
     if (event.isStart()) {
+      Profiler profiler = Profiler.create(LOG);
+      profilerBySensor.put(event.getSensor(), profiler);
       profiler.startInfo("Sensor " + BatchUtils.describe(event.getSensor()));
     } else {
-      profiler.stopInfo();
+      Profiler profiler = profilerBySensor.remove(event.getSensor());
+      if (profiler != null) {
+        profiler.stopInfo();
+      }
     }
   }
 
@@ -19,42 +19,139 @@
  */
 package org.sonar.scanner.phases;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
+import org.sonar.api.config.Settings;
 import org.sonar.api.resources.Project;
 import org.sonar.scanner.bootstrap.BatchExtensionDictionnary;
 import org.sonar.scanner.events.EventBus;
-import java.util.Collection;
+import org.sonar.scanner.sensor.SensorWrapper;
 
+/**
+ * Executes the sensors of a module in the order of their dependencies. Consecutive sensors declared as thread-safe
+ * (see {@link org.sonar.api.batch.sensor.SensorDescriptor#threadSafe()}) and not depending upon each other are executed
+ * concurrently by a pool of threads, sized by the property {@value #THREADS_PROPERTY} (by default the number of
+ * processors minus one). Other sensors are executed alone.
+ */
 @ScannerSide
 public class SensorsExecutor {
 
+  static final String THREADS_PROPERTY = "sonar.sensors.threads";
+
   private EventBus eventBus;
   private Project module;
   private BatchExtensionDictionnary selector;
+  private Settings settings;
 
-  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, EventBus eventBus) {
+  public SensorsExecutor(BatchExtensionDictionnary selector, Project project, EventBus eventBus, Settings settings) {
     this.selector = selector;
     this.eventBus = eventBus;
     this.module = project;
+    this.settings = settings;
   }
 
   public void execute(SensorContext context) {
     Collection<Sensor> sensors = selector.select(Sensor.class, module, true, null);
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), true));
 
-    for (Sensor sensor : sensors) {
-      executeSensor(context, sensor);
+    int threads = getThreads();
+    ExecutorService executorService = null;
+    if (threads > 1 && sensors.stream().anyMatch(SensorsExecutor::isThreadSafe)) {
+      executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("SensorsExecutor-%d").setDaemon(true).build());
+    }
+    try {
+      List<Sensor> concurrentSensors = new ArrayList<>();
+      for (Sensor sensor : sensors) {
+        boolean concurrent = executorService != null && isThreadSafe(sensor);
+        if (!concurrent || !canBeExecutedWith(sensor, concurrentSensors)) {
+          executeConcurrently(executorService, context, concurrentSensors);
+          concurrentSensors.clear();
+        }
+        if (concurrent) {
+          concurrentSensors.add(sensor);
+        } else {
+          executeSensor(context, sensor);
+        }
+      }
+      executeConcurrently(executorService, context, concurrentSensors);
+    } finally {
+      if (executorService != null) {
+        executorService.shutdownNow();
+      }
     }
 
     eventBus.fireEvent(new SensorsPhaseEvent(Lists.newArrayList(sensors), false));
   }
 
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+    }
+    return threads;
+  }
+
+  private static boolean isThreadSafe(Sensor sensor) {
+    return sensor instanceof SensorWrapper && ((SensorWrapper) sensor).descriptor().isThreadSafe();
+  }
+
+  private boolean canBeExecutedWith(Sensor sensor, List<Sensor> concurrentSensors) {
+    return concurrentSensors.stream().noneMatch(other -> selector.areDependent(sensor, other));
+  }
+
+  private void executeConcurrently(@Nullable ExecutorService executorService, SensorContext context, List<Sensor> sensors) {
+    if (executorService == null || sensors.size() <= 1) {
+      sensors.forEach(sensor -> executeSensor(context, sensor));
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<>();
+    for (Sensor sensor : sensors) {
+      futures.add(executorService.submit(() -> executeSensor(context, sensor)));
+    }
+    for (Future<?> future : futures) {
+      waitFor(future);
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted during execution of sensors", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to execute sensor", cause);
+    }
+  }
+
   private void executeSensor(SensorContext context, Sensor sensor) {
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, true));
+    fireEvent(new SensorExecutionEvent(sensor, true));
     sensor.analyse(module, context);
-    eventBus.fireEvent(new SensorExecutionEvent(sensor, false));
+    fireEvent(new SensorExecutionEvent(sensor, false));
+  }
+
+  private synchronized void fireEvent(SensorExecutionEvent event) {
+    // handlers are not thread-safe
+    eventBus.fireEvent(event);
   }
 }
@@ -0,0 +1,178 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.profiling;
+
+import com.google.common.collect.Iterables;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.events.SensorExecutionHandler;
+import org.sonar.api.batch.fs.FilePredicate;
+import org.sonar.api.batch.fs.FileSystem;
+import org.sonar.api.batch.sensor.internal.DefaultSensorDescriptor;
+import org.sonar.api.resources.Project;
+import org.sonar.api.utils.System2;
+import org.sonar.scanner.index.BatchComponentCache;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.sensor.SensorWrapper;
+
+/**
+ * Measures the CPU time, the allocated memory, the GC time and the heap growth of each sensor executed on a module.
+ * CPU time and allocated memory are read on the thread executing the sensor, so they are accurate even when
+ * sensors are executed concurrently. Values not supported by the JVM are reported as 0.
+ */
+public class SensorProfiler implements SensorExecutionHandler {
+
+  private static final long NANOS_PER_MS = 1_000_000L;
+
+  private final int moduleRef;
+  private final FileSystem fs;
+  private final System2 system;
+  private final SensorProfilingRepository repository;
+  private final Map<Sensor, Snapshot> startSnapshots = new IdentityHashMap<>();
+  private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+  private final List<GarbageCollectorMXBean> gcBeans = ManagementFactory.getGarbageCollectorMXBeans();
+  private final List<MemoryPoolMXBean> memoryPoolBeans = ManagementFactory.getMemoryPoolMXBeans();
+
+  public SensorProfiler(Project module, BatchComponentCache componentCache, FileSystem fs, System2 system, SensorProfilingRepository repository) {
+    this.moduleRef = componentCache.get(module).batchId();
+    this.fs = fs;
+    this.system = system;
+    this.repository = repository;
+  }
+
+  @Override
+  public void onSensorExecution(SensorExecutionEvent event) {
+    Sensor sensor = event.getSensor();
+    if (event.isStart()) {
+      if (startSnapshots.isEmpty()) {
+        // peak usages can only be reset when no other sensor is being measured
+        memoryPoolBeans.forEach(MemoryPoolMXBean::resetPeakUsage);
+      }
+      startSnapshots.put(sensor, snapshot());
+    } else {
+      Snapshot start = startSnapshots.remove(sensor);
+      if (start != null) {
+        repository.add(profiling(sensor, start, snapshot()));
+      }
+    }
+  }
+
+  private ScannerReport.SensorProfiling profiling(Sensor sensor, Snapshot start, Snapshot end) {
+    Object measuredSensor = sensor instanceof SensorWrapper ? ((SensorWrapper) sensor).wrappedSensor() : sensor;
+    return ScannerReport.SensorProfiling.newBuilder()
+      .setComponentRef(moduleRef)
+      .setSensor(sensor.toString())
+      .setSensorClass(measuredSensor.getClass().getName())
+      .setWallTimeMs(end.wallTimeMs - start.wallTimeMs)
+      .setCpuTimeMs(delta(start.cpuTimeNs, end.cpuTimeNs) / NANOS_PER_MS)
+      .setAllocatedBytes(delta(start.allocatedBytes, end.allocatedBytes))
+      .setGcTimeMs(delta(start.gcTimeMs, end.gcTimeMs))
+      .setPeakHeapDeltaBytes(Math.max(0L, peakHeapUsage() - start.heapUsage))
+      .setFiles(countFiles(sensor))
+      .build();
+  }
+
+  private int countFiles(Sensor sensor) {
+    FilePredicate predicate = fs.predicates().all();
+    if (sensor instanceof SensorWrapper) {
+      DefaultSensorDescriptor descriptor = ((SensorWrapper) sensor).descriptor();
+      if (!descriptor.languages().isEmpty()) {
+        predicate = fs.predicates().and(predicate, fs.predicates().hasLanguages(descriptor.languages()));
+      }
+      if (descriptor.type() != null) {
+        predicate = fs.predicates().and(predicate, fs.predicates().hasType(descriptor.type()));
+      }
+    }
+    return Iterables.size(fs.inputFiles(predicate));
+  }
+
+  private Snapshot snapshot() {
+    Snapshot snapshot = new Snapshot();
+    snapshot.wallTimeMs = system.now();
+    snapshot.cpuTimeNs = threadBean.isCurrentThreadCpuTimeSupported() && threadBean.isThreadCpuTimeEnabled() ? threadBean.getCurrentThreadCpuTime() : -1L;
+    snapshot.allocatedBytes = allocatedBytes();
+    snapshot.gcTimeMs = gcTime();
+    snapshot.heapUsage = heapUsage();
+    return snapshot;
+  }
+
+  private long allocatedBytes() {
+    if (threadBean instanceof com.sun.management.ThreadMXBean) {
+      com.sun.management.ThreadMXBean sunThreadBean = (com.sun.management.ThreadMXBean) threadBean;
+      if (sunThreadBean.isThreadAllocatedMemorySupported() && sunThreadBean.isThreadAllocatedMemoryEnabled()) {
+        return sunThreadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+      }
+    }
+    return -1L;
+  }
+
+  private long gcTime() {
+    long total = 0L;
+    for (GarbageCollectorMXBean gcBean : gcBeans) {
+      long time = gcBean.getCollectionTime();
+      if (time > 0) {
+        total += time;
+      }
+    }
+    return total;
+  }
+
+  private long heapUsage() {
+    long total = 0L;
+    for (MemoryPoolMXBean pool : memoryPoolBeans) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        total += pool.getUsage().getUsed();
+      }
+    }
+    return total;
+  }
+
+  private long peakHeapUsage() {
+    long total = 0L;
+    for (MemoryPoolMXBean pool : memoryPoolBeans) {
+      if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+        total += pool.getPeakUsage().getUsed();
+      }
+    }
+    return total;
+  }
+
+  private static long delta(long start, long end) {
+    if (start < 0 || end < 0) {
+      return 0L;
+    }
+    return end - start;
+  }
+
+  private static class Snapshot {
+    private long wallTimeMs;
+    private long cpuTimeNs;
+    private long allocatedBytes;
+    private long gcTimeMs;
+    private long heapUsage;
+  }
+}
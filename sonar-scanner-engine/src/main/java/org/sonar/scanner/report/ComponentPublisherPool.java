@@ -0,0 +1,117 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import org.picocontainer.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.config.Settings;
+
+/**
+ * Bounded pool of threads used by {@link ReportPublisherStep}s to publish components concurrently. Data of each
+ * component is written by {@link org.sonar.scanner.protocol.output.ScannerReportWriter} in its own files, so
+ * components can be published independently. The pool is sized by the property {@value #THREADS_PROPERTY} (by default
+ * the number of processors). Components are published by the calling thread when it is set to 1.
+ */
+@ScannerSide
+public class ComponentPublisherPool implements Startable {
+
+  static final String THREADS_PROPERTY = "sonar.report.publishThreads";
+
+  private final Settings settings;
+  private ExecutorService executorService;
+
+  public ComponentPublisherPool(Settings settings) {
+    this.settings = settings;
+  }
+
+  @Override
+  public void start() {
+    int threads = getThreads();
+    if (threads > 1) {
+      executorService = Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("ReportPublisher-%d").setDaemon(true).build());
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (executorService != null) {
+      executorService.shutdownNow();
+      executorService = null;
+    }
+  }
+
+  @VisibleForTesting
+  int getThreads() {
+    int threads = settings.getInt(THREADS_PROPERTY);
+    if (threads <= 0) {
+      threads = Runtime.getRuntime().availableProcessors();
+    }
+    return threads;
+  }
+
+  /**
+   * Applies the action to each component and waits for completion. The first failure is rethrown, remaining components
+   * are then not published.
+   */
+  public <T> void forEach(Iterable<T> components, Consumer<T> action) {
+    if (executorService == null) {
+      components.forEach(action);
+      return;
+    }
+    List<Future<?>> futures = new ArrayList<>();
+    for (T component : components) {
+      futures.add(executorService.submit(() -> action.accept(component)));
+    }
+    try {
+      for (Future<?> future : futures) {
+        waitFor(future);
+      }
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  private static void waitFor(Future<?> future) {
+    try {
+      future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while publishing analysis report", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Fail to publish analysis report", cause);
+    }
+  }
+}
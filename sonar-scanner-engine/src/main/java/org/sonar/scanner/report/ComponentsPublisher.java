@@ -19,6 +19,8 @@
  */
 package org.sonar.scanner.report;
 
+import java.util.ArrayList;
+import java.util.List;
 import javax.annotation.CheckForNull;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.CoreProperties;
@@ -44,19 +46,30 @@ public class ComponentsPublisher implements ReportPublisherStep {
 
   private final BatchComponentCache resourceCache;
   private final ImmutableProjectReactor reactor;
+  private final ComponentPublisherPool pool;
 
-  public ComponentsPublisher(ImmutableProjectReactor reactor, BatchComponentCache resourceCache) {
+  public ComponentsPublisher(ImmutableProjectReactor reactor, BatchComponentCache resourceCache, ComponentPublisherPool pool) {
     this.reactor = reactor;
     this.resourceCache = resourceCache;
+    this.pool = pool;
   }
 
   @Override
   public void publish(ScannerReportWriter writer) {
     BatchComponent rootProject = resourceCache.get(reactor.getRoot().getKeyWithBranch());
-    recursiveWriteComponent(rootProject, writer);
+    List<BatchComponent> components = new ArrayList<>();
+    collectComponents(rootProject, components);
+    pool.forEach(components, component -> writer.writeComponent(toReportComponent(component)));
   }
 
-  private void recursiveWriteComponent(BatchComponent batchComponent, ScannerReportWriter writer) {
+  private static void collectComponents(BatchComponent batchComponent, List<BatchComponent> components) {
+    components.add(batchComponent);
+    for (BatchComponent child : batchComponent.children()) {
+      collectComponents(child, components);
+    }
+  }
+
+  private ScannerReport.Component toReportComponent(BatchComponent batchComponent) {
     Resource r = batchComponent.resource();
     ScannerReport.Component.Builder builder = ScannerReport.Component.newBuilder();
 
@@ -98,11 +111,7 @@ public class ComponentsPublisher implements ReportPublisherStep {
     }
     writeLinks(batchComponent, builder);
     writeVersion(batchComponent, builder);
-    writer.writeComponent(builder.build());
-
-    for (BatchComponent child : batchComponent.children()) {
-      recursiveWriteComponent(child, writer);
-    }
+    return builder.build();
   }
 
   private void writeVersion(BatchComponent c, ScannerReport.Component.Builder builder) {
@@ -22,6 +22,7 @@ package org.sonar.scanner.report;
 import com.google.common.base.Function;
 import com.google.common.collect.Iterables;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import javax.annotation.Nonnull;
 import org.apache.commons.lang.StringUtils;
@@ -36,33 +37,37 @@ import org.sonar.scanner.protocol.output.ScannerReport.LineCoverage.Builder;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
 import org.sonar.scanner.scan.measure.MeasureCache;
 
+import static java.util.stream.Collectors.toList;
+
 public class CoveragePublisher implements ReportPublisherStep {
 
   private final BatchComponentCache resourceCache;
   private final MeasureCache measureCache;
+  private final ComponentPublisherPool pool;
 
-  public CoveragePublisher(BatchComponentCache resourceCache, MeasureCache measureCache) {
+  public CoveragePublisher(BatchComponentCache resourceCache, MeasureCache measureCache, ComponentPublisherPool pool) {
     this.resourceCache = resourceCache;
     this.measureCache = measureCache;
+    this.pool = pool;
   }
 
   @Override
   public void publish(ScannerReportWriter writer) {
-    for (final BatchComponent resource : resourceCache.all()) {
-      if (!resource.isFile()) {
-        continue;
-      }
-      Map<Integer, LineCoverage.Builder> coveragePerLine = new LinkedHashMap<>();
+    List<BatchComponent> files = resourceCache.all().stream().filter(BatchComponent::isFile).collect(toList());
+    pool.forEach(files, resource -> publish(writer, resource));
+  }
 
-      int lineCount = ((InputFile) resource.inputComponent()).lines();
-      applyLineMeasure(resource.key(), lineCount, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, coveragePerLine,
-        (value, builder) -> builder.setHits(Integer.parseInt(value) > 0));
-      applyLineMeasure(resource.key(), lineCount, CoreMetrics.CONDITIONS_BY_LINE_KEY, coveragePerLine,
-        (value, builder) -> builder.setConditions(Integer.parseInt(value)));
-      applyLineMeasure(resource.key(), lineCount, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY, coveragePerLine,
-        (value, builder) -> builder.setCoveredConditions(Integer.parseInt(value)));
-      writer.writeComponentCoverage(resource.batchId(), Iterables.transform(coveragePerLine.values(), BuildCoverage.INSTANCE));
-    }
+  private void publish(ScannerReportWriter writer, BatchComponent resource) {
+    Map<Integer, LineCoverage.Builder> coveragePerLine = new LinkedHashMap<>();
+
+    int lineCount = ((InputFile) resource.inputComponent()).lines();
+    applyLineMeasure(resource.key(), lineCount, CoreMetrics.COVERAGE_LINE_HITS_DATA_KEY, coveragePerLine,
+      (value, builder) -> builder.setHits(Integer.parseInt(value) > 0));
+    applyLineMeasure(resource.key(), lineCount, CoreMetrics.CONDITIONS_BY_LINE_KEY, coveragePerLine,
+      (value, builder) -> builder.setConditions(Integer.parseInt(value)));
+    applyLineMeasure(resource.key(), lineCount, CoreMetrics.COVERED_CONDITIONS_BY_LINE_KEY, coveragePerLine,
+      (value, builder) -> builder.setCoveredConditions(Integer.parseInt(value)));
+    writer.writeComponentCoverage(resource.batchId(), Iterables.transform(coveragePerLine.values(), BuildCoverage.INSTANCE));
   }
 
   void applyLineMeasure(String inputFileKey, int lineCount, String metricKey, Map<Integer, LineCoverage.Builder> coveragePerLine, MeasureOperation op) {
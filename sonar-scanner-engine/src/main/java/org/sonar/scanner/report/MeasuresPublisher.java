@@ -118,25 +118,30 @@ public class MeasuresPublisher implements ReportPublisherStep {
   private final BatchComponentCache componentCache;
   private final MeasureCache measureCache;
   private final TestPlanBuilder testPlanBuilder;
+  private final ComponentPublisherPool pool;
 
-  public MeasuresPublisher(BatchComponentCache resourceCache, MeasureCache measureCache, TestPlanBuilder testPlanBuilder) {
+  public MeasuresPublisher(BatchComponentCache resourceCache, MeasureCache measureCache, TestPlanBuilder testPlanBuilder, ComponentPublisherPool pool) {
     this.componentCache = resourceCache;
     this.measureCache = measureCache;
     this.testPlanBuilder = testPlanBuilder;
+    this.pool = pool;
   }
 
   @Override
   public void publish(ScannerReportWriter writer) {
+    // test plans are not thread-safe, so measures are updated before being published concurrently
     for (final BatchComponent component : componentCache.all()) {
       // Recompute all coverage measures from line data to take into account the possible merge of several reports
       updateCoverageFromLineData(component);
       // Recompute test execution measures from MutableTestPlan to take into account the possible merge of several reports
       updateTestExecutionFromTestPlan(component);
+    }
 
+    pool.forEach(componentCache.all(), component -> {
       Iterable<DefaultMeasure<?>> scannerMeasures = measureCache.byComponentKey(component.key());
       Iterable<ScannerReport.Measure> reportMeasures = transform(scannerMeasures, new MeasureToReportMeasure(component));
       writer.writeComponentMeasures(component.batchId(), reportMeasures);
-    }
+    });
   }
 
   private void updateTestExecutionFromTestPlan(final BatchComponent component) {
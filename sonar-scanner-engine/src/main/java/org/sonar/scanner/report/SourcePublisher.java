@@ -19,54 +19,89 @@
  */
 package org.sonar.scanner.report;
 
-import org.apache.commons.io.ByteOrderMark;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.io.input.BOMInputStream;
-import org.sonar.api.batch.fs.internal.DefaultInputFile;
-import org.sonar.scanner.index.BatchComponent;
-import org.sonar.scanner.index.BatchComponentCache;
-import org.sonar.scanner.protocol.output.ScannerReportWriter;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.apache.commons.io.ByteOrderMark;
+import org.apache.commons.io.input.BOMInputStream;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.scanner.index.BatchComponent;
+import org.sonar.scanner.index.BatchComponentCache;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+
+import static java.util.stream.Collectors.toList;
 
+/**
+ * Copies the source of files to the report, transcoded to UTF-8 and with Unix line ends. Files are transcoded by
+ * blocks of chars and are published concurrently.
+ */
 public class SourcePublisher implements ReportPublisherStep {
 
+  private static final int BUFFER_SIZE = 16 * 1024;
+
   private final BatchComponentCache resourceCache;
+  private final ComponentPublisherPool pool;
 
-  public SourcePublisher(BatchComponentCache resourceCache) {
+  public SourcePublisher(BatchComponentCache resourceCache, ComponentPublisherPool pool) {
     this.resourceCache = resourceCache;
+    this.pool = pool;
   }
 
   @Override
   public void publish(ScannerReportWriter writer) {
-    for (final BatchComponent resource : resourceCache.all()) {
-      if (!resource.isFile()) {
-        continue;
-      }
+    List<BatchComponent> files = resourceCache.all().stream().filter(BatchComponent::isFile).collect(toList());
+    pool.forEach(files, file -> writeSource((DefaultInputFile) file.inputComponent(), writer.getSourceFile(file.batchId())));
+  }
+
+  private static void writeSource(DefaultInputFile inputFile, File iofile) {
+    CharsetDecoder decoder = inputFile.charset().newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    try (BOMInputStream bomIn = new BOMInputStream(new FileInputStream(inputFile.file()),
+      ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
+      Reader reader = new InputStreamReader(bomIn, decoder);
+      Writer output = new OutputStreamWriter(new FileOutputStream(iofile), encoder)) {
+      copyWithUnixLineEnds(reader, output);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to store file source in the report", e);
+    }
+  }
 
-      DefaultInputFile inputFile = (DefaultInputFile) resource.inputComponent();
-      File iofile = writer.getSourceFile(resource.batchId());
-      int line = 0;
-      try (FileOutputStream output = new FileOutputStream(iofile); BOMInputStream bomIn = new BOMInputStream(new FileInputStream(inputFile.file()),
-        ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE, ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE, ByteOrderMark.UTF_32BE);
-        BufferedReader reader = new BufferedReader(new InputStreamReader(bomIn, inputFile.charset()))) {
-        String lineStr = reader.readLine();
-        while (lineStr != null) {
-          IOUtils.write(lineStr, output, StandardCharsets.UTF_8);
-          line++;
-          if (line < inputFile.lines()) {
-            IOUtils.write("\n", output, StandardCharsets.UTF_8);
-          }
-          lineStr = reader.readLine();
+  /**
+   * Line ends "\r\n" and "\r" are replaced by "\n".
+   */
+  private static void copyWithUnixLineEnds(Reader reader, Writer output) throws IOException {
+    char[] buffer = new char[BUFFER_SIZE];
+    boolean afterCarriageReturn = false;
+    int read = reader.read(buffer);
+    while (read != -1) {
+      int length = 0;
+      for (int i = 0; i < read; i++) {
+        char c = buffer[i];
+        if (c == '\n' && afterCarriageReturn) {
+          // "\r" was already replaced by "\n"
+          afterCarriageReturn = false;
+          continue;
         }
-      } catch (IOException e) {
-        throw new IllegalStateException("Unable to store file source in the report", e);
+        afterCarriageReturn = c == '\r';
+        buffer[length] = afterCarriageReturn ? '\n' : c;
+        length++;
       }
+      output.write(buffer, 0, length);
+      read = reader.read(buffer);
     }
   }
 }
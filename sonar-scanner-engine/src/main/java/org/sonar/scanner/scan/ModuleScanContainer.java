@@ -56,6 +56,7 @@ import org.sonar.scanner.phases.PublishPhaseExecutor;
 import org.sonar.scanner.phases.SensorsExecutor;
 import org.sonar.scanner.postjob.DefaultPostJobContext;
 import org.sonar.scanner.postjob.PostJobOptimizer;
+import org.sonar.scanner.profiling.SensorProfiler;
 import org.sonar.scanner.rule.QProfileVerifier;
 import org.sonar.scanner.rule.RuleFinderCompatibility;
 import org.sonar.scanner.rule.RulesProfileProvider;
@@ -116,6 +117,7 @@ public class ModuleScanContainer extends ComponentContainer {
       RuleFinderCompatibility.class,
       PostJobsExecutor.class,
       SensorsExecutor.class,
+      SensorProfiler.class,
       InitializersExecutor.class,
 
       // file system
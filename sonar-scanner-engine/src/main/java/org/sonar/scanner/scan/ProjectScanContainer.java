@@ -58,14 +58,17 @@ import org.sonar.scanner.issue.tracking.ServerLineHashesLoader;
 import org.sonar.scanner.mediumtest.ScanTaskObservers;
 import org.sonar.scanner.phases.PhasesTimeProfiler;
 import org.sonar.scanner.profiling.PhasesSumUpTimeProfiler;
+import org.sonar.scanner.profiling.SensorProfilingRepository;
 import org.sonar.scanner.report.ActiveRulesPublisher;
 import org.sonar.scanner.report.AnalysisContextReportPublisher;
+import org.sonar.scanner.report.ComponentPublisherPool;
 import org.sonar.scanner.report.ComponentsPublisher;
 import org.sonar.scanner.report.ContextPropertiesPublisher;
 import org.sonar.scanner.report.CoveragePublisher;
 import org.sonar.scanner.report.MeasuresPublisher;
 import org.sonar.scanner.report.MetadataPublisher;
 import org.sonar.scanner.report.ReportPublisher;
+import org.sonar.scanner.report.SensorProfilingPublisher;
 import org.sonar.scanner.report.SourcePublisher;
 import org.sonar.scanner.report.TestExecutionAndCoveragePublisher;
 import org.sonar.scanner.repository.ContextPropertiesCache;
@@ -86,6 +89,7 @@ import org.sonar.scanner.rule.DefaultActiveRulesLoader;
 import org.sonar.scanner.rule.DefaultRulesLoader;
 import org.sonar.scanner.rule.RulesLoader;
 import org.sonar.scanner.rule.RulesProvider;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 import org.sonar.scanner.scan.filesystem.InputPathCache;
 import org.sonar.scanner.scan.measure.DefaultMetricFinder;
 import org.sonar.scanner.scan.measure.DeprecatedMetricFinder;
@@ -130,6 +134,7 @@ public class ProjectScanContainer extends ComponentContainer {
       new ImmutableProjectReactorProvider(),
       ProjectBuildersExecutor.class,
       ProjectLock.class,
+      FileMetadataCache.class,
       EventBus.class,
       PhasesTimeProfiler.class,
       ResourceTypes.class,
@@ -180,11 +185,16 @@ public class ProjectScanContainer extends ComponentContainer {
       ContextPropertiesCache.class,
       ContextPropertiesPublisher.class,
 
+      // profiling
+      SensorProfilingRepository.class,
+      SensorProfilingPublisher.class,
+
       ProjectSettings.class,
 
       // Report
       ScannerMetrics.class,
       ReportPublisher.class,
+      ComponentPublisherPool.class,
       AnalysisContextReportPublisher.class,
       MetadataPublisher.class,
       ActiveRulesPublisher.class,
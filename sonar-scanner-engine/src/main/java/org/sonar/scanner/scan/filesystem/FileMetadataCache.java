@@ -0,0 +1,288 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
+import org.picocontainer.Startable;
+import org.sonar.api.batch.ScannerSide;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.Logger;
+import org.sonar.api.utils.log.Loggers;
+
+/**
+ * Cache of the metadata of files (charset, lines, hash, line offsets and line hashes), persisted in the
+ * working directory between two analyses. An entry is reused only if the size, the last modification
+ * date and the default encoding of the file did not change since it was computed.
+ * <p/>
+ * Disabled by default. Files modified without change of size or modification date are not detected.
+ */
+@ScannerSide
+public class FileMetadataCache implements Startable {
+
+  public static final String ENABLED_PROPERTY = "sonar.metadataCache.enabled";
+  public static final String DIRNAME = "metadata-cache";
+  private static final String FILENAME = "metadata.dat";
+  private static final int VERSION = 1;
+
+  private static final Logger LOG = Loggers.get(FileMetadataCache.class);
+
+  private final boolean enabled;
+  private final Path cacheFile;
+  // entries of the previous analysis
+  private final Map<String, Entry> previousEntries = new ConcurrentHashMap<>();
+  // entries of the files indexed during this analysis, persisted at the end
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  public FileMetadataCache(ProjectReactor projectReactor, Settings settings) {
+    this.enabled = settings.getBoolean(ENABLED_PROPERTY);
+    this.cacheFile = projectReactor.getRoot().getWorkDir().toPath().resolve(DIRNAME).resolve(FILENAME);
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public void start() {
+    if (enabled && Files.exists(cacheFile)) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+        load(in);
+      } catch (IOException | RuntimeException e) {
+        LOG.warn("Fail to load file metadata cache, it is ignored: " + e.getMessage());
+        previousEntries.clear();
+      }
+    }
+  }
+
+  @Override
+  public void stop() {
+    if (enabled) {
+      try {
+        Files.createDirectories(cacheFile.getParent());
+        Path tmp = Files.createTempFile(cacheFile.getParent(), FILENAME, ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+          save(out);
+        }
+        Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        LOG.debug("Metadata of {} files saved to cache", entries.size());
+      } catch (IOException e) {
+        LOG.warn("Fail to save file metadata cache: " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * Identifies the content of a file without reading it. Must be called before the file is read,
+   * so that changes made while it is read invalidate the entry.
+   *
+   * @return null if the cache is disabled
+   */
+  @CheckForNull
+  public FileStamp stamp(Path path, Charset defaultEncoding) {
+    if (!enabled) {
+      return null;
+    }
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      return new FileStamp(attributes.size(), attributes.lastModifiedTime().toMillis(), defaultEncoding.name());
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to read attributes of file " + path, e);
+    }
+  }
+
+  /**
+   * Applies cached metadata to the given file.
+   *
+   * @return false if no valid metadata is cached for this file
+   */
+  public boolean restore(DefaultInputFile inputFile, FileStamp stamp) {
+    Entry entry = previousEntries.remove(inputFile.absolutePath());
+    if (entry == null || !entry.stamp.equals(stamp)) {
+      return false;
+    }
+    inputFile.setCharset(Charset.forName(entry.charset));
+    inputFile.setLines(entry.lines);
+    inputFile.setNonBlankLines(entry.nonBlankLines);
+    inputFile.setHash(entry.hash);
+    inputFile.setOriginalLineOffsets(entry.originalLineOffsets);
+    inputFile.setLastValidOffset(entry.lastValidOffset);
+    entries.put(inputFile.absolutePath(), entry);
+    return true;
+  }
+
+  /**
+   * Stores the metadata that has just been computed for the given file.
+   */
+  public void put(DefaultInputFile inputFile, FileStamp stamp) {
+    entries.put(inputFile.absolutePath(), new Entry(stamp, inputFile.charset().name(), inputFile.lines(), inputFile.nonBlankLines(), inputFile.hash(),
+      inputFile.originalLineOffsets(), inputFile.lastValidOffset()));
+  }
+
+  /**
+   * Hashes of lines, as computed for issue tracking. Null rows are blank lines.
+   */
+  @CheckForNull
+  public byte[][] lineHashes(DefaultInputFile inputFile) {
+    Entry entry = entries.get(inputFile.absolutePath());
+    return entry != null ? entry.lineHashes : null;
+  }
+
+  public void putLineHashes(DefaultInputFile inputFile, byte[][] lineHashes) {
+    Entry entry = entries.get(inputFile.absolutePath());
+    if (entry != null) {
+      entry.lineHashes = lineHashes;
+    }
+  }
+
+  private void load(DataInputStream in) throws IOException {
+    if (in.readInt() != VERSION) {
+      return;
+    }
+    int size = in.readInt();
+    for (int i = 0; i < size; i++) {
+      String path = in.readUTF();
+      FileStamp stamp = new FileStamp(in.readLong(), in.readLong(), in.readUTF());
+      String charset = in.readUTF();
+      int lines = in.readInt();
+      int nonBlankLines = in.readInt();
+      String hash = in.readUTF();
+      int[] offsets = new int[in.readInt()];
+      for (int j = 0; j < offsets.length; j++) {
+        offsets[j] = in.readInt();
+      }
+      Entry entry = new Entry(stamp, charset, lines, nonBlankLines, hash, offsets, in.readInt());
+      int lineHashesCount = in.readInt();
+      if (lineHashesCount >= 0) {
+        byte[][] lineHashes = new byte[lineHashesCount][];
+        for (int j = 0; j < lineHashesCount; j++) {
+          int length = in.readUnsignedByte();
+          if (length > 0) {
+            lineHashes[j] = new byte[length];
+            in.readFully(lineHashes[j]);
+          }
+        }
+        entry.lineHashes = lineHashes;
+      }
+      previousEntries.put(path, entry);
+    }
+  }
+
+  private void save(DataOutputStream out) throws IOException {
+    out.writeInt(VERSION);
+    out.writeInt(entries.size());
+    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+      Entry entry = e.getValue();
+      out.writeUTF(e.getKey());
+      out.writeLong(entry.stamp.size);
+      out.writeLong(entry.stamp.lastModified);
+      out.writeUTF(entry.stamp.encoding);
+      out.writeUTF(entry.charset);
+      out.writeInt(entry.lines);
+      out.writeInt(entry.nonBlankLines);
+      out.writeUTF(entry.hash);
+      out.writeInt(entry.originalLineOffsets.length);
+      for (int offset : entry.originalLineOffsets) {
+        out.writeInt(offset);
+      }
+      out.writeInt(entry.lastValidOffset);
+      byte[][] lineHashes = entry.lineHashes;
+      if (lineHashes == null) {
+        out.writeInt(-1);
+      } else {
+        out.writeInt(lineHashes.length);
+        for (byte[] lineHash : lineHashes) {
+          if (lineHash == null) {
+            out.writeByte(0);
+          } else {
+            out.writeByte(lineHash.length);
+            out.write(lineHash);
+          }
+        }
+      }
+    }
+  }
+
+  public static final class FileStamp {
+    private final long size;
+    private final long lastModified;
+    private final String encoding;
+
+    FileStamp(long size, long lastModified, String encoding) {
+      this.size = size;
+      this.lastModified = lastModified;
+      this.encoding = encoding;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      FileStamp other = (FileStamp) o;
+      return size == other.size && lastModified == other.lastModified && encoding.equals(other.encoding);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = Long.hashCode(size);
+      result = 31 * result + Long.hashCode(lastModified);
+      return 31 * result + encoding.hashCode();
+    }
+  }
+
+  private static final class Entry {
+    private final FileStamp stamp;
+    private final String charset;
+    private final int lines;
+    private final int nonBlankLines;
+    private final String hash;
+    private final int[] originalLineOffsets;
+    private final int lastValidOffset;
+    private volatile byte[][] lineHashes;
+
+    private Entry(FileStamp stamp, String charset, int lines, int nonBlankLines, String hash, int[] originalLineOffsets, int lastValidOffset) {
+      this.stamp = stamp;
+      this.charset = charset;
+      this.lines = lines;
+      this.nonBlankLines = nonBlankLines;
+      this.hash = hash;
+      this.originalLineOffsets = originalLineOffsets;
+      this.lastValidOffset = lastValidOffset;
+    }
+  }
+}
@@ -35,6 +35,7 @@ import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.FileMetadata;
 import org.sonar.api.config.Settings;
 import org.sonar.api.scan.filesystem.PathResolver;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache.FileStamp;
 
 class InputFileBuilder {
 
@@ -53,9 +54,10 @@ class InputFileBuilder {
   private final DefaultModuleFileSystem fs;
   private final Settings settings;
   private final FileMetadata fileMetadata;
+  private final FileMetadataCache metadataCache;
 
   InputFileBuilder(String moduleKey, PathResolver pathResolver, LanguageDetection langDetection,
-    StatusDetection statusDetection, DefaultModuleFileSystem fs, Settings settings, FileMetadata fileMetadata) {
+    StatusDetection statusDetection, DefaultModuleFileSystem fs, Settings settings, FileMetadata fileMetadata, FileMetadataCache metadataCache) {
     this.moduleKey = moduleKey;
     this.pathResolver = pathResolver;
     this.langDetection = langDetection;
@@ -63,6 +65,7 @@ class InputFileBuilder {
     this.fs = fs;
     this.settings = settings;
     this.fileMetadata = fileMetadata;
+    this.metadataCache = metadataCache;
   }
 
   String moduleKey() {
@@ -109,10 +112,15 @@ class InputFileBuilder {
     }
     inputFile.setLanguage(lang);
 
-    Charset charset = detectCharset(inputFile.file(), fs.encoding());
-    inputFile.setCharset(charset);
-
-    inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), charset));
+    FileStamp stamp = metadataCache.stamp(inputFile.path(), fs.encoding());
+    if (stamp == null || !metadataCache.restore(inputFile, stamp)) {
+      Charset charset = detectCharset(inputFile.file(), fs.encoding());
+      inputFile.setCharset(charset);
+      inputFile.initMetadata(fileMetadata.readMetadata(inputFile.file(), charset));
+      if (stamp != null) {
+        metadataCache.put(inputFile, stamp);
+      }
+    }
 
     inputFile.setStatus(statusDetection.status(inputFile.moduleKey(), inputFile.relativePath(), inputFile.hash()));
 
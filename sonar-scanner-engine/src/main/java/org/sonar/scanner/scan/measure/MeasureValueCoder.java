@@ -19,14 +19,15 @@
  */
 package org.sonar.scanner.scan.measure;
 
-import com.persistit.Value;
-import com.persistit.encoding.CoderContext;
-import com.persistit.encoding.ValueCoder;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
 import org.sonar.api.batch.measure.MetricFinder;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
+import org.sonar.scanner.storage.ValueCoder;
 
-class MeasureValueCoder implements ValueCoder {
+class MeasureValueCoder implements ValueCoder<DefaultMeasure<?>> {
 
   private final MetricFinder metricFinder;
 
@@ -35,23 +36,22 @@ class MeasureValueCoder implements ValueCoder {
   }
 
   @Override
-  public void put(Value value, Object object, CoderContext context) {
-    DefaultMeasure<?> m = (DefaultMeasure<?>) object;
+  public void put(ObjectOutput out, DefaultMeasure<?> m) throws IOException {
     org.sonar.api.batch.measure.Metric<?> metric = m.metric();
-    value.putString(metric.key());
-    value.put(m.value());
+    out.writeUTF(metric.key());
+    out.writeObject(m.value());
   }
 
   @Override
-  public Object get(Value value, Class clazz, CoderContext context) {
-    String metricKey = value.getString();
+  public DefaultMeasure<?> get(ObjectInput in) throws IOException, ClassNotFoundException {
+    String metricKey = in.readUTF();
     org.sonar.api.batch.measure.Metric<?> metric = metricFinder.findByKey(metricKey);
     if (metric == null) {
       throw new IllegalStateException("Unknow metric with key " + metricKey);
     }
     DefaultMeasure<?> m = new DefaultMeasure()
       .forMetric(metric)
-      .withValue((Serializable) value.get());
+      .withValue((Serializable) in.readObject());
     return m;
   }
 }
@@ -19,6 +19,10 @@
  */
 package org.sonar.scanner.scm;
 
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import javax.annotation.CheckForNull;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.scm.BlameCommand.BlameInput;
@@ -27,10 +31,12 @@ class DefaultBlameInput implements BlameInput {
 
   private FileSystem fs;
   private Iterable<InputFile> filesToBlame;
+  private Map<InputFile, int[]> previousLinesByFile;
 
-  DefaultBlameInput(FileSystem fs, Iterable<InputFile> filesToBlame) {
+  DefaultBlameInput(FileSystem fs, Iterable<InputFile> filesToBlame, Map<InputFile, int[]> previousLinesByFile) {
     this.fs = fs;
     this.filesToBlame = filesToBlame;
+    this.previousLinesByFile = previousLinesByFile;
   }
 
   @Override
@@ -43,4 +49,20 @@ class DefaultBlameInput implements BlameInput {
     return filesToBlame;
   }
 
+  @CheckForNull
+  @Override
+  public SortedSet<Integer> changedLines(InputFile file) {
+    int[] previousLines = previousLinesByFile.get(file);
+    if (previousLines == null) {
+      return null;
+    }
+    SortedSet<Integer> changedLines = new TreeSet<>();
+    for (int i = 0; i < previousLines.length; i++) {
+      if (previousLines[i] == 0) {
+        changedLines.add(i + 1);
+      }
+    }
+    return changedLines;
+  }
+
 }
@@ -21,6 +21,7 @@ package org.sonar.scanner.scm;
 
 import com.google.common.base.Preconditions;
 import java.text.Normalizer;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -52,14 +53,23 @@ class DefaultBlameOutput implements BlameOutput {
   private final ScannerReportWriter writer;
   private final BatchComponentCache componentCache;
   private final Set<InputFile> allFilesToBlame = new HashSet<>();
+  private final Map<InputFile, int[]> previousLinesByFile;
   private ProgressReport progressReport;
   private int count;
   private int total;
 
   DefaultBlameOutput(ScannerReportWriter writer, BatchComponentCache componentCache, List<InputFile> filesToBlame) {
+    this(writer, componentCache, filesToBlame, Collections.emptyMap());
+  }
+
+  /**
+   * @param previousLinesByFile for the files blamed incrementally, the line of previous analysis of each line, 0 if the line changed
+   */
+  DefaultBlameOutput(ScannerReportWriter writer, BatchComponentCache componentCache, List<InputFile> filesToBlame, Map<InputFile, int[]> previousLinesByFile) {
     this.writer = writer;
     this.componentCache = componentCache;
     this.allFilesToBlame.addAll(filesToBlame);
+    this.previousLinesByFile = previousLinesByFile;
     count = 0;
     total = filesToBlame.size();
     progressReport = new ProgressReport("Report about progress of SCM blame", TimeUnit.SECONDS.toMillis(10));
@@ -81,9 +91,18 @@ class DefaultBlameOutput implements BlameOutput {
     Builder scmBuilder = ScannerReport.Changesets.newBuilder();
     scmBuilder.setComponentRef(batchComponent.batchId());
     Map<String, Integer> changesetsIdByRevision = new HashMap<>();
+    int[] previousLines = previousLinesByFile.get(file);
+    boolean copyFromPrevious = false;
 
     int lineId = 1;
     for (BlameLine line : lines) {
+      if (line == null && previousLines != null && previousLines[lineId - 1] > 0) {
+        // line did not change, its changeset is copied from previous analysis
+        scmBuilder.addChangesetIndexByLine(-1);
+        copyFromPrevious = true;
+        lineId++;
+        continue;
+      }
       validateLine(line, lineId, file);
       Integer changesetId = changesetsIdByRevision.get(line.revision());
       if (changesetId == null) {
@@ -94,13 +113,19 @@ class DefaultBlameOutput implements BlameOutput {
       scmBuilder.addChangesetIndexByLine(changesetId);
       lineId++;
     }
+    if (copyFromPrevious) {
+      for (int i = 0; i < lines.size(); i++) {
+        scmBuilder.addPreviousLineByLine(lines.get(i) == null ? previousLines[i] : 0);
+      }
+    }
     writer.writeComponentChangesets(scmBuilder.build());
     allFilesToBlame.remove(file);
     count++;
     progressReport.message(count + "/" + total + " files analyzed");
   }
 
-  private static void validateLine(BlameLine line, int lineId, InputFile file) {
+  private static void validateLine(@Nullable BlameLine line, int lineId, InputFile file) {
+    Preconditions.checkArgument(line != null, "Blame is missing for file %s at line %s", file.relativePath(), lineId);
     Preconditions.checkArgument(StringUtils.isNotBlank(line.revision()), "Blame revision is blank for file %s at line %s", file.relativePath(), lineId);
     Preconditions.checkArgument(line.date() != null, "Blame date is null for file %s at line %s", file.relativePath(), lineId);
   }
@@ -47,6 +47,17 @@ import org.sonar.scanner.scan.ImmutableProjectReactor;
     project = false,
     module = false,
     global = false,
+    type = PropertyType.BOOLEAN),
+  @Property(
+    key = ScmConfiguration.INCREMENTAL_KEY,
+    defaultValue = "true",
+    name = "Incremental SCM information",
+    description = "When a file was modified since previous analysis, reuse the SCM information of its unchanged lines. "
+      + "SCM providers which support it are asked to blame only the modified lines.",
+    category = CoreProperties.CATEGORY_SCM,
+    project = false,
+    module = false,
+    global = false,
     type = PropertyType.BOOLEAN)
 })
 @InstantiationStrategy(InstantiationStrategy.PER_BATCH)
@@ -55,6 +66,7 @@ public final class ScmConfiguration implements Startable {
   private static final Logger LOG = Loggers.get(ScmConfiguration.class);
 
   public static final String FORCE_RELOAD_KEY = "sonar.scm.forceReloadAll";
+  public static final String INCREMENTAL_KEY = "sonar.scm.incremental";
 
   private final ImmutableProjectReactor projectReactor;
   private final Settings settings;
@@ -147,6 +159,10 @@ public final class ScmConfiguration implements Startable {
     return settings.getBoolean(FORCE_RELOAD_KEY);
   }
 
+  public boolean isIncremental() {
+    return settings.getBoolean(INCREMENTAL_KEY);
+  }
+
   @Override
   public void stop() {
     // Nothing to do
@@ -19,14 +19,21 @@
  */
 package org.sonar.scanner.scm;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.annotation.CheckForNull;
 import org.apache.commons.lang.StringUtils;
 import org.sonar.api.CoreProperties;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.fs.FileSystem;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.InputFile.Status;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.sensor.Sensor;
 import org.sonar.api.batch.sensor.SensorContext;
 import org.sonar.api.batch.sensor.SensorDescriptor;
@@ -34,11 +41,14 @@ import org.sonar.api.utils.log.Logger;
 import org.sonar.api.utils.log.Loggers;
 import org.sonar.scanner.index.BatchComponent;
 import org.sonar.scanner.index.BatchComponentCache;
+import org.sonar.scanner.issue.tracking.FileHashes;
+import org.sonar.scanner.issue.tracking.ServerLineHashesLoader;
 import org.sonar.scanner.protocol.output.ScannerReport;
 import org.sonar.scanner.protocol.output.ScannerReport.Changesets.Builder;
 import org.sonar.scanner.report.ReportPublisher;
 import org.sonar.scanner.repository.FileData;
 import org.sonar.scanner.repository.ProjectRepositories;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 
 public final class ScmSensor implements Sensor {
 
@@ -50,15 +60,27 @@ public final class ScmSensor implements Sensor {
   private final ProjectRepositories projectRepositories;
   private final BatchComponentCache componentCache;
   private final ReportPublisher publishReportJob;
+  private final FileMetadataCache metadataCache;
+  private final ServerLineHashesLoader serverLineHashesLoader;
 
-  public ScmSensor(ProjectDefinition projectDefinition, ScmConfiguration configuration,
-    ProjectRepositories projectRepositories, FileSystem fs, BatchComponentCache componentCache, ReportPublisher publishReportJob) {
+  public ScmSensor(ProjectDefinition projectDefinition, ScmConfiguration configuration, ProjectRepositories projectRepositories, FileSystem fs,
+    BatchComponentCache componentCache, ReportPublisher publishReportJob, FileMetadataCache metadataCache, ServerLineHashesLoader serverLineHashesLoader) {
     this.projectDefinition = projectDefinition;
     this.configuration = configuration;
     this.projectRepositories = projectRepositories;
     this.fs = fs;
     this.componentCache = componentCache;
     this.publishReportJob = publishReportJob;
+    this.metadataCache = metadataCache;
+    this.serverLineHashesLoader = serverLineHashesLoader;
+  }
+
+  /**
+   * Used when there is no previous analysis, so no file can be blamed incrementally
+   */
+  public ScmSensor(ProjectDefinition projectDefinition, ScmConfiguration configuration, ProjectRepositories projectRepositories, FileSystem fs,
+    BatchComponentCache componentCache, ReportPublisher publishReportJob, FileMetadataCache metadataCache) {
+    this(projectDefinition, configuration, projectRepositories, fs, componentCache, publishReportJob, metadataCache, null);
   }
 
   @Override
@@ -77,13 +99,16 @@ public final class ScmSensor implements Sensor {
       return;
     }
 
-    List<InputFile> filesToBlame = collectFilesToBlame();
+    List<InputFile> filesToBlame = new LinkedList<>();
+    List<InputFile> changedFiles = new ArrayList<>();
+    collectFilesToBlame(filesToBlame, changedFiles);
+    Map<InputFile, int[]> previousLinesByFile = collectPreviousLines(changedFiles, filesToBlame);
     if (!filesToBlame.isEmpty()) {
       String key = configuration.provider().key();
       LOG.info("SCM provider for this project is: " + key);
-      DefaultBlameOutput output = new DefaultBlameOutput(publishReportJob.getWriter(), componentCache, filesToBlame);
+      DefaultBlameOutput output = new DefaultBlameOutput(publishReportJob.getWriter(), componentCache, filesToBlame, previousLinesByFile);
       try {
-        configuration.provider().blameCommand().blame(new DefaultBlameInput(fs, filesToBlame), output);
+        configuration.provider().blameCommand().blame(new DefaultBlameInput(fs, filesToBlame, previousLinesByFile), output);
       } catch (Exception e) {
         output.finish(false);
         throw e;
@@ -92,25 +117,90 @@ public final class ScmSensor implements Sensor {
     }
   }
 
-  private List<InputFile> collectFilesToBlame() {
+  /**
+   * @param changedFiles files modified since previous analysis, whose SCM information can be computed incrementally
+   */
+  private void collectFilesToBlame(List<InputFile> filesToBlame, List<InputFile> changedFiles) {
     if (configuration.forceReloadAll()) {
       LOG.warn("Forced reloading of SCM data for all files.");
     }
-    List<InputFile> filesToBlame = new LinkedList<>();
+    boolean incremental = configuration.isIncremental() && serverLineHashesLoader != null;
     for (InputFile f : fs.inputFiles(fs.predicates().all())) {
-      if (configuration.forceReloadAll() || f.status() != Status.SAME) {
+      if (configuration.forceReloadAll() || (f.status() != Status.SAME && f.status() != Status.CHANGED)) {
         addIfNotEmpty(filesToBlame, f);
       } else {
-        // File status is SAME so that mean fileData exists
+        // File status is SAME or CHANGED so that mean fileData exists
         FileData fileData = projectRepositories.fileData(projectDefinition.getKeyWithBranch(), f.relativePath());
         if (StringUtils.isEmpty(fileData.revision())) {
           addIfNotEmpty(filesToBlame, f);
-        } else {
+        } else if (f.status() == Status.SAME) {
           askToCopyDataFromPreviousAnalysis(f);
+        } else if (incremental) {
+          addIfNotEmpty(changedFiles, f);
+        } else {
+          addIfNotEmpty(filesToBlame, f);
         }
       }
     }
-    return filesToBlame;
+  }
+
+  /**
+   * Compares the changed files with their version of the previous analysis. Only their changed lines need to be blamed,
+   * SCM information of the other lines is copied by the Compute Engine from the previous analysis.
+   *
+   * @return for each changed file to blame, the line of the previous analysis of each of its lines (0 when the line changed)
+   */
+  private Map<InputFile, int[]> collectPreviousLines(List<InputFile> changedFiles, List<InputFile> filesToBlame) {
+    Map<InputFile, int[]> previousLinesByFile = new HashMap<>();
+    if (changedFiles.isEmpty()) {
+      return previousLinesByFile;
+    }
+    Map<InputFile, String[]> previousHashesByFile = loadPreviousLineHashes(changedFiles);
+    if (previousHashesByFile == null) {
+      filesToBlame.addAll(changedFiles);
+      return previousLinesByFile;
+    }
+    for (InputFile f : changedFiles) {
+      String[] previousHashes = previousHashesByFile.get(f);
+      if (previousHashes == null) {
+        filesToBlame.add(f);
+        continue;
+      }
+      String[] currentHashes = FileHashes.create((DefaultInputFile) f, metadataCache).hashes();
+      int[] previousLines = SourceLinesDiff.previousLines(previousHashes, currentHashes);
+      if (Arrays.stream(previousLines).allMatch(line -> line > 0)) {
+        askToCopyLinesFromPreviousAnalysis(f, previousLines);
+      } else {
+        filesToBlame.add(f);
+        previousLinesByFile.put(f, previousLines);
+      }
+    }
+    return previousLinesByFile;
+  }
+
+  /**
+   * Line hashes can't be loaded when the user is not allowed to browse the project (for example when authenticated
+   * with a token of a user having only the "Execute Analysis" permission). Changed files are then fully blamed.
+   *
+   * @return null if line hashes can't be loaded
+   */
+  @CheckForNull
+  private Map<InputFile, String[]> loadPreviousLineHashes(List<InputFile> changedFiles) {
+    try {
+      serverLineHashesLoader.prefetch(changedFiles.stream().map(InputFile::key).collect(Collectors.toList()));
+      Map<InputFile, String[]> hashesByFile = new HashMap<>();
+      for (InputFile f : changedFiles) {
+        String[] hashes = serverLineHashesLoader.getLineHashes(f.key());
+        if (hashes != null) {
+          hashesByFile.put(f, hashes);
+        }
+      }
+      return hashesByFile;
+    } catch (RuntimeException e) {
+      LOG.warn("Fail to load line hashes of previous analysis, SCM information of changed files is fully computed: {}", e.getMessage());
+      LOG.debug("Fail to load line hashes", e);
+      return null;
+    }
   }
 
   private void askToCopyDataFromPreviousAnalysis(InputFile f) {
@@ -121,6 +211,17 @@ public final class ScmSensor implements Sensor {
     publishReportJob.getWriter().writeComponentChangesets(scmBuilder.build());
   }
 
+  private void askToCopyLinesFromPreviousAnalysis(InputFile f, int[] previousLines) {
+    BatchComponent batchComponent = componentCache.get(f);
+    Builder scmBuilder = ScannerReport.Changesets.newBuilder();
+    scmBuilder.setComponentRef(batchComponent.batchId());
+    for (int previousLine : previousLines) {
+      scmBuilder.addChangesetIndexByLine(-1);
+      scmBuilder.addPreviousLineByLine(previousLine);
+    }
+    publishReportJob.getWriter().writeComponentChangesets(scmBuilder.build());
+  }
+
   private static void addIfNotEmpty(List<InputFile> filesToBlame, InputFile f) {
     if (!f.isEmpty()) {
       filesToBlame.add(f);
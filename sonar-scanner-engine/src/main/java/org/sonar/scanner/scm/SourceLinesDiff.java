@@ -0,0 +1,95 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scm;
+
+/**
+ * Finds the lines of a file which did not change since the previous analysis, by computing the longest
+ * common subsequence of the line hashes of both versions.
+ */
+class SourceLinesDiff {
+
+  /**
+   * Beyond this size of the table of the longest common subsequence, the lines which are between the common
+   * prefix and the common suffix of both versions are considered as changed.
+   */
+  static final long MAX_LCS_TABLE_SIZE = 4_000_000L;
+
+  private SourceLinesDiff() {
+    // only static methods
+  }
+
+  /**
+   * @return for each line of the current version, the number of the same line in the previous version (starting at 1),
+   * or 0 if the line is new or changed
+   */
+  static int[] previousLines(String[] previousHashes, String[] currentHashes) {
+    int[] previousLines = new int[currentHashes.length];
+
+    int start = 0;
+    while (start < previousHashes.length && start < currentHashes.length && previousHashes[start].equals(currentHashes[start])) {
+      previousLines[start] = start + 1;
+      start++;
+    }
+
+    int previousEnd = previousHashes.length;
+    int currentEnd = currentHashes.length;
+    while (previousEnd > start && currentEnd > start && previousHashes[previousEnd - 1].equals(currentHashes[currentEnd - 1])) {
+      previousEnd--;
+      currentEnd--;
+      previousLines[currentEnd] = previousEnd + 1;
+    }
+
+    int previousLength = previousEnd - start;
+    int currentLength = currentEnd - start;
+    if ((long) (previousLength + 1) * (currentLength + 1) <= MAX_LCS_TABLE_SIZE) {
+      matchCommonSubsequence(previousHashes, currentHashes, start, previousLength, currentLength, previousLines);
+    }
+    return previousLines;
+  }
+
+  private static void matchCommonSubsequence(String[] previousHashes, String[] currentHashes, int start, int previousLength, int currentLength,
+    int[] previousLines) {
+    // lcs[i][j] is the length of the longest common subsequence of the lines following i and j
+    int[][] lcs = new int[previousLength + 1][currentLength + 1];
+    for (int i = previousLength - 1; i >= 0; i--) {
+      for (int j = currentLength - 1; j >= 0; j--) {
+        if (previousHashes[start + i].equals(currentHashes[start + j])) {
+          lcs[i][j] = lcs[i + 1][j + 1] + 1;
+        } else {
+          lcs[i][j] = Math.max(lcs[i + 1][j], lcs[i][j + 1]);
+        }
+      }
+    }
+
+    int i = 0;
+    int j = 0;
+    while (i < previousLength && j < currentLength) {
+      if (previousHashes[start + i].equals(currentHashes[start + j])) {
+        previousLines[start + j] = start + i + 1;
+        i++;
+        j++;
+      } else if (lcs[i + 1][j] >= lcs[i][j + 1]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+  }
+}
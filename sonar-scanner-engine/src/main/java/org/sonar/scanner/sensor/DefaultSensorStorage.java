@@ -116,6 +116,10 @@ import static org.sonar.api.measures.CoreMetrics.TEST_SUCCESS_DENSITY_KEY;
 import static org.sonar.api.measures.CoreMetrics.UNCOVERED_CONDITIONS;
 import static org.sonar.api.measures.CoreMetrics.UNCOVERED_LINES;
 
+/**
+ * Methods storing data are synchronized, as thread-safe sensors can be executed concurrently
+ * (see {@link org.sonar.scanner.phases.SensorsExecutor}) whereas caches and report writer are not thread-safe.
+ */
 public class DefaultSensorStorage implements SensorStorage {
 
   private static final Logger LOG = LoggerFactory.getLogger(DefaultSensorStorage.class);
@@ -209,7 +213,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(Measure newMeasure) {
+  public synchronized void store(Measure newMeasure) {
     saveMeasure(newMeasure.inputComponent(), (DefaultMeasure<?>) newMeasure);
   }
 
@@ -220,7 +224,7 @@ public class DefaultSensorStorage implements SensorStorage {
     }
   }
 
-  public void saveMeasure(InputComponent component, DefaultMeasure<?> measure) {
+  public synchronized void saveMeasure(InputComponent component, DefaultMeasure<?> measure) {
     if (isDeprecatedMetric(measure.metric().key())) {
       logOnce(measure.metric().key(), "Metric '{}' is deprecated. Provided value is ignored.", measure.metric().key());
       return;
@@ -342,12 +346,12 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(Issue issue) {
+  public synchronized void store(Issue issue) {
     moduleIssues.initAndAddIssue(issue);
   }
 
   @Override
-  public void store(DefaultHighlighting highlighting) {
+  public synchronized void store(DefaultHighlighting highlighting) {
     ScannerReportWriter writer = reportPublisher.getWriter();
     DefaultInputFile inputFile = (DefaultInputFile) highlighting.inputFile();
     int componentRef = componentCache.get(inputFile).batchId();
@@ -359,7 +363,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(DefaultSymbolTable symbolTable) {
+  public synchronized void store(DefaultSymbolTable symbolTable) {
     ScannerReportWriter writer = reportPublisher.getWriter();
     int componentRef = componentCache.get(symbolTable.inputFile()).batchId();
     if (writer.hasComponentData(FileStructure.Domain.SYMBOLS, componentRef)) {
@@ -394,7 +398,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(DefaultCoverage defaultCoverage) {
+  public synchronized void store(DefaultCoverage defaultCoverage) {
     if (coverageExclusions.isExcluded(defaultCoverage.inputFile())) {
       return;
     }
@@ -434,7 +438,7 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(DefaultCpdTokens defaultCpdTokens) {
+  public synchronized void store(DefaultCpdTokens defaultCpdTokens) {
     InputFile inputFile = defaultCpdTokens.inputFile();
     PmdBlockChunker blockChunker = new PmdBlockChunker(getBlockSize(inputFile.language()));
     List<Block> blocks = blockChunker.chunk(inputFile.key(), defaultCpdTokens.getTokenLines());
@@ -451,12 +455,12 @@ public class DefaultSensorStorage implements SensorStorage {
   }
 
   @Override
-  public void store(AnalysisError analysisError) {
+  public synchronized void store(AnalysisError analysisError) {
     // no op
   }
 
   @Override
-  public void storeProperty(String key, String value) {
+  public synchronized void storeProperty(String key, String value) {
     contextPropertiesCache.put(key, value);
   }
 }
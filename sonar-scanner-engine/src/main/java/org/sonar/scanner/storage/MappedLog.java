@@ -0,0 +1,101 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.sonar.core.util.FileUtils.deleteQuietly;
+
+/**
+ * Append-only log of values, memory-mapped by segments. A value is identified by a pointer made of the index
+ * of its segment (high 32 bits) and of its offset in this segment (low 32 bits). Space of overwritten or removed
+ * values is not reclaimed, the file is deleted when closed.
+ * <p/>
+ * Appends are serialized, reads can be concurrent.
+ */
+class MappedLog {
+
+  static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private final Path file;
+  private final int segmentSize;
+  private final RandomAccessFile randomAccessFile;
+  private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+  private MappedByteBuffer currentSegment;
+  private long fileSize = 0L;
+
+  MappedLog(Path file, int segmentSize) {
+    this.file = file;
+    this.segmentSize = segmentSize;
+    try {
+      this.randomAccessFile = new RandomAccessFile(file.toFile(), "rw");
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to create storage file " + file, e);
+    }
+  }
+
+  synchronized long append(byte[] value) {
+    int recordSize = Integer.BYTES + value.length;
+    if (currentSegment == null || currentSegment.remaining() < recordSize) {
+      currentSegment = mapSegment(Math.max(segmentSize, recordSize));
+    }
+    int offset = currentSegment.position();
+    currentSegment.putInt(value.length);
+    currentSegment.put(value);
+    return ((long) (segments.size() - 1) << 32) | offset;
+  }
+
+  byte[] read(long pointer) {
+    ByteBuffer segment = segments.get((int) (pointer >>> 32)).duplicate();
+    segment.position((int) pointer);
+    byte[] value = new byte[segment.getInt()];
+    segment.get(value);
+    return value;
+  }
+
+  private MappedByteBuffer mapSegment(int size) {
+    try {
+      MappedByteBuffer segment = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, fileSize, size);
+      fileSize += size;
+      segments.add(segment);
+      return segment;
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to extend storage file " + file, e);
+    }
+  }
+
+  synchronized void close() {
+    segments.clear();
+    currentSegment = null;
+    try {
+      randomAccessFile.close();
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to close storage file " + file, e);
+    }
+    deleteQuietly(file.toFile());
+  }
+}
@@ -19,56 +19,69 @@
  */
 package org.sonar.scanner.storage;
 
-import com.google.common.collect.Sets;
-import com.persistit.Exchange;
-import com.persistit.Key;
-import com.persistit.KeyFilter;
-import com.persistit.exception.PersistitException;
-import java.util.Iterator;
-import java.util.NoSuchElementException;
+import com.google.common.collect.Iterators;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
 import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.apache.commons.lang.builder.ToStringBuilder;
 
 /**
+ * Key-value storage whose keys are made of one or several parts. Keys are sorted, so that all the values
+ * sharing the first parts of their keys can be iterated or cleared together.
  * <p>
- * This storage is not thread-safe, due to direct usage of {@link com.persistit.Exchange}
+ * This storage is thread-safe. Values are serialized by {@link Storages}, so objects returned by the getters
+ * are copies of the stored values.
  * </p>
  */
 public class Storage<V> {
 
+  /**
+   * Key part greater than any other, used as upper bound of the keys starting with a given prefix
+   */
+  private static final Object AFTER = new Object();
+  private static final Comparator<Object[]> KEY_COMPARATOR = Storage::compareKeys;
+
   private final String name;
-  private final Exchange exchange;
+  private final Storages storages;
+  // key -> location of the value, see Storages#store(Object)
+  private final ConcurrentSkipListMap<Object[], Object> index = new ConcurrentSkipListMap<>(KEY_COMPARATOR);
 
-  Storage(String name, Exchange exchange) {
+  Storage(String name, Storages storages) {
     this.name = name;
-    this.exchange = exchange;
+    this.storages = storages;
   }
 
   public Storage<V> put(Object key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(new Object[] {key}, value);
   }
 
   public Storage<V> put(Object firstKey, Object secondKey, V value) {
-    resetKey(firstKey, secondKey);
-    return doPut(value);
+    return doPut(new Object[] {firstKey, secondKey}, value);
   }
 
   public Storage<V> put(Object firstKey, Object secondKey, Object thirdKey, V value) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doPut(value);
+    return doPut(new Object[] {firstKey, secondKey, thirdKey}, value);
   }
 
   public Storage<V> put(Object[] key, V value) {
-    resetKey(key);
-    return doPut(value);
+    return doPut(key.clone(), value);
   }
 
-  private Storage<V> doPut(V value) {
+  private Storage<V> doPut(Object[] key, V value) {
     try {
-      exchange.getValue().put(value);
-      exchange.store();
+      checkKey(key);
+      Object previous = index.put(key, storages.store(value));
+      if (previous != null) {
+        storages.release(previous);
+      }
       return this;
     } catch (Exception e) {
       throw new IllegalStateException("Fail to put element in the storage '" + name + "'", e);
@@ -79,8 +92,7 @@ public class Storage<V> {
    * Returns the value object associated with keys, or null if not found.
    */
   public V get(Object key) {
-    resetKey(key);
-    return doGet();
+    return doGet(new Object[] {key});
   }
 
   /**
@@ -88,8 +100,7 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doGet();
+    return doGet(new Object[] {firstKey, secondKey});
   }
 
   /**
@@ -97,8 +108,7 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doGet();
+    return doGet(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   /**
@@ -106,172 +116,113 @@ public class Storage<V> {
    */
   @CheckForNull
   public V get(Object[] key) {
-    resetKey(key);
-    return doGet();
+    return doGet(key);
   }
 
-  @SuppressWarnings("unchecked")
   @CheckForNull
-  private V doGet() {
+  private V doGet(Object[] key) {
     try {
-      exchange.fetch();
-      if (!exchange.getValue().isDefined()) {
-        return null;
-      }
-      return (V) exchange.getValue().get();
+      Object location = index.get(key);
+      return location == null ? null : load(location);
     } catch (Exception e) {
-      // TODO add parameters to message
       throw new IllegalStateException("Fail to get element from cache " + name, e);
     }
   }
 
   public boolean containsKey(Object key) {
-    resetKey(key);
-    return doContainsKey();
+    return index.containsKey(new Object[] {key});
   }
 
   public boolean containsKey(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doContainsKey();
+    return index.containsKey(new Object[] {firstKey, secondKey});
   }
 
   public boolean containsKey(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doContainsKey();
+    return index.containsKey(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public boolean containsKey(Object[] key) {
-    resetKey(key);
-    return doContainsKey();
-  }
-
-  private boolean doContainsKey() {
-    try {
-      exchange.fetch();
-      return exchange.isValueDefined();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to check if element is in cache " + name, e);
-    }
+    return index.containsKey(key);
   }
 
   public boolean remove(Object key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(new Object[] {key});
   }
 
   public boolean remove(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doRemove();
+    return doRemove(new Object[] {firstKey, secondKey});
   }
 
   public boolean remove(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doRemove();
+    return doRemove(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public boolean remove(Object[] key) {
-    resetKey(key);
-    return doRemove();
+    return doRemove(key);
   }
 
-  private boolean doRemove() {
-    try {
-      return exchange.remove();
-    } catch (Exception e) {
-      // TODO add parameters to message
-      throw new IllegalStateException("Fail to get element from cache " + name, e);
+  private boolean doRemove(Object[] key) {
+    Object location = index.remove(key);
+    if (location == null) {
+      return false;
     }
+    storages.release(location);
+    return true;
   }
 
   /**
-   * Removes everything in the specified group.
-   *
-   * @param group The group name.
+   * Removes the value of the given key, as well as all the values whose key starts with the given key.
    */
   public Storage<V> clear(Object key) {
-    resetKey(key);
-    return doClear();
+    return doClear(new Object[] {key});
   }
 
   public Storage<V> clear(Object firstKey, Object secondKey) {
-    resetKey(firstKey, secondKey);
-    return doClear();
+    return doClear(new Object[] {firstKey, secondKey});
   }
 
   public Storage<V> clear(Object firstKey, Object secondKey, Object thirdKey) {
-    resetKey(firstKey, secondKey, thirdKey);
-    return doClear();
+    return doClear(new Object[] {firstKey, secondKey, thirdKey});
   }
 
   public Storage<V> clear(Object[] key) {
-    resetKey(key);
-    return doClear();
+    return doClear(key);
   }
 
-  private Storage<V> doClear() {
-    try {
-      Key to = new Key(exchange.getKey());
-      to.append(Key.AFTER);
-      exchange.removeKeyRange(exchange.getKey(), to);
-      return this;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear values from cache " + name, e);
-    }
+  private Storage<V> doClear(Object[] key) {
+    removeAll(index.subMap(key, true, after(key), false));
+    return this;
   }
 
   /**
    * Clears the default as well as all group caches.
    */
   public void clear() {
-    try {
-      exchange.clear();
-      exchange.removeAll();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to clear cache", e);
+    removeAll(index);
+  }
+
+  private void removeAll(NavigableMap<Object[], Object> range) {
+    for (Map.Entry<Object[], Object> entry : range.entrySet()) {
+      if (range.remove(entry.getKey(), entry.getValue())) {
+        storages.release(entry.getValue());
+      }
     }
   }
 
   /**
    * Returns the set of cache keys associated with this group.
-   * TODO implement a lazy-loading equivalent with Iterator/Iterable
    *
    * @param group The group.
    * @return The set of cache keys for this group.
    */
   @SuppressWarnings("rawtypes")
   public Set keySet(Object key) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(key);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return childKeys(new Object[] {key});
   }
 
   @SuppressWarnings("rawtypes")
   public Set keySet(Object firstKey, Object secondKey) {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(firstKey);
-      iteratorExchange.append(secondKey);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
-    }
+    return childKeys(new Object[] {firstKey, secondKey});
   }
 
   /**
@@ -280,201 +231,123 @@ public class Storage<V> {
    * @return The set containing the keys for this cache.
    */
   public Set<Object> keySet() {
-    try {
-      Set<Object> keys = Sets.newLinkedHashSet();
-      exchange.clear();
-      Exchange iteratorExchange = new Exchange(exchange);
-      iteratorExchange.append(Key.BEFORE);
-      while (iteratorExchange.next(false)) {
-        keys.add(iteratorExchange.getKey().indexTo(-1).decode());
-      }
-      return keys;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to get keys from cache " + name, e);
+    return childKeys(new Object[0]);
+  }
+
+  /**
+   * Distinct values of the key part following the given prefix, without iterating over all the keys
+   * starting with the same parts.
+   */
+  private Set<Object> childKeys(Object[] prefix) {
+    Set<Object> keys = new LinkedHashSet<>();
+    Object[] upperBound = after(prefix);
+    Object[] key = index.higherKey(prefix);
+    while (key != null && compareKeys(key, upperBound) < 0) {
+      Object child = key[prefix.length];
+      keys.add(child);
+      Object[] childPrefix = new Object[prefix.length + 1];
+      System.arraycopy(prefix, 0, childPrefix, 0, prefix.length);
+      childPrefix[prefix.length] = child;
+      key = index.higherKey(after(childPrefix));
     }
+    return keys;
   }
 
   /**
    * Lazy-loading values for given keys
    */
   public Iterable<V> values(Object firstKey, Object secondKey) {
-    return new ValueIterable<>(exchange, firstKey, secondKey);
+    return lazy(descendants(new Object[] {firstKey, secondKey}).values(), this::load);
   }
 
   /**
    * Lazy-loading values for a given key
    */
   public Iterable<V> values(Object firstKey) {
-    return new ValueIterable<>(exchange, firstKey);
+    return lazy(descendants(new Object[] {firstKey}).values(), this::load);
   }
 
   /**
    * Lazy-loading values
    */
   public Iterable<V> values() {
-    return new ValueIterable<>(exchange);
+    return lazy(index.values(), this::load);
   }
 
   public Iterable<Entry<V>> entries() {
-    return new EntryIterable<>(exchange);
+    return lazy(index.entrySet(), this::toEntry);
   }
 
   public Iterable<Entry<V>> entries(Object firstKey) {
-    return new EntryIterable<>(exchange, firstKey);
+    return lazy(descendants(new Object[] {firstKey}).entrySet(), this::toEntry);
   }
 
-  private void resetKey(Object key) {
-    exchange.clear();
-    exchange.append(key);
+  /**
+   * Values are loaded while iterating. Removing an item is not supported.
+   */
+  private static <T, R> Iterable<R> lazy(Collection<T> source, Function<T, R> loader) {
+    return () -> Iterators.unmodifiableIterator(Iterators.transform(source.iterator(), loader::apply));
   }
 
-  private void resetKey(Object first, Object second) {
-    exchange.clear();
-    exchange.append(first).append(second);
+  private ConcurrentNavigableMap<Object[], Object> descendants(Object[] prefix) {
+    return index.subMap(prefix, false, after(prefix), false);
   }
 
-  private void resetKey(Object first, Object second, Object third) {
-    exchange.clear();
-    exchange.append(first).append(second).append(third);
+  @SuppressWarnings("unchecked")
+  @CheckForNull
+  private V load(Object location) {
+    return (V) storages.load(location);
   }
 
-  private void resetKey(Object[] keys) {
-    exchange.clear();
-    for (Object o : keys) {
-      exchange.append(o);
-    }
+  private Entry<V> toEntry(Map.Entry<Object[], Object> entry) {
+    return new Entry<>(entry.getKey().clone(), load(entry.getValue()));
   }
 
-  //
-  // LAZY ITERATORS AND ITERABLES
-  //
-
-  private static class ValueIterable<T> implements Iterable<T> {
-    private final Exchange originExchange;
-    private final Object[] keys;
-
-    private ValueIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<T> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
-      }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new ValueIterator<>(iteratorExchange, filter);
-    }
+  private static Object[] after(Object[] prefix) {
+    Object[] key = new Object[prefix.length + 1];
+    System.arraycopy(prefix, 0, key, 0, prefix.length);
+    key[prefix.length] = AFTER;
+    return key;
   }
 
-  private static class ValueIterator<T> implements Iterator<T> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private ValueIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
-    }
-
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-    }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public T next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        return (T) exchange.getValue().get();
+  private static void checkKey(Object[] key) {
+    for (Object part : key) {
+      if (part != null && !(part instanceof Comparable)) {
+        throw new IllegalArgumentException("Key must be comparable: " + part);
       }
-      throw new NoSuchElementException();
-    }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
     }
   }
 
-  private static class EntryIterable<T> implements Iterable<Entry<T>> {
-    private final Exchange originExchange;
-    private final Object[] keys;
-
-    private EntryIterable(Exchange originExchange, Object... keys) {
-      this.originExchange = originExchange;
-      this.keys = keys;
-    }
-
-    @Override
-    public Iterator<Entry<T>> iterator() {
-      originExchange.clear();
-      KeyFilter filter = new KeyFilter();
-      for (Object key : keys) {
-        originExchange.append(key);
-        filter = filter.append(KeyFilter.simpleTerm(key));
+  /**
+   * Keys are compared part by part. A key is lower than the keys it is a prefix of. Parts of different
+   * types are ordered by type.
+   */
+  private static int compareKeys(Object[] a, Object[] b) {
+    int length = Math.min(a.length, b.length);
+    for (int i = 0; i < length; i++) {
+      int c = compareParts(a[i], b[i]);
+      if (c != 0) {
+        return c;
       }
-      originExchange.append(Key.BEFORE);
-      Exchange iteratorExchange = new Exchange(originExchange);
-      return new EntryIterator<>(iteratorExchange, filter);
     }
+    return Integer.compare(a.length, b.length);
   }
 
-  private static class EntryIterator<T> implements Iterator<Entry<T>> {
-    private final Exchange exchange;
-    private final KeyFilter keyFilter;
-
-    private EntryIterator(Exchange exchange, KeyFilter keyFilter) {
-      this.exchange = exchange;
-      this.keyFilter = keyFilter;
+  @SuppressWarnings("unchecked")
+  private static int compareParts(@Nullable Object a, @Nullable Object b) {
+    if (a == b) {
+      return 0;
     }
-
-    @Override
-    public boolean hasNext() {
-      try {
-        return exchange.hasNext(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
+    if (a == AFTER || b == null) {
+      return 1;
     }
-
-    @SuppressWarnings("unchecked")
-    @Override
-    public Entry<T> next() {
-      try {
-        exchange.next(keyFilter);
-      } catch (PersistitException e) {
-        throw new IllegalStateException(e);
-      }
-      if (exchange.getValue().isDefined()) {
-        T value = (T) exchange.getValue().get();
-        Key key = exchange.getKey();
-        Object[] array = new Object[key.getDepth()];
-        for (int i = 0; i < key.getDepth(); i++) {
-          array[i] = key.indexTo(i - key.getDepth()).decode();
-        }
-        return new Entry<>(array, value);
-      }
-      throw new NoSuchElementException();
+    if (b == AFTER || a == null) {
+      return -1;
     }
-
-    @Override
-    public void remove() {
-      throw new UnsupportedOperationException("Removing an item is not supported");
+    if (a.getClass() != b.getClass()) {
+      return a.getClass().getName().compareTo(b.getClass().getName());
     }
+    return ((Comparable<Object>) a).compareTo(b);
   }
 
   public static class Entry<V> {
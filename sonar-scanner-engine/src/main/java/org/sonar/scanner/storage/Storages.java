@@ -19,82 +19,208 @@
  */
 package org.sonar.scanner.storage;
 
-import com.google.common.collect.Maps;
-
-import java.util.Map;
-import java.util.Map.Entry;
-
 import com.google.common.base.Preconditions;
-import com.persistit.Exchange;
-import com.persistit.Value;
-import com.persistit.encoding.CoderManager;
-import com.persistit.Persistit;
-import com.persistit.encoding.ValueCoder;
-import com.persistit.exception.PersistitException;
-import com.persistit.Volume;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.annotation.CheckForNull;
+import javax.annotation.Nullable;
 import org.picocontainer.Startable;
 import org.sonar.api.batch.ScannerSide;
 
+/**
+ * Creates the storages of an analysis and serializes their values. Values are kept in heap while
+ * the budget of {@link StoragesManager} allows it, then appended to a {@link MappedLog}.
+ */
 @ScannerSide
 public class Storages implements Startable {
-  private final Map<String, Exchange> cacheMap = Maps.newHashMap();
-  private Persistit persistit;
-  private Volume volume;
+
+  /**
+   * Same limit as the previous implementation based on Persistit
+   */
+  static final int MAX_VALUE_SIZE = 64 * 1024 * 1024;
+
+  /**
+   * Strings of this length are encoded in at most 65535 bytes, the limit of {@link java.io.DataOutput#writeUTF(String)}
+   */
+  private static final int MAX_SHORT_STRING_LENGTH = 65_535 / 3;
+
+  private static final byte NULL_VALUE = 0;
+  private static final byte STRING_VALUE = 1;
+  private static final byte CODED_VALUE = 2;
+  private static final byte SERIALIZED_VALUE = 3;
+
+  private final Map<String, Storage<?>> storagesByName = new ConcurrentHashMap<>();
+  private final Map<Class<?>, Integer> coderIndexes = new ConcurrentHashMap<>();
+  private final List<ValueCoder> coders = new CopyOnWriteArrayList<>();
+  private final StoragesManager storagesManager;
+  private volatile boolean opened = true;
+  private volatile MappedLog log;
 
   public Storages(StoragesManager storagesManager) {
-    persistit = storagesManager.persistit();
-    doStart();
+    this.storagesManager = storagesManager;
   }
 
   @Override
   public void start() {
-    // done in constructor
+    // nothing to do
   }
 
-  private void doStart() {
-    try {
-      persistit.flush();
-      volume = persistit.createTemporaryVolume();
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to create a cache volume", e);
-    }
+  public synchronized void registerValueCoder(Class<?> clazz, ValueCoder<?> coder) {
+    coders.add(coder);
+    coderIndexes.put(clazz, coders.size() - 1);
   }
 
-  public void registerValueCoder(Class<?> clazz, ValueCoder coder) {
-    CoderManager cm = persistit.getCoderManager();
-    cm.registerValueCoder(clazz, coder);
+  public <V> Storage<V> createCache(String cacheName) {
+    Preconditions.checkState(opened, "Caches are not initialized");
+    Storage<V> storage = new Storage<>(cacheName, this);
+    Preconditions.checkState(storagesByName.putIfAbsent(cacheName, storage) == null, "Cache is already created: " + cacheName);
+    return storage;
   }
 
-  public <V> Storage<V> createCache(String cacheName) {
-    Preconditions.checkState(volume != null && volume.isOpened(), "Caches are not initialized");
-    Preconditions.checkState(!cacheMap.containsKey(cacheName), "Cache is already created: " + cacheName);
-    try {
-      Exchange exchange = persistit.getExchange(volume, cacheName, true);
-      exchange.setMaximumValueSize(Value.MAXIMUM_SIZE);
-      Storage<V> cache = new Storage<>(cacheName, exchange);
-      cacheMap.put(cacheName, exchange);
-      return cache;
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to create cache: " + cacheName, e);
+  @Override
+  public synchronized void stop() {
+    opened = false;
+    for (Storage<?> storage : storagesByName.values()) {
+      storage.clear();
+    }
+    storagesByName.clear();
+    if (log != null) {
+      log.close();
+      log = null;
     }
   }
 
-  @Override
-  public void stop() {
-    for (Entry<String, Exchange> e : cacheMap.entrySet()) {
-      persistit.releaseExchange(e.getValue());
+  /**
+   * @return the location of the value, either the byte array itself or a pointer in the log
+   */
+  Object store(@Nullable Object value) {
+    byte[] bytes = encode(value);
+    if (storagesManager.reserveHeap(bytes.length)) {
+      return bytes;
+    }
+    return log().append(bytes);
+  }
+
+  @CheckForNull
+  Object load(Object location) {
+    if (location instanceof byte[]) {
+      return decode((byte[]) location);
     }
+    return decode(log.read((Long) location));
+  }
 
-    cacheMap.clear();
+  void release(Object location) {
+    if (location instanceof byte[]) {
+      storagesManager.releaseHeap(((byte[]) location).length);
+    }
+  }
 
-    if (volume != null) {
+  private synchronized MappedLog log() {
+    if (log == null) {
       try {
-        volume.close();
-        volume.delete();
-      } catch (PersistitException e) {
-        throw new IllegalStateException("Fail to close caches", e);
+        log = new MappedLog(Files.createTempFile(storagesManager.tempDir().toPath(), "storage", ".log"), MappedLog.DEFAULT_SEGMENT_SIZE);
+      } catch (IOException e) {
+        throw new IllegalStateException("Fail to create storage file", e);
+      }
+    }
+    return log;
+  }
+
+  @SuppressWarnings("unchecked")
+  private byte[] encode(@Nullable Object value) {
+    LimitedByteArrayOutputStream bytes = new LimitedByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      Integer coderIndex = value == null ? null : coderIndex(value.getClass());
+      if (value == null) {
+        out.writeByte(NULL_VALUE);
+      } else if (value instanceof String && ((String) value).length() <= MAX_SHORT_STRING_LENGTH) {
+        out.writeByte(STRING_VALUE);
+        out.writeUTF((String) value);
+      } else if (coderIndex != null) {
+        out.writeByte(CODED_VALUE);
+        out.writeInt(coderIndex);
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+          coders.get(coderIndex).put(objectOut, value);
+        }
+      } else {
+        out.writeByte(SERIALIZED_VALUE);
+        try (ObjectOutputStream objectOut = new ObjectOutputStream(out)) {
+          objectOut.writeObject(value);
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Fail to serialize " + value, e);
+    }
+    return bytes.toByteArray();
+  }
+
+  @CheckForNull
+  private Object decode(byte[] bytes) {
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      byte type = in.readByte();
+      switch (type) {
+        case NULL_VALUE:
+          return null;
+        case STRING_VALUE:
+          return in.readUTF();
+        case CODED_VALUE:
+          ValueCoder<?> coder = coders.get(in.readInt());
+          try (ObjectInputStream objectIn = new ObjectInputStream(in)) {
+            return coder.get(objectIn);
+          }
+        case SERIALIZED_VALUE:
+          try (ObjectInputStream objectIn = new ObjectInputStream(in)) {
+            return objectIn.readObject();
+          }
+        default:
+          throw new IllegalStateException("Unknown type of value: " + type);
+      }
+    } catch (IOException | ClassNotFoundException e) {
+      throw new IllegalStateException("Fail to deserialize value", e);
+    }
+  }
+
+  @CheckForNull
+  private Integer coderIndex(Class<?> clazz) {
+    for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+      Integer index = coderIndexes.get(c);
+      if (index != null) {
+        return index;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Fails as soon as the value exceeds {@link #MAX_VALUE_SIZE}, without buffering it entirely.
+   */
+  private static class LimitedByteArrayOutputStream extends ByteArrayOutputStream {
+    @Override
+    public synchronized void write(int b) {
+      checkSize(1);
+      super.write(b);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+      checkSize(len);
+      super.write(b, off, len);
+    }
+
+    private void checkSize(int len) {
+      if (count + len > MAX_VALUE_SIZE) {
+        throw new IllegalArgumentException("Value is too big, maximum size is " + MAX_VALUE_SIZE + " bytes");
       }
-      volume = null;
     }
   }
 }
@@ -19,53 +19,47 @@
  */
 package org.sonar.scanner.storage;
 
-import com.persistit.Persistit;
-import com.persistit.exception.PersistitException;
-import com.persistit.logging.Slf4jAdapter;
 import java.io.File;
-import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang.StringUtils;
 import org.picocontainer.Startable;
-import org.slf4j.LoggerFactory;
 import org.sonar.api.batch.ScannerSide;
 import org.sonar.api.utils.TempFolder;
+import org.sonar.scanner.bootstrap.GlobalProperties;
 
 import static org.sonar.core.util.FileUtils.deleteQuietly;
 
 /**
- * Factory of storages
+ * Factory of storages. Values are kept in heap as long as their total size does not exceed the budget
+ * defined by the property {@value #HEAP_BUDGET_PROPERTY} (in MB, by default a quarter of the maximum heap size).
+ * Beyond this budget, values are written to memory-mapped files of the temporary directory.
  *
  * @since 3.6
  */
 @ScannerSide
 public class StoragesManager implements Startable {
+
+  public static final String HEAP_BUDGET_PROPERTY = "sonar.storage.heapBudgetMb";
+  private static final long MB = 1024L * 1024L;
+
+  private final long heapBudget;
+  private final AtomicLong heapUsage = new AtomicLong();
   private File tempDir;
-  private Persistit persistit;
-  private final TempFolder tempFolder;
 
-  public StoragesManager(TempFolder tempFolder) {
-    this.tempFolder = tempFolder;
-    initPersistit();
+  public StoragesManager(TempFolder tempFolder, GlobalProperties properties) {
+    this.heapBudget = heapBudget(properties);
+    this.tempDir = tempFolder.newDir("caches");
   }
 
-  private void initPersistit() {
+  private static long heapBudget(GlobalProperties properties) {
+    String budget = properties.property(HEAP_BUDGET_PROPERTY);
+    if (StringUtils.isBlank(budget)) {
+      return Runtime.getRuntime().maxMemory() / 4;
+    }
     try {
-      tempDir = tempFolder.newDir("caches");
-      persistit = new Persistit();
-      persistit.setPersistitLogger(new Slf4jAdapter(LoggerFactory.getLogger("PERSISTIT")));
-      Properties props = new Properties();
-      props.setProperty("datapath", tempDir.getAbsolutePath());
-      props.setProperty("logpath", "${datapath}/log");
-      props.setProperty("logfile", "${logpath}/persistit_${timestamp}.log");
-      props.setProperty("buffer.count.8192", "10");
-      props.setProperty("journalpath", "${datapath}/journal");
-      props.setProperty("tmpvoldir", "${datapath}");
-      props.setProperty("volume.1", "${datapath}/persistit,create,pageSize:8192,initialPages:10,extensionPages:100,maximumPages:25000");
-      props.setProperty("jmx", "false");
-      persistit.setProperties(props);
-      persistit.initialize();
-
-    } catch (Exception e) {
-      throw new IllegalStateException("Fail to start caches", e);
+      return Long.parseLong(budget.trim()) * MB;
+    } catch (NumberFormatException e) {
+      throw new IllegalStateException("Value of property '" + HEAP_BUDGET_PROPERTY + "' must be a number of MB: " + budget, e);
     }
   }
 
@@ -76,14 +70,6 @@ public class StoragesManager implements Startable {
 
   @Override
   public void stop() {
-    if (persistit != null) {
-      try {
-        persistit.close(false);
-        persistit = null;
-      } catch (PersistitException e) {
-        throw new IllegalStateException("Fail to close caches", e);
-      }
-    }
     deleteQuietly(tempDir);
     tempDir = null;
   }
@@ -92,7 +78,29 @@ public class StoragesManager implements Startable {
     return tempDir;
   }
 
-  Persistit persistit() {
-    return persistit;
+  long heapBudget() {
+    return heapBudget;
+  }
+
+  long heapUsage() {
+    return heapUsage.get();
+  }
+
+  /**
+   * @return false if the given number of bytes would exceed the heap budget. In this case nothing is reserved.
+   */
+  boolean reserveHeap(int bytes) {
+    long usage;
+    do {
+      usage = heapUsage.get();
+      if (usage + bytes > heapBudget) {
+        return false;
+      }
+    } while (!heapUsage.compareAndSet(usage, usage + bytes));
+    return true;
+  }
+
+  void releaseHeap(int bytes) {
+    heapUsage.addAndGet(-bytes);
   }
 }
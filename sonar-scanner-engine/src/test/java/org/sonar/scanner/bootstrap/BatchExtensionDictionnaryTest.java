@@ -35,6 +35,7 @@ import org.sonar.api.batch.PostJob;
 import org.sonar.api.batch.Sensor;
 import org.sonar.api.batch.SensorContext;
 import org.sonar.api.batch.postjob.PostJobContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
 import org.sonar.api.resources.Project;
 import org.sonar.core.platform.ComponentContainer;
 import org.sonar.scanner.bootstrap.BatchExtensionDictionnary;
@@ -42,6 +43,7 @@ import org.sonar.scanner.bootstrap.ExtensionMatcher;
 import org.sonar.scanner.postjob.PostJobOptimizer;
 import org.sonar.scanner.sensor.DefaultSensorContext;
 import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
@@ -304,6 +306,32 @@ public class BatchExtensionDictionnaryTest {
     assertThat(extensions.get(2)).isEqualTo(post);
   }
 
+  @Test
+  public void useSensorDescriptorsToSortSensors() {
+    NewSensorWithDependencies consumer = new NewSensorWithDependencies(new String[] {"coverage"}, new String[0]);
+    NewSensorWithDependencies producer = new NewSensorWithDependencies(new String[0], new String[] {"coverage"});
+    NewSensorWithDependencies other = new NewSensorWithDependencies(new String[0], new String[0]);
+
+    BatchExtensionDictionnary selector = newSelector(consumer, producer, other);
+    List<Sensor> sensors = Lists.newArrayList(selector.select(Sensor.class, null, true, null));
+
+    assertThat(sensors).extracting("wrappedSensor").containsSubsequence(producer, consumer);
+    Sensor consumerWrapper = sensors.stream().filter(s -> ((SensorWrapper) s).wrappedSensor() == consumer).findFirst().get();
+    Sensor producerWrapper = sensors.stream().filter(s -> ((SensorWrapper) s).wrappedSensor() == producer).findFirst().get();
+    Sensor otherWrapper = sensors.stream().filter(s -> ((SensorWrapper) s).wrappedSensor() == other).findFirst().get();
+    assertThat(selector.areDependent(consumerWrapper, producerWrapper)).isTrue();
+    assertThat(selector.areDependent(producerWrapper, consumerWrapper)).isTrue();
+    assertThat(selector.areDependent(otherWrapper, consumerWrapper)).isFalse();
+  }
+
+  @Test
+  public void extensionsOfDifferentPhasesAreDependent() {
+    BatchExtensionDictionnary selector = newSelector();
+
+    assertThat(selector.areDependent(new PreSensor(), new FakeSensor())).isTrue();
+    assertThat(selector.areDependent(new FakeSensor(), new FakeSensor())).isFalse();
+  }
+
   @Test
   public void buildStatusCheckersAreExecutedAfterOtherPostJobs() {
     BuildBreaker checker = new BuildBreaker() {
@@ -318,6 +346,25 @@ public class BatchExtensionDictionnaryTest {
     assertThat(extensions.get(2)).isEqualTo(checker);
   }
 
+  class NewSensorWithDependencies implements org.sonar.api.batch.sensor.Sensor {
+    private final String[] dependsUpon;
+    private final String[] dependedUpon;
+
+    NewSensorWithDependencies(String[] dependsUpon, String[] dependedUpon) {
+      this.dependsUpon = dependsUpon;
+      this.dependedUpon = dependedUpon;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.threadSafe().dependsUpon(dependsUpon).dependedUpon(dependedUpon);
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+    }
+  }
+
   class FakeSensor implements Sensor {
 
     public void analyse(Project project, SensorContext context) {
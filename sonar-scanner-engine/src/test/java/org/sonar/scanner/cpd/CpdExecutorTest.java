@@ -29,6 +29,7 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.config.Settings;
@@ -37,6 +38,8 @@ import org.sonar.api.resources.Project;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.util.CloseableIterator;
+import org.sonar.duplications.block.Block;
+import org.sonar.duplications.block.ByteArray;
 import org.sonar.duplications.index.CloneGroup;
 import org.sonar.duplications.index.ClonePart;
 import org.sonar.scanner.cpd.index.SonarCpdBlockIndex;
@@ -113,6 +116,43 @@ public class CpdExecutorTest {
     assertThat(executor.getMinimumTokens("php")).isEqualTo(33);
   }
 
+  @Test
+  public void threads_are_configurable() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "3");
+    assertThat(executor.getThreads()).isEqualTo(3);
+
+    settings.removeProperty(CpdExecutor.THREADS_PROPERTY);
+    assertThat(executor.getThreads()).isGreaterThanOrEqualTo(1);
+  }
+
+  @Test
+  public void execute_detects_duplications_of_all_files_with_several_threads() {
+    settings.setProperty(CpdExecutor.THREADS_PROPERTY, "2");
+    SonarCpdBlockIndex realIndex = new SonarCpdBlockIndex(publisher, componentCache, settings);
+    BatchComponent[] components = {batchComponent1, batchComponent2, batchComponent3};
+    for (BatchComponent component : components) {
+      ((DefaultInputFile) component.inputComponent()).setLanguage("java").setModuleBaseDir(temp.getRoot().toPath());
+      List<Block> blocks = new ArrayList<>();
+      for (int i = 0; i < 3; i++) {
+        blocks.add(Block.builder()
+          .setResourceId(component.key())
+          .setBlockHash(new ByteArray((long) i))
+          .setIndexInFile(i)
+          .setLines(i + 1, i + 2)
+          .setUnit(i, i + 1)
+          .build());
+      }
+      realIndex.insert((InputFile) component.inputComponent(), blocks);
+    }
+
+    new CpdExecutor(settings, realIndex, publisher, componentCache).execute();
+
+    for (BatchComponent component : components) {
+      Duplication[] duplications = readDuplications(component, 1);
+      assertThat(duplications[0].getDuplicateList()).hasSize(2);
+    }
+  }
+
   @Test
   public void testNothingToSave() {
     executor.saveDuplications(batchComponent1, Collections.<CloneGroup>emptyList());
@@ -198,9 +238,13 @@ public class CpdExecutorTest {
   }
 
   private Duplication[] readDuplications(int expected) {
-    assertThat(reader.readComponentDuplications(batchComponent1.batchId())).hasSize(expected);
+    return readDuplications(batchComponent1, expected);
+  }
+
+  private Duplication[] readDuplications(BatchComponent component, int expected) {
+    assertThat(reader.readComponentDuplications(component.batchId())).hasSize(expected);
     Duplication[] duplications = new Duplication[expected];
-    CloseableIterator<Duplication> dups = reader.readComponentDuplications(batchComponent1.batchId());
+    CloseableIterator<Duplication> dups = reader.readComponentDuplications(component.batchId());
 
     for (int i = 0; i < expected; i++) {
       duplications[i] = dups.next();
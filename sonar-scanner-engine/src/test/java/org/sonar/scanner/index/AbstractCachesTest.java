@@ -42,16 +42,20 @@ public abstract class AbstractCachesTest {
   protected static StoragesManager cachesManager;
   protected Storages caches;
 
-  private static StoragesManager createCacheOnTemp() {
-    Map<String, String> props = ImmutableMap.of(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath(),
-      CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath());
+  protected static StoragesManager createCacheOnTemp(Map<String, String> additionalProps) {
+    Map<String, String> props = ImmutableMap.<String, String>builder()
+      .put(CoreProperties.WORKING_DIRECTORY, temp.getRoot().getAbsolutePath())
+      .put(CoreProperties.GLOBAL_WORKING_DIRECTORY, temp.getRoot().getAbsolutePath())
+      .putAll(additionalProps)
+      .build();
 
-    return new StoragesManager(new GlobalTempFolderProvider().provide(new GlobalProperties(props)));
+    GlobalProperties globalProperties = new GlobalProperties(props);
+    return new StoragesManager(new GlobalTempFolderProvider().provide(globalProperties), globalProperties);
   }
 
   @BeforeClass
   public static void startClass() {
-    cachesManager = createCacheOnTemp();
+    cachesManager = createCacheOnTemp(ImmutableMap.of());
     cachesManager.start();
   }
 
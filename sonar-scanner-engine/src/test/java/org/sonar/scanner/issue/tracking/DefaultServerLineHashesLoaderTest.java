@@ -19,9 +19,13 @@
  */
 package org.sonar.scanner.issue.tracking;
 
+import java.io.ByteArrayInputStream;
 import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -29,9 +33,16 @@ import org.junit.rules.ExpectedException;
 import org.sonar.api.utils.HttpDownloader;
 import org.sonar.scanner.WsTestUtil;
 import org.sonar.scanner.bootstrap.BatchWsClient;
+import org.sonarqube.ws.WsSources.HashesResponse;
+import org.sonarqube.ws.client.WsRequest;
 
+import static java.util.Arrays.asList;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
 
 public class DefaultServerLineHashesLoaderTest {
   private BatchWsClient wsClient;
@@ -64,6 +75,46 @@ public class DefaultServerLineHashesLoaderTest {
     WsTestUtil.verifyCall(wsClient, "/api/sources/hash?key=myproject%3Aorg%2Ffoo%2FFoo+Bar.c");
   }
 
+  @Test
+  public void should_prefetch_hashes_of_several_files_in_bulk() {
+    HashesResponse response = HashesResponse.newBuilder()
+      .addFiles(HashesResponse.File.newBuilder().setKey("myproject:Foo.c").addLineHashes("ae12").addLineHashes("").addLineHashes("43fb"))
+      .addFiles(HashesResponse.File.newBuilder().setKey("myproject:Bar.c").addLineHashes("ff01"))
+      .build();
+    WsTestUtil.mockStream(wsClient, new ByteArrayInputStream(response.toByteArray()));
+    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+
+    lastSnapshots.prefetch(asList("myproject:Foo.c", "myproject:Bar.c"));
+
+    WsTestUtil.verifyCall(wsClient, "/api/sources/hashes.protobuf?keys=myproject%3AFoo.c,myproject%3ABar.c");
+    assertThat(lastSnapshots.getLineHashes("myproject:Foo.c")).containsExactly("ae12", "", "43fb");
+    assertThat(lastSnapshots.getLineHashes("myproject:Bar.c")).containsExactly("ff01");
+    verifyNoMoreInteractions(wsClient);
+  }
+
+  @Test
+  public void should_split_prefetch_in_several_requests() {
+    WsTestUtil.mockStream(wsClient, new ByteArrayInputStream(HashesResponse.getDefaultInstance().toByteArray()));
+    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+    List<String> keys = IntStream.range(0, DefaultServerLineHashesLoader.BULK_SIZE * 2 + 1).mapToObj(i -> "file" + i).collect(Collectors.toList());
+
+    lastSnapshots.prefetch(keys);
+
+    verify(wsClient, times(3)).call(any(WsRequest.class));
+  }
+
+  @Test
+  public void should_load_file_by_file_if_not_prefetched() {
+    WsTestUtil.mockStream(wsClient, new ByteArrayInputStream(HashesResponse.getDefaultInstance().toByteArray()));
+    WsTestUtil.mockReader(wsClient, "/api/sources/hash?key=foo", new StringReader("ae12"));
+    ServerLineHashesLoader lastSnapshots = new DefaultServerLineHashesLoader(wsClient);
+
+    lastSnapshots.prefetch(asList("foo"));
+
+    assertThat(lastSnapshots.getLineHashes("foo")).containsExactly("ae12");
+    WsTestUtil.verifyCall(wsClient, "/api/sources/hash?key=foo");
+  }
+
   @Test
   public void should_fail_to_download_source_from_ws() throws URISyntaxException {
     WsTestUtil.mockException(wsClient, new HttpDownloader.HttpException(new URI(""), 500));
@@ -59,6 +59,7 @@ import java.io.Reader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -294,6 +295,9 @@ public class BatchMediumTester {
     if (builder.associated) {
       batchBuilder.addComponents(
         builder.serverIssues);
+      if (!builder.serverLineHashes.byKey.isEmpty()) {
+        batchBuilder.addComponents(builder.serverLineHashes);
+      }
     }
     batch = batchBuilder.build();
   }
@@ -489,6 +493,11 @@ public class BatchMediumTester {
         throw new IllegalStateException("You forgot to mock line hashes for " + fileKey);
       }
     }
+
+    @Override
+    public void prefetch(Collection<String> fileKeys) {
+      // line hashes are mocked
+    }
   }
 
 }
@@ -29,10 +29,12 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.utils.MessageException;
 import org.sonar.api.utils.System2;
 import org.sonar.scanner.mediumtest.BatchMediumTester;
 import org.sonar.scanner.mediumtest.TaskResult;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache;
 import org.sonar.xoo.XooPlugin;
 
 import java.io.File;
@@ -128,6 +130,30 @@ public class FileSystemMediumTest {
     assertThat(result.inputDir("src").relativePath()).isEqualTo("src");
   }
 
+  @Test
+  public void reuseMetadataCacheOfPreviousAnalysis() throws IOException {
+    File srcDir = new File(baseDir, "src");
+    srcDir.mkdir();
+
+    File xooFile = new File(srcDir, "sample.xoo");
+    FileUtils.write(xooFile, "Sample xoo\ncontent");
+
+    ImmutableMap<String, String> props = builder
+      .put("sonar.sources", "src")
+      .put(FileMetadataCache.ENABLED_PROPERTY, "true")
+      .build();
+    TaskResult first = tester.newTask().properties(props).start();
+    assertThat(new File(baseDir, ".sonar/" + FileMetadataCache.DIRNAME + "/metadata.dat")).isFile();
+
+    TaskResult second = tester.newTask().properties(props).start();
+
+    DefaultInputFile firstFile = (DefaultInputFile) first.inputFile("src/sample.xoo");
+    DefaultInputFile secondFile = (DefaultInputFile) second.inputFile("src/sample.xoo");
+    assertThat(secondFile.lines()).isEqualTo(2);
+    assertThat(secondFile.hash()).isEqualTo(firstFile.hash());
+    assertThat(secondFile.originalLineOffsets()).isEqualTo(firstFile.originalLineOffsets());
+  }
+
   @Test
   public void scanBigProject() throws IOException {
     File srcDir = new File(baseDir, "src");
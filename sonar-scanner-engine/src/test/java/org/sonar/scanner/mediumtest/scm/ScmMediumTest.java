@@ -22,6 +22,7 @@ package org.sonar.scanner.mediumtest.scm;
 import com.google.common.collect.ImmutableMap;
 import java.io.File;
 import java.io.IOException;
+import java.util.Date;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.io.FileUtils;
 import org.junit.After;
@@ -246,6 +247,97 @@ public class ScmMediumTest {
     assertThat(logTester.logs()).containsSubsequence(MISSING_BLAME_INFORMATION_FOR_THE_FOLLOWING_FILES, "  * " + noBlameScmOnServer.getPath().replaceAll("\\\\", "/"));
   }
 
+  @Test
+  public void blame_only_changed_lines() throws IOException {
+    BatchMediumTester incrementalTester = BatchMediumTester.builder()
+      .registerPlugin("xoo", new XooPlugin())
+      .addDefaultQProfile("xoo", "Sonar Way")
+      .setPreviousAnalysisDate(new Date())
+      .addFileData("com.foo.project", CHANGED_CONTENT_SCM_ON_SERVER_XOO, new FileData(DigestUtils.md5Hex(SAMPLE_XOO_CONTENT), "1.1"))
+      .addFileData("com.foo.project", SAME_CONTENT_SCM_ON_SERVER_XOO, new FileData(DigestUtils.md5Hex(SAMPLE_XOO_CONTENT), "1.1"))
+      .mockLineHashes("com.foo.project:" + CHANGED_CONTENT_SCM_ON_SERVER_XOO, new String[] {DigestUtils.md5Hex("Samplexoo"), DigestUtils.md5Hex("content")})
+      .mockLineHashes("com.foo.project:" + SAME_CONTENT_SCM_ON_SERVER_XOO, new String[] {DigestUtils.md5Hex("Samplexoo"), DigestUtils.md5Hex("content")})
+      .build();
+    incrementalTester.start();
+    try {
+      File baseDir = prepareProject();
+      FileUtils.write(new File(baseDir, CHANGED_CONTENT_SCM_ON_SERVER_XOO), "Sample xoo\nchanged\ncontent");
+      FileUtils.write(new File(baseDir, CHANGED_CONTENT_SCM_ON_SERVER_XOO + ".scm"),
+        // revision,author,dateTime
+        "1,foo,2013-01-04\n" +
+          "2,bar,2014-01-04\n" +
+          "1,foo,2013-01-04\n");
+      // only whitespaces changed, no need to blame
+      FileUtils.write(new File(baseDir, SAME_CONTENT_SCM_ON_SERVER_XOO), "Sample  xoo\ncontent");
+
+      incrementalTester.newTask()
+        .properties(ImmutableMap.<String, String>builder()
+          .put("sonar.task", "scan")
+          .put("sonar.projectBaseDir", baseDir.getAbsolutePath())
+          .put("sonar.projectKey", "com.foo.project")
+          .put("sonar.projectName", "Foo Project")
+          .put("sonar.projectVersion", "1.0-SNAPSHOT")
+          .put("sonar.projectDescription", "Description of Foo Project")
+          .put("sonar.sources", "src")
+          .put("sonar.scm.provider", "xoo")
+          .build())
+        .start();
+
+      ScannerReport.Changesets changesets = getChangesets(baseDir, CHANGED_CONTENT_SCM_ON_SERVER_XOO);
+      assertThat(changesets.getChangesetCount()).isEqualTo(1);
+      assertThat(changesets.getChangeset(0).getRevision()).isEqualTo("2");
+      assertThat(changesets.getChangesetIndexByLineList()).containsExactly(-1, 0, -1);
+      assertThat(changesets.getPreviousLineByLineList()).containsExactly(1, 0, 2);
+
+      changesets = getChangesets(baseDir, SAME_CONTENT_SCM_ON_SERVER_XOO);
+      assertThat(changesets.getChangesetCount()).isEqualTo(0);
+      assertThat(changesets.getPreviousLineByLineList()).containsExactly(1, 2);
+    } finally {
+      incrementalTester.stop();
+    }
+  }
+
+  @Test
+  public void blame_all_lines_of_changed_files_if_line_hashes_can_not_be_loaded() throws IOException {
+    BatchMediumTester incrementalTester = BatchMediumTester.builder()
+      .registerPlugin("xoo", new XooPlugin())
+      .addDefaultQProfile("xoo", "Sonar Way")
+      .setPreviousAnalysisDate(new Date())
+      .addFileData("com.foo.project", CHANGED_CONTENT_SCM_ON_SERVER_XOO, new FileData(DigestUtils.md5Hex(SAMPLE_XOO_CONTENT), "1.1"))
+      // loading line hashes of other files fails, as when the user is not allowed to browse the project
+      .mockLineHashes("com.foo.project:src/other.xoo", new String[] {DigestUtils.md5Hex("Samplexoo")})
+      .build();
+    incrementalTester.start();
+    try {
+      File baseDir = prepareProject();
+      FileUtils.write(new File(baseDir, CHANGED_CONTENT_SCM_ON_SERVER_XOO), "Sample xoo\nchanged\ncontent");
+      FileUtils.write(new File(baseDir, CHANGED_CONTENT_SCM_ON_SERVER_XOO + ".scm"),
+        // revision,author,dateTime
+        "1,foo,2013-01-04\n" +
+          "2,bar,2014-01-04\n" +
+          "1,foo,2013-01-04\n");
+
+      incrementalTester.newTask()
+        .properties(ImmutableMap.<String, String>builder()
+          .put("sonar.task", "scan")
+          .put("sonar.projectBaseDir", baseDir.getAbsolutePath())
+          .put("sonar.projectKey", "com.foo.project")
+          .put("sonar.projectName", "Foo Project")
+          .put("sonar.projectVersion", "1.0-SNAPSHOT")
+          .put("sonar.projectDescription", "Description of Foo Project")
+          .put("sonar.sources", "src")
+          .put("sonar.scm.provider", "xoo")
+          .build())
+        .start();
+
+      ScannerReport.Changesets changesets = getChangesets(baseDir, CHANGED_CONTENT_SCM_ON_SERVER_XOO);
+      assertThat(changesets.getChangesetIndexByLineList()).containsExactly(0, 1, 0);
+      assertThat(changesets.getPreviousLineByLineList()).isEmpty();
+    } finally {
+      incrementalTester.stop();
+    }
+  }
+
   @Test
   public void forceReload() throws IOException {
 
@@ -0,0 +1,190 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.phases;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.batch.Sensor;
+import org.sonar.api.batch.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.api.resources.Project;
+import org.sonar.scanner.bootstrap.BatchExtensionDictionnary;
+import org.sonar.scanner.events.EventBus;
+import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SensorsExecutorTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  private Project project = new Project("project");
+  private BatchExtensionDictionnary selector = mock(BatchExtensionDictionnary.class);
+  private SensorContext context = mock(SensorContext.class);
+  private Settings settings = new MapSettings();
+  private List<String> executions = new CopyOnWriteArrayList<>();
+  private SensorsExecutor underTest;
+
+  @Before
+  public void setUp() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 2);
+    underTest = new SensorsExecutor(selector, project, mock(EventBus.class), settings);
+  }
+
+  @Test
+  public void threads_are_configurable() {
+    assertThat(underTest.getThreads()).isEqualTo(2);
+
+    settings.removeProperty(SensorsExecutor.THREADS_PROPERTY);
+    assertThat(underTest.getThreads()).isGreaterThanOrEqualTo(1);
+  }
+
+  @Test
+  public void execute_independent_thread_safe_sensors_concurrently() {
+    CountDownLatch latch = new CountDownLatch(2);
+    select(new FakeSensor("A", true, latch), new FakeSensor("B", true, latch));
+
+    underTest.execute(context);
+
+    assertThat(latch.getCount()).isZero();
+    assertThat(executions).containsOnly("A-concurrent", "B-concurrent");
+  }
+
+  @Test
+  public void execute_dependent_thread_safe_sensors_one_after_the_other() {
+    select(new FakeSensor("A", true, null), new FakeSensor("B", true, null));
+    when(selector.areDependent(any(), any())).thenReturn(true);
+
+    underTest.execute(context);
+
+    assertThat(executions).containsExactly("A", "B");
+  }
+
+  @Test
+  public void execute_other_sensors_alone_in_calling_thread() {
+    Thread callingThread = Thread.currentThread();
+    Sensor deprecatedSensor = new org.sonar.api.batch.Sensor() {
+      @Override
+      public void analyse(Project module, SensorContext context) {
+        executions.add("deprecated-" + (Thread.currentThread() == callingThread));
+      }
+
+      @Override
+      public boolean shouldExecuteOnProject(Project project) {
+        return true;
+      }
+    };
+    select(new FakeSensor("A", true, null), deprecatedSensor, new FakeSensor("B", false, null), new FakeSensor("C", true, null));
+
+    underTest.execute(context);
+
+    assertThat(executions).containsExactly("A", "deprecated-true", "B", "C");
+  }
+
+  @Test
+  public void execute_sensors_in_calling_thread_if_single_thread() {
+    settings.setProperty(SensorsExecutor.THREADS_PROPERTY, 1);
+    select(new FakeSensor("A", true, null), new FakeSensor("B", true, null));
+
+    underTest.execute(context);
+
+    assertThat(executions).containsExactly("A", "B");
+  }
+
+  @Test
+  public void propagate_failure_of_concurrent_sensor() {
+    select(new FakeSensor("A", true, null), new org.sonar.api.batch.sensor.Sensor() {
+      @Override
+      public void describe(SensorDescriptor descriptor) {
+        descriptor.threadSafe();
+      }
+
+      @Override
+      public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+        throw new IllegalStateException("Fail to analyse");
+      }
+    });
+
+    expectedException.expect(IllegalStateException.class);
+    expectedException.expectMessage("Fail to analyse");
+
+    underTest.execute(context);
+  }
+
+  private void select(Object... sensors) {
+    List<Sensor> wrapped = Arrays.stream(sensors)
+      .map(sensor -> sensor instanceof Sensor ? (Sensor) sensor
+        : new SensorWrapper((org.sonar.api.batch.sensor.Sensor) sensor, mock(org.sonar.api.batch.sensor.SensorContext.class), mock(SensorOptimizer.class)))
+      .collect(Collectors.toList());
+    when(selector.select(Sensor.class, project, true, null)).thenReturn(wrapped);
+  }
+
+  /**
+   * When a latch is given, waits for the other sensors sharing the latch, which succeeds only if they are executed concurrently.
+   */
+  private class FakeSensor implements org.sonar.api.batch.sensor.Sensor {
+    private final String name;
+    private final boolean threadSafe;
+    private final CountDownLatch latch;
+
+    FakeSensor(String name, boolean threadSafe, CountDownLatch latch) {
+      this.name = name;
+      this.threadSafe = threadSafe;
+      this.latch = latch;
+    }
+
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name(name);
+      if (threadSafe) {
+        descriptor.threadSafe();
+      }
+    }
+
+    @Override
+    public void execute(org.sonar.api.batch.sensor.SensorContext context) {
+      if (latch == null) {
+        executions.add(name);
+        return;
+      }
+      latch.countDown();
+      try {
+        executions.add(name + (latch.await(10, TimeUnit.SECONDS) ? "-concurrent" : ""));
+      } catch (InterruptedException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.profiling;
+
+import java.io.IOException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.events.SensorExecutionHandler.SensorExecutionEvent;
+import org.sonar.api.batch.fs.InputFile;
+import org.sonar.api.batch.fs.internal.DefaultFileSystem;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.batch.sensor.SensorContext;
+import org.sonar.api.batch.sensor.SensorDescriptor;
+import org.sonar.api.resources.Project;
+import org.sonar.api.utils.System2;
+import org.sonar.scanner.index.BatchComponent;
+import org.sonar.scanner.index.BatchComponentCache;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.sensor.SensorOptimizer;
+import org.sonar.scanner.sensor.SensorWrapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SensorProfilerTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private Project module = new Project("foo");
+  private BatchComponentCache componentCache = mock(BatchComponentCache.class);
+  private System2 system = mock(System2.class);
+  private SensorProfilingRepository repository = new SensorProfilingRepository();
+  private DefaultFileSystem fs;
+  private SensorProfiler underTest;
+
+  @Before
+  public void prepare() throws IOException {
+    BatchComponent component = mock(BatchComponent.class);
+    when(component.batchId()).thenReturn(3);
+    when(componentCache.get(module)).thenReturn(component);
+    fs = new DefaultFileSystem(temp.newFolder().toPath());
+    fs.add(new DefaultInputFile("foo", "src/Foo.xoo").setLanguage("xoo"));
+    fs.add(new DefaultInputFile("foo", "test/FooTest.xoo").setLanguage("xoo").setType(InputFile.Type.TEST));
+    fs.add(new DefaultInputFile("foo", "src/Foo.java").setLanguage("java"));
+    underTest = new SensorProfiler(module, componentCache, fs, system, repository);
+  }
+
+  @Test
+  public void profile_sensor() {
+    SensorWrapper sensor = new SensorWrapper(new XooSensor(), mock(SensorContext.class), mock(SensorOptimizer.class));
+    when(system.now()).thenReturn(1_000L, 1_250L);
+
+    underTest.onSensorExecution(event(sensor, true));
+    underTest.onSensorExecution(event(sensor, false));
+
+    assertThat(repository.getAll()).hasSize(1);
+    ScannerReport.SensorProfiling profiling = repository.getAll().get(0);
+    assertThat(profiling.getComponentRef()).isEqualTo(3);
+    assertThat(profiling.getSensor()).isEqualTo("Xoo Sensor");
+    assertThat(profiling.getSensorClass()).isEqualTo(XooSensor.class.getName());
+    assertThat(profiling.getWallTimeMs()).isEqualTo(250L);
+    assertThat(profiling.getCpuTimeMs()).isGreaterThanOrEqualTo(0L);
+    assertThat(profiling.getAllocatedBytes()).isGreaterThanOrEqualTo(0L);
+    assertThat(profiling.getGcTimeMs()).isGreaterThanOrEqualTo(0L);
+    assertThat(profiling.getPeakHeapDeltaBytes()).isGreaterThanOrEqualTo(0L);
+    assertThat(profiling.getFiles()).isEqualTo(1);
+  }
+
+  @Test
+  public void count_all_files_of_module_for_deprecated_sensors() {
+    org.sonar.api.batch.Sensor sensor = mock(org.sonar.api.batch.Sensor.class);
+    when(system.now()).thenReturn(1_000L, 1_000L);
+
+    underTest.onSensorExecution(event(sensor, true));
+    underTest.onSensorExecution(event(sensor, false));
+
+    assertThat(repository.getAll()).hasSize(1);
+    assertThat(repository.getAll().get(0).getFiles()).isEqualTo(3);
+  }
+
+  @Test
+  public void ignore_end_of_sensor_which_was_not_started() {
+    underTest.onSensorExecution(event(mock(org.sonar.api.batch.Sensor.class), false));
+
+    assertThat(repository.getAll()).isEmpty();
+  }
+
+  private static SensorExecutionEvent event(org.sonar.api.batch.Sensor sensor, boolean start) {
+    SensorExecutionEvent event = mock(SensorExecutionEvent.class);
+    when(event.getSensor()).thenReturn(sensor);
+    when(event.isStart()).thenReturn(start);
+    when(event.isEnd()).thenReturn(!start);
+    return event;
+  }
+
+  private static class XooSensor implements org.sonar.api.batch.sensor.Sensor {
+    @Override
+    public void describe(SensorDescriptor descriptor) {
+      descriptor.name("Xoo Sensor").onlyOnLanguage("xoo").onlyOnFileType(InputFile.Type.MAIN);
+    }
+
+    @Override
+    public void execute(SensorContext context) {
+      // nothing to do
+    }
+  }
+}
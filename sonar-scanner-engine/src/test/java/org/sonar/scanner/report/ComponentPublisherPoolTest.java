@@ -0,0 +1,98 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ComponentPublisherPoolTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
+  private Settings settings = new MapSettings();
+  private ComponentPublisherPool underTest = new ComponentPublisherPool(settings);
+
+  @After
+  public void stop() {
+    underTest.stop();
+  }
+
+  @Test
+  public void number_of_threads_is_number_of_processors_by_default() {
+    assertThat(underTest.getThreads()).isEqualTo(Runtime.getRuntime().availableProcessors());
+
+    settings.setProperty(ComponentPublisherPool.THREADS_PROPERTY, 3);
+    assertThat(underTest.getThreads()).isEqualTo(3);
+  }
+
+  @Test
+  public void publish_in_calling_thread_if_single_thread() {
+    settings.setProperty(ComponentPublisherPool.THREADS_PROPERTY, 1);
+    underTest.start();
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+
+    underTest.forEach(Arrays.asList(1, 2, 3), i -> threads.add(Thread.currentThread().getName()));
+
+    assertThat(threads).containsOnly(Thread.currentThread().getName());
+  }
+
+  @Test
+  public void publish_all_components_in_pool() {
+    settings.setProperty(ComponentPublisherPool.THREADS_PROPERTY, 2);
+    underTest.start();
+    Set<Integer> published = ConcurrentHashMap.newKeySet();
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    List<Integer> components = Arrays.asList(1, 2, 3, 4, 5);
+
+    underTest.forEach(components, i -> {
+      published.add(i);
+      threads.add(Thread.currentThread().getName());
+    });
+
+    assertThat(published).containsOnlyElementsOf(components).hasSize(5);
+    assertThat(threads).allMatch(name -> name.startsWith("ReportPublisher-"));
+  }
+
+  @Test
+  public void rethrow_failure_of_component() {
+    settings.setProperty(ComponentPublisherPool.THREADS_PROPERTY, 2);
+    underTest.start();
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Fail on 2");
+
+    underTest.forEach(Arrays.asList(1, 2, 3), i -> {
+      if (i == 2) {
+        throw new IllegalStateException("Fail on " + i);
+      }
+    });
+  }
+}
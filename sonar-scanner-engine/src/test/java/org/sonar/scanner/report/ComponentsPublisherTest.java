@@ -30,6 +30,7 @@ import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.batch.fs.internal.DefaultInputDir;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.resources.Directory;
 import org.sonar.api.resources.Project;
 import org.sonar.api.utils.DateUtils;
@@ -90,7 +91,7 @@ public class ComponentsPublisherTest {
 
     ImmutableProjectReactor reactor = new ImmutableProjectReactor(rootDef);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache);
+    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache, new ComponentPublisherPool(new MapSettings()));
 
     File outputDir = temp.newFolder();
     ScannerReportWriter writer = new ScannerReportWriter(outputDir);
@@ -155,7 +156,7 @@ public class ComponentsPublisherTest {
 
     ImmutableProjectReactor reactor = new ImmutableProjectReactor(rootDef);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache);
+    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache, new ComponentPublisherPool(new MapSettings()));
 
     File outputDir = temp.newFolder();
     ScannerReportWriter writer = new ScannerReportWriter(outputDir);
@@ -218,7 +219,7 @@ public class ComponentsPublisherTest {
 
     ImmutableProjectReactor reactor = new ImmutableProjectReactor(rootDef);
 
-    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache);
+    ComponentsPublisher publisher = new ComponentsPublisher(reactor, resourceCache, new ComponentPublisherPool(new MapSettings()));
 
     File outputDir = temp.newFolder();
     ScannerReportWriter writer = new ScannerReportWriter(outputDir);
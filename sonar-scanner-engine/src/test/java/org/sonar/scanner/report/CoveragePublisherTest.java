@@ -28,6 +28,7 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Project;
 import org.sonar.core.util.CloseableIterator;
@@ -61,7 +62,7 @@ public class CoveragePublisherTest {
     resourceCache.add(sampleFile, null).setInputComponent(new DefaultInputFile("foo", "src/Foo.php").setLines(5));
     measureCache = mock(MeasureCache.class);
     when(measureCache.byMetric(anyString(), anyString())).thenReturn(null);
-    publisher = new CoveragePublisher(resourceCache, measureCache);
+    publisher = new CoveragePublisher(resourceCache, measureCache, new ComponentPublisherPool(new MapSettings()));
   }
 
   @Test
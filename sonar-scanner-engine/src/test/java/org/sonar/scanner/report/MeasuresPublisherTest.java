@@ -31,6 +31,7 @@ import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
 import org.sonar.api.batch.sensor.measure.internal.DefaultMeasure;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.measures.CoreMetrics;
 import org.sonar.api.resources.Project;
 import org.sonar.core.util.CloseableIterator;
@@ -72,7 +73,7 @@ public class MeasuresPublisherTest {
     resourceCache.add(sampleFile, null).setInputComponent(new DefaultInputFile("foo", "src/Foo.php"));
     measureCache = mock(MeasureCache.class);
     when(measureCache.byComponentKey(anyString())).thenReturn(Collections.<DefaultMeasure<?>>emptyList());
-    publisher = new MeasuresPublisher(resourceCache, measureCache, mock(TestPlanBuilder.class));
+    publisher = new MeasuresPublisher(resourceCache, measureCache, mock(TestPlanBuilder.class), new ComponentPublisherPool(new MapSettings()));
   }
 
   @Test
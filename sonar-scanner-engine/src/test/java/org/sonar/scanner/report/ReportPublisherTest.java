@@ -19,15 +19,19 @@
  */
 package org.sonar.scanner.report;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.sonar.api.batch.bootstrap.ProjectDefinition;
 import org.sonar.api.config.PropertyDefinitions;
@@ -35,17 +39,25 @@ import org.sonar.api.config.Settings;
 import org.sonar.api.config.MapSettings;
 import org.sonar.api.platform.Server;
 import org.sonar.api.utils.MessageException;
-import org.sonar.api.utils.TempFolder;
+import org.sonar.api.utils.ZipUtils;
 import org.sonar.api.utils.log.LogTester;
 import org.sonar.api.utils.log.LoggerLevel;
 import org.sonar.core.config.CorePropertyDefinitions;
 import org.sonar.scanner.analysis.DefaultAnalysisMode;
 import org.sonar.scanner.bootstrap.BatchWsClient;
 import org.sonar.scanner.scan.ImmutableProjectReactor;
+import org.sonarqube.ws.MediaTypes;
+import org.sonarqube.ws.WsCe;
+import org.sonarqube.ws.client.PostRequest;
+import org.sonarqube.ws.client.WsRequest;
+import org.sonarqube.ws.client.WsResponse;
 
 import static org.apache.commons.io.FileUtils.readFileToString;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ReportPublisherTest {
@@ -76,7 +88,7 @@ public class ReportPublisherTest {
 
   @Test
   public void log_and_dump_information_about_report_uploading() throws IOException {
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     underTest.logSuccess("TASK-123");
 
@@ -97,7 +109,7 @@ public class ReportPublisherTest {
   @Test
   public void log_public_url_if_defined() throws IOException {
     when(server.getPublicRootUrl()).thenReturn("https://publicserver/sonarqube");
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     underTest.logSuccess("TASK-123");
 
@@ -117,7 +129,7 @@ public class ReportPublisherTest {
   @Test
   public void fail_if_public_url_malformed() throws IOException {
     when(server.getPublicRootUrl()).thenReturn("invalid");
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     exception.expect(MessageException.class);
     exception.expectMessage("Failed to parse public URL set in SonarQube server: invalid");
@@ -126,7 +138,7 @@ public class ReportPublisherTest {
 
   @Test
   public void log_but_not_dump_information_when_report_is_not_uploaded() {
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     underTest.logSuccess(/* report not uploaded, no server task */null);
 
@@ -143,7 +155,7 @@ public class ReportPublisherTest {
     settings.setProperty("sonar.batch.keepReport", true);
     Path reportDir = temp.getRoot().toPath().resolve("batch-report");
     Files.createDirectory(reportDir);
-    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     underTest.start();
     underTest.stop();
@@ -154,11 +166,34 @@ public class ReportPublisherTest {
   public void should_delete_report_by_default() throws IOException {
     Path reportDir = temp.getRoot().toPath().resolve("batch-report");
     Files.createDirectory(reportDir);
-    ReportPublisher job = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, mock(TempFolder.class), new ReportPublisherStep[0]);
+    ReportPublisher job = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
 
     job.start();
     job.stop();
     assertThat(reportDir).doesNotExist();
   }
 
+  @Test
+  public void upload_compresses_report_dir_on_the_fly() throws Exception {
+    File reportDir = temp.newFolder("report");
+    FileUtils.write(new File(reportDir, "metadata.pb"), "the metadata");
+    WsResponse response = mock(WsResponse.class);
+    when(wsClient.call(any(WsRequest.class)).failIfNotSuccessful()).thenReturn(response);
+    when(response.contentStream()).thenReturn(new ByteArrayInputStream(WsCe.SubmitResponse.newBuilder().setTaskId("TASK_1").build().toByteArray()));
+    ReportPublisher underTest = new ReportPublisher(settings, wsClient, server, contextPublisher, reactor, mode, new ReportPublisherStep[0]);
+
+    String taskId = underTest.upload(reportDir);
+
+    assertThat(taskId).isEqualTo("TASK_1");
+    ArgumentCaptor<WsRequest> request = ArgumentCaptor.forClass(WsRequest.class);
+    verify(wsClient, atLeastOnce()).call(request.capture());
+    PostRequest.Part part = ((PostRequest) request.getValue()).getParts().get("report");
+    assertThat(part.getMediaType()).isEqualTo(MediaTypes.ZIP);
+    assertThat(part.getFile()).isNull();
+
+    ByteArrayOutputStream zip = new ByteArrayOutputStream();
+    part.getContentWriter().writeTo(zip);
+    File unzipDir = ZipUtils.unzip(new ByteArrayInputStream(zip.toByteArray()), temp.newFolder());
+    assertThat(readFileToString(new File(unzipDir, "metadata.pb"))).isEqualTo("the metadata");
+  }
 }
@@ -0,0 +1,49 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.report;
+
+import java.util.Collections;
+import org.junit.Test;
+import org.sonar.scanner.profiling.SensorProfilingRepository;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class SensorProfilingPublisherTest {
+
+  private SensorProfilingRepository repository = new SensorProfilingRepository();
+  private SensorProfilingPublisher underTest = new SensorProfilingPublisher(repository);
+
+  @Test
+  public void publish_writes_sensor_profiling_to_report() {
+    ScannerReport.SensorProfiling profiling = ScannerReport.SensorProfiling.newBuilder()
+      .setComponentRef(1)
+      .setSensor("Xoo Sensor")
+      .build();
+    repository.add(profiling);
+
+    ScannerReportWriter writer = mock(ScannerReportWriter.class);
+    underTest.publish(writer);
+
+    verify(writer).writeSensorProfiling(Collections.singletonList(profiling));
+  }
+}
@@ -24,17 +24,18 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import org.apache.commons.io.FileUtils;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputModule;
+import org.sonar.api.config.MapSettings;
 import org.sonar.api.resources.Project;
 import org.sonar.api.resources.Qualifiers;
 import org.sonar.scanner.index.BatchComponentCache;
 import org.sonar.scanner.protocol.output.ScannerReportWriter;
-import org.sonar.scanner.report.SourcePublisher;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -51,6 +52,8 @@ public class SourcePublisherTest {
 
   private org.sonar.api.resources.File sampleFile;
 
+  private ComponentPublisherPool pool;
+
   @Before
   public void prepare() throws IOException {
     Project p = new Project("foo").setAnalysisDate(new Date(1234567L));
@@ -62,11 +65,18 @@ public class SourcePublisherTest {
     sourceFile = new File(baseDir, "src/Foo.php");
     resourceCache.add(sampleFile, null).setInputComponent(
       new DefaultInputFile("foo", "src/Foo.php").setLines(5).setModuleBaseDir(baseDir.toPath()).setCharset(StandardCharsets.ISO_8859_1));
-    publisher = new SourcePublisher(resourceCache);
+    pool = new ComponentPublisherPool(new MapSettings().setProperty(ComponentPublisherPool.THREADS_PROPERTY, 2));
+    pool.start();
+    publisher = new SourcePublisher(resourceCache, pool);
     File outputDir = temp.newFolder();
     writer = new ScannerReportWriter(outputDir);
   }
 
+  @After
+  public void stop() {
+    pool.stop();
+  }
+
   @Test
   public void publishEmptySource() throws Exception {
     FileUtils.write(sourceFile, "", StandardCharsets.ISO_8859_1);
@@ -117,4 +127,30 @@ public class SourcePublisherTest {
     File out = writer.getSourceFile(2);
     assertThat(FileUtils.readFileToString(out, StandardCharsets.UTF_8)).isEqualTo("\n2\n3\n4\n5");
   }
+
+  @Test
+  public void transcodeToUtf8() throws Exception {
+    FileUtils.write(sourceFile, "caf\u00e9\r\n\u00e0", StandardCharsets.ISO_8859_1);
+
+    publisher.publish(writer);
+
+    File out = writer.getSourceFile(2);
+    assertThat(FileUtils.readFileToString(out, StandardCharsets.UTF_8)).isEqualTo("caf\u00e9\n\u00e0");
+  }
+
+  @Test
+  public void cleanLineEndsSplitAcrossBlocks() throws Exception {
+    StringBuilder content = new StringBuilder();
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 10_000; i++) {
+      content.append("line").append(i).append("\r\n");
+      expected.append("line").append(i).append("\n");
+    }
+    FileUtils.write(sourceFile, content, StandardCharsets.ISO_8859_1);
+
+    publisher.publish(writer);
+
+    File out = writer.getSourceFile(2);
+    assertThat(FileUtils.readFileToString(out, StandardCharsets.UTF_8)).isEqualTo(expected.toString());
+  }
 }
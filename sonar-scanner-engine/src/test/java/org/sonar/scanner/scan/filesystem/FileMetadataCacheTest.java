@@ -0,0 +1,163 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scan.filesystem;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.sonar.api.batch.bootstrap.ProjectDefinition;
+import org.sonar.api.batch.bootstrap.ProjectReactor;
+import org.sonar.api.batch.fs.internal.DefaultInputFile;
+import org.sonar.api.config.MapSettings;
+import org.sonar.api.config.Settings;
+import org.sonar.api.utils.log.LogTester;
+import org.sonar.api.utils.log.LoggerLevel;
+import org.sonar.scanner.scan.filesystem.FileMetadataCache.FileStamp;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FileMetadataCacheTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Rule
+  public LogTester logTester = new LogTester();
+
+  private File workDir;
+  private File baseDir;
+  private File file;
+  private ProjectReactor reactor;
+  private Settings settings = new MapSettings();
+
+  @Before
+  public void setUp() throws IOException {
+    workDir = temp.newFolder();
+    baseDir = temp.newFolder();
+    file = new File(baseDir, "src/Foo.xoo");
+    FileUtils.write(file, "foo\nbar\n", StandardCharsets.UTF_8);
+    reactor = new ProjectReactor(ProjectDefinition.create().setWorkDir(workDir));
+    settings.setProperty(FileMetadataCache.ENABLED_PROPERTY, true);
+  }
+
+  @Test
+  public void do_nothing_if_disabled() {
+    settings.setProperty(FileMetadataCache.ENABLED_PROPERTY, false);
+    FileMetadataCache cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+
+    assertThat(cache.isEnabled()).isFalse();
+    assertThat(cache.stamp(file.toPath(), StandardCharsets.UTF_8)).isNull();
+
+    cache.stop();
+    assertThat(new File(workDir, FileMetadataCache.DIRNAME)).doesNotExist();
+  }
+
+  @Test
+  public void restore_metadata_stored_by_previous_analysis() {
+    DefaultInputFile computed = newInputFile().initMetadata("foo\nbar\n").setCharset(StandardCharsets.UTF_8);
+    byte[][] lineHashes = {new byte[] {1, 2}, null, new byte[] {3}};
+    FileMetadataCache cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    FileStamp stamp = cache.stamp(file.toPath(), StandardCharsets.UTF_8);
+    cache.put(computed, stamp);
+    cache.putLineHashes(computed, lineHashes);
+    cache.stop();
+
+    cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    DefaultInputFile restored = newInputFile();
+    assertThat(cache.restore(restored, cache.stamp(file.toPath(), StandardCharsets.UTF_8))).isTrue();
+
+    assertThat(restored.charset()).isEqualTo(StandardCharsets.UTF_8);
+    assertThat(restored.lines()).isEqualTo(3);
+    assertThat(restored.nonBlankLines()).isEqualTo(2);
+    assertThat(restored.hash()).isEqualTo(computed.hash());
+    assertThat(restored.originalLineOffsets()).containsExactly(0, 4, 8);
+    assertThat(restored.lastValidOffset()).isEqualTo(8);
+    assertThat(cache.lineHashes(restored)).isEqualTo(lineHashes);
+  }
+
+  @Test
+  public void ignore_entry_if_file_changed() throws IOException {
+    FileMetadataCache cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    cache.put(newInputFile().initMetadata("foo\nbar\n").setCharset(StandardCharsets.UTF_8), cache.stamp(file.toPath(), StandardCharsets.UTF_8));
+    cache.stop();
+
+    FileUtils.write(file, "foo\nbar\nbaz\n", StandardCharsets.UTF_8);
+
+    cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    assertThat(cache.restore(newInputFile(), cache.stamp(file.toPath(), StandardCharsets.UTF_8))).isFalse();
+  }
+
+  @Test
+  public void ignore_entry_if_encoding_changed() {
+    FileMetadataCache cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    cache.put(newInputFile().initMetadata("foo\nbar\n").setCharset(StandardCharsets.UTF_8), cache.stamp(file.toPath(), StandardCharsets.UTF_8));
+    cache.stop();
+
+    cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    assertThat(cache.restore(newInputFile(), cache.stamp(file.toPath(), StandardCharsets.ISO_8859_1))).isFalse();
+  }
+
+  @Test
+  public void drop_entries_of_files_not_indexed_by_last_analysis() {
+    FileMetadataCache cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    cache.put(newInputFile().initMetadata("foo\nbar\n").setCharset(StandardCharsets.UTF_8), cache.stamp(file.toPath(), StandardCharsets.UTF_8));
+    cache.stop();
+
+    // second analysis does not index the file
+    cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    cache.stop();
+
+    cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+    assertThat(cache.restore(newInputFile(), cache.stamp(file.toPath(), StandardCharsets.UTF_8))).isFalse();
+  }
+
+  @Test
+  public void ignore_corrupted_cache() throws IOException {
+    File cacheFile = new File(new File(workDir, FileMetadataCache.DIRNAME), "metadata.dat");
+    cacheFile.getParentFile().mkdirs();
+    Files.write(cacheFile.toPath(), new byte[] {0, 0, 0, 1, 0, 0, 0, 5, 1});
+
+    FileMetadataCache cache = new FileMetadataCache(reactor, settings);
+    cache.start();
+
+    assertThat(cache.restore(newInputFile(), cache.stamp(file.toPath(), StandardCharsets.UTF_8))).isFalse();
+    assertThat(logTester.logs(LoggerLevel.WARN)).hasSize(1);
+  }
+
+  private DefaultInputFile newInputFile() {
+    return new DefaultInputFile("foo", "src/Foo.xoo").setModuleBaseDir(baseDir.toPath());
+  }
+}
@@ -38,7 +38,7 @@ public class InputFileBuilderFactoryTest {
     DefaultModuleFileSystem fs = mock(DefaultModuleFileSystem.class);
 
     InputFileBuilderFactory factory = new InputFileBuilderFactory(ProjectDefinition.create().setKey("struts"), pathResolver, langDetectionFactory,
-      statusDetectionFactory, new MapSettings(), new FileMetadata());
+      statusDetectionFactory, new MapSettings(), new FileMetadata(), mock(FileMetadataCache.class));
     InputFileBuilder builder = factory.create(fs);
 
     assertThat(builder.langDetection()).isNotNull();
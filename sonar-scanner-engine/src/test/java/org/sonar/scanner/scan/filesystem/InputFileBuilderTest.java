@@ -36,7 +36,11 @@ import org.sonar.api.utils.PathUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 
 public class InputFileBuilderTest {
@@ -47,6 +51,7 @@ public class InputFileBuilderTest {
   LanguageDetection langDetection = mock(LanguageDetection.class);
   StatusDetection statusDetection = mock(StatusDetection.class);
   DefaultModuleFileSystem fs = mock(DefaultModuleFileSystem.class);
+  FileMetadataCache metadataCache = mock(FileMetadataCache.class);
 
   @Test
   public void should_detect_charset_from_BOM() {
@@ -54,7 +59,7 @@ public class InputFileBuilderTest {
     when(fs.baseDir()).thenReturn(basedir);
     when(fs.encoding()).thenReturn(StandardCharsets.US_ASCII);
     when(langDetection.language(any(InputFile.class))).thenReturn("java");
-    InputFileBuilder builder = new InputFileBuilder("moduleKey", new PathResolver(), langDetection, statusDetection, fs, new MapSettings(), new FileMetadata());
+    InputFileBuilder builder = new InputFileBuilder("moduleKey", new PathResolver(), langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), metadataCache);
 
     assertThat(createAndComplete(builder, new File(basedir, "without_BOM.txt")).charset())
       .isEqualTo(StandardCharsets.US_ASCII);
@@ -102,7 +107,7 @@ public class InputFileBuilderTest {
       .thenReturn(InputFile.Status.ADDED);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata());
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), metadataCache);
     DefaultInputFile inputFile = builder.create(srcFile);
     builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
 
@@ -115,6 +120,48 @@ public class InputFileBuilderTest {
     assertThat(inputFile.lines()).isEqualTo(1);
   }
 
+  @Test
+  public void restore_metadata_from_cache() throws Exception {
+    File basedir = temp.newFolder();
+    File srcFile = new File(basedir, "src/main/java/foo/Bar.java");
+    FileUtils.write(srcFile, "foo\nbar");
+    when(fs.baseDir()).thenReturn(basedir);
+    when(fs.encoding()).thenReturn(StandardCharsets.UTF_8);
+    when(langDetection.language(any(InputFile.class))).thenReturn("java");
+    FileMetadataCache.FileStamp stamp = new FileMetadataCache.FileStamp(7L, 1_000L, "UTF-8");
+    when(metadataCache.stamp(srcFile.toPath(), StandardCharsets.UTF_8)).thenReturn(stamp);
+    when(metadataCache.restore(any(DefaultInputFile.class), eq(stamp))).thenReturn(true);
+    FileMetadata fileMetadata = mock(FileMetadata.class);
+
+    InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
+      langDetection, statusDetection, fs, new MapSettings(), fileMetadata, metadataCache);
+    DefaultInputFile inputFile = builder.create(srcFile);
+    builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
+
+    verifyZeroInteractions(fileMetadata);
+    verify(metadataCache, never()).put(inputFile, stamp);
+  }
+
+  @Test
+  public void put_computed_metadata_in_cache() throws Exception {
+    File basedir = temp.newFolder();
+    File srcFile = new File(basedir, "src/main/java/foo/Bar.java");
+    FileUtils.write(srcFile, "foo\nbar");
+    when(fs.baseDir()).thenReturn(basedir);
+    when(fs.encoding()).thenReturn(StandardCharsets.UTF_8);
+    when(langDetection.language(any(InputFile.class))).thenReturn("java");
+    FileMetadataCache.FileStamp stamp = new FileMetadataCache.FileStamp(7L, 1_000L, "UTF-8");
+    when(metadataCache.stamp(srcFile.toPath(), StandardCharsets.UTF_8)).thenReturn(stamp);
+
+    InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), metadataCache);
+    DefaultInputFile inputFile = builder.create(srcFile);
+    builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
+
+    assertThat(inputFile.lines()).isEqualTo(2);
+    verify(metadataCache).put(inputFile, stamp);
+  }
+
   @Test
   public void return_null_if_file_outside_basedir() throws Exception {
     // file system
@@ -125,7 +172,7 @@ public class InputFileBuilderTest {
     when(fs.baseDir()).thenReturn(basedir);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata());
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), metadataCache);
     DefaultInputFile inputFile = builder.create(srcFile);
 
     assertThat(inputFile).isNull();
@@ -145,7 +192,7 @@ public class InputFileBuilderTest {
     when(langDetection.language(any(InputFile.class))).thenReturn(null);
 
     InputFileBuilder builder = new InputFileBuilder("struts", new PathResolver(),
-      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata());
+      langDetection, statusDetection, fs, new MapSettings(), new FileMetadata(), metadataCache);
     DefaultInputFile inputFile = builder.create(srcFile);
     inputFile = builder.completeAndComputeMetadata(inputFile, InputFile.Type.MAIN);
 
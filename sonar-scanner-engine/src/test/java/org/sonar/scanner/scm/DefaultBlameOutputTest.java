@@ -19,20 +19,28 @@
  */
 package org.sonar.scanner.scm;
 
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.Map;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
 import org.sonar.api.batch.fs.InputComponent;
 import org.sonar.api.batch.fs.InputFile;
 import org.sonar.api.batch.fs.internal.DefaultInputFile;
 import org.sonar.api.batch.scm.BlameLine;
 import org.sonar.scanner.index.BatchComponent;
 import org.sonar.scanner.index.BatchComponentCache;
+import org.sonar.scanner.protocol.output.ScannerReport;
+import org.sonar.scanner.protocol.output.ScannerReportReader;
+import org.sonar.scanner.protocol.output.ScannerReportWriter;
 import org.sonar.scanner.scm.DefaultBlameOutput;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -42,6 +50,9 @@ public class DefaultBlameOutputTest {
   @Rule
   public ExpectedException thrown = ExpectedException.none();
 
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
   private BatchComponentCache componentCache;
 
   @Before
@@ -92,4 +103,31 @@ public class DefaultBlameOutputTest {
       .blameResult(file, Arrays.asList(new BlameLine().date(new Date()).author("guy")));
   }
 
+  @Test
+  public void shouldFailIfNullLineWasChanged() {
+    InputFile file = new DefaultInputFile("foo", "src/main/java/Foo.java").setLines(2);
+    Map<InputFile, int[]> previousLines = ImmutableMap.of(file, new int[] {1, 0});
+
+    thrown.expect(IllegalArgumentException.class);
+    thrown.expectMessage("Blame is missing for file src/main/java/Foo.java at line 2");
+
+    new DefaultBlameOutput(null, componentCache, Arrays.<InputFile>asList(file), previousLines)
+      .blameResult(file, Arrays.asList(null, null));
+  }
+
+  @Test
+  public void shouldCopyChangesetsOfUnchangedLinesFromPreviousAnalysis() throws Exception {
+    File reportDir = temp.newFolder();
+    InputFile file = new DefaultInputFile("foo", "src/main/java/Foo.java").setLines(3);
+    Map<InputFile, int[]> previousLines = ImmutableMap.of(file, new int[] {1, 0, 2});
+
+    new DefaultBlameOutput(new ScannerReportWriter(reportDir), componentCache, Arrays.<InputFile>asList(file), previousLines)
+      .blameResult(file, Arrays.asList(null, new BlameLine().revision("2").author("guy").date(new Date()), null));
+
+    ScannerReport.Changesets changesets = new ScannerReportReader(reportDir).readChangesets(1);
+    assertThat(changesets.getChangesetCount()).isEqualTo(1);
+    assertThat(changesets.getChangesetIndexByLineList()).containsExactly(-1, 0, -1);
+    assertThat(changesets.getPreviousLineByLineList()).containsExactly(1, 0, 2);
+  }
+
 }
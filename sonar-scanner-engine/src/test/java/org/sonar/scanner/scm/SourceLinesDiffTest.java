@@ -0,0 +1,75 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.scm;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SourceLinesDiffTest {
+
+  @Test
+  public void same_lines() {
+    assertThat(SourceLinesDiff.previousLines(new String[] {"a", "b", "c"}, new String[] {"a", "b", "c"})).containsExactly(1, 2, 3);
+  }
+
+  @Test
+  public void added_and_removed_lines() {
+    String[] previous = {"a", "b", "c", "d", "e"};
+    String[] current = {"x", "a", "c", "y", "d", "e", "z"};
+
+    assertThat(SourceLinesDiff.previousLines(previous, current)).containsExactly(0, 1, 3, 0, 4, 5, 0);
+  }
+
+  @Test
+  public void changed_lines_in_the_middle() {
+    String[] previous = {"a", "b", "c", "d", "b", "e"};
+    String[] current = {"a", "x", "c", "b", "y", "e"};
+
+    assertThat(SourceLinesDiff.previousLines(previous, current)).containsExactly(1, 0, 3, 5, 0, 6);
+  }
+
+  @Test
+  public void empty_versions() {
+    assertThat(SourceLinesDiff.previousLines(new String[0], new String[] {"a"})).containsExactly(0);
+    assertThat(SourceLinesDiff.previousLines(new String[] {"a"}, new String[0])).isEmpty();
+  }
+
+  @Test
+  public void only_common_prefix_and_suffix_when_too_many_lines_changed() {
+    int size = (int) Math.sqrt(SourceLinesDiff.MAX_LCS_TABLE_SIZE) + 1;
+    String[] previous = new String[size + 2];
+    String[] current = new String[size + 2];
+    previous[0] = "first";
+    current[0] = "first";
+    for (int i = 1; i <= size; i++) {
+      previous[i] = "p" + i;
+      current[i] = "p" + (i + 1);
+    }
+    previous[size + 1] = "last";
+    current[size + 1] = "last";
+
+    int[] previousLines = SourceLinesDiff.previousLines(previous, current);
+
+    assertThat(previousLines[0]).isEqualTo(1);
+    assertThat(previousLines[1]).isEqualTo(0);
+    assertThat(previousLines[size + 1]).isEqualTo(size + 2);
+  }
+}
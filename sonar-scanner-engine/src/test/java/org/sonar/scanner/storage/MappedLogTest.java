@@ -0,0 +1,62 @@
+/*
+ * SonarQube
+ * Copyright (C) 2009-2016 SonarSource SA
+ * mailto:contact AT sonarsource DOT com
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 3 of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this program; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package org.sonar.scanner.storage;
+
+import java.io.File;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MappedLogTest {
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void append_and_read_values_across_segments() throws Exception {
+    File file = temp.newFile();
+    MappedLog log = new MappedLog(file.toPath(), 16);
+
+    long first = log.append(new byte[] {1, 2, 3});
+    long second = log.append(new byte[] {4, 5, 6, 7, 8});
+    long big = log.append(new byte[100]);
+    long empty = log.append(new byte[0]);
+
+    assertThat(log.read(first)).containsExactly(new byte[] {1, 2, 3});
+    assertThat(log.read(second)).containsExactly(new byte[] {4, 5, 6, 7, 8});
+    assertThat(log.read(big)).hasSize(100);
+    assertThat(log.read(empty)).isEmpty();
+
+    log.close();
+  }
+
+  @Test
+  public void close_deletes_file() throws Exception {
+    File file = temp.newFile();
+    MappedLog log = new MappedLog(file.toPath(), MappedLog.DEFAULT_SEGMENT_SIZE);
+    log.append(new byte[] {1});
+
+    log.close();
+
+    assertThat(file).doesNotExist();
+  }
+}
@@ -19,24 +19,59 @@
  */
 package org.sonar.scanner.storage;
 
+import com.google.common.collect.ImmutableMap;
+import java.io.File;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.scanner.index.AbstractCachesTest;
-import java.io.File;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class StoragesManagerTest extends AbstractCachesTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   @Test
   public void should_stop_and_clean_temp_dir() {
     File tempDir = cachesManager.tempDir();
     assertThat(tempDir).isDirectory().exists();
-    assertThat(cachesManager.persistit()).isNotNull();
-    assertThat(cachesManager.persistit().isInitialized()).isTrue();
 
     cachesManager.stop();
 
     assertThat(tempDir).doesNotExist();
     assertThat(cachesManager.tempDir()).isNull();
-    assertThat(cachesManager.persistit()).isNull();
+  }
+
+  @Test
+  public void heap_budget_defaults_to_quarter_of_max_memory() {
+    assertThat(cachesManager.heapBudget()).isEqualTo(Runtime.getRuntime().maxMemory() / 4);
+  }
+
+  @Test
+  public void reserve_heap_within_budget() {
+    StoragesManager manager = createCacheOnTemp(ImmutableMap.of(StoragesManager.HEAP_BUDGET_PROPERTY, "1"));
+    try {
+      assertThat(manager.heapBudget()).isEqualTo(1024L * 1024L);
+
+      assertThat(manager.reserveHeap(1000 * 1024)).isTrue();
+      assertThat(manager.reserveHeap(100 * 1024)).isFalse();
+      assertThat(manager.heapUsage()).isEqualTo(1000 * 1024);
+
+      manager.releaseHeap(1000 * 1024);
+      assertThat(manager.heapUsage()).isEqualTo(0);
+      assertThat(manager.reserveHeap(100 * 1024)).isTrue();
+    } finally {
+      manager.stop();
+    }
+  }
+
+  @Test
+  public void fail_if_heap_budget_is_not_a_number() {
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Value of property 'sonar.storage.heapBudgetMb' must be a number of MB: foo");
+
+    createCacheOnTemp(ImmutableMap.of(StoragesManager.HEAP_BUDGET_PROPERTY, "foo"));
   }
 }
@@ -19,18 +19,29 @@
  */
 package org.sonar.scanner.storage;
 
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
 import java.io.Serializable;
-
-import com.persistit.exception.PersistitException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.ExpectedException;
 import org.sonar.scanner.index.AbstractCachesTest;
-import org.sonar.scanner.storage.Storage;
-import org.sonar.scanner.storage.Storages;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
 
 public class StoragesTest extends AbstractCachesTest {
+
+  @Rule
+  public ExpectedException thrown = ExpectedException.none();
+
   @Test
   public void should_create_cache() {
     Storage<Element> cache = caches.createCache("foo");
@@ -54,11 +65,13 @@ public class StoragesTest extends AbstractCachesTest {
     for (int i = 0; i < 1_000_000; i++) {
       c.put("a" + i, "a" + i);
     }
+    assertThat(cachesManager.heapUsage()).isPositive();
 
     caches.stop();
 
     // manager continues up
-    assertThat(cachesManager.persistit().isInitialized()).isTrue();
+    assertThat(cachesManager.heapUsage()).isEqualTo(0);
+    assertThat(cachesManager.tempDir()).isDirectory();
 
     caches = new Storages(cachesManager);
     caches.start();
@@ -66,7 +79,7 @@ public class StoragesTest extends AbstractCachesTest {
   }
 
   @Test
-  public void leak_test() throws PersistitException {
+  public void leak_test() {
     caches.stop();
 
     int len = 1 * 1024 * 1024;
@@ -80,14 +93,108 @@ public class StoragesTest extends AbstractCachesTest {
       caches.start();
       Storage<String> c = caches.<String>createCache("test" + i);
       c.put("key" + i, sb.toString());
-      cachesManager.persistit().flush();
 
       caches.stop();
     }
+    assertThat(cachesManager.heapUsage()).isEqualTo(0);
+  }
+
+  @Test
+  public void should_write_values_to_mapped_file_when_heap_budget_is_exceeded() {
+    StoragesManager manager = createCacheOnTemp(ImmutableMap.of(StoragesManager.HEAP_BUDGET_PROPERTY, "0"));
+    Storages storages = new Storages(manager);
+    try {
+      Storage<String> cache = storages.createCache("capitals");
+      cache.put("europe", "france", "paris");
+      cache.put("europe", "italy", "rome");
+      cache.put("asia", "china", "pekin");
+
+      assertThat(manager.heapUsage()).isEqualTo(0);
+      assertThat(manager.tempDir().list()).hasSize(1);
+      assertThat(cache.get("europe", "france")).isEqualTo("paris");
+      assertThat(cache.values("europe")).containsOnly("paris", "rome");
+
+      cache.remove("europe", "france");
+      assertThat(cache.get("europe", "france")).isNull();
+      assertThat(cache.values()).containsOnly("rome", "pekin");
+
+      storages.stop();
+      assertThat(manager.tempDir().list()).isEmpty();
+    } finally {
+      storages.stop();
+      manager.stop();
+    }
+  }
+
+  @Test
+  public void fail_if_value_is_too_big() {
+    Storage<byte[]> cache = caches.createCache("big");
+
+    thrown.expect(IllegalStateException.class);
+    thrown.expectMessage("Fail to put element in the storage 'big'");
+
+    cache.put("key", new byte[Storages.MAX_VALUE_SIZE + 1]);
+  }
+
+  @Test
+  public void should_encode_values_with_registered_coder() {
+    caches.registerValueCoder(Element.class, new ElementCoder());
+    Storage<Element> cache = caches.createCache("elements");
+
+    cache.put("foo", new Element("bar"));
+
+    Element element = cache.get("foo");
+    assertThat(element.name).isEqualTo("bar");
+    assertThat(element.decoded).isTrue();
+  }
+
+  @Test
+  public void should_support_concurrent_writes() throws Exception {
+    Storage<Integer> cache = caches.createCache("concurrent");
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<?>> futures = new ArrayList<>();
+      for (int thread = 0; thread < 4; thread++) {
+        int first = thread * 1_000;
+        futures.add(executor.submit(() -> {
+          for (int i = first; i < first + 1_000; i++) {
+            cache.put("value", i, i);
+          }
+        }));
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    assertThat(cache.keySet("value")).hasSize(4_000);
+    assertThat(cache.get("value", 3_999)).isEqualTo(3_999);
   }
 
   private static class Element implements Serializable {
     private static final long serialVersionUID = 1L;
 
+    private final String name;
+    private boolean decoded = false;
+
+    Element(String name) {
+      this.name = name;
+    }
+  }
+
+  private static class ElementCoder implements ValueCoder<Element> {
+    @Override
+    public void put(ObjectOutput out, Element value) throws IOException {
+      out.writeUTF(value.name);
+    }
+
+    @Override
+    public Element get(ObjectInput in) throws IOException {
+      Element element = new Element(in.readUTF());
+      element.decoded = true;
+      return element;
+    }
   }
 }
@@ -170,6 +170,14 @@ public class ScannerReportReader {
     return Protobuf.readStream(file, ScannerReport.ContextProperty.parser());
   }
 
+  public CloseableIterator<ScannerReport.SensorProfiling> readSensorProfiling() {
+    File file = fileStructure.sensorProfiling();
+    if (!fileExists(file)) {
+      return emptyCloseableIterator();
+    }
+    return Protobuf.readStream(file, ScannerReport.SensorProfiling.parser());
+  }
+
   private static boolean fileExists(File file) {
     return file.exists() && file.isFile();
   }
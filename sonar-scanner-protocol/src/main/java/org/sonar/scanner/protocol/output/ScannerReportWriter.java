@@ -140,6 +140,12 @@ public class ScannerReportWriter {
     return file;
   }
 
+  public File writeSensorProfiling(Iterable<ScannerReport.SensorProfiling> profiling) {
+    File file = fileStructure.sensorProfiling();
+    Protobuf.writeStream(profiling, file, false);
+    return file;
+  }
+
   public File getSourceFile(int componentRef) {
     return fileStructure.fileFor(FileStructure.Domain.SOURCE, componentRef);
   }
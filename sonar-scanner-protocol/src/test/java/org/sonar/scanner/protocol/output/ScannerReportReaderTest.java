@@ -377,4 +377,27 @@ public class ScannerReportReaderTest {
   public void return_null_when_no_file_source() throws Exception {
     assertThat(underTest.readFileSource(UNKNOWN_COMPONENT_REF)).isNull();
   }
+
+  @Test
+  public void read_sensor_profiling() {
+    ScannerReportWriter writer = new ScannerReportWriter(dir);
+    writer.writeSensorProfiling(singletonList(ScannerReport.SensorProfiling.newBuilder()
+      .setComponentRef(1)
+      .setSensor("Xoo Sensor")
+      .setCpuTimeMs(10L)
+      .build()));
+
+    try (CloseableIterator<ScannerReport.SensorProfiling> it = underTest.readSensorProfiling()) {
+      ScannerReport.SensorProfiling profiling = it.next();
+      assertThat(profiling.getComponentRef()).isEqualTo(1);
+      assertThat(profiling.getSensor()).isEqualTo("Xoo Sensor");
+      assertThat(profiling.getCpuTimeMs()).isEqualTo(10L);
+      assertThat(it.hasNext()).isFalse();
+    }
+  }
+
+  @Test
+  public void empty_list_if_no_sensor_profiling() {
+    assertThat(underTest.readSensorProfiling()).isEmpty();
+  }
 }
@@ -47,6 +47,7 @@ import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.BufferedSink;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Strings.isNullOrEmpty;
@@ -259,7 +260,7 @@ public class HttpConnector implements WsConnector {
         PostRequest.Part part = param.getValue();
         bodyBuilder.addPart(
           Headers.of("Content-Disposition", format("form-data; name=\"%s\"", param.getKey())),
-          RequestBody.create(MediaType.parse(part.getMediaType()), part.getFile()));
+          createPartBody(part));
       }
       okRequestBuilder.post(bodyBuilder.build());
     }
@@ -267,6 +268,31 @@ public class HttpConnector implements WsConnector {
     return doCall(okRequestBuilder.build());
   }
 
+  private static RequestBody createPartBody(PostRequest.Part part) {
+    MediaType mediaType = MediaType.parse(part.getMediaType());
+    PostRequest.ContentWriter contentWriter = part.getContentWriter();
+    if (contentWriter == null) {
+      return RequestBody.create(mediaType, part.getFile());
+    }
+    return new RequestBody() {
+      @Override
+      public MediaType contentType() {
+        return mediaType;
+      }
+
+      @Override
+      public long contentLength() {
+        // unknown, the body is sent with chunked transfer encoding
+        return -1L;
+      }
+
+      @Override
+      public void writeTo(BufferedSink sink) throws IOException {
+        contentWriter.writeTo(sink.outputStream());
+      }
+    };
+  }
+
   private HttpUrl.Builder prepareUrlBuilder(WsRequest wsRequest) {
     String path = wsRequest.getPath();
     HttpUrl.Builder urlBuilder = baseUrl
@@ -57,4 +57,16 @@ public class PostRequestTest {
     assertThat(part.getMediaType()).isEqualTo(MediaTypes.JSON);
     assertThat(part.getFile()).isSameAs(reportFile);
   }
+
+  @Test
+  public void add_streamed_part() {
+    PostRequest.ContentWriter contentWriter = output -> output.write(42);
+    PostRequest request = new PostRequest("api/issues/search")
+      .setPart("report", new PostRequest.Part(MediaTypes.ZIP, contentWriter));
+
+    PostRequest.Part part = request.getParts().get("report");
+    assertThat(part.getMediaType()).isEqualTo(MediaTypes.ZIP);
+    assertThat(part.getFile()).isNull();
+    assertThat(part.getContentWriter()).isSameAs(contentWriter);
+  }
 }